@@ -1,12 +1,11 @@
 package io.github.stefanbratanov.jvm.openai;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.util.List;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Build assistants that can call models and use tools to perform tasks.
@@ -16,14 +15,12 @@ import java.util.Optional;
 public final class AssistantsClient extends OpenAIAssistantsClient {
 
   private final URI baseUrl;
+  private final ReadThroughCache<Assistant> assistantsCache;
 
-  AssistantsClient(
-      URI baseUrl,
-      String[] authenticationHeaders,
-      HttpClient httpClient,
-      Optional<Duration> requestTimeout) {
-    super(authenticationHeaders, httpClient, requestTimeout);
+  AssistantsClient(URI baseUrl, String[] authenticationHeaders, ClientOptions clientOptions) {
+    super(authenticationHeaders, clientOptions);
     this.baseUrl = baseUrl;
+    assistantsCache = clientOptions.sharedState().assistantsCache();
   }
 
   /**
@@ -38,7 +35,9 @@ public final class AssistantsClient extends OpenAIAssistantsClient {
             .POST(createBodyPublisher(request))
             .build();
     HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
-    return deserializeResponse(httpResponse.body(), Assistant.class);
+    Assistant assistant = deserializeResponse(httpResponse.body(), Assistant.class);
+    assistantsCache.put(Utils.credentialFingerprint(httpRequest), assistant.id(), assistant);
+    return assistant;
   }
 
   /**
@@ -62,21 +61,61 @@ public final class AssistantsClient extends OpenAIAssistantsClient {
   public record PaginatedAssistants(
       List<Assistant> data, String firstId, String lastId, boolean hasMore) {}
 
+  /**
+   * Same as {@link #listAssistants(PaginationQueryParameters)} but returns a {@link
+   * PaginatedIterable} which lazily fetches all assistants page by page.
+   */
+  public PaginatedIterable<Assistant> listAllAssistants(
+      PaginationQueryParameters paginationQueryParameters) {
+    return new PaginatedIterable<>(
+        paginationQueryParameters.after(),
+        after -> listAssistants(paginationQueryParameters.withAfter(after)),
+        PaginatedAssistants::data,
+        PaginatedAssistants::lastId,
+        PaginatedAssistants::hasMore);
+  }
+
   /**
    * Retrieves an assistant.
    *
    * @throws OpenAIException in case of API errors
    */
   public Assistant retrieveAssistant(String assistantId) {
-    HttpRequest httpRequest =
-        newHttpRequestBuilder()
-            .uri(baseUrl.resolve(Endpoint.ASSISTANTS.getPath() + "/" + assistantId))
-            .GET()
-            .build();
+    HttpRequest httpRequest = createRetrieveAssistantRequest(assistantId);
     HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), Assistant.class);
   }
 
+  /**
+   * Same as {@link #retrieveAssistant(String)} but returns the assistant from a cache if it has
+   * been retrieved, created or modified through this client with the same API key before. Cached
+   * assistants are refreshed in the background once they are older than {@link
+   * OpenAI.Builder#cacheRefreshInterval(Duration)} and removed when deleted through this client
+   * or when they are no longer found. If a refresh fails, they expire after twice the interval.
+   *
+   * @throws OpenAIException in case of API errors
+   */
+  public Assistant retrieveAssistantCached(String assistantId) {
+    HttpRequest httpRequest = createRetrieveAssistantRequest(assistantId);
+    return assistantsCache.get(
+        Utils.credentialFingerprint(httpRequest),
+        assistantId,
+        () -> retrieveAssistantAsync(httpRequest));
+  }
+
+  private CompletableFuture<Assistant> retrieveAssistantAsync(HttpRequest httpRequest) {
+    // the cache has its own refresh interval, so responses cached by the HTTP layer are skipped
+    return sendUncachedHttpRequestAsync(httpRequest)
+        .thenApply(httpResponse -> deserializeResponse(httpResponse.body(), Assistant.class));
+  }
+
+  private HttpRequest createRetrieveAssistantRequest(String assistantId) {
+    return newHttpRequestBuilder()
+        .uri(baseUrl.resolve(Endpoint.ASSISTANTS.getPath() + "/" + assistantId))
+        .GET()
+        .build();
+  }
+
   /**
    * Modifies an assistant.
    *
@@ -89,7 +128,9 @@ public final class AssistantsClient extends OpenAIAssistantsClient {
             .POST(createBodyPublisher(request))
             .build();
     HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
-    return deserializeResponse(httpResponse.body(), Assistant.class);
+    Assistant assistant = deserializeResponse(httpResponse.body(), Assistant.class);
+    assistantsCache.put(Utils.credentialFingerprint(httpRequest), assistantId, assistant);
+    return assistant;
   }
 
   /**
@@ -104,6 +145,7 @@ public final class AssistantsClient extends OpenAIAssistantsClient {
             .DELETE()
             .build();
     HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    assistantsCache.invalidate(assistantId);
     return deserializeResponse(httpResponse.body(), DeletionStatus.class);
   }
 }
@@ -3,14 +3,11 @@ package io.github.stefanbratanov.jvm.openai;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandlers;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.time.Duration;
-import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -22,12 +19,8 @@ public final class AudioClient extends OpenAIClient {
 
   private final URI baseUrl;
 
-  AudioClient(
-      URI baseUrl,
-      String[] authenticationHeaders,
-      HttpClient httpClient,
-      Optional<Duration> requestTimeout) {
-    super(authenticationHeaders, httpClient, requestTimeout);
+  AudioClient(URI baseUrl, String[] authenticationHeaders, ClientOptions clientOptions) {
+    super(authenticationHeaders, clientOptions);
     this.baseUrl = baseUrl;
   }
 
@@ -56,8 +49,8 @@ public final class AudioClient extends OpenAIClient {
             .POST(createBodyPublisher(request))
             .build();
 
-    return sendHttpRequestAsync(httpRequest, BodyHandlers.ofFile(output))
-        .thenApply(httpResponse -> null);
+    return thenApplyCancellable(
+        sendHttpRequestAsync(httpRequest, BodyHandlers.ofFile(output)), httpResponse -> null);
   }
 
   /**
@@ -78,7 +71,8 @@ public final class AudioClient extends OpenAIClient {
   public CompletableFuture<String> createTranscriptAsync(TranscriptionRequest request) {
     HttpRequest httpRequest = createTranscriptPostRequest(request);
 
-    return sendHttpRequestAsync(httpRequest, BodyHandlers.ofString()).thenApply(HttpResponse::body);
+    return thenApplyCancellable(
+        sendHttpRequestAsync(httpRequest, BodyHandlers.ofString()), HttpResponse::body);
   }
 
   /**
@@ -99,7 +93,8 @@ public final class AudioClient extends OpenAIClient {
   public CompletableFuture<String> createTranslationAsync(TranslationRequest request) {
     HttpRequest httpRequest = createTranslationPostRequest(request);
 
-    return sendHttpRequestAsync(httpRequest, BodyHandlers.ofString()).thenApply(HttpResponse::body);
+    return thenApplyCancellable(
+        sendHttpRequestAsync(httpRequest, BodyHandlers.ofString()), HttpResponse::body);
   }
 
   private void createParentDirectories(Path path) {
@@ -1,8 +1,8 @@
 package io.github.stefanbratanov.jvm.openai;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import io.github.stefanbratanov.jvm.openai.AuditLogEvent.ApiKeyCreatedEvent;
 import io.github.stefanbratanov.jvm.openai.AuditLogEvent.ApiKeyDeletedEvent;
@@ -23,102 +23,80 @@ import io.github.stefanbratanov.jvm.openai.AuditLogEvent.UserAddedEvent;
 import io.github.stefanbratanov.jvm.openai.AuditLogEvent.UserDeletedEvent;
 import io.github.stefanbratanov.jvm.openai.AuditLogEvent.UserUpdatedEvent;
 import java.io.IOException;
+import java.util.Map;
 
 public class AuditLogDeserializer extends StdDeserializer<AuditLog> {
 
+  private static final Map<String, Class<? extends AuditLogEvent>> EVENT_CLASSES =
+      Map.ofEntries(
+          Map.entry(Constants.API_KEY_CREATED_EVENT_TYPE, ApiKeyCreatedEvent.class),
+          Map.entry(Constants.API_KEY_UPDATED_EVENT_TYPE, ApiKeyUpdatedEvent.class),
+          Map.entry(Constants.API_KEY_DELETED_EVENT_TYPE, ApiKeyDeletedEvent.class),
+          Map.entry(Constants.INVITE_SENT_EVENT_TYPE, InviteSentEvent.class),
+          Map.entry(Constants.INVITE_ACCEPTED_EVENT_TYPE, InviteAcceptedEvent.class),
+          Map.entry(Constants.INVITE_DELETED_EVENT_TYPE, InviteDeletedEvent.class),
+          Map.entry(Constants.LOGIN_FAILED_EVENT_TYPE, LoginFailedEvent.class),
+          Map.entry(Constants.LOGOUT_FAILED_EVENT_TYPE, LogoutFailedEvent.class),
+          Map.entry(Constants.ORGANIZATION_UPDATED_EVENT_TYPE, OrganizationUpdatedEvent.class),
+          Map.entry(Constants.PROJECT_CREATED_EVENT_TYPE, ProjectCreatedEvent.class),
+          Map.entry(Constants.PROJECT_UPDATED_EVENT_TYPE, ProjectUpdatedEvent.class),
+          Map.entry(Constants.PROJECT_ARCHIVED_EVENT_TYPE, ProjectArchivedEvent.class),
+          Map.entry(Constants.SERVICE_ACCOUNT_CREATED_EVENT_TYPE, ServiceAccountCreatedEvent.class),
+          Map.entry(Constants.SERVICE_ACCOUNT_UPDATED_EVENT_TYPE, ServiceAccountUpdatedEvent.class),
+          Map.entry(Constants.SERVICE_ACCOUNT_DELETED_EVENT_TYPE, ServiceAccountDeletedEvent.class),
+          Map.entry(Constants.USER_ADDED_EVENT_TYPE, UserAddedEvent.class),
+          Map.entry(Constants.USER_UPDATED_EVENT_TYPE, UserUpdatedEvent.class),
+          Map.entry(Constants.USER_DELETED_EVENT_TYPE, UserDeletedEvent.class));
+
   public AuditLogDeserializer() {
     super(AuditLog.class);
   }
 
+  /**
+   * Reads the audit log in a single pass over the tokens. The event is stored under a field named
+   * after the event type, so it is deserialized as soon as its field is reached, regardless of
+   * whether the <b>type</b> field comes before or after it.
+   */
   @Override
   public AuditLog deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
-    JsonNode node = p.getCodec().readTree(p);
-
-    String id = node.get("id").asText();
-    String type = node.get("type").asText();
-    long effectiveAt = node.get("effective_at").asLong();
-    JsonNode projectNode = node.get("project");
-    AuditLog.Project project =
-        projectNode != null ? p.getCodec().treeToValue(projectNode, AuditLog.Project.class) : null;
-    JsonNode actorNode = node.get("actor");
-    AuditLog.Actor actor = p.getCodec().treeToValue(actorNode, AuditLog.Actor.class);
-
-    AuditLogEvent event;
+    String id = null;
+    String type = null;
+    long effectiveAt = 0;
+    AuditLog.Project project = null;
+    AuditLog.Actor actor = null;
+    String eventType = null;
+    AuditLogEvent event = null;
 
-    switch (type) {
-      case Constants.API_KEY_CREATED_EVENT_TYPE -> {
-        JsonNode eventNode = node.get(Constants.API_KEY_CREATED_EVENT_TYPE);
-        event = p.getCodec().treeToValue(eventNode, ApiKeyCreatedEvent.class);
-      }
-      case Constants.API_KEY_UPDATED_EVENT_TYPE -> {
-        JsonNode eventNode = node.get(Constants.API_KEY_UPDATED_EVENT_TYPE);
-        event = p.getCodec().treeToValue(eventNode, ApiKeyUpdatedEvent.class);
-      }
-      case Constants.API_KEY_DELETED_EVENT_TYPE -> {
-        JsonNode eventNode = node.get(Constants.API_KEY_DELETED_EVENT_TYPE);
-        event = p.getCodec().treeToValue(eventNode, ApiKeyDeletedEvent.class);
-      }
-      case Constants.INVITE_SENT_EVENT_TYPE -> {
-        JsonNode eventNode = node.get(Constants.INVITE_SENT_EVENT_TYPE);
-        event = p.getCodec().treeToValue(eventNode, InviteSentEvent.class);
-      }
-      case Constants.INVITE_ACCEPTED_EVENT_TYPE -> {
-        JsonNode eventNode = node.get(Constants.INVITE_ACCEPTED_EVENT_TYPE);
-        event = p.getCodec().treeToValue(eventNode, InviteAcceptedEvent.class);
-      }
-      case Constants.INVITE_DELETED_EVENT_TYPE -> {
-        JsonNode eventNode = node.get(Constants.INVITE_DELETED_EVENT_TYPE);
-        event = p.getCodec().treeToValue(eventNode, InviteDeletedEvent.class);
-      }
-      case Constants.LOGIN_FAILED_EVENT_TYPE -> {
-        JsonNode eventNode = node.get(Constants.LOGIN_FAILED_EVENT_TYPE);
-        event = p.getCodec().treeToValue(eventNode, LoginFailedEvent.class);
-      }
-      case Constants.LOGOUT_FAILED_EVENT_TYPE -> {
-        JsonNode eventNode = node.get(Constants.LOGOUT_FAILED_EVENT_TYPE);
-        event = p.getCodec().treeToValue(eventNode, LogoutFailedEvent.class);
-      }
-      case Constants.ORGANIZATION_UPDATED_EVENT_TYPE -> {
-        JsonNode eventNode = node.get(Constants.ORGANIZATION_UPDATED_EVENT_TYPE);
-        event = p.getCodec().treeToValue(eventNode, OrganizationUpdatedEvent.class);
-      }
-      case Constants.PROJECT_CREATED_EVENT_TYPE -> {
-        JsonNode eventNode = node.get(Constants.PROJECT_CREATED_EVENT_TYPE);
-        event = p.getCodec().treeToValue(eventNode, ProjectCreatedEvent.class);
-      }
-      case Constants.PROJECT_UPDATED_EVENT_TYPE -> {
-        JsonNode eventNode = node.get(Constants.PROJECT_UPDATED_EVENT_TYPE);
-        event = p.getCodec().treeToValue(eventNode, ProjectUpdatedEvent.class);
-      }
-      case Constants.PROJECT_ARCHIVED_EVENT_TYPE -> {
-        JsonNode eventNode = node.get(Constants.PROJECT_ARCHIVED_EVENT_TYPE);
-        event = p.getCodec().treeToValue(eventNode, ProjectArchivedEvent.class);
-      }
-      case Constants.SERVICE_ACCOUNT_CREATED_EVENT_TYPE -> {
-        JsonNode eventNode = node.get(Constants.SERVICE_ACCOUNT_CREATED_EVENT_TYPE);
-        event = p.getCodec().treeToValue(eventNode, ServiceAccountCreatedEvent.class);
-      }
-      case Constants.SERVICE_ACCOUNT_UPDATED_EVENT_TYPE -> {
-        JsonNode eventNode = node.get(Constants.SERVICE_ACCOUNT_UPDATED_EVENT_TYPE);
-        event = p.getCodec().treeToValue(eventNode, ServiceAccountUpdatedEvent.class);
-      }
-      case Constants.SERVICE_ACCOUNT_DELETED_EVENT_TYPE -> {
-        JsonNode eventNode = node.get(Constants.SERVICE_ACCOUNT_DELETED_EVENT_TYPE);
-        event = p.getCodec().treeToValue(eventNode, ServiceAccountDeletedEvent.class);
-      }
-      case Constants.USER_ADDED_EVENT_TYPE -> {
-        JsonNode eventNode = node.get(Constants.USER_ADDED_EVENT_TYPE);
-        event = p.getCodec().treeToValue(eventNode, UserAddedEvent.class);
-      }
-      case Constants.USER_UPDATED_EVENT_TYPE -> {
-        JsonNode eventNode = node.get(Constants.USER_UPDATED_EVENT_TYPE);
-        event = p.getCodec().treeToValue(eventNode, UserUpdatedEvent.class);
-      }
-      case Constants.USER_DELETED_EVENT_TYPE -> {
-        JsonNode eventNode = node.get(Constants.USER_DELETED_EVENT_TYPE);
-        event = p.getCodec().treeToValue(eventNode, UserDeletedEvent.class);
+    JsonToken token = p.currentToken();
+    if (token == JsonToken.START_OBJECT) {
+      token = p.nextToken();
+    }
+    for (; token == JsonToken.FIELD_NAME; token = p.nextToken()) {
+      String fieldName = p.currentName();
+      JsonToken valueToken = p.nextToken();
+      if (valueToken == JsonToken.VALUE_NULL) {
+        continue;
+      }
+      switch (fieldName) {
+        case "id" -> id = p.getValueAsString();
+        case "type" -> type = p.getValueAsString();
+        case "effective_at" -> effectiveAt = p.getValueAsLong();
+        case "project" -> project = ctxt.readValue(p, AuditLog.Project.class);
+        case "actor" -> actor = ctxt.readValue(p, AuditLog.Actor.class);
+        default -> {
+          Class<? extends AuditLogEvent> eventClass = EVENT_CLASSES.get(fieldName);
+          if (eventClass != null) {
+            eventType = fieldName;
+            event = ctxt.readValue(p, eventClass);
+          } else {
+            p.skipChildren();
+          }
+        }
       }
-      default -> event = null;
+    }
+
+    if (eventType == null || !eventType.equals(type)) {
+      event = null;
     }
 
     return new AuditLog(id, type, effectiveAt, project, actor, event);
@@ -1,10 +1,9 @@
 package io.github.stefanbratanov.jvm.openai;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.time.Duration;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -21,12 +20,8 @@ public final class AuditLogsClient extends OpenAIClient {
 
   private final URI baseUrl;
 
-  AuditLogsClient(
-      URI baseUrl,
-      String[] authenticationHeaders,
-      HttpClient httpClient,
-      Optional<Duration> requestTimeout) {
-    super(authenticationHeaders, httpClient, requestTimeout);
+  AuditLogsClient(URI baseUrl, String[] authenticationHeaders, ClientOptions clientOptions) {
+    super(authenticationHeaders, clientOptions);
     this.baseUrl = baseUrl;
   }
 
@@ -50,26 +45,39 @@ public final class AuditLogsClient extends OpenAIClient {
   public record PaginatedAuditLogs(
       List<AuditLog> data, String firstId, String lastId, boolean hasMore) {}
 
+  /**
+   * Same as {@link #listAuditLogs(ListAuditLogsQueryParameters)} but returns a {@link
+   * PaginatedIterable} which lazily fetches all audit logs page by page.
+   */
+  public PaginatedIterable<AuditLog> listAllAuditLogs(
+      ListAuditLogsQueryParameters queryParameters) {
+    return new PaginatedIterable<>(
+        queryParameters.after(),
+        after -> listAuditLogs(queryParameters.withAfter(after)),
+        PaginatedAuditLogs::data,
+        PaginatedAuditLogs::lastId,
+        PaginatedAuditLogs::hasMore);
+  }
+
   private String buildQueryParameters(ListAuditLogsQueryParameters queryParameters) {
-    return createQueryParameters(
-        Map.of(
-            "effective_at",
-            queryParameters.effectiveAt(),
-            "project_ids[]",
-            queryParameters.projectIds(),
-            "event_types[]",
-            queryParameters.eventTypes(),
-            "actor_ids[]",
-            queryParameters.actorIds(),
-            "actor_emails[]",
-            queryParameters.actorEmails(),
-            "resource_ids[]",
-            queryParameters.actorIds(),
-            Constants.LIMIT_QUERY_PARAMETER,
-            queryParameters.limit(),
-            Constants.AFTER_QUERY_PARAMETER,
-            queryParameters.after(),
-            Constants.BEFORE_QUERY_PARAMETER,
-            queryParameters.before()));
+    Map<String, Optional<?>> parameters = new HashMap<>();
+    queryParameters
+        .effectiveAt()
+        .ifPresent(
+            effectiveAt -> {
+              parameters.put("effective_at[gt]", effectiveAt.gt());
+              parameters.put("effective_at[gte]", effectiveAt.gte());
+              parameters.put("effective_at[lt]", effectiveAt.lt());
+              parameters.put("effective_at[lte]", effectiveAt.lte());
+            });
+    parameters.put("project_ids[]", queryParameters.projectIds());
+    parameters.put("event_types[]", queryParameters.eventTypes());
+    parameters.put("actor_ids[]", queryParameters.actorIds());
+    parameters.put("actor_emails[]", queryParameters.actorEmails());
+    parameters.put("resource_ids[]", queryParameters.resourceIds());
+    parameters.put(Constants.LIMIT_QUERY_PARAMETER, queryParameters.limit());
+    parameters.put(Constants.AFTER_QUERY_PARAMETER, queryParameters.after());
+    parameters.put(Constants.BEFORE_QUERY_PARAMETER, queryParameters.before());
+    return createQueryParameters(parameters);
   }
 }
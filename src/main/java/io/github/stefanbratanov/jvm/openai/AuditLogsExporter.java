@@ -0,0 +1,304 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.github.stefanbratanov.jvm.openai.AuditLogsClient.PaginatedAuditLogs;
+import io.github.stefanbratanov.jvm.openai.ListAuditLogsQueryParameters.EffectiveAt;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+/**
+ * Exports audit logs as newline-delimited JSON (NDJSON). The <b>effective_at</b> range of the
+ * query is split into partitions which are fetched in parallel, each one walking its own
+ * pagination cursor. The last exported audit log ID of every partition is recorded as a checkpoint,
+ * so an interrupted export can be resumed by passing the checkpoints to {@link
+ * Builder#checkpoints(Map)} and exporting the same range again.
+ *
+ * <p>Audit logs are written one per line in the order they are fetched within a partition, which is
+ * from the newest to the oldest. There is no ordering guarantee across partitions. Because the
+ * cursor walks towards older audit logs, resuming never picks up audit logs which are newer than
+ * the exported range. To export audit logs incrementally, set a fixed upper bound, such as the
+ * current time, and start the next export at that bound.
+ *
+ * <p>If a partition fails, the other partitions stop before their next page, so the output and the
+ * checkpoints only contain pages which were exported completely and the export can be resumed.
+ */
+public final class AuditLogsExporter {
+
+  private static final int DEFAULT_PAGE_SIZE = 100;
+
+  private final AuditLogsClient auditLogsClient;
+  private final int partitions;
+  private final int parallelism;
+  private final Optional<ExecutorService> executor;
+  private final Map<Partition, String> initialCheckpoints;
+  private final Optional<BiConsumer<Partition, String>> checkpointListener;
+
+  private AuditLogsExporter(
+      AuditLogsClient auditLogsClient,
+      int partitions,
+      int parallelism,
+      Optional<ExecutorService> executor,
+      Map<Partition, String> initialCheckpoints,
+      Optional<BiConsumer<Partition, String>> checkpointListener) {
+    this.auditLogsClient = auditLogsClient;
+    this.partitions = partitions;
+    this.parallelism = parallelism;
+    this.executor = executor;
+    this.initialCheckpoints = initialCheckpoints;
+    this.checkpointListener = checkpointListener;
+  }
+
+  /**
+   * A sub-range of the exported <b>effective_at</b> range
+   *
+   * @param gte the start (Unix seconds, inclusive) of the partition
+   * @param lt the end (Unix seconds, exclusive) of the partition
+   */
+  public record Partition(int gte, int lt) {}
+
+  /**
+   * Exports all audit logs matching the query parameters to the output. The output is not closed.
+   *
+   * @param queryParameters the query parameters, which must have an {@link
+   *     ListAuditLogsQueryParameters#effectiveAt()} with a lower bound. If there is no upper bound,
+   *     the current time is used, which is only allowed when there are no checkpoints to resume
+   *     from. If no limit is set, pages of 100 audit logs are fetched.
+   * @param output where the audit logs will be written to as NDJSON
+   * @return the last exported audit log ID for each partition which had any audit logs, including
+   *     the ones from {@link Builder#checkpoints(Map)}
+   * @throws IllegalArgumentException if there are checkpoints but the range has no upper bound, or
+   *     a checkpoint is not for one of the partitions of the range
+   * @throws OpenAIException in case of API errors
+   */
+  public Map<Partition, String> export(
+      ListAuditLogsQueryParameters queryParameters, OutputStream output) {
+    List<Partition> rangePartitions = createPartitions(queryParameters.effectiveAt());
+    validateCheckpoints(rangePartitions);
+    Map<Partition, String> checkpoints = new ConcurrentHashMap<>(initialCheckpoints);
+    AtomicBoolean failed = new AtomicBoolean();
+    ExecutorService exportExecutor =
+        executor.orElseGet(() -> Executors.newFixedThreadPool(parallelism));
+    try (JsonGenerator generator = ObjectMapperSingleton.getInstance().createGenerator(output)) {
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      generator.setRootValueSeparator(null);
+      CompletableFuture<?>[] partitionExports =
+          rangePartitions.stream()
+              .map(
+                  partition ->
+                      CompletableFuture.runAsync(
+                          () -> {
+                            try {
+                              exportPartition(
+                                  queryParameters, partition, checkpoints, generator, failed);
+                            } catch (RuntimeException ex) {
+                              failed.set(true);
+                              throw ex;
+                            }
+                          },
+                          exportExecutor))
+              .toArray(CompletableFuture[]::new);
+      CompletableFuture.allOf(partitionExports).join();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw ex;
+    } finally {
+      if (executor.isEmpty()) {
+        exportExecutor.shutdownNow();
+      }
+    }
+    return Collections.unmodifiableMap(checkpoints);
+  }
+
+  private List<Partition> createPartitions(Optional<EffectiveAt> effectiveAt) {
+    EffectiveAt range =
+        effectiveAt.orElseThrow(
+            () -> new IllegalArgumentException("effective_at must be set to export audit logs"));
+    int start =
+        range
+            .gte()
+            .or(() -> range.gt().map(gt -> gt + 1))
+            .orElseThrow(
+                () ->
+                    new IllegalArgumentException(
+                        "effective_at must have a lower bound to export audit logs"));
+    Optional<Integer> upperBound = range.lt().or(() -> range.lte().map(lte -> lte + 1));
+    if (upperBound.isEmpty() && !initialCheckpoints.isEmpty()) {
+      // the partitions would depend on the current time and never match the checkpoints
+      throw new IllegalArgumentException(
+          "effective_at must have an upper bound to resume an export from checkpoints");
+    }
+    int end = upperBound.orElseGet(() -> (int) Instant.now().getEpochSecond() + 1);
+    if (end <= start) {
+      return List.of();
+    }
+    int partitionSize = (int) Math.ceil((double) (end - start) / partitions);
+    List<Partition> rangePartitions = new ArrayList<>();
+    for (int gte = start; gte < end; gte += partitionSize) {
+      rangePartitions.add(new Partition(gte, Math.min(gte + partitionSize, end)));
+    }
+    return rangePartitions;
+  }
+
+  private void validateCheckpoints(List<Partition> rangePartitions) {
+    for (Partition partition : initialCheckpoints.keySet()) {
+      if (!rangePartitions.contains(partition)) {
+        throw new IllegalArgumentException(
+            String.format(
+                "The checkpoint for %s is not for one of the partitions %s. The range and the"
+                    + " number of partitions must be the same as in the checkpointed export.",
+                partition, rangePartitions));
+      }
+    }
+  }
+
+  private void exportPartition(
+      ListAuditLogsQueryParameters queryParameters,
+      Partition partition,
+      Map<Partition, String> checkpoints,
+      JsonGenerator generator,
+      AtomicBoolean failed) {
+    Optional<String> after = Optional.ofNullable(checkpoints.get(partition));
+    PaginatedAuditLogs page;
+    do {
+      if (failed.get()) {
+        return;
+      }
+      page =
+          auditLogsClient.listAuditLogs(createQueryParameters(queryParameters, partition, after));
+      // another partition may have failed while the page was fetched
+      if (page.data().isEmpty() || failed.get()) {
+        return;
+      }
+      writeAuditLogs(page.data(), generator);
+      String lastId = page.data().get(page.data().size() - 1).id();
+      checkpoints.put(partition, lastId);
+      checkpointListener.ifPresent(listener -> listener.accept(partition, lastId));
+      after = Optional.of(lastId);
+    } while (page.hasMore());
+  }
+
+  private ListAuditLogsQueryParameters createQueryParameters(
+      ListAuditLogsQueryParameters queryParameters, Partition partition, Optional<String> after) {
+    return new ListAuditLogsQueryParameters(
+        Optional.of(EffectiveAt.newBuilder().gte(partition.gte()).lt(partition.lt()).build()),
+        queryParameters.projectIds(),
+        queryParameters.eventTypes(),
+        queryParameters.actorIds(),
+        queryParameters.actorEmails(),
+        queryParameters.resourceIds(),
+        after,
+        Optional.empty(),
+        queryParameters.limit().or(() -> Optional.of(DEFAULT_PAGE_SIZE)));
+  }
+
+  private void writeAuditLogs(List<AuditLog> auditLogs, JsonGenerator generator) {
+    synchronized (generator) {
+      try {
+        for (AuditLog auditLog : auditLogs) {
+          generator.writeObject(auditLog);
+          generator.writeRaw('\n');
+        }
+        generator.flush();
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }
+  }
+
+  public static Builder newBuilder(AuditLogsClient auditLogsClient) {
+    return new Builder(auditLogsClient);
+  }
+
+  public static class Builder {
+
+    private static final int DEFAULT_PARTITIONS = 8;
+    private static final int DEFAULT_PARALLELISM = 4;
+
+    private final AuditLogsClient auditLogsClient;
+
+    private int partitions = DEFAULT_PARTITIONS;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private Optional<ExecutorService> executor = Optional.empty();
+    private Map<Partition, String> checkpoints = Map.of();
+    private Optional<BiConsumer<Partition, String>> checkpointListener = Optional.empty();
+
+    private Builder(AuditLogsClient auditLogsClient) {
+      this.auditLogsClient = auditLogsClient;
+    }
+
+    /**
+     * @param partitions the number of sub-ranges the <b>effective_at</b> range is split into.
+     *     Defaults to 8.
+     */
+    public Builder partitions(int partitions) {
+      if (partitions < 1) {
+        throw new IllegalArgumentException("partitions must be at least 1");
+      }
+      this.partitions = partitions;
+      return this;
+    }
+
+    /**
+     * @param parallelism the number of partitions which are fetched at the same time. Defaults to
+     *     4. Not used if a custom {@link #executor(ExecutorService)} is set.
+     */
+    public Builder parallelism(int parallelism) {
+      if (parallelism < 1) {
+        throw new IllegalArgumentException("parallelism must be at least 1");
+      }
+      this.parallelism = parallelism;
+      return this;
+    }
+
+    /**
+     * @param executor a custom {@link ExecutorService} which will be used to fetch the partitions.
+     *     It will not be shut down after the export.
+     */
+    public Builder executor(ExecutorService executor) {
+      this.executor = Optional.of(executor);
+      return this;
+    }
+
+    /**
+     * @param checkpoints the checkpoints returned by a previous export with the same range and
+     *     number of partitions. The range must have an upper bound. Every partition will continue
+     *     after its checkpoint.
+     */
+    public Builder checkpoints(Map<Partition, String> checkpoints) {
+      this.checkpoints = Map.copyOf(checkpoints);
+      return this;
+    }
+
+    /**
+     * @param checkpointListener will be called with the partition and the last exported audit log
+     *     ID after each page is written, which allows persisting the progress of a running export
+     */
+    public Builder checkpointListener(BiConsumer<Partition, String> checkpointListener) {
+      this.checkpointListener = Optional.of(checkpointListener);
+      return this;
+    }
+
+    public AuditLogsExporter build() {
+      return new AuditLogsExporter(
+          auditLogsClient, partitions, parallelism, executor, checkpoints, checkpointListener);
+    }
+  }
+}
@@ -1,11 +1,9 @@
 package io.github.stefanbratanov.jvm.openai;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpRequest.BodyPublishers;
 import java.net.http.HttpResponse;
-import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -19,12 +17,8 @@ public final class BatchClient extends OpenAIClient {
 
   private final URI baseUrl;
 
-  BatchClient(
-      URI baseUrl,
-      String[] authenticationHeaders,
-      HttpClient httpClient,
-      Optional<Duration> requestTimeout) {
-    super(authenticationHeaders, httpClient, requestTimeout);
+  BatchClient(URI baseUrl, String[] authenticationHeaders, ClientOptions clientOptions) {
+    super(authenticationHeaders, clientOptions);
     this.baseUrl = baseUrl;
   }
 
@@ -97,4 +91,17 @@ public final class BatchClient extends OpenAIClient {
 
   public record PaginatedBatches(
       List<Batch> data, String firstId, String lastId, boolean hasMore) {}
+
+  /**
+   * Same as {@link #listBatches(Optional, Optional)} but returns a {@link PaginatedIterable} which
+   * lazily fetches all batches page by page.
+   */
+  public PaginatedIterable<Batch> listAllBatches(Optional<String> after, Optional<Integer> limit) {
+    return new PaginatedIterable<>(
+        after,
+        pageAfter -> listBatches(pageAfter, limit),
+        PaginatedBatches::data,
+        PaginatedBatches::lastId,
+        PaginatedBatches::hasMore);
+  }
 }
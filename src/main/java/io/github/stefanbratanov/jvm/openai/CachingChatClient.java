@@ -0,0 +1,62 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A {@link ChatClient} decorator which serves chat completions from a {@link ChatCompletionCache}
+ * and only calls the API when there is no cached completion for the request.
+ *
+ * @see ChatClient#withResponseCache(ChatCompletionCache)
+ */
+public final class CachingChatClient {
+
+  private final ChatClient chatClient;
+  private final ChatCompletionCache cache;
+
+  CachingChatClient(ChatClient chatClient, ChatCompletionCache cache) {
+    this.chatClient = chatClient;
+    this.cache = cache;
+  }
+
+  /**
+   * Same as {@link ChatClient#createChatCompletion(CreateChatCompletionRequest)} but returns the
+   * cached completion if there is one
+   *
+   * @throws OpenAIException in case of API errors
+   */
+  public ChatCompletion createChatCompletion(CreateChatCompletionRequest request) {
+    try {
+      return cache
+          .getOrLoad(
+              request,
+              () -> CompletableFuture.completedFuture(chatClient.createChatCompletion(request)))
+          .join();
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw ex;
+    }
+  }
+
+  /**
+   * Same as {@link ChatClient#createChatCompletionAsync(CreateChatCompletionRequest)} but returns
+   * the cached completion if there is one
+   */
+  public CompletableFuture<ChatCompletion> createChatCompletionAsync(
+      CreateChatCompletionRequest request) {
+    return cache.getOrLoad(request, () -> chatClient.createChatCompletionAsync(request));
+  }
+
+  /**
+   * @return the client which is used when there is no cached completion
+   */
+  public ChatClient getChatClient() {
+    return chatClient;
+  }
+
+  public ChatCompletionCache getCache() {
+    return cache;
+  }
+}
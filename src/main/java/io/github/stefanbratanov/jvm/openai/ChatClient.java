@@ -1,12 +1,12 @@
 package io.github.stefanbratanov.jvm.openai;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 /**
@@ -17,14 +17,14 @@ import java.util.stream.Stream;
 public final class ChatClient extends OpenAIClient {
 
   private final URI endpoint;
+  private final Optional<PromptCacheMetrics> promptCacheMetrics;
+  private final Optional<RequestHedger> requestHedger;
 
-  ChatClient(
-      URI baseUrl,
-      String[] authenticationHeaders,
-      HttpClient httpClient,
-      Optional<Duration> requestTimeout) {
-    super(authenticationHeaders, httpClient, requestTimeout);
+  ChatClient(URI baseUrl, String[] authenticationHeaders, ClientOptions clientOptions) {
+    super(authenticationHeaders, clientOptions);
     endpoint = baseUrl.resolve(Endpoint.CHAT.getPath());
+    promptCacheMetrics = clientOptions.promptCacheMetrics();
+    requestHedger = clientOptions.sharedState().chatRequestHedger();
   }
 
   /**
@@ -34,8 +34,11 @@ public final class ChatClient extends OpenAIClient {
    */
   public ChatCompletion createChatCompletion(CreateChatCompletionRequest request) {
     HttpRequest httpRequest = createPostRequest(request);
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
-    return deserializeResponse(httpResponse.body(), ChatCompletion.class);
+    HttpResponse<byte[]> httpResponse =
+        sendHttpRequest(httpRequest, request.model(), requestHedger);
+    ChatCompletion chatCompletion = deserializeResponse(httpResponse.body(), ChatCompletion.class);
+    recordPromptCacheUsage(() -> PromptPrefix.hash(request), chatCompletion.usage());
+    return chatCompletion;
   }
 
   /**
@@ -45,8 +48,49 @@ public final class ChatClient extends OpenAIClient {
   public CompletableFuture<ChatCompletion> createChatCompletionAsync(
       CreateChatCompletionRequest request) {
     HttpRequest httpRequest = createPostRequest(request);
-    return sendHttpRequestAsync(httpRequest)
-        .thenApply(httpResponse -> deserializeResponse(httpResponse.body(), ChatCompletion.class));
+    return thenApplyCancellable(
+        sendHttpRequestAsync(httpRequest, request.model(), requestHedger),
+        httpResponse -> {
+          ChatCompletion chatCompletion =
+              deserializeResponse(httpResponse.body(), ChatCompletion.class);
+          recordPromptCacheUsage(() -> PromptPrefix.hash(request), chatCompletion.usage());
+          return chatCompletion;
+        });
+  }
+
+  /**
+   * Same as {@link #createChatCompletion(CreateChatCompletionRequest)} but sends a request created
+   * from a template, which only requires serializing the messages
+   *
+   * @param template the constant part of the request
+   * @param messages the messages appended to the messages of the template
+   * @throws OpenAIException in case of API errors
+   */
+  public ChatCompletion createChatCompletion(
+      ChatCompletionRequestTemplate template, List<ChatMessage> messages) {
+    HttpRequest httpRequest = createPostRequest(template, messages);
+    HttpResponse<byte[]> httpResponse =
+        sendHttpRequest(httpRequest, template.getRequest().model(), requestHedger);
+    ChatCompletion chatCompletion = deserializeResponse(httpResponse.body(), ChatCompletion.class);
+    recordPromptCacheUsage(template::prefixHash, chatCompletion.usage());
+    return chatCompletion;
+  }
+
+  /**
+   * Same as {@link #createChatCompletion(ChatCompletionRequestTemplate, List)} but returns a
+   * response in a {@link CompletableFuture}
+   */
+  public CompletableFuture<ChatCompletion> createChatCompletionAsync(
+      ChatCompletionRequestTemplate template, List<ChatMessage> messages) {
+    HttpRequest httpRequest = createPostRequest(template, messages);
+    return thenApplyCancellable(
+        sendHttpRequestAsync(httpRequest, template.getRequest().model(), requestHedger),
+        httpResponse -> {
+          ChatCompletion chatCompletion =
+              deserializeResponse(httpResponse.body(), ChatCompletion.class);
+          recordPromptCacheUsage(template::prefixHash, chatCompletion.usage());
+          return chatCompletion;
+        });
   }
 
   /**
@@ -59,7 +103,25 @@ public final class ChatClient extends OpenAIClient {
   public Stream<ChatCompletionChunk> streamChatCompletion(CreateChatCompletionRequest request) {
     validateStreamRequest(request::stream);
     HttpRequest httpRequest = createPostRequest(request);
-    return getStreamedChatCompletionChunks(httpRequest);
+    return getStreamedChatCompletionChunks(
+        () -> PromptPrefix.hash(request), request.model(), httpRequest);
+  }
+
+  /**
+   * Same as {@link #streamChatCompletion(CreateChatCompletionRequest)} but sends a request created
+   * from a template, which only requires serializing the messages
+   *
+   * @param template the template should be created from a request with {@link
+   *     CreateChatCompletionRequest.Builder#stream(boolean)} set to true
+   * @param messages the messages appended to the messages of the template
+   * @throws OpenAIException in case of API errors
+   */
+  public Stream<ChatCompletionChunk> streamChatCompletion(
+      ChatCompletionRequestTemplate template, List<ChatMessage> messages) {
+    validateStreamRequest(template::stream);
+    HttpRequest httpRequest = createPostRequest(template, messages);
+    return getStreamedChatCompletionChunks(
+        template::prefixHash, template.getRequest().model(), httpRequest);
   }
 
   /**
@@ -69,17 +131,45 @@ public final class ChatClient extends OpenAIClient {
    */
   public void streamChatCompletion(
       CreateChatCompletionRequest request, ChatCompletionStreamSubscriber subscriber) {
+    streamChatCompletionAsync(request, subscriber);
+  }
+
+  /**
+   * Same as {@link #streamChatCompletion(CreateChatCompletionRequest,
+   * ChatCompletionStreamSubscriber)} but returns a future, which can be used to abort the request
+   *
+   * @return a future which completes when the stream is complete. Cancelling it, or throwing from
+   *     {@link ChatCompletionStreamSubscriber#onChunk(ChatCompletionChunk)}, aborts the request.
+   */
+  public CompletableFuture<Void> streamChatCompletionAsync(
+      CreateChatCompletionRequest request, ChatCompletionStreamSubscriber subscriber) {
     validateStreamRequest(request::stream);
     HttpRequest httpRequest = createPostRequest(request);
-    CompletableFuture.supplyAsync(() -> getStreamedChatCompletionChunks(httpRequest))
-        .thenAccept(chatCompletionChunks -> chatCompletionChunks.forEach(subscriber::onChunk))
-        .whenComplete(
-            (result, ex) -> {
-              if (ex != null) {
-                subscriber.onException(ex);
-              }
-              subscriber.onComplete();
-            });
+    CompletableFuture<Void> result =
+        consumeStreamAsync(
+            thenApplyCancellable(
+                streamServerSentEventsAsync(httpRequest, request.model()),
+                sseEvents -> toChatCompletionChunks(() -> PromptPrefix.hash(request), sseEvents)),
+            subscriber::onChunk);
+    // returned after the subscriber is notified, so joining it also waits for the notification
+    return whenCompleteCancellable(
+        result,
+        (ignored, ex) -> {
+          if (ex != null) {
+            subscriber.onException(ex);
+          }
+          subscriber.onComplete();
+        });
+  }
+
+  /**
+   * @param cache the cache which will be used for {@link
+   *     CachingChatClient#createChatCompletion(CreateChatCompletionRequest)} and {@link
+   *     CachingChatClient#createChatCompletionAsync(CreateChatCompletionRequest)}
+   * @return a client which serves repeated requests from the cache
+   */
+  public CachingChatClient withResponseCache(ChatCompletionCache cache) {
+    return new CachingChatClient(this, cache);
   }
 
   private HttpRequest createPostRequest(CreateChatCompletionRequest request) {
@@ -93,12 +183,47 @@ public final class ChatClient extends OpenAIClient {
         .build();
   }
 
-  private Stream<ChatCompletionChunk> getStreamedChatCompletionChunks(HttpRequest httpRequest) {
-    return streamServerSentEvents(httpRequest)
+  private HttpRequest createPostRequest(
+      ChatCompletionRequestTemplate template, List<ChatMessage> messages) {
+    return newHttpRequestBuilder(
+            Constants.CONTENT_TYPE_HEADER,
+            Constants.JSON_MEDIA_TYPE,
+            Constants.ACCEPT_HEADER,
+            Constants.JSON_MEDIA_TYPE)
+        .uri(endpoint)
+        .POST(template.createBodyPublisher(messages))
+        .build();
+  }
+
+  private Stream<ChatCompletionChunk> getStreamedChatCompletionChunks(
+      Supplier<String> prefixHash, String model, HttpRequest httpRequest) {
+    return toChatCompletionChunks(prefixHash, streamServerSentEvents(httpRequest, model));
+  }
+
+  private Stream<ChatCompletionChunk> toChatCompletionChunks(
+      Supplier<String> prefixHash, Stream<String> sseEvents) {
+    return sseEvents
         .map(
             sseEvent -> {
               String data = sseEvent.substring(sseEvent.indexOf("{"));
-              return deserializeData(data, ChatCompletionChunk.class);
+              ChatCompletionChunk chunk = deserializeData(data, ChatCompletionChunk.class);
+              // only the last chunk has usage when include_usage is set in the stream options
+              recordPromptCacheUsage(prefixHash, chunk.usage());
+              return chunk;
             });
   }
+
+  private void recordPromptCacheUsage(Supplier<String> prefixHash, CompletionUsage usage) {
+    if (usage == null) {
+      return;
+    }
+    promptCacheMetrics.ifPresent(
+        metrics -> {
+          int cachedTokens =
+              Optional.ofNullable(usage.promptTokensDetails())
+                  .map(CompletionUsage.PromptTokensDetails::cachedTokens)
+                  .orElse(0);
+          metrics.record(prefixHash.get(), usage.promptTokens(), cachedTokens);
+        });
+  }
 }
@@ -0,0 +1,426 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * A cache of chat completions, keyed by a SHA-256 hash of the canonically serialized request. The
+ * most recently used completions are kept in memory and, if a directory is configured, every
+ * completion is also stored on disk as one file per request, so it survives restarts. Concurrent
+ * identical requests which miss the cache are coalesced into a single API call.
+ *
+ * <p>The files on disk are swept while completions are stored. Expired files are deleted and, if
+ * there are still more than the maximum number of files, the oldest ones are deleted.
+ *
+ * <p>Only requests which are expected to produce the same response, for example with a fixed
+ * <b>seed</b> and a <b>temperature</b> of 0, should be cached.
+ *
+ * @see ChatClient#withResponseCache(ChatCompletionCache)
+ */
+public final class ChatCompletionCache {
+
+  private static final String FILE_EXTENSION = ".json";
+
+  private final int maxEntries;
+  private final Optional<Duration> timeToLive;
+  private final Optional<Path> directory;
+  private final int maxFiles;
+  // listing the directory is expensive, so it is only swept after this many stored files
+  private final int storesBetweenSweeps;
+
+  private final Map<String, Entry> entries;
+  private final Map<String, Load> inFlight = new ConcurrentHashMap<>();
+  private final AtomicInteger storesSinceSweep;
+  private final AtomicBoolean sweeping = new AtomicBoolean();
+
+  private ChatCompletionCache(
+      int maxEntries, Optional<Duration> timeToLive, Optional<Path> directory, int maxFiles) {
+    this.maxEntries = maxEntries;
+    this.timeToLive = timeToLive;
+    this.directory = directory;
+    this.maxFiles = maxFiles;
+    this.storesBetweenSweeps = Math.max(1, maxFiles / 10);
+    // the first store sweeps the files which were left by previous runs
+    this.storesSinceSweep = new AtomicInteger(storesBetweenSweeps - 1);
+    this.entries =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > ChatCompletionCache.this.maxEntries;
+          }
+        };
+  }
+
+  /**
+   * @return the cached completion of the request if there is one which has not expired
+   */
+  public Optional<ChatCompletion> get(CreateChatCompletionRequest request) {
+    return lookup(createKey(request));
+  }
+
+  /** Removes the cached completion of the request from memory and disk */
+  public void invalidate(CreateChatCompletionRequest request) {
+    String key = createKey(request);
+    synchronized (entries) {
+      entries.remove(key);
+    }
+    directory.ifPresent(dir -> deleteFile(dir.resolve(key + FILE_EXTENSION)));
+  }
+
+  /** Removes all cached completions from memory and disk */
+  public void invalidateAll() {
+    synchronized (entries) {
+      entries.clear();
+    }
+    directory.ifPresent(
+        dir -> {
+          try (Stream<Path> files = Files.list(dir)) {
+            files
+                .filter(file -> file.getFileName().toString().endsWith(FILE_EXTENSION))
+                .forEach(this::deleteFile);
+          } catch (NoSuchFileException ex) {
+            // nothing has been stored yet
+          } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+          }
+        });
+  }
+
+  /**
+   * Returns the cached completion of the request or loads it. If a load for the same request is
+   * already in progress, its result is shared instead of loading it again. The load is cancelled
+   * when all callers waiting for it have cancelled their futures.
+   */
+  CompletableFuture<ChatCompletion> getOrLoad(
+      CreateChatCompletionRequest request, Supplier<CompletableFuture<ChatCompletion>> loader) {
+    String key = createKey(request);
+    Optional<ChatCompletion> cached = lookup(key);
+    if (cached.isPresent()) {
+      return CompletableFuture.completedFuture(cached.get());
+    }
+    Load load = new Load(key);
+    Load existingLoad;
+    while ((existingLoad = inFlight.putIfAbsent(key, load)) != null) {
+      Optional<CompletableFuture<ChatCompletion>> waiter = existingLoad.addWaiter();
+      if (waiter.isPresent()) {
+        return waiter.get();
+      }
+      // all callers of the existing load have cancelled it
+      inFlight.remove(key, existingLoad);
+    }
+    CompletableFuture<ChatCompletion> waiter = load.addWaiter().orElseThrow();
+    load.start(loader);
+    return waiter;
+  }
+
+  /** A load which is shared by all callers which request the same completion at the same time */
+  private class Load {
+
+    private final String key;
+    private final CompletableFuture<ChatCompletion> result = new CompletableFuture<>();
+
+    private volatile CompletableFuture<ChatCompletion> loaded;
+    // guarded by this
+    private int waiters;
+    private boolean abandoned;
+
+    private Load(String key) {
+      this.key = key;
+    }
+
+    /**
+     * @return a future for the result, which can be cancelled without affecting the other callers,
+     *     or empty if the load has been abandoned
+     */
+    private synchronized Optional<CompletableFuture<ChatCompletion>> addWaiter() {
+      if (abandoned) {
+        return Optional.empty();
+      }
+      waiters++;
+      CompletableFuture<ChatCompletion> waiter = result.copy();
+      waiter.whenComplete(
+          (chatCompletion, ex) -> {
+            if (waiter.isCancelled()) {
+              onWaiterCancelled();
+            }
+          });
+      return Optional.of(waiter);
+    }
+
+    private void onWaiterCancelled() {
+      synchronized (this) {
+        if (--waiters > 0 || result.isDone()) {
+          return;
+        }
+        abandoned = true;
+      }
+      inFlight.remove(key, this);
+      CompletableFuture<ChatCompletion> loadedFuture = loaded;
+      if (loadedFuture != null) {
+        loadedFuture.cancel(true);
+      }
+    }
+
+    private void start(Supplier<CompletableFuture<ChatCompletion>> loader) {
+      CompletableFuture<ChatCompletion> loadedFuture;
+      try {
+        loadedFuture = loader.get();
+      } catch (RuntimeException ex) {
+        loadedFuture = CompletableFuture.failedFuture(ex);
+      }
+      loaded = loadedFuture;
+      loadedFuture.whenComplete(
+          (chatCompletion, ex) -> {
+            try {
+              if (ex == null) {
+                store(key, chatCompletion);
+              }
+            } finally {
+              inFlight.remove(key, this);
+              if (ex == null) {
+                result.complete(chatCompletion);
+              } else {
+                result.completeExceptionally(ex);
+              }
+            }
+          });
+      synchronized (this) {
+        if (!abandoned) {
+          return;
+        }
+      }
+      // all callers cancelled while the loader was starting
+      loadedFuture.cancel(true);
+    }
+  }
+
+  private Optional<ChatCompletion> lookup(String key) {
+    Entry entry;
+    synchronized (entries) {
+      entry = entries.get(key);
+    }
+    if (entry != null) {
+      if (!isExpired(entry.storedAt())) {
+        return Optional.of(entry.chatCompletion());
+      }
+      synchronized (entries) {
+        entries.remove(key, entry);
+      }
+    }
+    return directory.flatMap(dir -> readFile(key, dir.resolve(key + FILE_EXTENSION)));
+  }
+
+  private void store(String key, ChatCompletion chatCompletion) {
+    Instant storedAt = Instant.now();
+    synchronized (entries) {
+      entries.put(key, new Entry(chatCompletion, storedAt));
+    }
+    directory.ifPresent(
+        dir -> {
+          writeFile(dir, key, chatCompletion);
+          if (storesSinceSweep.incrementAndGet() >= storesBetweenSweeps) {
+            sweepFiles(dir);
+          }
+        });
+  }
+
+  /** Deletes the expired files and then the oldest files which exceed the maximum */
+  private void sweepFiles(Path dir) {
+    if (!sweeping.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      storesSinceSweep.set(0);
+      List<StoredFile> files = new ArrayList<>();
+      try (Stream<Path> paths = Files.list(dir)) {
+        for (Path file : (Iterable<Path>) paths::iterator) {
+          if (!file.getFileName().toString().endsWith(FILE_EXTENSION)) {
+            continue;
+          }
+          Instant storedAt;
+          try {
+            storedAt = Files.getLastModifiedTime(file).toInstant();
+          } catch (IOException ex) {
+            // deleted in the meantime
+            continue;
+          }
+          if (isExpired(storedAt)) {
+            deleteFileQuietly(file);
+          } else {
+            files.add(new StoredFile(file, storedAt));
+          }
+        }
+      } catch (IOException ex) {
+        // swept again after the next stores
+        return;
+      }
+      if (files.size() > maxFiles) {
+        files.sort(Comparator.comparing(StoredFile::storedAt));
+        files.subList(0, files.size() - maxFiles).forEach(file -> deleteFileQuietly(file.path()));
+      }
+    } finally {
+      sweeping.set(false);
+    }
+  }
+
+  private Optional<ChatCompletion> readFile(String key, Path file) {
+    try {
+      Instant storedAt = Files.getLastModifiedTime(file).toInstant();
+      if (isExpired(storedAt)) {
+        deleteFileQuietly(file);
+        return Optional.empty();
+      }
+      ChatCompletion chatCompletion =
+          ObjectMapperSingleton.readerFor(ChatCompletion.class).readValue(file.toFile());
+      synchronized (entries) {
+        entries.put(key, new Entry(chatCompletion, storedAt));
+      }
+      return Optional.of(chatCompletion);
+    } catch (NoSuchFileException ex) {
+      return Optional.empty();
+    } catch (IOException | RuntimeException ex) {
+      // a corrupt or unreadable file is a miss, and is replaced by the next store
+      deleteFileQuietly(file);
+      return Optional.empty();
+    }
+  }
+
+  private void writeFile(Path dir, String key, ChatCompletion chatCompletion) {
+    Path tempFile = null;
+    try {
+      Files.createDirectories(dir);
+      // write to a temporary file first, so a partially written file is never read
+      tempFile = Files.createTempFile(dir, key, ".tmp");
+      ObjectMapperSingleton.writerFor(ChatCompletion.class)
+          .writeValue(tempFile.toFile(), chatCompletion);
+      Files.move(
+          tempFile,
+          dir.resolve(key + FILE_EXTENSION),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException ex) {
+      // the completion is still cached in memory
+      if (tempFile != null) {
+        deleteFileQuietly(tempFile);
+      }
+    }
+  }
+
+  private void deleteFile(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  private void deleteFileQuietly(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException ex) {
+      // it is deleted or replaced later
+    }
+  }
+
+  private boolean isExpired(Instant storedAt) {
+    return timeToLive.map(ttl -> storedAt.plus(ttl).isBefore(Instant.now())).orElse(false);
+  }
+
+  private static String createKey(CreateChatCompletionRequest request) {
+    ObjectMapper objectMapper = ObjectMapperSingleton.getInstance();
+    JsonNode node = objectMapper.valueToTree(request);
+    try {
+      return Utils.sha256(objectMapper.writeValueAsBytes(Utils.canonicalize(node)));
+    } catch (JsonProcessingException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private record Entry(ChatCompletion chatCompletion, Instant storedAt) {}
+
+  private record StoredFile(Path path, Instant storedAt) {}
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+
+    private static final int DEFAULT_MAX_ENTRIES = 1000;
+    private static final int DEFAULT_MAX_FILES = 10_000;
+
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+    private Optional<Duration> timeToLive = Optional.empty();
+    private Optional<Path> directory = Optional.empty();
+    private int maxFiles = DEFAULT_MAX_FILES;
+
+    /**
+     * @param maxEntries the maximum number of completions kept in memory. The least recently used
+     *     completions are evicted first. Defaults to 1000.
+     */
+    public Builder maxEntries(int maxEntries) {
+      if (maxEntries < 1) {
+        throw new IllegalArgumentException("maxEntries must be at least 1");
+      }
+      this.maxEntries = maxEntries;
+      return this;
+    }
+
+    /**
+     * @param timeToLive how long a completion is served from the cache after it was stored. If
+     *     none is set, completions never expire.
+     */
+    public Builder timeToLive(Duration timeToLive) {
+      this.timeToLive = Optional.of(timeToLive);
+      return this;
+    }
+
+    /**
+     * @param directory a directory in which every completion will also be stored as a file. It is
+     *     created if it does not exist.
+     */
+    public Builder directory(Path directory) {
+      this.directory = Optional.of(directory);
+      return this;
+    }
+
+    /**
+     * @param maxFiles the maximum number of completions kept in the {@link #directory(Path)}. The
+     *     directory is swept after every tenth of this number of stored completions, so it can
+     *     exceed the maximum by that many files in between. The oldest files are deleted first.
+     *     Defaults to 10000.
+     */
+    public Builder maxFiles(int maxFiles) {
+      if (maxFiles < 1) {
+        throw new IllegalArgumentException("maxFiles must be at least 1");
+      }
+      this.maxFiles = maxFiles;
+      return this;
+    }
+
+    public ChatCompletionCache build() {
+      return new ChatCompletionCache(maxEntries, timeToLive, directory, maxFiles);
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.ByteArrayOutputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A {@link CreateChatCompletionRequest} whose fields and leading messages are serialized once, so
+ * that sending it only requires serializing the messages which vary between requests. This is
+ * useful when requests share a large constant part, such as a long system prompt, tools with big
+ * parameter schemas or a JSON schema response format.
+ *
+ * <p>Instances are immutable and can be shared between threads.
+ *
+ * @see ChatClient#createChatCompletion(ChatCompletionRequestTemplate, List)
+ */
+public final class ChatCompletionRequestTemplate {
+
+  private static final byte[] MESSAGE_SEPARATOR = {','};
+  private static final byte[] SUFFIX = "]}".getBytes(StandardCharsets.UTF_8);
+
+  private final CreateChatCompletionRequest request;
+  private final byte[] prefix;
+  private final boolean hasMessages;
+  private final String prefixHash;
+
+  private ChatCompletionRequestTemplate(CreateChatCompletionRequest request) {
+    this.request = request;
+    ObjectMapper objectMapper = ObjectMapperSingleton.getInstance();
+    ObjectNode node = objectMapper.valueToTree(request);
+    JsonNode messages = node.remove("messages");
+    try {
+      ByteArrayOutputStream prefix = new ByteArrayOutputStream();
+      byte[] fields = objectMapper.writeValueAsBytes(node);
+      // the fields without the closing brace, followed by the opening of the messages array
+      prefix.write(fields, 0, fields.length - 1);
+      prefix.writeBytes(
+          (node.isEmpty() ? "\"messages\":[" : ",\"messages\":[").getBytes(StandardCharsets.UTF_8));
+      for (int i = 0; i < messages.size(); i++) {
+        if (i > 0) {
+          prefix.writeBytes(MESSAGE_SEPARATOR);
+        }
+        prefix.writeBytes(objectMapper.writeValueAsBytes(messages.get(i)));
+      }
+      this.prefix = prefix.toByteArray();
+    } catch (JsonProcessingException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    this.hasMessages = !messages.isEmpty();
+    this.prefixHash = PromptPrefix.hash(request);
+  }
+
+  /**
+   * @param request the constant part of the requests. Its messages are sent before the messages
+   *     passed at send time.
+   */
+  public static ChatCompletionRequestTemplate of(CreateChatCompletionRequest request) {
+    return new ChatCompletionRequestTemplate(request);
+  }
+
+  /**
+   * @return the request which the template was created from
+   */
+  public CreateChatCompletionRequest getRequest() {
+    return request;
+  }
+
+  Optional<Boolean> stream() {
+    return request.stream();
+  }
+
+  String prefixHash() {
+    return prefixHash;
+  }
+
+  /** Serializes only the messages and splices them between the pre-serialized parts */
+  HttpRequest.BodyPublisher createBodyPublisher(List<ChatMessage> messages) {
+    List<HttpRequest.BodyPublisher> publishers = new ArrayList<>(messages.size() * 2 + 2);
+    publishers.add(HttpRequest.BodyPublishers.ofByteArray(prefix));
+    try {
+      for (int i = 0; i < messages.size(); i++) {
+        if (hasMessages || i > 0) {
+          publishers.add(HttpRequest.BodyPublishers.ofByteArray(MESSAGE_SEPARATOR));
+        }
+        ChatMessage message = messages.get(i);
+        byte[] serializedMessage =
+            ObjectMapperSingleton.writerFor(message.getClass()).writeValueAsBytes(message);
+        publishers.add(HttpRequest.BodyPublishers.ofByteArray(serializedMessage));
+      }
+    } catch (JsonProcessingException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    publishers.add(HttpRequest.BodyPublishers.ofByteArray(SUFFIX));
+    return HttpRequest.BodyPublishers.concat(publishers.toArray(HttpRequest.BodyPublisher[]::new));
+  }
+}
@@ -0,0 +1,129 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Configures the circuit breakers which guard the API requests. There is one circuit breaker for
+ * every endpoint, model and API key. It opens when too many of the recent requests failed with a
+ * connection error, a timeout or a 5xx response, or were slow. Rate limit errors (429) are not
+ * counted, since they are specific to the API key. While it is open, requests fail immediately with
+ * an {@link OpenAIException} with status code 503 and type <b> circuit_breaker_open</b>. After
+ * {@code openDuration}, a few probe requests are let through and the circuit breaker closes again
+ * if they all succeed.
+ *
+ * @param failureRateThreshold the share of failed requests at which the circuit breaker opens
+ * @param minimumRequests the number of requests within the window before the failure rate is
+ *     considered
+ * @param window the rolling window over which the failure rate is measured
+ * @param slowRequestDuration the duration after which a request is considered failed, even if it
+ *     succeeds. If none is set, the latency of the requests is not considered.
+ * @param openDuration how long the circuit breaker stays open before probe requests are let
+ *     through
+ * @param probeRequests the number of probe requests which must succeed to close the circuit breaker
+ */
+public record CircuitBreakerPolicy(
+    double failureRateThreshold,
+    int minimumRequests,
+    Duration window,
+    Optional<Duration> slowRequestDuration,
+    Duration openDuration,
+    int probeRequests) {
+
+  public static CircuitBreakerPolicy defaults() {
+    return new Builder().build();
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+
+    private static final double DEFAULT_FAILURE_RATE_THRESHOLD = 0.5;
+    private static final int DEFAULT_MINIMUM_REQUESTS = 20;
+    private static final Duration DEFAULT_WINDOW = Duration.ofSeconds(10);
+    private static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(15);
+    private static final int DEFAULT_PROBE_REQUESTS = 3;
+
+    private double failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+    private int minimumRequests = DEFAULT_MINIMUM_REQUESTS;
+    private Duration window = DEFAULT_WINDOW;
+    private Optional<Duration> slowRequestDuration = Optional.empty();
+    private Duration openDuration = DEFAULT_OPEN_DURATION;
+    private int probeRequests = DEFAULT_PROBE_REQUESTS;
+
+    /**
+     * @param failureRateThreshold the share of failed requests at which the circuit breaker opens.
+     *     Must be between 0 and 1. Defaults to 0.5.
+     */
+    public Builder failureRateThreshold(double failureRateThreshold) {
+      if (failureRateThreshold <= 0 || failureRateThreshold > 1) {
+        throw new IllegalArgumentException("failureRateThreshold must be between 0 and 1");
+      }
+      this.failureRateThreshold = failureRateThreshold;
+      return this;
+    }
+
+    /**
+     * @param minimumRequests the number of requests within the window before the failure rate is
+     *     considered. Must be at least 1. Defaults to 20.
+     */
+    public Builder minimumRequests(int minimumRequests) {
+      if (minimumRequests < 1) {
+        throw new IllegalArgumentException("minimumRequests must be at least 1");
+      }
+      this.minimumRequests = minimumRequests;
+      return this;
+    }
+
+    /**
+     * @param window the rolling window over which the failure rate is measured. Defaults to 10
+     *     seconds.
+     */
+    public Builder window(Duration window) {
+      this.window = window;
+      return this;
+    }
+
+    /**
+     * @param slowRequestDuration the duration after which a request is considered failed, even if
+     *     it succeeds
+     */
+    public Builder slowRequestDuration(Duration slowRequestDuration) {
+      this.slowRequestDuration = Optional.of(slowRequestDuration);
+      return this;
+    }
+
+    /**
+     * @param openDuration how long the circuit breaker stays open before probe requests are let
+     *     through. Defaults to 15 seconds.
+     */
+    public Builder openDuration(Duration openDuration) {
+      this.openDuration = openDuration;
+      return this;
+    }
+
+    /**
+     * @param probeRequests the number of probe requests which must succeed to close the circuit
+     *     breaker. Must be at least 1. Defaults to 3.
+     */
+    public Builder probeRequests(int probeRequests) {
+      if (probeRequests < 1) {
+        throw new IllegalArgumentException("probeRequests must be at least 1");
+      }
+      this.probeRequests = probeRequests;
+      return this;
+    }
+
+    public CircuitBreakerPolicy build() {
+      return new CircuitBreakerPolicy(
+          failureRateThreshold,
+          minimumRequests,
+          window,
+          slowRequestDuration,
+          openDuration,
+          probeRequests);
+    }
+  }
+}
@@ -0,0 +1,246 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * The circuit breakers of the API requests, one for every endpoint, model and credential. The
+ * credential is part of the key, so the instances created with {@link OpenAI#withApiKey(String)}
+ * and the keys of an API key provider don't open each other's circuit breakers. Only a fingerprint
+ * of the credential is kept, and circuit breakers which have not been used for a while are
+ * removed, so the circuit breakers of many API keys don't accumulate in memory.
+ *
+ * @see CircuitBreakerPolicy
+ */
+class CircuitBreakers {
+
+  private static final String CIRCUIT_BREAKER_OPEN_ERROR_TYPE = "circuit_breaker_open";
+  private static final int BUCKETS = 10;
+
+  // longest paths first, so nested paths such as "organization/projects" win over shorter ones
+  private static final List<Endpoint> ENDPOINTS =
+      Arrays.stream(Endpoint.values())
+          .sorted(Comparator.comparingInt(endpoint -> -endpoint.getPath().length()))
+          .toList();
+
+  private final CircuitBreakerPolicy circuitBreakerPolicy;
+  private final LongSupplier nanoTime;
+  private final long windowNanos;
+  private final long openDurationNanos;
+  private final Map<Key, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+  // the idle circuit breakers are removed at most once per window, which keeps get() cheap
+  private final AtomicLong nextRemovalAt;
+
+  CircuitBreakers(CircuitBreakerPolicy circuitBreakerPolicy) {
+    this(circuitBreakerPolicy, System::nanoTime);
+  }
+
+  /**
+   * @param nanoTime the clock of the windows, open durations and latencies, which tests replace
+   */
+  CircuitBreakers(CircuitBreakerPolicy circuitBreakerPolicy, LongSupplier nanoTime) {
+    this.circuitBreakerPolicy = circuitBreakerPolicy;
+    this.nanoTime = nanoTime;
+    this.windowNanos = circuitBreakerPolicy.window().toNanos();
+    this.openDurationNanos = circuitBreakerPolicy.openDuration().toNanos();
+    this.nextRemovalAt = new AtomicLong(nanoTime() + windowNanos);
+  }
+
+  long nanoTime() {
+    return nanoTime.getAsLong();
+  }
+
+  CircuitBreaker get(HttpRequest httpRequest, Optional<String> model) {
+    removeIdleCircuitBreakers();
+    Key key =
+        new Key(findEndpoint(httpRequest.uri()), model, Utils.credentialFingerprint(httpRequest));
+    return circuitBreakers.computeIfAbsent(key, CircuitBreaker::new);
+  }
+
+  int size() {
+    return circuitBreakers.size();
+  }
+
+  /**
+   * A closed circuit breaker which has not been used for longer than the window has no requests
+   * left in it, so it is the same as a new one. One which is not closed is kept for another open
+   * duration, so that the probe requests are still sent when it is used again soon.
+   */
+  private void removeIdleCircuitBreakers() {
+    long now = nanoTime();
+    long removalAt = nextRemovalAt.get();
+    if (now - removalAt < 0 || !nextRemovalAt.compareAndSet(removalAt, now + windowNanos)) {
+      return;
+    }
+    circuitBreakers.values().removeIf(circuitBreaker -> circuitBreaker.isIdle(now));
+  }
+
+  private static Optional<Endpoint> findEndpoint(URI uri) {
+    String path = uri.getPath();
+    return ENDPOINTS.stream()
+        .filter(endpoint -> path.contains("/" + endpoint.getPath()))
+        .findFirst();
+  }
+
+  private record Key(Optional<Endpoint> endpoint, Optional<String> model, String credential) {
+    // the credential is left out, so the messages only name the endpoint and the model
+    @Override
+    public String toString() {
+      String path = endpoint.map(Endpoint::getPath).orElse("unknown endpoint");
+      return model.map(m -> path + " (" + m + ")").orElse(path);
+    }
+  }
+
+  enum Permit {
+    REJECTED,
+    REQUEST,
+    PROBE
+  }
+
+  private enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  class CircuitBreaker {
+
+    private final Key key;
+    private final long bucketNanos;
+    // the requests and failures of the rolling window, in buckets of a tenth of the window
+    private final long[] bucketIndexes = new long[BUCKETS];
+    private final int[] bucketRequests = new int[BUCKETS];
+    private final int[] bucketFailures = new int[BUCKETS];
+
+    private State state = State.CLOSED;
+    private long lastUsedAt = nanoTime();
+    private long openedAt;
+    private int probesInFlight;
+    private int succeededProbes;
+
+    private CircuitBreaker(Key key) {
+      this.key = key;
+      this.bucketNanos = Math.max(1, circuitBreakerPolicy.window().toNanos() / BUCKETS);
+    }
+
+    synchronized Permit tryAcquirePermit() {
+      lastUsedAt = nanoTime();
+      if (state == State.OPEN) {
+        if (nanoTime() - openedAt < circuitBreakerPolicy.openDuration().toNanos()) {
+          return Permit.REJECTED;
+        }
+        state = State.HALF_OPEN;
+        probesInFlight = 0;
+        succeededProbes = 0;
+      }
+      if (state == State.HALF_OPEN) {
+        if (probesInFlight + succeededProbes >= circuitBreakerPolicy.probeRequests()) {
+          return Permit.REJECTED;
+        }
+        probesInFlight++;
+        return Permit.PROBE;
+      }
+      return Permit.REQUEST;
+    }
+
+    /**
+     * @param statusCode the status code of the response or -1 if the request failed without one.
+     *     Rate limits apply to the credential and not to the endpoint, so a 429 is not a failure.
+     * @param startNanos the {@link CircuitBreakers#nanoTime()} at which the request was sent
+     */
+    synchronized void onResult(Permit permit, int statusCode, long startNanos) {
+      lastUsedAt = nanoTime();
+      long latencyNanos = lastUsedAt - startNanos;
+      boolean failed =
+          statusCode < 0
+              || statusCode >= 500
+              || circuitBreakerPolicy
+                  .slowRequestDuration()
+                  .map(slow -> latencyNanos >= slow.toNanos())
+                  .orElse(false);
+      if (permit == Permit.PROBE) {
+        if (state != State.HALF_OPEN) {
+          return;
+        }
+        probesInFlight--;
+        if (failed) {
+          open();
+        } else if (++succeededProbes >= circuitBreakerPolicy.probeRequests()) {
+          close();
+        }
+        return;
+      }
+      if (state != State.CLOSED) {
+        // the request was sent before the circuit breaker opened
+        return;
+      }
+      long bucketIndex = nanoTime() / bucketNanos;
+      int bucket = (int) Math.floorMod(bucketIndex, (long) BUCKETS);
+      if (bucketIndexes[bucket] != bucketIndex) {
+        bucketIndexes[bucket] = bucketIndex;
+        bucketRequests[bucket] = 0;
+        bucketFailures[bucket] = 0;
+      }
+      bucketRequests[bucket]++;
+      if (failed) {
+        bucketFailures[bucket]++;
+        int requests = 0;
+        int failures = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+          if (bucketIndex - bucketIndexes[i] < BUCKETS) {
+            requests += bucketRequests[i];
+            failures += bucketFailures[i];
+          }
+        }
+        if (requests >= circuitBreakerPolicy.minimumRequests()
+            && failures >= circuitBreakerPolicy.failureRateThreshold() * requests) {
+          open();
+        }
+      }
+    }
+
+    /** Releases a permit of a request which was cancelled or interrupted */
+    synchronized void release(Permit permit) {
+      if (permit == Permit.PROBE && state == State.HALF_OPEN) {
+        probesInFlight--;
+      }
+    }
+
+    private synchronized boolean isIdle(long now) {
+      long idleNanos = now - lastUsedAt;
+      if (state == State.CLOSED) {
+        return idleNanos >= windowNanos;
+      }
+      return probesInFlight == 0 && idleNanos >= windowNanos + openDurationNanos;
+    }
+
+    OpenAIException createOpenException() {
+      return new OpenAIException(
+          503,
+          new OpenAIException.Error(
+              "Circuit breaker for " + key + " is open",
+              CIRCUIT_BREAKER_OPEN_ERROR_TYPE,
+              null,
+              null));
+    }
+
+    private void open() {
+      state = State.OPEN;
+      openedAt = nanoTime();
+    }
+
+    private void close() {
+      state = State.CLOSED;
+      Arrays.fill(bucketRequests, 0);
+      Arrays.fill(bucketFailures, 0);
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/** Options which are configured once in {@link OpenAI.Builder} and shared by all clients */
+record ClientOptions(
+    Supplier<HttpClient> httpClient,
+    Optional<Duration> requestTimeout,
+    Optional<GetRequestDeduplicator> getRequestDeduplicator,
+    Optional<PromptCacheMetrics> promptCacheMetrics,
+    boolean responseCompression,
+    Optional<LoadBalancer> loadBalancer,
+    Optional<CircuitBreakers> circuitBreakers,
+    Optional<StreamTimeouts> streamTimeouts,
+    Optional<Supplier<String>> apiKeyProvider,
+    SharedClientState sharedState) {
+
+  /**
+   * The administration API is only exposed by OpenAI and authenticated with the admin key, so its
+   * requests are never load balanced and don't use the API key provider
+   */
+  ClientOptions forAdministration() {
+    return new ClientOptions(
+        httpClient,
+        requestTimeout,
+        getRequestDeduplicator,
+        promptCacheMetrics,
+        responseCompression,
+        Optional.empty(),
+        circuitBreakers,
+        streamTimeouts,
+        Optional.empty(),
+        sharedState);
+  }
+
+  ClientOptions withoutApiKeyProvider() {
+    return new ClientOptions(
+        httpClient,
+        requestTimeout,
+        getRequestDeduplicator,
+        promptCacheMetrics,
+        responseCompression,
+        loadBalancer,
+        circuitBreakers,
+        streamTimeouts,
+        Optional.empty(),
+        sharedState);
+  }
+}
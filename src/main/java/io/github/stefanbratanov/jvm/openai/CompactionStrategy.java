@@ -0,0 +1,149 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import io.github.stefanbratanov.jvm.openai.ChatMessage.AssistantMessage;
+import io.github.stefanbratanov.jvm.openai.ChatMessage.SystemMessage;
+import io.github.stefanbratanov.jvm.openai.ChatMessage.ToolMessage;
+import io.github.stefanbratanov.jvm.openai.ChatMessage.UserMessage.UserMessageWithContentParts;
+import io.github.stefanbratanov.jvm.openai.ChatMessage.UserMessage.UserMessageWithTextContent;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Decides how a {@link ConversationMemory} is compacted when its messages exceed the token budget.
+ */
+public interface CompactionStrategy {
+
+  /**
+   * Selects how many of the oldest messages should be evicted. Evicting a message which called
+   * tools should also evict the tool messages which follow it.
+   *
+   * @param messages the messages which can be evicted, oldest first
+   * @param tokenCounts the token count of each message
+   * @param excessTokens the number of tokens by which the budget is exceeded
+   * @return the number of the oldest messages to evict
+   */
+  int evictionCount(List<ChatMessage> messages, List<Integer> tokenCounts, int excessTokens);
+
+  /**
+   * Called with the evicted messages after every compaction. The returned summary, if any, will
+   * replace the previous summary of the conversation.
+   *
+   * @param previousSummary the current summary of the conversation
+   * @param evictedMessages the messages which were evicted, oldest first
+   */
+  default CompletableFuture<Optional<ChatMessage>> summarize(
+      Optional<ChatMessage> previousSummary, List<ChatMessage> evictedMessages) {
+    return CompletableFuture.completedFuture(Optional.empty());
+  }
+
+  /**
+   * Evicts the fewest oldest messages needed to fit the budget. The most recent message is always
+   * kept.
+   */
+  static CompactionStrategy slidingWindow() {
+    return CompactionStrategy::slidingWindowEvictionCount;
+  }
+
+  /**
+   * Evicts messages like {@link #slidingWindow()} and asynchronously summarizes the evicted
+   * messages, together with the previous summary, using {@link
+   * ChatClient#createChatCompletionAsync(CreateChatCompletionRequest)}
+   *
+   * @param chatClient the client used to summarize
+   * @param model ID of the model used to summarize
+   */
+  static CompactionStrategy summarizing(ChatClient chatClient, String model) {
+    return new CompactionStrategy() {
+      @Override
+      public int evictionCount(
+          List<ChatMessage> messages, List<Integer> tokenCounts, int excessTokens) {
+        return slidingWindowEvictionCount(messages, tokenCounts, excessTokens);
+      }
+
+      @Override
+      public CompletableFuture<Optional<ChatMessage>> summarize(
+          Optional<ChatMessage> previousSummary, List<ChatMessage> evictedMessages) {
+        CreateChatCompletionRequest request =
+            CreateChatCompletionRequest.newBuilder()
+                .model(model)
+                .message(
+                    ChatMessage.systemMessage(
+                        "Summarize the conversation below in a few sentences. Keep all facts,"
+                            + " decisions, names and open questions which may be needed to"
+                            + " continue the conversation."))
+                .message(ChatMessage.userMessage(transcript(previousSummary, evictedMessages)))
+                .build();
+        return chatClient
+            .createChatCompletionAsync(request)
+            .thenApply(
+                chatCompletion ->
+                    Optional.of(
+                        ChatMessage.systemMessage(
+                            "Summary of the earlier conversation: "
+                                + chatCompletion.choices().get(0).message().content())));
+      }
+    };
+  }
+
+  private static int slidingWindowEvictionCount(
+      List<ChatMessage> messages, List<Integer> tokenCounts, int excessTokens) {
+    int lastIndex = messages.size() - 1;
+    int count = 0;
+    int evictedTokens = 0;
+    while (count < lastIndex && evictedTokens < excessTokens) {
+      evictedTokens += tokenCounts.get(count++);
+    }
+    // tool messages can't be sent without the assistant message which called the tools
+    while (count < lastIndex && messages.get(count) instanceof ToolMessage) {
+      count++;
+    }
+    return count;
+  }
+
+  private static String transcript(
+      Optional<ChatMessage> previousSummary, List<ChatMessage> messages) {
+    StringBuilder transcript = new StringBuilder();
+    previousSummary.ifPresent(
+        summary -> transcript.append(text(summary).orElse("")).append("\n\n"));
+    for (ChatMessage message : messages) {
+      transcript.append(message.role()).append(": ").append(text(message).orElse(""));
+      if (message instanceof AssistantMessage assistantMessage) {
+        assistantMessage.toolCalls().stream()
+            .flatMap(List::stream)
+            .filter(ToolCall.FunctionToolCall.class::isInstance)
+            .map(ToolCall.FunctionToolCall.class::cast)
+            .forEach(
+                toolCall ->
+                    transcript
+                        .append(" [called ")
+                        .append(toolCall.function().name())
+                        .append(" with ")
+                        .append(toolCall.function().arguments())
+                        .append("]"));
+      }
+      transcript.append('\n');
+    }
+    return transcript.toString();
+  }
+
+  private static Optional<String> text(ChatMessage message) {
+    if (message instanceof SystemMessage systemMessage) {
+      return Optional.ofNullable(systemMessage.content());
+    } else if (message instanceof UserMessageWithTextContent userMessage) {
+      return Optional.ofNullable(userMessage.content());
+    } else if (message instanceof UserMessageWithContentParts userMessage) {
+      return Optional.of(
+          userMessage.content().stream()
+              .filter(ContentPart.TextContentPart.class::isInstance)
+              .map(part -> ((ContentPart.TextContentPart) part).text())
+              .reduce((first, second) -> first + " " + second)
+              .orElse("[image]"));
+    } else if (message instanceof AssistantMessage assistantMessage) {
+      return Optional.ofNullable(assistantMessage.content());
+    } else if (message instanceof ToolMessage toolMessage) {
+      return Optional.ofNullable(toolMessage.content());
+    }
+    return Optional.empty();
+  }
+}
@@ -7,6 +7,8 @@ class Constants {
   static final String JSON_MEDIA_TYPE = "application/json";
   static final String CONTENT_TYPE_HEADER = "Content-Type";
   static final String ACCEPT_HEADER = "Accept";
+  static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+  static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
   static final String AUTHORIZATION_HEADER = "Authorization";
 
   static final String OPENAI_ORGANIZATION_HEADER = "OpenAI-Organization";
@@ -40,6 +42,13 @@ class Constants {
 
   static final String SUBMIT_TOOL_OUTPUTS_REQUIRED_ACTION_TYPE = "submit_tool_outputs";
 
+  static final String REQUIRES_ACTION_RUN_STATUS = "requires_action";
+  static final String COMPLETED_RUN_STATUS = "completed";
+  static final String FAILED_RUN_STATUS = "failed";
+  static final String CANCELLED_RUN_STATUS = "cancelled";
+  static final String EXPIRED_RUN_STATUS = "expired";
+  static final String INCOMPLETE_RUN_STATUS = "incomplete";
+
   static final String WANDB_INTEGRATION_TYPE = "wandb";
 
   static final String LIMIT_QUERY_PARAMETER = "limit";
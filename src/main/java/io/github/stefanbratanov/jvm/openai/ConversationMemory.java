@@ -0,0 +1,205 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Keeps the messages of a conversation within a token budget. The tokens of every message are
+ * counted once when it is added, and the oldest messages are compacted using a {@link
+ * CompactionStrategy} whenever the budget is exceeded, so the size of each request stays flat as
+ * the conversation grows.
+ *
+ * <p>System messages added at the start of the conversation are kept by default and never
+ * compacted. If the strategy produces a summary, it is placed after them.
+ *
+ * <p>Instances are thread-safe.
+ */
+public final class ConversationMemory {
+
+  private static final int TOKENS_FOR_REPLY_PRIMING = 3;
+
+  private final TokenCounter tokenCounter;
+  private final int maxTokens;
+  private final CompactionStrategy compactionStrategy;
+  private final boolean keepSystemMessages;
+
+  private final List<ChatMessage> pinnedMessages = new ArrayList<>();
+  private final List<ChatMessage> messages = new ArrayList<>();
+  private final List<Integer> tokenCounts = new ArrayList<>();
+  private Optional<ChatMessage> summary = Optional.empty();
+  private int pinnedTokens;
+  private int summaryTokens;
+  private int messagesTokens;
+  private boolean conversationStarted;
+  // incremented on clear, so summaries of cleared messages are ignored
+  private long generation;
+  private CompletableFuture<Void> pendingSummary = CompletableFuture.completedFuture(null);
+
+  private ConversationMemory(
+      TokenCounter tokenCounter,
+      int maxTokens,
+      CompactionStrategy compactionStrategy,
+      boolean keepSystemMessages) {
+    this.tokenCounter = tokenCounter;
+    this.maxTokens = maxTokens;
+    this.compactionStrategy = compactionStrategy;
+    this.keepSystemMessages = keepSystemMessages;
+  }
+
+  /**
+   * Adds a message to the conversation and compacts it if the budget is exceeded
+   *
+   * @param message the message to add
+   */
+  public synchronized void add(ChatMessage message) {
+    int tokens = tokenCounter.countMessage(message);
+    if (keepSystemMessages
+        && !conversationStarted
+        && message instanceof ChatMessage.SystemMessage) {
+      pinnedMessages.add(message);
+      pinnedTokens += tokens;
+    } else {
+      conversationStarted = true;
+      messages.add(message);
+      tokenCounts.add(tokens);
+      messagesTokens += tokens;
+    }
+    compactIfNeeded();
+  }
+
+  /** Same as {@link #add(ChatMessage)} but adds multiple messages */
+  public synchronized void addAll(List<ChatMessage> newMessages) {
+    newMessages.forEach(this::add);
+  }
+
+  /**
+   * @return the messages to send, in the order: kept system messages, the summary if there is one
+   *     and the remaining messages of the conversation
+   */
+  public synchronized List<ChatMessage> messages() {
+    List<ChatMessage> result = new ArrayList<>(pinnedMessages.size() + messages.size() + 1);
+    result.addAll(pinnedMessages);
+    summary.ifPresent(result::add);
+    result.addAll(messages);
+    return result;
+  }
+
+  /**
+   * @return the number of prompt tokens of {@link #messages()}
+   */
+  public synchronized int tokenCount() {
+    return TOKENS_FOR_REPLY_PRIMING + pinnedTokens + summaryTokens + messagesTokens;
+  }
+
+  /**
+   * @return a future which completes when all pending summaries have been applied. It completes
+   *     exceptionally if the latest summary failed, in which case the evicted messages of that
+   *     compaction are not part of the summary.
+   */
+  public synchronized CompletableFuture<Void> pendingCompaction() {
+    return pendingSummary;
+  }
+
+  /** Removes all messages, including the kept system messages and the summary */
+  public synchronized void clear() {
+    pinnedMessages.clear();
+    messages.clear();
+    tokenCounts.clear();
+    summary = Optional.empty();
+    pinnedTokens = 0;
+    summaryTokens = 0;
+    messagesTokens = 0;
+    conversationStarted = false;
+    generation++;
+  }
+
+  private void compactIfNeeded() {
+    int excessTokens = tokenCount() - maxTokens;
+    if (excessTokens <= 0 || messages.isEmpty()) {
+      return;
+    }
+    int evictionCount =
+        Math.min(
+            compactionStrategy.evictionCount(
+                List.copyOf(messages), List.copyOf(tokenCounts), excessTokens),
+            messages.size());
+    if (evictionCount <= 0) {
+      return;
+    }
+    List<ChatMessage> evictedMessages = List.copyOf(messages.subList(0, evictionCount));
+    List<Integer> evictedTokenCounts = tokenCounts.subList(0, evictionCount);
+    messagesTokens -= evictedTokenCounts.stream().mapToInt(Integer::intValue).sum();
+    evictedTokenCounts.clear();
+    messages.subList(0, evictionCount).clear();
+    long summaryGeneration = generation;
+    pendingSummary =
+        pendingSummary
+            .exceptionally(ex -> null)
+            .thenCompose(
+                previous -> compactionStrategy.summarize(currentSummary(), evictedMessages))
+            .thenAccept(newSummary -> setSummary(newSummary, summaryGeneration));
+  }
+
+  private synchronized Optional<ChatMessage> currentSummary() {
+    return summary;
+  }
+
+  private synchronized void setSummary(Optional<ChatMessage> newSummary, long summaryGeneration) {
+    if (newSummary.isEmpty() || summaryGeneration != generation) {
+      return;
+    }
+    summary = newSummary;
+    summaryTokens = tokenCounter.countMessage(newSummary.get());
+    compactIfNeeded();
+  }
+
+  /**
+   * @param tokenCounter the counter used to count the tokens of each message
+   * @param maxTokens the token budget of the messages, including the tokens which prime the reply
+   */
+  public static Builder newBuilder(TokenCounter tokenCounter, int maxTokens) {
+    return new Builder(tokenCounter, maxTokens);
+  }
+
+  public static class Builder {
+
+    private final TokenCounter tokenCounter;
+    private final int maxTokens;
+
+    private CompactionStrategy compactionStrategy = CompactionStrategy.slidingWindow();
+    private boolean keepSystemMessages = true;
+
+    private Builder(TokenCounter tokenCounter, int maxTokens) {
+      if (maxTokens < 1) {
+        throw new IllegalArgumentException("maxTokens must be at least 1");
+      }
+      this.tokenCounter = tokenCounter;
+      this.maxTokens = maxTokens;
+    }
+
+    /**
+     * @param compactionStrategy the strategy used when the budget is exceeded. Defaults to {@link
+     *     CompactionStrategy#slidingWindow()}.
+     */
+    public Builder compactionStrategy(CompactionStrategy compactionStrategy) {
+      this.compactionStrategy = compactionStrategy;
+      return this;
+    }
+
+    /**
+     * @param keepSystemMessages whether the system messages added at the start of the conversation
+     *     are never compacted. Defaults to true.
+     */
+    public Builder keepSystemMessages(boolean keepSystemMessages) {
+      this.keepSystemMessages = keepSystemMessages;
+      return this;
+    }
+
+    public ConversationMemory build() {
+      return new ConversationMemory(
+          tokenCounter, maxTokens, compactionStrategy, keepSystemMessages);
+    }
+  }
+}
@@ -74,6 +74,8 @@ public record CreateChatCompletionRequest(
     private Optional<Boolean> parallelToolCalls = Optional.empty();
     private Optional<String> user = Optional.empty();
 
+    private boolean stablePrefix = false;
+
     /**
      * @param message message to append to the list of messages comprising the conversation so far
      */
@@ -337,7 +339,22 @@ public record CreateChatCompletionRequest(
       return this;
     }
 
+    /**
+     * @param stablePrefix whether the tools should be sorted by name, and the keys of the function
+     *     parameters and of the JSON schema of the response format sorted alphabetically. This
+     *     keeps the prefix of the prompt byte-identical across requests with the same tools and
+     *     system messages, regardless of the order they were added in, so it can be served from the
+     *     prompt cache. System messages should be added before all other messages. Defaults to
+     *     false.
+     */
+    public Builder stablePrefix(boolean stablePrefix) {
+      this.stablePrefix = stablePrefix;
+      return this;
+    }
+
     public CreateChatCompletionRequest build() {
+      List<Tool> requestTools =
+          stablePrefix ? PromptPrefix.canonicalTools(tools) : List.copyOf(tools);
       return new CreateChatCompletionRequest(
           List.copyOf(messages),
           model,
@@ -349,7 +366,9 @@ public record CreateChatCompletionRequest(
           maxCompletionTokens,
           n,
           presencePenalty,
-          responseFormat,
+          stablePrefix
+              ? responseFormat.map(PromptPrefix::canonicalResponseFormat)
+              : responseFormat,
           seed,
           serviceTier,
           stop.isEmpty() ? Optional.empty() : Optional.of(List.copyOf(stop)),
@@ -357,7 +376,7 @@ public record CreateChatCompletionRequest(
           streamOptions,
           temperature,
           topP,
-          tools.isEmpty() ? Optional.empty() : Optional.of(List.copyOf(tools)),
+          requestTools.isEmpty() ? Optional.empty() : Optional.of(requestTools),
           toolChoice,
           parallelToolCalls,
           user);
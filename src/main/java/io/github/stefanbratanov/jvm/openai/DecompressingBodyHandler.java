@@ -0,0 +1,278 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decompresses gzip and deflate encoded responses as their bytes arrive, before passing them to the
+ * wrapped {@link HttpResponse.BodyHandler}. Responses with other encodings are passed as they are.
+ */
+final class DecompressingBodyHandler<T> implements HttpResponse.BodyHandler<T> {
+
+  static final String ACCEPT_ENCODING = "gzip, deflate";
+
+  private final HttpResponse.BodyHandler<T> bodyHandler;
+
+  DecompressingBodyHandler(HttpResponse.BodyHandler<T> bodyHandler) {
+    this.bodyHandler = bodyHandler;
+  }
+
+  @Override
+  public HttpResponse.BodySubscriber<T> apply(HttpResponse.ResponseInfo responseInfo) {
+    HttpResponse.BodySubscriber<T> bodySubscriber = bodyHandler.apply(responseInfo);
+    String contentEncoding =
+        responseInfo
+            .headers()
+            .firstValue(Constants.CONTENT_ENCODING_HEADER)
+            .map(encoding -> encoding.trim().toLowerCase(Locale.ROOT))
+            .orElse("identity");
+    return switch (contentEncoding) {
+      case "gzip", "x-gzip" -> new DecompressingBodySubscriber<>(bodySubscriber, true);
+      case "deflate" -> new DecompressingBodySubscriber<>(bodySubscriber, false);
+      default -> bodySubscriber;
+    };
+  }
+
+  private static final class DecompressingBodySubscriber<T>
+      implements HttpResponse.BodySubscriber<T> {
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int GZIP_HEADER_LENGTH = 10;
+    private static final int GZIP_TRAILER_LENGTH = 8;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private enum State {
+      HEADER,
+      BODY,
+      TRAILER,
+      DONE
+    }
+
+    private final HttpResponse.BodySubscriber<T> downstream;
+    private final boolean gzip;
+    private final Inflater inflater;
+    private final CRC32 crc = new CRC32();
+    private final byte[] output = new byte[8192];
+    // the gzip header or trailer, which can be split between buffers
+    private final ByteArrayOutputStream framing = new ByteArrayOutputStream();
+
+    private Flow.Subscription subscription;
+    private State state;
+    private boolean receivedInput;
+    private boolean failed;
+
+    private DecompressingBodySubscriber(HttpResponse.BodySubscriber<T> downstream, boolean gzip) {
+      this.downstream = downstream;
+      this.gzip = gzip;
+      this.inflater = new Inflater(gzip);
+      this.state = gzip ? State.HEADER : State.BODY;
+    }
+
+    @Override
+    public CompletionStage<T> getBody() {
+      return downstream.getBody();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      downstream.onSubscribe(subscription);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> item) {
+      if (failed) {
+        return;
+      }
+      List<ByteBuffer> decompressed = new ArrayList<>();
+      try {
+        for (ByteBuffer buffer : item) {
+          byte[] input = new byte[buffer.remaining()];
+          buffer.get(input);
+          receivedInput |= input.length > 0;
+          decompress(input, 0, decompressed);
+        }
+      } catch (IOException ex) {
+        failed = true;
+        subscription.cancel();
+        onDecompressionError(ex);
+        return;
+      }
+      if (decompressed.isEmpty()) {
+        // nothing to pass on, so the demand of the downstream subscriber is still outstanding
+        subscription.request(1);
+      } else {
+        downstream.onNext(decompressed);
+      }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      inflater.end();
+      if (!failed) {
+        downstream.onError(throwable);
+      }
+    }
+
+    @Override
+    public void onComplete() {
+      if (failed) {
+        return;
+      }
+      boolean complete =
+          state == State.DONE
+              || !receivedInput
+              || (gzip && state == State.HEADER && framing.size() == 0);
+      if (complete) {
+        inflater.end();
+        downstream.onComplete();
+      } else {
+        onDecompressionError(new EOFException("Unexpected end of compressed response"));
+      }
+    }
+
+    private void onDecompressionError(IOException ex) {
+      inflater.end();
+      downstream.onError(ex);
+    }
+
+    private void decompress(byte[] input, int offset, List<ByteBuffer> decompressed)
+        throws IOException {
+      while (offset < input.length) {
+        switch (state) {
+          case HEADER -> {
+            int available = input.length - offset;
+            int previousLength = framing.size();
+            framing.write(input, offset, available);
+            int headerLength = gzipHeaderLength(framing.toByteArray());
+            if (headerLength < 0) {
+              return;
+            }
+            offset += headerLength - previousLength;
+            framing.reset();
+            inflater.reset();
+            crc.reset();
+            state = State.BODY;
+          }
+          case BODY -> {
+            inflater.setInput(input, offset, input.length - offset);
+            inflate(decompressed);
+            offset = input.length - inflater.getRemaining();
+            if (inflater.finished()) {
+              state = gzip ? State.TRAILER : State.DONE;
+            }
+          }
+          case TRAILER -> {
+            int length = Math.min(GZIP_TRAILER_LENGTH - framing.size(), input.length - offset);
+            framing.write(input, offset, length);
+            offset += length;
+            if (framing.size() == GZIP_TRAILER_LENGTH) {
+              verifyGzipTrailer(framing.toByteArray());
+              framing.reset();
+              // another gzip member may follow
+              state = State.HEADER;
+            }
+          }
+          case DONE -> {
+            return;
+          }
+        }
+      }
+    }
+
+    private void inflate(List<ByteBuffer> decompressed) throws IOException {
+      try {
+        // drains the inflater, which can still have output after all input has been used
+        int length;
+        while ((length = inflater.inflate(output)) > 0) {
+          if (gzip) {
+            crc.update(output, 0, length);
+          }
+          decompressed.add(ByteBuffer.wrap(Arrays.copyOf(output, length)));
+        }
+        if (inflater.needsDictionary()) {
+          throw new ZipException("Compressed response requires a dictionary");
+        }
+      } catch (DataFormatException ex) {
+        throw new ZipException(ex.getMessage());
+      }
+    }
+
+    /**
+     * @return the length of the header or -1 if the header is not complete yet
+     */
+    private static int gzipHeaderLength(byte[] header) throws ZipException {
+      if (header.length < GZIP_HEADER_LENGTH) {
+        return -1;
+      }
+      if (readUnsignedShort(header, 0) != GZIP_MAGIC || header[2] != 8) {
+        throw new ZipException("Not in gzip format");
+      }
+      int flags = header[3] & 0xff;
+      int length = GZIP_HEADER_LENGTH;
+      if ((flags & FEXTRA) != 0) {
+        if (header.length < length + 2) {
+          return -1;
+        }
+        length += 2 + readUnsignedShort(header, length);
+      }
+      if ((flags & FNAME) != 0) {
+        length = skipZeroTerminated(header, length);
+      }
+      if ((flags & FCOMMENT) != 0) {
+        length = skipZeroTerminated(header, length);
+      }
+      if ((flags & FHCRC) != 0 && length >= 0) {
+        length += 2;
+      }
+      return length >= 0 && length <= header.length ? length : -1;
+    }
+
+    private static int skipZeroTerminated(byte[] header, int offset) {
+      if (offset < 0) {
+        return -1;
+      }
+      for (int i = offset; i < header.length; i++) {
+        if (header[i] == 0) {
+          return i + 1;
+        }
+      }
+      return -1;
+    }
+
+    private void verifyGzipTrailer(byte[] trailer) throws ZipException {
+      long expectedCrc = readUnsignedInt(trailer, 0);
+      long expectedSize = readUnsignedInt(trailer, 4);
+      if (expectedCrc != crc.getValue()) {
+        throw new ZipException("Corrupt gzip trailer: CRC mismatch");
+      }
+      if (expectedSize != (inflater.getBytesWritten() & 0xffffffffL)) {
+        throw new ZipException("Corrupt gzip trailer: size mismatch");
+      }
+    }
+
+    private static int readUnsignedShort(byte[] bytes, int offset) {
+      return (bytes[offset] & 0xff) | ((bytes[offset + 1] & 0xff) << 8);
+    }
+
+    private static long readUnsignedInt(byte[] bytes, int offset) {
+      return readUnsignedShort(bytes, offset) | ((long) readUnsignedShort(bytes, offset + 2) << 16);
+    }
+  }
+}
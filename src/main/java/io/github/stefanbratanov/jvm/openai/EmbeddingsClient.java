@@ -1,10 +1,8 @@
 package io.github.stefanbratanov.jvm.openai;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.time.Duration;
 import java.util.Optional;
 
 /**
@@ -16,14 +14,12 @@ import java.util.Optional;
 public final class EmbeddingsClient extends OpenAIClient {
 
   private final URI endpoint;
+  private final Optional<RequestHedger> requestHedger;
 
-  EmbeddingsClient(
-      URI baseUrl,
-      String[] authenticationHeaders,
-      HttpClient httpClient,
-      Optional<Duration> requestTimeout) {
-    super(authenticationHeaders, httpClient, requestTimeout);
+  EmbeddingsClient(URI baseUrl, String[] authenticationHeaders, ClientOptions clientOptions) {
+    super(authenticationHeaders, clientOptions);
     endpoint = baseUrl.resolve(Endpoint.EMBEDDINCS.getPath());
+    requestHedger = clientOptions.sharedState().embeddingsRequestHedger();
   }
 
   /**
@@ -37,7 +33,8 @@ public final class EmbeddingsClient extends OpenAIClient {
             .uri(endpoint)
             .POST(createBodyPublisher(request))
             .build();
-    HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    HttpResponse<byte[]> httpResponse =
+        sendHttpRequest(httpRequest, request.model(), requestHedger);
     return deserializeResponse(httpResponse.body(), Embeddings.class);
   }
 }
@@ -1,12 +1,9 @@
 package io.github.stefanbratanov.jvm.openai;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.time.Duration;
 import java.util.List;
-import java.util.Optional;
 
 /**
  * Files are used to upload documents that can be used with features like Assistants and
@@ -18,12 +15,8 @@ public final class FilesClient extends OpenAIClient {
 
   private final URI baseUrl;
 
-  FilesClient(
-      URI baseUrl,
-      String[] authenticationHeaders,
-      HttpClient httpClient,
-      Optional<Duration> requestTimeout) {
-    super(authenticationHeaders, httpClient, requestTimeout);
+  FilesClient(URI baseUrl, String[] authenticationHeaders, ClientOptions clientOptions) {
+    super(authenticationHeaders, clientOptions);
     this.baseUrl = baseUrl;
   }
 
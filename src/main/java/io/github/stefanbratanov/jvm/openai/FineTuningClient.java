@@ -2,10 +2,8 @@ package io.github.stefanbratanov.jvm.openai;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -19,12 +17,8 @@ public final class FineTuningClient extends OpenAIClient {
 
   private final URI baseUrl;
 
-  FineTuningClient(
-      URI baseUrl,
-      String[] authenticationHeaders,
-      HttpClient httpClient,
-      Optional<Duration> requestTimeout) {
-    super(authenticationHeaders, httpClient, requestTimeout);
+  FineTuningClient(URI baseUrl, String[] authenticationHeaders, ClientOptions clientOptions) {
+    super(authenticationHeaders, clientOptions);
     this.baseUrl = baseUrl;
   }
 
@@ -75,6 +69,20 @@ public final class FineTuningClient extends OpenAIClient {
     }
   }
 
+  /**
+   * Same as {@link #listFineTuningJobs(Optional, Optional)} but returns a {@link PaginatedIterable}
+   * which lazily fetches all fine-tuning jobs page by page.
+   */
+  public PaginatedIterable<FineTuningJob> listAllFineTuningJobs(
+      Optional<Integer> limit, Optional<String> after) {
+    return new PaginatedIterable<>(
+        after,
+        pageAfter -> listFineTuningJobs(limit, pageAfter),
+        PaginatedFineTuningJobs::data,
+        PaginatedFineTuningJobs::getLastJobId,
+        PaginatedFineTuningJobs::hasMore);
+  }
+
   /**
    * Get status updates for a fine-tuning job.
    *
@@ -110,6 +118,20 @@ public final class FineTuningClient extends OpenAIClient {
     }
   }
 
+  /**
+   * Same as {@link #listFineTuningJobEvents(String, Optional, Optional)} but returns a {@link
+   * PaginatedIterable} which lazily fetches all events of the fine-tuning job page by page.
+   */
+  public PaginatedIterable<FineTuningJobEvent> listAllFineTuningJobEvents(
+      String fineTuningJobId, Optional<Integer> limit, Optional<String> after) {
+    return new PaginatedIterable<>(
+        after,
+        pageAfter -> listFineTuningJobEvents(fineTuningJobId, limit, pageAfter),
+        PaginatedFineTuningEvents::data,
+        PaginatedFineTuningEvents::getLastEventId,
+        PaginatedFineTuningEvents::hasMore);
+  }
+
   /**
    * List checkpoints for a fine-tuning job.
    *
@@ -141,6 +163,20 @@ public final class FineTuningClient extends OpenAIClient {
   public record PaginatedFineTuningCheckpoints(
       List<FineTuningJobCheckpoint> data, String firstId, String lastId, boolean hasMore) {}
 
+  /**
+   * Same as {@link #listFineTuningCheckpoints(String, Optional, Optional)} but returns a {@link
+   * PaginatedIterable} which lazily fetches all checkpoints of the fine-tuning job page by page.
+   */
+  public PaginatedIterable<FineTuningJobCheckpoint> listAllFineTuningCheckpoints(
+      String fineTuningJobId, Optional<Integer> limit, Optional<String> after) {
+    return new PaginatedIterable<>(
+        after,
+        pageAfter -> listFineTuningCheckpoints(fineTuningJobId, limit, pageAfter),
+        PaginatedFineTuningCheckpoints::data,
+        PaginatedFineTuningCheckpoints::lastId,
+        PaginatedFineTuningCheckpoints::hasMore);
+  }
+
   /**
    * Get info about a fine-tuning job.
    *
@@ -46,13 +46,24 @@ public record Function(
     /**
      * @param parameters The parameters the functions accepts, described as a JSON Schema object.
      *     The JSON schema should be defined as {@link Map} where a value could be a raw escaped
-     *     JSON {@link String} and it will be serialized without escaping.
+     *     JSON {@link String} and it will be serialized without escaping. To avoid parsing the same
+     *     JSON every time a function is created, use {@link RawJson} values instead.
      */
     public Builder parameters(Map<String, Object> parameters) {
       this.parameters = Optional.of(parameters);
       return this;
     }
 
+    /**
+     * @param type a record whose strict JSON schema, derived using {@link
+     *     StructuredOutputs#schema(Class)}, describes the parameters. {@link #strict(boolean)}
+     *     should be set to true.
+     */
+    public Builder parameters(Class<? extends Record> type) {
+      this.parameters = Optional.of(StructuredOutputs.schema(type));
+      return this;
+    }
+
     /**
      * @param strict Whether to enable strict schema adherence when generating the function call. If
      *     set to true, the model will follow the exact schema defined in the parameters field. Only
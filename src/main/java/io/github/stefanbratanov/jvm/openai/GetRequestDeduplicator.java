@@ -0,0 +1,123 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Shares one in-flight response between concurrent identical GET requests. Requests are identical
+ * when they have the same URI and headers, which include the authentication headers. Optionally,
+ * successful responses are also cached for a short time. Requests which need the current state,
+ * such as polling, can skip the cached responses.
+ */
+final class GetRequestDeduplicator {
+
+  private final Optional<Duration> timeToLive;
+
+  private final Map<Key, CompletableFuture<HttpResponse<byte[]>>> inFlight =
+      new ConcurrentHashMap<>();
+  private final Map<Key, CachedResponse> cachedResponses = new ConcurrentHashMap<>();
+  private final AtomicLong nextPurgeAt = new AtomicLong(System.nanoTime());
+
+  GetRequestDeduplicator(Optional<Duration> timeToLive) {
+    this.timeToLive = timeToLive;
+  }
+
+  /** Same as {@link #send(HttpRequest, Function, boolean)} but may return a cached response */
+  CompletableFuture<HttpResponse<byte[]>> send(
+      HttpRequest httpRequest,
+      Function<HttpRequest, CompletableFuture<HttpResponse<byte[]>>> sender) {
+    return send(httpRequest, sender, true);
+  }
+
+  /**
+   * @param httpRequest the GET request
+   * @param sender sends the request if there is no in-flight or cached response for it
+   * @param useCachedResponse whether a cached response can be returned. The response to the
+   *     request is cached either way.
+   * @return a future which callers can cancel without affecting each other
+   */
+  CompletableFuture<HttpResponse<byte[]>> send(
+      HttpRequest httpRequest,
+      Function<HttpRequest, CompletableFuture<HttpResponse<byte[]>>> sender,
+      boolean useCachedResponse) {
+    Key key = new Key(httpRequest.uri(), httpRequest.headers());
+    if (useCachedResponse) {
+      Optional<HttpResponse<byte[]>> cachedResponse = getCachedResponse(key);
+      if (cachedResponse.isPresent()) {
+        return CompletableFuture.completedFuture(cachedResponse.get());
+      }
+    }
+    CompletableFuture<HttpResponse<byte[]>> response = new CompletableFuture<>();
+    CompletableFuture<HttpResponse<byte[]>> existingResponse = inFlight.putIfAbsent(key, response);
+    if (existingResponse != null) {
+      return existingResponse.copy();
+    }
+    CompletableFuture<HttpResponse<byte[]>> sentResponse;
+    try {
+      sentResponse = sender.apply(httpRequest);
+    } catch (RuntimeException ex) {
+      sentResponse = CompletableFuture.failedFuture(ex);
+    }
+    sentResponse.whenComplete(
+        (httpResponse, ex) -> {
+          if (ex == null) {
+            timeToLive.ifPresent(ttl -> cache(key, httpResponse, ttl));
+          }
+          inFlight.remove(key, response);
+          if (ex == null) {
+            response.complete(httpResponse);
+          } else {
+            response.completeExceptionally(ex);
+          }
+        });
+    return response.copy();
+  }
+
+  private Optional<HttpResponse<byte[]>> getCachedResponse(Key key) {
+    CachedResponse cachedResponse = cachedResponses.get(key);
+    if (cachedResponse == null) {
+      return Optional.empty();
+    }
+    if (cachedResponse.isExpired(System.nanoTime())) {
+      cachedResponses.remove(key, cachedResponse);
+      return Optional.empty();
+    }
+    return Optional.of(cachedResponse.httpResponse());
+  }
+
+  private void cache(Key key, HttpResponse<byte[]> httpResponse, Duration ttl) {
+    long now = System.nanoTime();
+    cachedResponses.put(key, new CachedResponse(httpResponse, now + ttl.toNanos()));
+    purgeExpiredResponses(now, ttl);
+  }
+
+  /**
+   * Expired responses are only removed when they are requested again, so they are purged here, at
+   * most once per time to live, instead of scanning all responses every time one is cached.
+   */
+  private void purgeExpiredResponses(long now, Duration ttl) {
+    long purgeAt = nextPurgeAt.get();
+    if (now - purgeAt < 0 || !nextPurgeAt.compareAndSet(purgeAt, now + ttl.toNanos())) {
+      return;
+    }
+    cachedResponses.values().removeIf(cachedResponse -> cachedResponse.isExpired(now));
+  }
+
+  private record Key(URI uri, HttpHeaders headers) {}
+
+  private record CachedResponse(HttpResponse<byte[]> httpResponse, long expiresAtNanos) {
+
+    boolean isExpired(long now) {
+      return now - expiresAtNanos >= 0;
+    }
+  }
+}
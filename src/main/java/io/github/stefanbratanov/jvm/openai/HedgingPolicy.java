@@ -0,0 +1,74 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.time.Duration;
+
+/**
+ * Configures hedging of latency-critical requests, such as {@link
+ * ChatClient#createChatCompletion(CreateChatCompletionRequest)} and {@link
+ * EmbeddingsClient#createEmbeddings(EmbeddingsRequest)}. If no response has arrived after the
+ * {@code percentile} of the recent response latencies, a duplicate request is sent and the first
+ * response is used, while the other request is cancelled.
+ *
+ * @param percentile the percentile of the recent response latencies after which a duplicate request
+ *     is sent
+ * @param minDelay the minimum delay before a duplicate request is sent
+ * @param maxHedgeRatio the maximum share of requests which are duplicated
+ */
+public record HedgingPolicy(double percentile, Duration minDelay, double maxHedgeRatio) {
+
+  public static HedgingPolicy defaults() {
+    return new Builder().build();
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+
+    private static final double DEFAULT_PERCENTILE = 95;
+    private static final Duration DEFAULT_MIN_DELAY = Duration.ofMillis(10);
+    private static final double DEFAULT_MAX_HEDGE_RATIO = 0.05;
+
+    private double percentile = DEFAULT_PERCENTILE;
+    private Duration minDelay = DEFAULT_MIN_DELAY;
+    private double maxHedgeRatio = DEFAULT_MAX_HEDGE_RATIO;
+
+    /**
+     * @param percentile the percentile of the recent response latencies after which a duplicate
+     *     request is sent. Must be between 0 and 100. Defaults to 95.
+     */
+    public Builder percentile(double percentile) {
+      if (percentile <= 0 || percentile >= 100) {
+        throw new IllegalArgumentException("percentile must be between 0 and 100");
+      }
+      this.percentile = percentile;
+      return this;
+    }
+
+    /**
+     * @param minDelay the minimum delay before a duplicate request is sent. Defaults to 10
+     *     milliseconds.
+     */
+    public Builder minDelay(Duration minDelay) {
+      this.minDelay = minDelay;
+      return this;
+    }
+
+    /**
+     * @param maxHedgeRatio the maximum share of requests which are duplicated. Must be between 0
+     *     and 1. Defaults to 0.05.
+     */
+    public Builder maxHedgeRatio(double maxHedgeRatio) {
+      if (maxHedgeRatio <= 0 || maxHedgeRatio > 1) {
+        throw new IllegalArgumentException("maxHedgeRatio must be between 0 and 1");
+      }
+      this.maxHedgeRatio = maxHedgeRatio;
+      return this;
+    }
+
+    public HedgingPolicy build() {
+      return new HedgingPolicy(percentile, minDelay, maxHedgeRatio);
+    }
+  }
+}
@@ -1,11 +1,8 @@
 package io.github.stefanbratanov.jvm.openai;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.time.Duration;
-import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -17,12 +14,8 @@ public final class ImagesClient extends OpenAIClient {
 
   private final URI baseUrl;
 
-  ImagesClient(
-      URI baseUrl,
-      String[] authenticationHeaders,
-      HttpClient httpClient,
-      Optional<Duration> requestTimeout) {
-    super(authenticationHeaders, httpClient, requestTimeout);
+  ImagesClient(URI baseUrl, String[] authenticationHeaders, ClientOptions clientOptions) {
+    super(authenticationHeaders, clientOptions);
     this.baseUrl = baseUrl;
   }
 
@@ -45,8 +38,9 @@ public final class ImagesClient extends OpenAIClient {
   public CompletableFuture<Images> createImageAsync(CreateImageRequest request) {
     HttpRequest httpRequest = createImagePostRequest(request);
 
-    return sendHttpRequestAsync(httpRequest)
-        .thenApply(httpResponse -> deserializeResponse(httpResponse.body(), Images.class));
+    return thenApplyCancellable(
+        sendHttpRequestAsync(httpRequest),
+        httpResponse -> deserializeResponse(httpResponse.body(), Images.class));
   }
 
   /**
@@ -68,8 +62,9 @@ public final class ImagesClient extends OpenAIClient {
   public CompletableFuture<Images> editImageAsync(EditImageRequest request) {
     HttpRequest httpRequest = editImagePostRequest(request);
 
-    return sendHttpRequestAsync(httpRequest)
-        .thenApply(httpResponse -> deserializeResponse(httpResponse.body(), Images.class));
+    return thenApplyCancellable(
+        sendHttpRequestAsync(httpRequest),
+        httpResponse -> deserializeResponse(httpResponse.body(), Images.class));
   }
 
   /**
@@ -91,8 +86,9 @@ public final class ImagesClient extends OpenAIClient {
   public CompletableFuture<Images> createImageVariationAsync(CreateImageVariationRequest request) {
     HttpRequest httpRequest = createImageVariationPostRequest(request);
 
-    return sendHttpRequestAsync(httpRequest)
-        .thenApply(httpResponse -> deserializeResponse(httpResponse.body(), Images.class));
+    return thenApplyCancellable(
+        sendHttpRequestAsync(httpRequest),
+        httpResponse -> deserializeResponse(httpResponse.body(), Images.class));
   }
 
   private HttpRequest createImagePostRequest(CreateImageRequest request) {
@@ -1,10 +1,8 @@
 package io.github.stefanbratanov.jvm.openai;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -19,12 +17,8 @@ public final class InvitesClient extends OpenAIClient {
 
   private final URI baseUrl;
 
-  InvitesClient(
-      URI baseUrl,
-      String[] authenticationHeaders,
-      HttpClient httpClient,
-      Optional<Duration> requestTimeout) {
-    super(authenticationHeaders, httpClient, requestTimeout);
+  InvitesClient(URI baseUrl, String[] authenticationHeaders, ClientOptions clientOptions) {
+    super(authenticationHeaders, clientOptions);
     this.baseUrl = baseUrl;
   }
 
@@ -52,6 +46,19 @@ public final class InvitesClient extends OpenAIClient {
   public record PaginatedInvites(
       List<Invite> data, String firstId, String lastId, boolean hasMore) {}
 
+  /**
+   * Same as {@link #listInvites(Optional, Optional)} but returns a {@link PaginatedIterable} which
+   * lazily fetches all invites page by page.
+   */
+  public PaginatedIterable<Invite> listAllInvites(Optional<String> after, Optional<Integer> limit) {
+    return new PaginatedIterable<>(
+        after,
+        pageAfter -> listInvites(pageAfter, limit),
+        PaginatedInvites::data,
+        PaginatedInvites::lastId,
+        PaginatedInvites::hasMore);
+  }
+
   /**
    * Create an invite for a user to the organization. The invite must be accepted by the user before
    * they have access to the organization.
@@ -44,7 +44,8 @@ public record JsonSchema(
     /**
      * @param schema The schema for the response format, described as a JSON Schema object. The JSON
      *     schema should be defined as {@link Map} where a value could be a raw escaped JSON {@link
-     *     String} and it will be serialized without escaping.
+     *     String} and it will be serialized without escaping. To avoid parsing the same JSON every
+     *     time a schema is created, use {@link RawJson} values instead.
      */
     public Builder schema(Map<String, Object> schema) {
       this.schema = Optional.of(schema);
@@ -0,0 +1,39 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.util.function.Supplier;
+
+/**
+ * A value which is created on first access. Once it is created, it is read without locking.
+ *
+ * @param <T> the type of the value, which must not be null
+ */
+final class Lazy<T> implements Supplier<T> {
+
+  private Supplier<T> supplier;
+  private volatile T value;
+
+  Lazy(Supplier<T> supplier) {
+    this.supplier = supplier;
+  }
+
+  @Override
+  public T get() {
+    T result = value;
+    if (result == null) {
+      synchronized (this) {
+        result = value;
+        if (result == null) {
+          result = supplier.get();
+          value = result;
+          // the supplier is no longer needed, so what it captured can be collected
+          supplier = null;
+        }
+      }
+    }
+    return result;
+  }
+
+  boolean isCreated() {
+    return value != null;
+  }
+}
@@ -18,6 +18,19 @@ public record ListAuditLogsQueryParameters(
     return new Builder();
   }
 
+  ListAuditLogsQueryParameters withAfter(Optional<String> after) {
+    return new ListAuditLogsQueryParameters(
+        effectiveAt,
+        projectIds,
+        eventTypes,
+        actorIds,
+        actorEmails,
+        resourceIds,
+        after,
+        before,
+        limit);
+  }
+
   public record EffectiveAt(
       Optional<Integer> gt, Optional<Integer> gte, Optional<Integer> lt, Optional<Integer> lte) {
 
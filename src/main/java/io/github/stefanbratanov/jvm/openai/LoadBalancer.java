@@ -0,0 +1,552 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Spreads the API requests of an {@link OpenAI} instance across several weighted base URLs, for
+ * example regional gateways or OpenAI-compatible backends.
+ *
+ * <p>Every request picks two base URLs at random, in proportion to their weights, and is sent to
+ * the one with the lower load, as defined by the {@link Strategy}. A base URL which fails with a
+ * 5xx response, a timeout or a connection error a number of times in a row is ejected for a while.
+ *
+ * <p>A failed request is sent again to another base URL, until each one was tried once, if sending
+ * it again is safe. That is the case for idempotent requests, such as GET and DELETE, and for
+ * requests which failed to connect, so they never reached the base URL. Other requests, such as
+ * the POST requests which create completions, are only sent again if {@link
+ * Builder#failoverNonIdempotentRequests(boolean)} is enabled, since the first base URL may have
+ * processed them already.
+ *
+ * @see OpenAI.Builder#loadBalancer(LoadBalancer)
+ */
+public final class LoadBalancer {
+
+  private static final double LATENCY_DECAY_NANOS = Duration.ofSeconds(10).toNanos();
+
+  private static final Set<String> IDEMPOTENT_METHODS =
+      Set.of("GET", "HEAD", "OPTIONS", "PUT", "DELETE");
+
+  /** How the load of a base URL is measured */
+  public enum Strategy {
+    /** the number of requests which are waiting for a response */
+    LEAST_OUTSTANDING_REQUESTS,
+    /**
+     * the exponentially weighted moving average of the response latency, multiplied by the number
+     * of requests which are waiting for a response
+     */
+    LATENCY_EWMA
+  }
+
+  private final List<Backend> backends;
+  private final Strategy strategy;
+  private final int ejectionThreshold;
+  private final Duration ejectionDuration;
+  private final boolean failoverNonIdempotentRequests;
+
+  private LoadBalancer(
+      List<BaseUrl> baseUrls,
+      Strategy strategy,
+      int ejectionThreshold,
+      Duration ejectionDuration,
+      boolean failoverNonIdempotentRequests) {
+    this.backends = baseUrls.stream().map(Backend::new).toList();
+    this.strategy = strategy;
+    this.ejectionThreshold = ejectionThreshold;
+    this.ejectionDuration = ejectionDuration;
+    this.failoverNonIdempotentRequests = failoverNonIdempotentRequests;
+  }
+
+  /**
+   * @return the base URLs which are currently not ejected
+   */
+  public List<URI> healthyBaseUrls() {
+    long now = System.nanoTime();
+    return backends.stream()
+        .filter(backend -> !backend.isEjected(now))
+        .map(backend -> backend.baseUrl.url())
+        .toList();
+  }
+
+  /** The base URL which the clients use to create their requests, before they are routed */
+  URI primaryBaseUrl() {
+    return backends.get(0).baseUrl.url();
+  }
+
+  /** Whether any base URL authenticates with its own API key instead of the one of the request */
+  boolean hasBaseUrlApiKeys() {
+    return backends.stream().anyMatch(backend -> backend.baseUrl.apiKey().isPresent());
+  }
+
+  <T> HttpResponse<T> send(
+      HttpClient httpClient, HttpRequest httpRequest, HttpResponse.BodyHandler<T> bodyHandler)
+      throws IOException, InterruptedException {
+    Set<Backend> tried = new HashSet<>();
+    while (true) {
+      Backend backend = select(tried);
+      tried.add(backend);
+      boolean canFailover = tried.size() < backends.size();
+      long start = backend.onRequestStart();
+      HttpResponse<T> httpResponse;
+      try {
+        httpResponse = httpClient.send(route(httpRequest, backend), bodyHandler);
+      } catch (IOException ex) {
+        onFailure(backend, start);
+        if (canFailover && canSendAgain(httpRequest, ex)) {
+          continue;
+        }
+        throw ex;
+      } catch (InterruptedException | RuntimeException ex) {
+        backend.onRequestEnd();
+        throw ex;
+      }
+      if (isServerError(httpResponse)) {
+        onFailure(backend, start);
+        if (canFailover && canSendAgain(httpRequest, null)) {
+          discard(httpResponse);
+          continue;
+        }
+      } else {
+        backend.onSuccess(start);
+      }
+      return httpResponse;
+    }
+  }
+
+  <T> CompletableFuture<HttpResponse<T>> sendAsync(
+      HttpClient httpClient, HttpRequest httpRequest, HttpResponse.BodyHandler<T> bodyHandler) {
+    CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+    AtomicReference<CompletableFuture<HttpResponse<T>>> currentAttempt = new AtomicReference<>();
+    // cancelling the result cancels the request in flight, which also stops the failover
+    result.whenComplete(
+        (httpResponse, ex) -> {
+          CompletableFuture<HttpResponse<T>> attempt = currentAttempt.get();
+          if (result.isCancelled() && attempt != null) {
+            attempt.cancel(true);
+          }
+        });
+    sendAsync(httpClient, httpRequest, bodyHandler, new HashSet<>(), result, currentAttempt);
+    return result;
+  }
+
+  private <T> void sendAsync(
+      HttpClient httpClient,
+      HttpRequest httpRequest,
+      HttpResponse.BodyHandler<T> bodyHandler,
+      Set<Backend> tried,
+      CompletableFuture<HttpResponse<T>> result,
+      AtomicReference<CompletableFuture<HttpResponse<T>>> currentAttempt) {
+    Backend backend = select(tried);
+    tried.add(backend);
+    boolean canFailover = tried.size() < backends.size();
+    long start = backend.onRequestStart();
+    CompletableFuture<HttpResponse<T>> attempt =
+        httpClient.sendAsync(route(httpRequest, backend), bodyHandler);
+    currentAttempt.set(attempt);
+    if (result.isDone()) {
+      attempt.cancel(true);
+    }
+    attempt.whenComplete(
+        (httpResponse, ex) -> {
+          Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+          if (cause == null && !isServerError(httpResponse)) {
+            backend.onSuccess(start);
+            completeOrDiscard(result, httpResponse);
+            return;
+          }
+          if (cause != null && !(cause instanceof IOException)) {
+            backend.onRequestEnd();
+            result.completeExceptionally(cause);
+            return;
+          }
+          onFailure(backend, start);
+          if (canFailover && canSendAgain(httpRequest, cause) && !result.isDone()) {
+            if (httpResponse != null) {
+              discard(httpResponse);
+            }
+            sendAsync(httpClient, httpRequest, bodyHandler, tried, result, currentAttempt);
+          } else if (cause == null) {
+            completeOrDiscard(result, httpResponse);
+          } else {
+            result.completeExceptionally(cause);
+          }
+        });
+  }
+
+  /**
+   * @param failure the exception of the failed request or null if it failed with a 5xx response
+   */
+  private boolean canSendAgain(HttpRequest httpRequest, Throwable failure) {
+    return failoverNonIdempotentRequests
+        || IDEMPOTENT_METHODS.contains(httpRequest.method())
+        // the request was not sent, because the connection could not be established
+        || failure instanceof ConnectException
+        || failure instanceof HttpConnectTimeoutException;
+  }
+
+  private static <T> void completeOrDiscard(
+      CompletableFuture<HttpResponse<T>> result, HttpResponse<T> httpResponse) {
+    if (!result.complete(httpResponse)) {
+      // the result was cancelled after the response arrived
+      discard(httpResponse);
+    }
+  }
+
+  private Backend select(Set<Backend> tried) {
+    long now = System.nanoTime();
+    List<Backend> candidates = new ArrayList<>();
+    for (Backend backend : backends) {
+      if (!tried.contains(backend) && !backend.isEjected(now)) {
+        candidates.add(backend);
+      }
+    }
+    if (candidates.isEmpty()) {
+      // all remaining base URLs are ejected, so they are tried anyway
+      backends.stream().filter(backend -> !tried.contains(backend)).forEach(candidates::add);
+    }
+    if (candidates.size() == 1) {
+      return candidates.get(0);
+    }
+    Backend first = pickWeighted(candidates, null);
+    Backend second = pickWeighted(candidates, first);
+    return load(second) < load(first) ? second : first;
+  }
+
+  private static Backend pickWeighted(List<Backend> candidates, Backend excluded) {
+    int totalWeight = 0;
+    for (Backend candidate : candidates) {
+      if (candidate != excluded) {
+        totalWeight += candidate.baseUrl.weight();
+      }
+    }
+    int random = ThreadLocalRandom.current().nextInt(totalWeight);
+    for (Backend candidate : candidates) {
+      if (candidate != excluded) {
+        random -= candidate.baseUrl.weight();
+        if (random < 0) {
+          return candidate;
+        }
+      }
+    }
+    throw new IllegalStateException("No base URL was picked");
+  }
+
+  private double load(Backend backend) {
+    return switch (strategy) {
+      case LEAST_OUTSTANDING_REQUESTS -> backend.outstandingRequests.get();
+      case LATENCY_EWMA -> backend.latencyEwma() * (backend.outstandingRequests.get() + 1);
+    };
+  }
+
+  private void onFailure(Backend backend, long start) {
+    backend.onFailure(start, ejectionThreshold, ejectionDuration);
+  }
+
+  private HttpRequest route(HttpRequest httpRequest, Backend backend) {
+    URI relativeUri = primaryBaseUrl().relativize(httpRequest.uri());
+    HttpRequest.Builder httpRequestBuilder =
+        HttpRequest.newBuilder(httpRequest, (name, value) -> !backend.overridesHeader(name))
+            .uri(backend.baseUrl.url().resolve(relativeUri));
+    if (backend.authenticationHeaders.length > 0) {
+      httpRequestBuilder.headers(backend.authenticationHeaders);
+    }
+    return httpRequestBuilder.build();
+  }
+
+  private static boolean isServerError(HttpResponse<?> httpResponse) {
+    return httpResponse.statusCode() >= 500;
+  }
+
+  private static void discard(HttpResponse<?> httpResponse) {
+    if (httpResponse.body() instanceof Stream<?> stream) {
+      stream.close();
+    }
+  }
+
+  private static class Backend {
+
+    private static final Set<String> AUTHENTICATION_HEADERS =
+        Set.of(
+            Constants.AUTHORIZATION_HEADER.toLowerCase(),
+            Constants.OPENAI_ORGANIZATION_HEADER.toLowerCase(),
+            Constants.OPENAI_PROJECT_HEADER.toLowerCase());
+
+    private final BaseUrl baseUrl;
+    private final String[] authenticationHeaders;
+    private final AtomicInteger outstandingRequests = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    private volatile long ejectedUntil;
+    private volatile boolean ejected;
+
+    private double latencyEwma;
+    private long latencyUpdatedAt;
+
+    private Backend(BaseUrl baseUrl) {
+      this.baseUrl = baseUrl;
+      List<String> headers = new ArrayList<>();
+      baseUrl
+          .apiKey()
+          .ifPresent(
+              apiKey -> {
+                headers.add(Constants.AUTHORIZATION_HEADER);
+                headers.add("Bearer " + apiKey);
+              });
+      baseUrl
+          .organization()
+          .ifPresent(
+              organization -> {
+                headers.add(Constants.OPENAI_ORGANIZATION_HEADER);
+                headers.add(organization);
+              });
+      baseUrl
+          .project()
+          .ifPresent(
+              project -> {
+                headers.add(Constants.OPENAI_PROJECT_HEADER);
+                headers.add(project);
+              });
+      this.authenticationHeaders = headers.toArray(new String[] {});
+    }
+
+    private boolean overridesHeader(String name) {
+      return authenticationHeaders.length > 0
+          && AUTHENTICATION_HEADERS.contains(name.toLowerCase());
+    }
+
+    private boolean isEjected(long now) {
+      return ejected && now - ejectedUntil < 0;
+    }
+
+    private long onRequestStart() {
+      outstandingRequests.incrementAndGet();
+      return System.nanoTime();
+    }
+
+    private void onRequestEnd() {
+      outstandingRequests.decrementAndGet();
+    }
+
+    private void onSuccess(long start) {
+      onRequestEnd();
+      consecutiveFailures.set(0);
+      recordLatency(start);
+    }
+
+    private void onFailure(long start, int ejectionThreshold, Duration ejectionDuration) {
+      onRequestEnd();
+      // failures count as latency too, so slow timeouts also steer traffic away
+      recordLatency(start);
+      if (consecutiveFailures.incrementAndGet() >= ejectionThreshold) {
+        consecutiveFailures.set(0);
+        ejectedUntil = System.nanoTime() + ejectionDuration.toNanos();
+        ejected = true;
+      }
+    }
+
+    private synchronized double latencyEwma() {
+      return latencyEwma;
+    }
+
+    private synchronized void recordLatency(long start) {
+      long now = System.nanoTime();
+      long latency = now - start;
+      if (latencyUpdatedAt == 0) {
+        latencyEwma = latency;
+      } else {
+        // older measurements lose their weight over time rather than per request
+        double weight = Math.exp(-(now - latencyUpdatedAt) / LATENCY_DECAY_NANOS);
+        latencyEwma = latencyEwma * weight + latency * (1 - weight);
+      }
+      latencyUpdatedAt = now;
+    }
+  }
+
+  /**
+   * @param url the url which exposes the OpenAI API
+   * @param weight the share of the requests sent to this url relative to the other urls
+   * @param apiKey the API key used for requests to this url. If none is set, the API key of the
+   *     {@link OpenAI} instance is used. It can't be combined with {@link
+   *     OpenAI.Builder#apiKeyProvider(java.util.function.Supplier)} or {@link
+   *     OpenAI#withApiKey(String)}, which choose the API key per request.
+   * @param organization the organization used for requests to this url
+   * @param project the project used for requests to this url
+   */
+  public record BaseUrl(
+      URI url,
+      int weight,
+      Optional<String> apiKey,
+      Optional<String> organization,
+      Optional<String> project) {
+
+    /**
+     * @param url the url which exposes the OpenAI API
+     */
+    public static Builder newBuilder(String url) {
+      return new Builder(url);
+    }
+
+    public static class Builder {
+
+      private static final int DEFAULT_WEIGHT = 1;
+
+      private final String url;
+
+      private int weight = DEFAULT_WEIGHT;
+      private Optional<String> apiKey = Optional.empty();
+      private Optional<String> organization = Optional.empty();
+      private Optional<String> project = Optional.empty();
+
+      private Builder(String url) {
+        this.url = url;
+      }
+
+      /**
+       * @param weight the share of the requests sent to this url relative to the other urls. Must
+       *     be at least 1. Defaults to 1.
+       */
+      public Builder weight(int weight) {
+        if (weight < 1) {
+          throw new IllegalArgumentException("weight must be at least 1");
+        }
+        this.weight = weight;
+        return this;
+      }
+
+      /**
+       * @param apiKey the API key used for requests to this url, instead of the API key of the
+       *     {@link OpenAI} instance. It can't be combined with {@link
+       *     OpenAI.Builder#apiKeyProvider(java.util.function.Supplier)} or {@link
+       *     OpenAI#withApiKey(String)}.
+       */
+      public Builder apiKey(String apiKey) {
+        this.apiKey = Optional.of(apiKey);
+        return this;
+      }
+
+      /**
+       * @param organization the organization used for requests to this url
+       */
+      public Builder organization(String organization) {
+        this.organization = Optional.of(organization);
+        return this;
+      }
+
+      /**
+       * @param project the project used for requests to this url
+       */
+      public Builder project(String project) {
+        this.project = Optional.of(project);
+        return this;
+      }
+
+      public BaseUrl build() {
+        String normalizedUrl = url.endsWith("/") ? url : url + "/";
+        return new BaseUrl(URI.create(normalizedUrl), weight, apiKey, organization, project);
+      }
+    }
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+
+    private static final int DEFAULT_EJECTION_THRESHOLD = 3;
+    private static final Duration DEFAULT_EJECTION_DURATION = Duration.ofSeconds(30);
+
+    private final List<BaseUrl> baseUrls = new ArrayList<>();
+
+    private Strategy strategy = Strategy.LEAST_OUTSTANDING_REQUESTS;
+    private int ejectionThreshold = DEFAULT_EJECTION_THRESHOLD;
+    private Duration ejectionDuration = DEFAULT_EJECTION_DURATION;
+    private boolean failoverNonIdempotentRequests = false;
+
+    /**
+     * @param url the url which exposes the OpenAI API
+     * @param weight the share of the requests sent to this url relative to the other urls
+     */
+    public Builder baseUrl(String url, int weight) {
+      return baseUrl(BaseUrl.newBuilder(url).weight(weight).build());
+    }
+
+    /**
+     * @param baseUrl a url which exposes the OpenAI API with its own weight and authentication
+     */
+    public Builder baseUrl(BaseUrl baseUrl) {
+      baseUrls.add(baseUrl);
+      return this;
+    }
+
+    /**
+     * @param strategy how the load of a base URL is measured. Defaults to {@link
+     *     Strategy#LEAST_OUTSTANDING_REQUESTS}.
+     */
+    public Builder strategy(Strategy strategy) {
+      this.strategy = strategy;
+      return this;
+    }
+
+    /**
+     * @param ejectionThreshold the number of failures in a row after which a base URL is ejected.
+     *     Must be at least 1. Defaults to 3.
+     */
+    public Builder ejectionThreshold(int ejectionThreshold) {
+      if (ejectionThreshold < 1) {
+        throw new IllegalArgumentException("ejectionThreshold must be at least 1");
+      }
+      this.ejectionThreshold = ejectionThreshold;
+      return this;
+    }
+
+    /**
+     * @param ejectionDuration how long an ejected base URL receives no requests, unless all base
+     *     URLs are ejected. Defaults to 30 seconds.
+     */
+    public Builder ejectionDuration(Duration ejectionDuration) {
+      this.ejectionDuration = ejectionDuration;
+      return this;
+    }
+
+    /**
+     * @param failoverNonIdempotentRequests whether requests which are not idempotent, such as the
+     *     POST requests which create completions, are also sent to another base URL after a 5xx
+     *     response or a timeout. The failed base URL may have processed them already, so this can
+     *     duplicate their effects and costs. Defaults to false.
+     */
+    public Builder failoverNonIdempotentRequests(boolean failoverNonIdempotentRequests) {
+      this.failoverNonIdempotentRequests = failoverNonIdempotentRequests;
+      return this;
+    }
+
+    public LoadBalancer build() {
+      if (baseUrls.isEmpty()) {
+        throw new IllegalStateException("At least one base URL must be added");
+      }
+      return new LoadBalancer(
+          List.copyOf(baseUrls),
+          strategy,
+          ejectionThreshold,
+          ejectionDuration,
+          failoverNonIdempotentRequests);
+    }
+  }
+}
@@ -1,10 +1,8 @@
 package io.github.stefanbratanov.jvm.openai;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -20,12 +18,8 @@ public final class MessagesClient extends OpenAIAssistantsClient {
 
   private final URI baseUrl;
 
-  MessagesClient(
-      URI baseUrl,
-      String[] authenticationHeaders,
-      HttpClient httpClient,
-      Optional<Duration> requestTimeout) {
-    super(authenticationHeaders, httpClient, requestTimeout);
+  MessagesClient(URI baseUrl, String[] authenticationHeaders, ClientOptions clientOptions) {
+    super(authenticationHeaders, clientOptions);
     this.baseUrl = baseUrl;
   }
 
@@ -73,6 +67,22 @@ public final class MessagesClient extends OpenAIAssistantsClient {
   public record PaginatedThreadMessages(
       List<ThreadMessage> data, String firstId, String lastId, boolean hasMore) {}
 
+  /**
+   * Same as {@link #listMessages(String, PaginationQueryParameters, Optional)} but returns a {@link
+   * PaginatedIterable} which lazily fetches all messages page by page.
+   */
+  public PaginatedIterable<ThreadMessage> listAllMessages(
+      String threadId,
+      PaginationQueryParameters paginationQueryParameters,
+      Optional<String> runId) {
+    return new PaginatedIterable<>(
+        paginationQueryParameters.after(),
+        after -> listMessages(threadId, paginationQueryParameters.withAfter(after), runId),
+        PaginatedThreadMessages::data,
+        PaginatedThreadMessages::lastId,
+        PaginatedThreadMessages::hasMore);
+  }
+
   /**
    * Retrieve a message.
    *
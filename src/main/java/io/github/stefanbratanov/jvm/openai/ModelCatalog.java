@@ -0,0 +1,202 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * An in-memory catalog of the models available in the API. The catalog is loaded once when it is
+ * created and then refreshed in the background on an interval, so lookups never do network I/O.
+ * If a background refresh fails, or doesn't complete within the refresh interval, the models of
+ * the last successful refresh are kept.
+ *
+ * <p>Instances are thread-safe and should be closed when no longer needed to stop the background
+ * refresh. The refreshes of all catalogs are scheduled on a single shared daemon thread, which
+ * only starts the requests, so a slow request doesn't delay the refreshes of other catalogs.
+ *
+ * @see ModelsClient#modelCatalog(Duration)
+ */
+public final class ModelCatalog implements AutoCloseable {
+
+  private static final Map<String, OpenAIModel> OPENAI_MODELS_BY_ID =
+      Arrays.stream(OpenAIModel.values())
+          .collect(Collectors.toUnmodifiableMap(OpenAIModel::getId, Function.identity()));
+
+  private final ModelsClient modelsClient;
+  private final Duration refreshTimeout;
+  private final ScheduledFuture<?> scheduledRefresh;
+
+  private volatile Snapshot snapshot;
+  private volatile CompletableFuture<List<Model>> backgroundRefresh =
+      CompletableFuture.completedFuture(List.of());
+
+  ModelCatalog(ModelsClient modelsClient, Duration refreshInterval) {
+    if (refreshInterval.isZero() || refreshInterval.isNegative()) {
+      throw new IllegalArgumentException("refreshInterval must be positive");
+    }
+    this.modelsClient = modelsClient;
+    // a refresh which takes longer than the interval would overlap with the next one
+    this.refreshTimeout = refreshInterval;
+    this.snapshot = load(modelsClient.join(modelsClient.listModelsUncachedAsync()));
+    this.scheduledRefresh = RefreshTask.schedule(this, refreshInterval);
+  }
+
+  /**
+   * @param id the ID of the model
+   * @return whether the model is available
+   */
+  public boolean contains(String id) {
+    return snapshot.models().containsKey(id);
+  }
+
+  /** Same as {@link #contains(String)} but uses an {@link OpenAIModel} */
+  public boolean contains(OpenAIModel model) {
+    return contains(model.getId());
+  }
+
+  /**
+   * @param id the ID of the model
+   * @return the model if it is available
+   */
+  public Optional<Model> get(String id) {
+    return Optional.ofNullable(snapshot.models().get(id));
+  }
+
+  /** Same as {@link #get(String)} but uses an {@link OpenAIModel} */
+  public Optional<Model> get(OpenAIModel model) {
+    return get(model.getId());
+  }
+
+  /**
+   * @return all available models
+   */
+  public Collection<Model> models() {
+    return snapshot.models().values();
+  }
+
+  /**
+   * @return the {@link OpenAIModel} entries which are available
+   */
+  public Set<OpenAIModel> openAIModels() {
+    return snapshot.openAIModels();
+  }
+
+  /**
+   * @return when the models were last loaded successfully
+   */
+  public Instant lastRefreshed() {
+    return snapshot.loadedAt();
+  }
+
+  /**
+   * Reloads the models immediately
+   *
+   * @throws OpenAIException in case of API errors
+   */
+  public void refresh() {
+    snapshot = load(modelsClient.join(modelsClient.listModelsUncachedAsync()));
+  }
+
+  /** Stops the background refresh and aborts a refresh which is in progress */
+  @Override
+  public void close() {
+    scheduledRefresh.cancel(false);
+    backgroundRefresh.cancel(true);
+  }
+
+  /** Starts a refresh without waiting for it, unless the previous one is still in progress */
+  private void refreshInBackground() {
+    if (!backgroundRefresh.isDone()) {
+      return;
+    }
+    CompletableFuture<List<Model>> refresh = modelsClient.listModelsUncachedAsync();
+    backgroundRefresh = refresh;
+    ScheduledFuture<?> timeout =
+        RefreshScheduler.INSTANCE.schedule(
+            () -> refresh.cancel(true), refreshTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    refresh.whenComplete(
+        (models, ex) -> {
+          timeout.cancel(false);
+          // if it fails, keep the last successfully loaded models until the next refresh
+          if (ex == null) {
+            snapshot = load(models);
+          }
+        });
+  }
+
+  private Snapshot load(List<Model> loadedModels) {
+    Map<String, Model> models =
+        loadedModels.stream()
+            .collect(Collectors.toUnmodifiableMap(Model::id, Function.identity(), (a, b) -> b));
+    Set<OpenAIModel> openAIModels = EnumSet.noneOf(OpenAIModel.class);
+    models.keySet().stream()
+        .map(OPENAI_MODELS_BY_ID::get)
+        .filter(Objects::nonNull)
+        .forEach(openAIModels::add);
+    return new Snapshot(models, Collections.unmodifiableSet(openAIModels), Instant.now());
+  }
+
+  /**
+   * Refreshes a catalog on the scheduler shared by all catalogs. The catalog is only weakly
+   * referenced, so the task is cancelled when a catalog which was not closed becomes unreachable.
+   */
+  private static class RefreshTask implements Runnable {
+
+    private final WeakReference<ModelCatalog> catalog;
+
+    private volatile ScheduledFuture<?> scheduledFuture;
+
+    private RefreshTask(ModelCatalog catalog) {
+      this.catalog = new WeakReference<>(catalog);
+    }
+
+    private static ScheduledFuture<?> schedule(ModelCatalog catalog, Duration refreshInterval) {
+      RefreshTask task = new RefreshTask(catalog);
+      long intervalMillis = refreshInterval.toMillis();
+      task.scheduledFuture =
+          RefreshScheduler.INSTANCE.scheduleWithFixedDelay(
+              task, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+      return task.scheduledFuture;
+    }
+
+    @Override
+    public void run() {
+      ModelCatalog modelCatalog = catalog.get();
+      if (modelCatalog != null) {
+        modelCatalog.refreshInBackground();
+      } else if (scheduledFuture != null) {
+        scheduledFuture.cancel(false);
+      }
+    }
+  }
+
+  private static class RefreshScheduler {
+
+    private static final ScheduledExecutorService INSTANCE =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              java.lang.Thread thread = new java.lang.Thread(runnable, "jvm-openai-model-catalog");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  private record Snapshot(
+      Map<String, Model> models, Set<OpenAIModel> openAIModels, Instant loadedAt) {}
+}
@@ -1,12 +1,11 @@
 package io.github.stefanbratanov.jvm.openai;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.util.List;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * List and describe the various models available in the API. You can refer to the Models
@@ -18,12 +17,8 @@ public final class ModelsClient extends OpenAIClient {
 
   private final URI baseUrl;
 
-  ModelsClient(
-      URI baseUrl,
-      String[] authenticationHeaders,
-      HttpClient httpClient,
-      Optional<Duration> requestTimeout) {
-    super(authenticationHeaders, httpClient, requestTimeout);
+  ModelsClient(URI baseUrl, String[] authenticationHeaders, ClientOptions clientOptions) {
+    super(authenticationHeaders, clientOptions);
     this.baseUrl = baseUrl;
   }
 
@@ -40,6 +35,19 @@ public final class ModelsClient extends OpenAIClient {
     return deserializeDataInResponseAsList(httpResponse.body(), Model.class);
   }
 
+  /**
+   * Same as {@link #listModels()} but asynchronous and never returns a cached response, so a {@link
+   * ModelCatalog} sees the current models when it is refreshed
+   */
+  CompletableFuture<List<Model>> listModelsUncachedAsync() {
+    HttpRequest httpRequest =
+        newHttpRequestBuilder().uri(baseUrl.resolve(Endpoint.MODELS.getPath())).GET().build();
+    // cancelling the future aborts the request, unless it is shared with a concurrent identical one
+    return thenApplyCancellable(
+        sendUncachedHttpRequestAsync(httpRequest),
+        httpResponse -> deserializeDataInResponseAsList(httpResponse.body(), Model.class));
+  }
+
   /**
    * Retrieves a model instance, providing basic information about the model such as the owner and
    * permissioning.
@@ -57,6 +65,19 @@ public final class ModelsClient extends OpenAIClient {
     return deserializeResponse(httpResponse.body(), Model.class);
   }
 
+  /**
+   * Creates a {@link ModelCatalog}, which loads the available models once and then refreshes them
+   * in the background, so checking whether a model is available does not require an API call.
+   *
+   * @param refreshInterval the interval between background refreshes. A background refresh which
+   *     doesn't complete within the interval is aborted.
+   * @throws IllegalArgumentException if the refresh interval is zero or negative
+   * @throws OpenAIException in case of API errors during the initial load
+   */
+  public ModelCatalog modelCatalog(Duration refreshInterval) {
+    return new ModelCatalog(this, refreshInterval);
+  }
+
   /**
    * Delete a fine-tuned model. You must have the Owner role in your organization to delete a model.
    *
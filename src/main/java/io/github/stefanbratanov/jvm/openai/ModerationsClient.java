@@ -1,11 +1,8 @@
 package io.github.stefanbratanov.jvm.openai;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.time.Duration;
-import java.util.Optional;
 
 /**
  * Given text and/or image inputs, classifies if those inputs are potentially harmful across several
@@ -17,12 +14,8 @@ public final class ModerationsClient extends OpenAIClient {
 
   private final URI endpoint;
 
-  ModerationsClient(
-      URI baseUrl,
-      String[] authenticationHeaders,
-      HttpClient httpClient,
-      Optional<Duration> requestTimeout) {
-    super(authenticationHeaders, httpClient, requestTimeout);
+  ModerationsClient(URI baseUrl, String[] authenticationHeaders, ClientOptions clientOptions) {
+    super(authenticationHeaders, clientOptions);
     endpoint = baseUrl.resolve(Endpoint.MODERATIONS.getPath());
   }
 
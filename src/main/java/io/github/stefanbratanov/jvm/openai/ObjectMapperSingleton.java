@@ -2,39 +2,109 @@ package io.github.stefanbratanov.jvm.openai;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import java.util.Optional;
 
 class ObjectMapperSingleton {
 
-  private static ObjectMapper instance;
+  private static final String BLACKBIRD_MODULE =
+      "com.fasterxml.jackson.module.blackbird.BlackbirdModule";
+
+  /** The system property which enables Blackbird, when it is set to {@code true} */
+  static final String BLACKBIRD_PROPERTY = "jvm.openai.jackson.blackbird";
+
+  /** The readers and writers resolve their (de)serializers once per type */
+  private static final ClassValue<ObjectReader> READERS =
+      new ClassValue<>() {
+        @Override
+        protected ObjectReader computeValue(Class<?> type) {
+          return getInstance().readerFor(type);
+        }
+      };
+
+  private static final ClassValue<ObjectWriter> WRITERS =
+      new ClassValue<>() {
+        @Override
+        protected ObjectWriter computeValue(Class<?> type) {
+          return getInstance().writerFor(type);
+        }
+      };
 
   private ObjectMapperSingleton() {}
 
-  static synchronized ObjectMapper getInstance() {
-    if (instance == null) {
-      SimpleModule openAIModule = new SimpleModule();
-      openAIModule.addSerializer(AssistantsToolChoice.class, new AssistantsToolChoiceSerializer());
-      openAIModule.addDeserializer(
-          AssistantsToolChoice.class, new AssistantsToolChoiceDeserializer());
-      openAIModule.addSerializer(
-          AssistantsResponseFormat.class, new AssistantsResponseFormatSerializer());
-      openAIModule.addDeserializer(
-          AssistantsResponseFormat.class, new AssistantsResponseFormatDeserializer());
-      openAIModule.addSerializer(AuditLog.class, new AuditLogSerializer());
-      openAIModule.addDeserializer(AuditLog.class, new AuditLogDeserializer());
-      instance =
-          JsonMapper.builder()
-              .addModule(new Jdk8Module())
-              .addModule(openAIModule)
-              .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
-              .serializationInclusion(JsonInclude.Include.NON_ABSENT)
-              .propertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE)
-              .build();
+  static ObjectMapper getInstance() {
+    return Holder.INSTANCE;
+  }
+
+  static ObjectReader readerFor(Class<?> type) {
+    return READERS.get(type);
+  }
+
+  static ObjectWriter writerFor(Class<?> type) {
+    return WRITERS.get(type);
+  }
+
+  /**
+   * @param blackbirdModule the Blackbird module to add, if any
+   */
+  static ObjectMapper createObjectMapper(Optional<Module> blackbirdModule) {
+    SimpleModule openAIModule = new SimpleModule();
+    openAIModule.addSerializer(AssistantsToolChoice.class, new AssistantsToolChoiceSerializer());
+    openAIModule.addDeserializer(
+        AssistantsToolChoice.class, new AssistantsToolChoiceDeserializer());
+    openAIModule.addSerializer(
+        AssistantsResponseFormat.class, new AssistantsResponseFormatSerializer());
+    openAIModule.addDeserializer(
+        AssistantsResponseFormat.class, new AssistantsResponseFormatDeserializer());
+    openAIModule.addSerializer(AuditLog.class, new AuditLogSerializer());
+    openAIModule.addDeserializer(AuditLog.class, new AuditLogDeserializer());
+    openAIModule.addSerializer(RawJson.class, new RawJsonSerializer());
+    JsonMapper.Builder builder =
+        JsonMapper.builder()
+            .addModule(new Jdk8Module())
+            .addModule(openAIModule)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .serializationInclusion(JsonInclude.Include.NON_ABSENT)
+            .propertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+    blackbirdModule.ifPresent(builder::addModule);
+    return builder.build();
+  }
+
+  /**
+   * Blackbird replaces the reflective access of Jackson with generated lambdas. It is only used
+   * when it is enabled with the {@link #BLACKBIRD_PROPERTY} system property and the application
+   * has it on the classpath, and never in a native image, where it can't generate classes.
+   */
+  static Optional<Module> createBlackbirdModule() {
+    return createBlackbirdModule(Boolean.getBoolean(BLACKBIRD_PROPERTY));
+  }
+
+  /**
+   * @param enabled whether Blackbird is enabled
+   */
+  static Optional<Module> createBlackbirdModule(boolean enabled) {
+    if (!enabled || System.getProperty("org.graalvm.nativeimage.imagecode") != null) {
+      return Optional.empty();
+    }
+    try {
+      Class<?> blackbirdModule =
+          Class.forName(BLACKBIRD_MODULE, true, ObjectMapperSingleton.class.getClassLoader());
+      return Optional.of((Module) blackbirdModule.getDeclaredConstructor().newInstance());
+    } catch (ReflectiveOperationException | LinkageError ex) {
+      // not on the classpath or incompatible with the Jackson version
+      return Optional.empty();
     }
-    return instance;
+  }
+
+  /** Creates the instance on first use, without synchronizing every access */
+  private static class Holder {
+    private static final ObjectMapper INSTANCE = createObjectMapper(createBlackbirdModule());
   }
 }
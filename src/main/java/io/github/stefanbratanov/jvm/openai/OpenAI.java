@@ -6,6 +6,7 @@ import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 /**
  * A class which when created using the {@link OpenAI.Builder} can be used to create clients based
@@ -14,31 +15,37 @@ import java.util.Optional;
  */
 public final class OpenAI {
 
-  private final AudioClient audioClient;
-  private final ChatClient chatClient;
-  private final EmbeddingsClient embeddingsClient;
-  private final FineTuningClient fineTuningClient;
-  private final BatchClient batchClient;
-  private final FilesClient filesClient;
-  private final UploadsClient uploadsClient;
-  private final ImagesClient imagesClient;
-  private final ModelsClient modelsClient;
-  private final ModerationsClient moderationsClient;
-  private final AssistantsClient assistantsClient;
-  private final ThreadsClient threadsClient;
-  private final MessagesClient messagesClient;
-  private final RunsClient runsClient;
-  private final RunStepsClient runStepsClient;
-  private final VectorStoresClient vectorStoresClient;
-  private final VectorStoreFilesClient vectorStoreFilesClient;
-  private final VectorStoreFileBatchesClient vectorStoreFileBatchesClient;
-  private final InvitesClient invitesClient;
-  private final UsersClient usersClient;
-  private final ProjectsClient projectsClient;
-  private final ProjectUsersClient projectUsersClient;
-  private final ProjectServiceAccountsClient projectServiceAccountsClient;
-  private final ProjectApiKeysClient projectApiKeysClient;
-  private final AuditLogsClient auditLogsClient;
+  private final Lazy<AudioClient> audioClient;
+  private final Lazy<ChatClient> chatClient;
+  private final Lazy<EmbeddingsClient> embeddingsClient;
+  private final Lazy<FineTuningClient> fineTuningClient;
+  private final Lazy<BatchClient> batchClient;
+  private final Lazy<FilesClient> filesClient;
+  private final Lazy<UploadsClient> uploadsClient;
+  private final Lazy<ImagesClient> imagesClient;
+  private final Lazy<ModelsClient> modelsClient;
+  private final Lazy<ModerationsClient> moderationsClient;
+  private final Lazy<AssistantsClient> assistantsClient;
+  private final Lazy<ThreadsClient> threadsClient;
+  private final Lazy<MessagesClient> messagesClient;
+  private final Lazy<RunsClient> runsClient;
+  private final Lazy<RunStepsClient> runStepsClient;
+  private final Lazy<VectorStoresClient> vectorStoresClient;
+  private final Lazy<VectorStoreFilesClient> vectorStoreFilesClient;
+  private final Lazy<VectorStoreFileBatchesClient> vectorStoreFileBatchesClient;
+  private final Lazy<InvitesClient> invitesClient;
+  private final Lazy<UsersClient> usersClient;
+  private final Lazy<ProjectsClient> projectsClient;
+  private final Lazy<ProjectUsersClient> projectUsersClient;
+  private final Lazy<ProjectServiceAccountsClient> projectServiceAccountsClient;
+  private final Lazy<ProjectApiKeysClient> projectApiKeysClient;
+  private final Lazy<AuditLogsClient> auditLogsClient;
+
+  private final URI baseUrl;
+  private final Optional<String> adminKey;
+  private final Optional<String> organization;
+  private final Optional<String> project;
+  private final ClientOptions clientOptions;
 
   private OpenAI(
       URI baseUrl,
@@ -46,52 +53,48 @@ public final class OpenAI {
       Optional<String> adminKey,
       Optional<String> organization,
       Optional<String> project,
-      HttpClient httpClient,
-      Optional<Duration> requestTimeout) {
+      ClientOptions clientOptions) {
+    this.baseUrl = baseUrl;
+    this.adminKey = adminKey;
+    this.organization = organization;
+    this.project = project;
+    this.clientOptions = clientOptions;
     String[] authenticationHeaders = createAuthenticationHeaders(apiKey, organization, project);
-    audioClient = new AudioClient(baseUrl, authenticationHeaders, httpClient, requestTimeout);
-    chatClient = new ChatClient(baseUrl, authenticationHeaders, httpClient, requestTimeout);
-    embeddingsClient =
-        new EmbeddingsClient(baseUrl, authenticationHeaders, httpClient, requestTimeout);
-    fineTuningClient =
-        new FineTuningClient(baseUrl, authenticationHeaders, httpClient, requestTimeout);
-    batchClient = new BatchClient(baseUrl, authenticationHeaders, httpClient, requestTimeout);
-    filesClient = new FilesClient(baseUrl, authenticationHeaders, httpClient, requestTimeout);
-    uploadsClient = new UploadsClient(baseUrl, authenticationHeaders, httpClient, requestTimeout);
-    imagesClient = new ImagesClient(baseUrl, authenticationHeaders, httpClient, requestTimeout);
-    modelsClient = new ModelsClient(baseUrl, authenticationHeaders, httpClient, requestTimeout);
-    moderationsClient =
-        new ModerationsClient(baseUrl, authenticationHeaders, httpClient, requestTimeout);
+    // load balanced requests are created for the primary base URL and then routed
+    URI apiBaseUrl =
+        clientOptions.loadBalancer().map(LoadBalancer::primaryBaseUrl).orElse(baseUrl);
+    // the clients are only created when they are first used, which keeps startup fast
+    ClientFactory apiClients = new ClientFactory(apiBaseUrl, authenticationHeaders, clientOptions);
+    audioClient = apiClients.lazy(AudioClient::new);
+    chatClient = apiClients.lazy(ChatClient::new);
+    embeddingsClient = apiClients.lazy(EmbeddingsClient::new);
+    fineTuningClient = apiClients.lazy(FineTuningClient::new);
+    batchClient = apiClients.lazy(BatchClient::new);
+    filesClient = apiClients.lazy(FilesClient::new);
+    uploadsClient = apiClients.lazy(UploadsClient::new);
+    imagesClient = apiClients.lazy(ImagesClient::new);
+    modelsClient = apiClients.lazy(ModelsClient::new);
+    moderationsClient = apiClients.lazy(ModerationsClient::new);
     // Assistants
-    assistantsClient =
-        new AssistantsClient(baseUrl, authenticationHeaders, httpClient, requestTimeout);
-    threadsClient = new ThreadsClient(baseUrl, authenticationHeaders, httpClient, requestTimeout);
-    messagesClient = new MessagesClient(baseUrl, authenticationHeaders, httpClient, requestTimeout);
-    runsClient = new RunsClient(baseUrl, authenticationHeaders, httpClient, requestTimeout);
-    runStepsClient = new RunStepsClient(baseUrl, authenticationHeaders, httpClient, requestTimeout);
-    vectorStoresClient =
-        new VectorStoresClient(baseUrl, authenticationHeaders, httpClient, requestTimeout);
-    vectorStoreFilesClient =
-        new VectorStoreFilesClient(baseUrl, authenticationHeaders, httpClient, requestTimeout);
-    vectorStoreFileBatchesClient =
-        new VectorStoreFileBatchesClient(
-            baseUrl, authenticationHeaders, httpClient, requestTimeout);
+    assistantsClient = apiClients.lazy(AssistantsClient::new);
+    threadsClient = apiClients.lazy(ThreadsClient::new);
+    messagesClient = apiClients.lazy(MessagesClient::new);
+    runsClient = apiClients.lazy(RunsClient::new);
+    runStepsClient = apiClients.lazy(RunStepsClient::new);
+    vectorStoresClient = apiClients.lazy(VectorStoresClient::new);
+    vectorStoreFilesClient = apiClients.lazy(VectorStoreFilesClient::new);
+    vectorStoreFileBatchesClient = apiClients.lazy(VectorStoreFileBatchesClient::new);
     // Administration
-    String[] adminAuthenticationHeaders = createAdminAuthenticationHeaders(adminKey);
-    invitesClient =
-        new InvitesClient(baseUrl, adminAuthenticationHeaders, httpClient, requestTimeout);
-    usersClient = new UsersClient(baseUrl, adminAuthenticationHeaders, httpClient, requestTimeout);
-    projectsClient =
-        new ProjectsClient(baseUrl, adminAuthenticationHeaders, httpClient, requestTimeout);
-    projectUsersClient =
-        new ProjectUsersClient(baseUrl, adminAuthenticationHeaders, httpClient, requestTimeout);
-    projectServiceAccountsClient =
-        new ProjectServiceAccountsClient(
-            baseUrl, adminAuthenticationHeaders, httpClient, requestTimeout);
-    projectApiKeysClient =
-        new ProjectApiKeysClient(baseUrl, adminAuthenticationHeaders, httpClient, requestTimeout);
-    auditLogsClient =
-        new AuditLogsClient(baseUrl, adminAuthenticationHeaders, httpClient, requestTimeout);
+    ClientFactory adminClients =
+        new ClientFactory(
+            baseUrl, createAdminAuthenticationHeaders(adminKey), clientOptions.forAdministration());
+    invitesClient = adminClients.lazy(InvitesClient::new);
+    usersClient = adminClients.lazy(UsersClient::new);
+    projectsClient = adminClients.lazy(ProjectsClient::new);
+    projectUsersClient = adminClients.lazy(ProjectUsersClient::new);
+    projectServiceAccountsClient = adminClients.lazy(ProjectServiceAccountsClient::new);
+    projectApiKeysClient = adminClients.lazy(ProjectApiKeysClient::new);
+    auditLogsClient = adminClients.lazy(AuditLogsClient::new);
   }
 
   /**
@@ -99,7 +102,7 @@ public final class OpenAI {
    *     href="https://platform.openai.com/docs/api-reference/audio">Audio</a>
    */
   public AudioClient audioClient() {
-    return audioClient;
+    return audioClient.get();
   }
 
   /**
@@ -107,7 +110,7 @@ public final class OpenAI {
    *     href="https://platform.openai.com/docs/api-reference/chat">Chat</a>
    */
   public ChatClient chatClient() {
-    return chatClient;
+    return chatClient.get();
   }
 
   /**
@@ -115,7 +118,7 @@ public final class OpenAI {
    *     href="https://platform.openai.com/docs/api-reference/embeddings">Embeddings</a>
    */
   public EmbeddingsClient embeddingsClient() {
-    return embeddingsClient;
+    return embeddingsClient.get();
   }
 
   /**
@@ -123,7 +126,7 @@ public final class OpenAI {
    *     href="https://platform.openai.com/docs/api-reference/fine-tuning">Fine-tuning</a>
    */
   public FineTuningClient fineTuningClient() {
-    return fineTuningClient;
+    return fineTuningClient.get();
   }
 
   /**
@@ -131,7 +134,7 @@ public final class OpenAI {
    *     href="https://platform.openai.com/docs/api-reference/batch">Batch</a>
    */
   public BatchClient batchClient() {
-    return batchClient;
+    return batchClient.get();
   }
 
   /**
@@ -139,7 +142,7 @@ public final class OpenAI {
    *     href="https://platform.openai.com/docs/api-reference/files">Files</a>
    */
   public FilesClient filesClient() {
-    return filesClient;
+    return filesClient.get();
   }
 
   /**
@@ -147,7 +150,7 @@ public final class OpenAI {
    *     href="https://platform.openai.com/docs/api-reference/uploads">Uploads</a>
    */
   public UploadsClient uploadsClient() {
-    return uploadsClient;
+    return uploadsClient.get();
   }
 
   /**
@@ -155,7 +158,7 @@ public final class OpenAI {
    *     href="https://platform.openai.com/docs/api-reference/images">Images</a>
    */
   public ImagesClient imagesClient() {
-    return imagesClient;
+    return imagesClient.get();
   }
 
   /**
@@ -163,7 +166,7 @@ public final class OpenAI {
    *     href="https://platform.openai.com/docs/api-reference/models">Models</a>
    */
   public ModelsClient modelsClient() {
-    return modelsClient;
+    return modelsClient.get();
   }
 
   /**
@@ -171,7 +174,7 @@ public final class OpenAI {
    *     href="https://platform.openai.com/docs/api-reference/moderations">Moderations</a>
    */
   public ModerationsClient moderationsClient() {
-    return moderationsClient;
+    return moderationsClient.get();
   }
 
   /**
@@ -179,7 +182,7 @@ public final class OpenAI {
    *     href="https://platform.openai.com/docs/api-reference/assistants">Assistants</a>
    */
   public AssistantsClient assistantsClient() {
-    return assistantsClient;
+    return assistantsClient.get();
   }
 
   /**
@@ -187,7 +190,7 @@ public final class OpenAI {
    *     href="https://platform.openai.com/docs/api-reference/threads">Threads</a>
    */
   public ThreadsClient threadsClient() {
-    return threadsClient;
+    return threadsClient.get();
   }
 
   /**
@@ -195,7 +198,7 @@ public final class OpenAI {
    *     href="https://platform.openai.com/docs/api-reference/messages">Messages</a>
    */
   public MessagesClient messagesClient() {
-    return messagesClient;
+    return messagesClient.get();
   }
 
   /**
@@ -203,7 +206,7 @@ public final class OpenAI {
    *     href="https://platform.openai.com/docs/api-reference/runs">Runs</a>
    */
   public RunsClient runsClient() {
-    return runsClient;
+    return runsClient.get();
   }
 
   /**
@@ -211,7 +214,7 @@ public final class OpenAI {
    *     href="https://platform.openai.com/docs/api-reference/run-steps">Run Steps</a>
    */
   public RunStepsClient runStepsClient() {
-    return runStepsClient;
+    return runStepsClient.get();
   }
 
   /**
@@ -220,7 +223,7 @@ public final class OpenAI {
    *     Stores</a>
    */
   public VectorStoresClient vectorStoresClient() {
-    return vectorStoresClient;
+    return vectorStoresClient.get();
   }
 
   /**
@@ -229,7 +232,7 @@ public final class OpenAI {
    *     Files</a>
    */
   public VectorStoreFilesClient vectorStoreFilesClient() {
-    return vectorStoreFilesClient;
+    return vectorStoreFilesClient.get();
   }
 
   /**
@@ -238,7 +241,7 @@ public final class OpenAI {
    *     Store File Batches</a>
    */
   public VectorStoreFileBatchesClient vectorStoreFileBatchesClient() {
-    return vectorStoreFileBatchesClient;
+    return vectorStoreFileBatchesClient.get();
   }
 
   /**
@@ -246,7 +249,7 @@ public final class OpenAI {
    *     href="https://platform.openai.com/docs/api-reference/invite">Invites</a>
    */
   public InvitesClient invitesClient() {
-    return invitesClient;
+    return invitesClient.get();
   }
 
   /**
@@ -254,7 +257,7 @@ public final class OpenAI {
    *     href="https://platform.openai.com/docs/api-reference/users">Users</a>
    */
   public UsersClient usersClient() {
-    return usersClient;
+    return usersClient.get();
   }
 
   /**
@@ -262,7 +265,7 @@ public final class OpenAI {
    *     href="https://platform.openai.com/docs/api-reference/projects">Projects</a>
    */
   public ProjectsClient projectsClient() {
-    return projectsClient;
+    return projectsClient.get();
   }
 
   /**
@@ -270,7 +273,7 @@ public final class OpenAI {
    *     href="https://platform.openai.com/docs/api-reference/project-users">Project Users</a>
    */
   public ProjectUsersClient projectUsersClient() {
-    return projectUsersClient;
+    return projectUsersClient.get();
   }
 
   /**
@@ -279,7 +282,7 @@ public final class OpenAI {
    *     Service Accounts</a>
    */
   public ProjectServiceAccountsClient projectServiceAccountsClient() {
-    return projectServiceAccountsClient;
+    return projectServiceAccountsClient.get();
   }
 
   /**
@@ -287,7 +290,7 @@ public final class OpenAI {
    *     href="https://platform.openai.com/docs/api-reference/project-api-keys">Project API Keys</a>
    */
   public ProjectApiKeysClient projectApiKeysClient() {
-    return projectApiKeysClient;
+    return projectApiKeysClient.get();
   }
 
   /**
@@ -295,7 +298,37 @@ public final class OpenAI {
    *     href="https://platform.openai.com/docs/api-reference/audit-logs">Audit Logs</a>
    */
   public AuditLogsClient auditLogsClient() {
-    return auditLogsClient;
+    return auditLogsClient.get();
+  }
+
+  /**
+   * @param apiKey the API key used for authentication
+   * @return an instance which authenticates with the API key, but otherwise shares the {@link
+   *     HttpClient} and the options of this instance, such as the load balancer. This is cheaper
+   *     than building a new instance for every API key. The state of the clients is also shared,
+   *     so an instance per request still hedges requests with the recent latencies of all
+   *     instances and finds the assistants and vector stores cached for the same API key. The
+   *     circuit breakers are kept per API key, so failures of one instance don't reject the
+   *     requests of the others.
+   * @throws IllegalStateException if the load balancer has base URLs with their own API keys,
+   *     which would be used instead
+   */
+  public OpenAI withApiKey(String apiKey) {
+    if (hasBaseUrlApiKeys(clientOptions.loadBalancer())) {
+      throw new IllegalStateException(
+          "withApiKey can't be used with a load balancer whose base URLs have their own API keys");
+    }
+    return new OpenAI(
+        baseUrl,
+        Optional.of(apiKey),
+        adminKey,
+        organization,
+        project,
+        clientOptions.withoutApiKeyProvider());
+  }
+
+  private static boolean hasBaseUrlApiKeys(Optional<LoadBalancer> loadBalancer) {
+    return loadBalancer.map(LoadBalancer::hasBaseUrlApiKeys).orElse(false);
   }
 
   private String[] createAuthenticationHeaders(
@@ -332,6 +365,19 @@ public final class OpenAI {
     return authHeaders.toArray(new String[] {});
   }
 
+  @FunctionalInterface
+  private interface ClientConstructor<T extends OpenAIClient> {
+    T create(URI baseUrl, String[] authenticationHeaders, ClientOptions clientOptions);
+  }
+
+  private record ClientFactory(
+      URI baseUrl, String[] authenticationHeaders, ClientOptions clientOptions) {
+
+    <T extends OpenAIClient> Lazy<T> lazy(ClientConstructor<T> constructor) {
+      return new Lazy<>(() -> constructor.create(baseUrl, authenticationHeaders, clientOptions));
+    }
+  }
+
   public static Builder newBuilder() {
     return new Builder();
   }
@@ -346,6 +392,7 @@ public final class OpenAI {
   public static class Builder {
 
     private static final String DEFAULT_BASE_URL = "https://api.openai.com/v1/";
+    private static final Duration DEFAULT_CACHE_REFRESH_INTERVAL = Duration.ofMinutes(1);
 
     private Optional<String> apiKey = Optional.empty();
     private Optional<String> adminKey = Optional.empty();
@@ -356,6 +403,16 @@ public final class OpenAI {
     private Optional<String> project = Optional.empty();
     private Optional<HttpClient> httpClient = Optional.empty();
     private Optional<Duration> requestTimeout = Optional.empty();
+    private Optional<PromptCacheMetrics> promptCacheMetrics = Optional.empty();
+    private boolean deduplicateGetRequests = false;
+    private Optional<Duration> getResponseTimeToLive = Optional.empty();
+    private Duration cacheRefreshInterval = DEFAULT_CACHE_REFRESH_INTERVAL;
+    private boolean responseCompression = false;
+    private Optional<LoadBalancer> loadBalancer = Optional.empty();
+    private Optional<HedgingPolicy> hedgingPolicy = Optional.empty();
+    private Optional<CircuitBreakerPolicy> circuitBreakerPolicy = Optional.empty();
+    private Optional<StreamTimeouts> streamTimeouts = Optional.empty();
+    private Optional<Supplier<String>> apiKeyProvider = Optional.empty();
 
     public Builder() {}
 
@@ -367,6 +424,17 @@ public final class OpenAI {
       return this;
     }
 
+    /**
+     * @param apiKeyProvider provides the API key used for authentication. It is called for every
+     *     request, so keys can be rotated, or chosen per tenant, without building a new {@link
+     *     OpenAI}. Takes precedence over {@link #apiKey(String)}. It can't be combined with a
+     *     {@link LoadBalancer} whose base URLs have their own API keys.
+     */
+    public Builder apiKeyProvider(Supplier<String> apiKeyProvider) {
+      this.apiKeyProvider = Optional.of(apiKeyProvider);
+      return this;
+    }
+
     /**
      * @param adminKey the API key used for administration endpoints.
      */
@@ -419,18 +487,129 @@ public final class OpenAI {
       return this;
     }
 
+    /**
+     * @param promptCacheMetrics a hook which will be called with the cached tokens of every chat
+     *     completion, grouped by the prefix of the prompt
+     */
+    public Builder promptCacheMetrics(PromptCacheMetrics promptCacheMetrics) {
+      this.promptCacheMetrics = Optional.of(promptCacheMetrics);
+      return this;
+    }
+
+    /**
+     * @param deduplicateGetRequests whether concurrent identical GET requests, for example
+     *     retrieving the same model or assistant, will share a single API call. Defaults to false.
+     */
+    public Builder deduplicateGetRequests(boolean deduplicateGetRequests) {
+      this.deduplicateGetRequests = deduplicateGetRequests;
+      return this;
+    }
+
+    /**
+     * @param getResponseTimeToLive how long successful responses to GET requests will be reused
+     *     for identical requests. Setting it also enables {@link #deduplicateGetRequests(boolean)}.
+     *     If none is set, responses are only shared between concurrent requests. Polling with
+     *     {@link RunsClient#awaitRun(String, String, RunPollingPolicy)}, cached retrievals and
+     *     {@link ModelCatalog} refreshes always send a request, because they need the current
+     *     state.
+     */
+    public Builder getResponseTimeToLive(Duration getResponseTimeToLive) {
+      this.getResponseTimeToLive = Optional.of(getResponseTimeToLive);
+      this.deduplicateGetRequests = true;
+      return this;
+    }
+
+    /**
+     * @param cacheRefreshInterval how old an object returned by a cached retrieval, such as {@link
+     *     AssistantsClient#retrieveAssistantCached(String)}, can be before it is refreshed in the
+     *     background. Objects which could not be refreshed expire when they are twice as old.
+     *     Defaults to 1 minute.
+     */
+    public Builder cacheRefreshInterval(Duration cacheRefreshInterval) {
+      this.cacheRefreshInterval = cacheRefreshInterval;
+      return this;
+    }
+
+    /**
+     * @param responseCompression whether gzip or deflate compressed responses will be requested.
+     *     They are decompressed as they arrive, which reduces the transferred bytes of large JSON
+     *     responses. Defaults to false.
+     */
+    public Builder responseCompression(boolean responseCompression) {
+      this.responseCompression = responseCompression;
+      return this;
+    }
+
+    /**
+     * @param loadBalancer spreads the API requests across several base URLs, which are used instead
+     *     of {@link #baseUrl(String)}. Requests to the administration endpoints are not load
+     *     balanced.
+     */
+    public Builder loadBalancer(LoadBalancer loadBalancer) {
+      this.loadBalancer = Optional.of(loadBalancer);
+      return this;
+    }
+
+    /**
+     * @param hedgingPolicy configures sending a duplicate request when the response to {@link
+     *     ChatClient#createChatCompletion(CreateChatCompletionRequest)} or {@link
+     *     EmbeddingsClient#createEmbeddings(EmbeddingsRequest)} is slow. If none is set, requests
+     *     are not duplicated.
+     */
+    public Builder hedgingPolicy(HedgingPolicy hedgingPolicy) {
+      this.hedgingPolicy = Optional.of(hedgingPolicy);
+      return this;
+    }
+
+    /**
+     * @param circuitBreakerPolicy configures the circuit breakers, one for every endpoint and
+     *     model, which make requests fail fast while the API is degraded. If none is set, there
+     *     are no circuit breakers.
+     */
+    public Builder circuitBreakerPolicy(CircuitBreakerPolicy circuitBreakerPolicy) {
+      this.circuitBreakerPolicy = Optional.of(circuitBreakerPolicy);
+      return this;
+    }
+
+    /**
+     * @param streamTimeouts timeouts for streamed responses, which, unlike {@link
+     *     #requestTimeout(Duration)}, also cover the time after the response headers arrive. If
+     *     none are set, streams have no timeouts.
+     */
+    public Builder streamTimeouts(StreamTimeouts streamTimeouts) {
+      this.streamTimeouts = Optional.of(streamTimeouts);
+      return this;
+    }
+
     public OpenAI build() {
+      if (apiKeyProvider.isPresent() && hasBaseUrlApiKeys(loadBalancer)) {
+        throw new IllegalStateException(
+            "apiKeyProvider can't be used with a load balancer whose base URLs have their own API"
+                + " keys");
+      }
       if (!baseUrl.endsWith("/")) {
         baseUrl += "/";
       }
+      // the default HTTP client starts a selector thread, so it is only created on first use
       return new OpenAI(
           URI.create(baseUrl),
           apiKey,
           adminKey,
           organization,
           project,
-          httpClient.orElseGet(HttpClient::newHttpClient),
-          requestTimeout);
+          new ClientOptions(
+              new Lazy<>(() -> httpClient.orElseGet(HttpClient::newHttpClient)),
+              requestTimeout,
+              deduplicateGetRequests
+                  ? Optional.of(new GetRequestDeduplicator(getResponseTimeToLive))
+                  : Optional.empty(),
+              promptCacheMetrics,
+              responseCompression,
+              loadBalancer,
+              circuitBreakerPolicy.map(CircuitBreakers::new),
+              streamTimeouts,
+              apiKeyProvider,
+              SharedClientState.create(hedgingPolicy, cacheRefreshInterval)));
     }
   }
 }
@@ -1,8 +1,6 @@
 package io.github.stefanbratanov.jvm.openai;
 
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
-import java.time.Duration;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -14,9 +12,8 @@ import java.util.Optional;
  */
 class OpenAIAssistantsClient extends OpenAIClient {
 
-  OpenAIAssistantsClient(
-      String[] authenticationHeaders, HttpClient httpClient, Optional<Duration> requestTimeout) {
-    super(authenticationHeaders, httpClient, requestTimeout);
+  OpenAIAssistantsClient(String[] authenticationHeaders, ClientOptions clientOptions) {
+    super(authenticationHeaders, clientOptions);
   }
 
   @Override
@@ -8,11 +8,16 @@ import java.io.UncheckedIOException;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -28,14 +33,25 @@ abstract class OpenAIClient {
   private final ObjectMapper objectMapper = ObjectMapperSingleton.getInstance();
 
   private final String[] authenticationHeaders;
-  private final HttpClient httpClient;
+  private final Supplier<HttpClient> httpClient;
   private final Optional<Duration> requestTimeout;
+  private final Optional<GetRequestDeduplicator> getRequestDeduplicator;
+  private final boolean responseCompression;
+  private final Optional<LoadBalancer> loadBalancer;
+  private final Optional<CircuitBreakers> circuitBreakers;
+  private final Optional<StreamTimeouts> streamTimeouts;
+  private final Optional<Supplier<String>> apiKeyProvider;
 
-  OpenAIClient(
-      String[] authenticationHeaders, HttpClient httpClient, Optional<Duration> requestTimeout) {
+  OpenAIClient(String[] authenticationHeaders, ClientOptions clientOptions) {
     this.authenticationHeaders = authenticationHeaders;
-    this.httpClient = httpClient;
-    this.requestTimeout = requestTimeout;
+    this.httpClient = clientOptions.httpClient();
+    this.requestTimeout = clientOptions.requestTimeout();
+    this.getRequestDeduplicator = clientOptions.getRequestDeduplicator();
+    this.responseCompression = clientOptions.responseCompression();
+    this.loadBalancer = clientOptions.loadBalancer();
+    this.circuitBreakers = clientOptions.circuitBreakers();
+    this.streamTimeouts = clientOptions.streamTimeouts();
+    this.apiKeyProvider = clientOptions.apiKeyProvider();
   }
 
   HttpRequest.Builder newHttpRequestBuilder(String... headers) {
@@ -44,9 +60,18 @@ abstract class OpenAIClient {
     if (authenticationHeaders.length > 0) {
       httpRequestBuilder.headers(authenticationHeaders);
     }
+    if (apiKeyProvider.isPresent()) {
+      // evaluated for every request, so the key can change without creating new clients
+      httpRequestBuilder.setHeader(
+          Constants.AUTHORIZATION_HEADER, "Bearer " + apiKeyProvider.get().get());
+    }
     if (headers.length > 0) {
       httpRequestBuilder.headers(headers);
     }
+    if (responseCompression) {
+      httpRequestBuilder.header(
+          Constants.ACCEPT_ENCODING_HEADER, DecompressingBodyHandler.ACCEPT_ENCODING);
+    }
     requestTimeout.ifPresent(httpRequestBuilder::timeout);
     return httpRequestBuilder;
   }
@@ -68,20 +93,47 @@ abstract class OpenAIClient {
 
   <T> HttpRequest.BodyPublisher createBodyPublisher(T body) {
     try {
-      return HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body));
+      byte[] serializedBody =
+          ObjectMapperSingleton.writerFor(body.getClass()).writeValueAsBytes(body);
+      return HttpRequest.BodyPublishers.ofByteArray(serializedBody);
     } catch (JsonProcessingException ex) {
       throw new UncheckedIOException(ex);
     }
   }
 
   HttpResponse<byte[]> sendHttpRequest(HttpRequest httpRequest) {
+    if (isDeduplicated(httpRequest)) {
+      return join(sendHttpRequestAsync(httpRequest));
+    }
     return sendHttpRequest(httpRequest, HttpResponse.BodyHandlers.ofByteArray());
   }
 
+  /**
+   * Same as {@link #sendHttpRequest(HttpRequest)} but guards the request with the circuit breaker
+   * of the model and sends a duplicate request if the response is slow and a {@link RequestHedger}
+   * is present
+   */
+  HttpResponse<byte[]> sendHttpRequest(
+      HttpRequest httpRequest, String model, Optional<RequestHedger> requestHedger) {
+    if (requestHedger.isPresent()) {
+      return join(sendHttpRequestAsync(httpRequest, model, requestHedger));
+    }
+    return sendHttpRequest(
+        httpRequest, HttpResponse.BodyHandlers.ofByteArray(), Optional.ofNullable(model));
+  }
+
   <T> HttpResponse<T> sendHttpRequest(
       HttpRequest httpRequest, HttpResponse.BodyHandler<T> responseBodyHandler) {
+    return sendHttpRequest(httpRequest, responseBodyHandler, Optional.empty());
+  }
+
+  private <T> HttpResponse<T> sendHttpRequest(
+      HttpRequest httpRequest,
+      HttpResponse.BodyHandler<T> responseBodyHandler,
+      Optional<String> model) {
     try {
-      HttpResponse<T> httpResponse = httpClient.send(httpRequest, responseBodyHandler);
+      HttpResponse<T> httpResponse =
+          send(httpRequest, decompressIfNeeded(responseBodyHandler), model);
       validateHttpResponse(httpResponse);
       return httpResponse;
     } catch (IOException ex) {
@@ -93,27 +145,339 @@ abstract class OpenAIClient {
   }
 
   CompletableFuture<HttpResponse<byte[]>> sendHttpRequestAsync(HttpRequest httpRequest) {
+    return sendHttpRequestAsync(httpRequest, true);
+  }
+
+  /**
+   * Same as {@link #sendHttpRequestAsync(HttpRequest)} but never returns a cached response to a GET
+   * request, for polling and refreshes which need the current state
+   */
+  CompletableFuture<HttpResponse<byte[]>> sendUncachedHttpRequestAsync(HttpRequest httpRequest) {
+    return sendHttpRequestAsync(httpRequest, false);
+  }
+
+  private CompletableFuture<HttpResponse<byte[]>> sendHttpRequestAsync(
+      HttpRequest httpRequest, boolean useCachedResponse) {
+    if (isDeduplicated(httpRequest)) {
+      return getRequestDeduplicator
+          .get()
+          .send(
+              httpRequest,
+              request -> sendHttpRequestAsync(request, HttpResponse.BodyHandlers.ofByteArray()),
+              useCachedResponse);
+    }
     return sendHttpRequestAsync(httpRequest, HttpResponse.BodyHandlers.ofByteArray());
   }
 
+  /**
+   * Same as {@link #sendHttpRequestAsync(HttpRequest)} but guards the request with the circuit
+   * breaker of the model and sends a duplicate request if the response is slow and a {@link
+   * RequestHedger} is present
+   */
+  CompletableFuture<HttpResponse<byte[]>> sendHttpRequestAsync(
+      HttpRequest httpRequest, String model, Optional<RequestHedger> requestHedger) {
+    HttpResponse.BodyHandler<byte[]> responseBodyHandler = HttpResponse.BodyHandlers.ofByteArray();
+    if (requestHedger.isEmpty()) {
+      return sendHttpRequestAsync(httpRequest, responseBodyHandler, Optional.ofNullable(model));
+    }
+    HttpResponse.BodyHandler<byte[]> decompressingBodyHandler =
+        decompressIfNeeded(responseBodyHandler);
+    // the futures of the HTTP client are hedged directly, so cancelling them aborts the requests
+    CompletableFuture<HttpResponse<byte[]>> hedgedResponse =
+        requestHedger
+            .get()
+            .send(
+                httpRequest,
+                request ->
+                    sendAsync(request, decompressingBodyHandler, Optional.ofNullable(model)));
+    return thenApplyCancellable(
+        hedgedResponse,
+        httpResponse -> {
+          validateHttpResponse(httpResponse);
+          return httpResponse;
+        });
+  }
+
   <T> CompletableFuture<HttpResponse<T>> sendHttpRequestAsync(
       HttpRequest httpRequest, HttpResponse.BodyHandler<T> responseBodyHandler) {
-    return httpClient
-        .sendAsync(httpRequest, responseBodyHandler)
-        .thenApply(
-            httpResponse -> {
-              validateHttpResponse(httpResponse);
-              return httpResponse;
+    return sendHttpRequestAsync(httpRequest, responseBodyHandler, Optional.empty());
+  }
+
+  private <T> CompletableFuture<HttpResponse<T>> sendHttpRequestAsync(
+      HttpRequest httpRequest,
+      HttpResponse.BodyHandler<T> responseBodyHandler,
+      Optional<String> model) {
+    return thenApplyCancellable(
+        sendAsync(httpRequest, decompressIfNeeded(responseBodyHandler), model),
+        httpResponse -> {
+          validateHttpResponse(httpResponse);
+          return httpResponse;
+        });
+  }
+
+  /**
+   * Same as {@link CompletableFuture#thenApply(Function)} but cancelling the returned future also
+   * cancels the given future, so the request is aborted and not only its dependent stage
+   */
+  <T, U> CompletableFuture<U> thenApplyCancellable(
+      CompletableFuture<T> future, Function<? super T, ? extends U> fn) {
+    CompletableFuture<U> dependent = future.thenApply(fn);
+    dependent.whenComplete(
+        (result, ex) -> {
+          if (dependent.isCancelled()) {
+            future.cancel(true);
+          }
+        });
+    return dependent;
+  }
+
+  /**
+   * Same as {@link CompletableFuture#whenComplete(BiConsumer)} but cancelling the returned future
+   * also cancels the given future. The action still runs when the given future is cancelled this
+   * way, and the returned future only completes after it has run.
+   */
+  <T> CompletableFuture<T> whenCompleteCancellable(
+      CompletableFuture<T> future, BiConsumer<? super T, ? super Throwable> action) {
+    CompletableFuture<T> dependent = new CompletableFuture<>();
+    future
+        .whenComplete(action)
+        .whenComplete(
+            (result, ex) -> {
+              if (ex == null) {
+                dependent.complete(result);
+              } else {
+                dependent.completeExceptionally(ex);
+              }
             });
+    dependent.whenComplete(
+        (result, ex) -> {
+          if (dependent.isCancelled()) {
+            future.cancel(true);
+          }
+        });
+    return dependent;
+  }
+
+  <T> T join(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      if (ex.getCause() instanceof IOException cause) {
+        throw new UncheckedIOException(cause);
+      }
+      throw ex;
+    }
+  }
+
+  private <T> HttpResponse<T> send(
+      HttpRequest httpRequest,
+      HttpResponse.BodyHandler<T> responseBodyHandler,
+      Optional<String> model)
+      throws IOException, InterruptedException {
+    if (circuitBreakers.isEmpty()) {
+      return sendToBaseUrl(httpRequest, responseBodyHandler);
+    }
+    CircuitBreakers.CircuitBreaker circuitBreaker =
+        circuitBreakers.get().get(httpRequest, model);
+    CircuitBreakers.Permit permit = circuitBreaker.tryAcquirePermit();
+    if (permit == CircuitBreakers.Permit.REJECTED) {
+      throw circuitBreaker.createOpenException();
+    }
+    long start = circuitBreakers.get().nanoTime();
+    try {
+      HttpResponse<T> httpResponse = sendToBaseUrl(httpRequest, responseBodyHandler);
+      circuitBreaker.onResult(permit, httpResponse.statusCode(), start);
+      return httpResponse;
+    } catch (IOException ex) {
+      circuitBreaker.onResult(permit, -1, start);
+      throw ex;
+    } catch (InterruptedException | RuntimeException ex) {
+      circuitBreaker.release(permit);
+      throw ex;
+    }
+  }
+
+  private <T> CompletableFuture<HttpResponse<T>> sendAsync(
+      HttpRequest httpRequest,
+      HttpResponse.BodyHandler<T> responseBodyHandler,
+      Optional<String> model) {
+    if (circuitBreakers.isEmpty()) {
+      return sendToBaseUrlAsync(httpRequest, responseBodyHandler);
+    }
+    CircuitBreakers.CircuitBreaker circuitBreaker =
+        circuitBreakers.get().get(httpRequest, model);
+    CircuitBreakers.Permit permit = circuitBreaker.tryAcquirePermit();
+    if (permit == CircuitBreakers.Permit.REJECTED) {
+      return CompletableFuture.failedFuture(circuitBreaker.createOpenException());
+    }
+    long start = circuitBreakers.get().nanoTime();
+    CompletableFuture<HttpResponse<T>> future =
+        sendToBaseUrlAsync(httpRequest, responseBodyHandler);
+    // the future itself is returned, so cancelling it still cancels the request
+    future.whenComplete(
+        (httpResponse, ex) -> {
+          if (ex == null) {
+            circuitBreaker.onResult(permit, httpResponse.statusCode(), start);
+          } else if (future.isCancelled()) {
+            circuitBreaker.release(permit);
+          } else {
+            circuitBreaker.onResult(permit, -1, start);
+          }
+        });
+    return future;
+  }
+
+  private <T> HttpResponse<T> sendToBaseUrl(
+      HttpRequest httpRequest, HttpResponse.BodyHandler<T> responseBodyHandler)
+      throws IOException, InterruptedException {
+    if (loadBalancer.isPresent()) {
+      return loadBalancer.get().send(httpClient.get(), httpRequest, responseBodyHandler);
+    }
+    return httpClient.get().send(httpRequest, responseBodyHandler);
+  }
+
+  private <T> CompletableFuture<HttpResponse<T>> sendToBaseUrlAsync(
+      HttpRequest httpRequest, HttpResponse.BodyHandler<T> responseBodyHandler) {
+    if (loadBalancer.isPresent()) {
+      return loadBalancer.get().sendAsync(httpClient.get(), httpRequest, responseBodyHandler);
+    }
+    return httpClient.get().sendAsync(httpRequest, responseBodyHandler);
+  }
+
+  private <T> HttpResponse.BodyHandler<T> decompressIfNeeded(
+      HttpResponse.BodyHandler<T> responseBodyHandler) {
+    return responseCompression
+        ? new DecompressingBodyHandler<>(responseBodyHandler)
+        : responseBodyHandler;
+  }
+
+  private boolean isDeduplicated(HttpRequest httpRequest) {
+    return getRequestDeduplicator.isPresent() && httpRequest.method().equals("GET");
   }
 
   Stream<String> streamServerSentEvents(HttpRequest httpRequest) {
-    return sendHttpRequest(httpRequest, HttpResponse.BodyHandlers.ofLines())
-        .body()
+    return streamServerSentEvents(httpRequest, Optional.empty());
+  }
+
+  /**
+   * Same as {@link #streamServerSentEvents(HttpRequest)} but guards the request with the circuit
+   * breaker of the model
+   */
+  Stream<String> streamServerSentEvents(HttpRequest httpRequest, String model) {
+    return streamServerSentEvents(httpRequest, Optional.ofNullable(model));
+  }
+
+  private Stream<String> streamServerSentEvents(HttpRequest httpRequest, Optional<String> model) {
+    if (streamTimeouts.isPresent()) {
+      return join(streamServerSentEventsAsync(httpRequest, model));
+    }
+    return filterServerSentEvents(
+        sendHttpRequest(httpRequest, HttpResponse.BodyHandlers.ofLines(), model).body());
+  }
+
+  /**
+   * Same as {@link #streamServerSentEvents(HttpRequest)} but returns the stream in a {@link
+   * CompletableFuture}. Cancelling the future aborts the request, even if the response has already
+   * arrived.
+   */
+  CompletableFuture<Stream<String>> streamServerSentEventsAsync(HttpRequest httpRequest) {
+    return streamServerSentEventsAsync(httpRequest, Optional.empty());
+  }
+
+  /**
+   * Same as {@link #streamServerSentEventsAsync(HttpRequest)} but guards the request with the
+   * circuit breaker of the model
+   */
+  CompletableFuture<Stream<String>> streamServerSentEventsAsync(
+      HttpRequest httpRequest, String model) {
+    return streamServerSentEventsAsync(httpRequest, Optional.ofNullable(model));
+  }
+
+  private CompletableFuture<Stream<String>> streamServerSentEventsAsync(
+      HttpRequest httpRequest, Optional<String> model) {
+    Optional<StreamWatchdog> streamWatchdog = streamTimeouts.map(StreamWatchdog::new);
+    HttpResponse.BodyHandler<Stream<String>> responseBodyHandler =
+        decompressIfNeeded(HttpResponse.BodyHandlers.ofLines());
+    CompletableFuture<HttpResponse<Stream<String>>> responseFuture =
+        sendAsync(
+            httpRequest,
+            streamWatchdog
+                .map(watchdog -> watchdog.watch(responseBodyHandler))
+                .orElse(responseBodyHandler),
+            model);
+    streamWatchdog.ifPresent(watchdog -> watchdog.start(responseFuture));
+    CompletableFuture<Stream<String>> sseEvents =
+        responseFuture.handle(
+            (httpResponse, ex) -> {
+              if (ex != null) {
+                // the watchdog cancels the request if a timeout expires before the response
+                Optional<HttpTimeoutException> timeoutException =
+                    streamWatchdog.flatMap(StreamWatchdog::timeoutException);
+                Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+                throw new CompletionException(
+                    timeoutException.map(Throwable.class::cast).orElse(cause));
+              }
+              validateHttpResponse(httpResponse);
+              Stream<String> lines = httpResponse.body();
+              return filterServerSentEvents(
+                  streamWatchdog.map(watchdog -> watchdog.rethrowTimeouts(lines)).orElse(lines));
+            });
+    sseEvents.whenComplete(
+        (stream, ex) -> {
+          if (sseEvents.isCancelled() && !responseFuture.cancel(true)) {
+            // the response has already arrived, so closing its body aborts the request
+            responseFuture.thenAccept(httpResponse -> httpResponse.body().close());
+          }
+        });
+    return sseEvents;
+  }
+
+  private Stream<String> filterServerSentEvents(Stream<String> lines) {
+    return lines
         .filter(sseEvent -> !sseEvent.isBlank())
         .takeWhile(sseEvent -> !sseEvent.matches(STREAM_TERMINATION_REGEX));
   }
 
+  /**
+   * Consumes the stream on another thread once it is available. Cancelling the returned future
+   * aborts the request and, if the stream is being consumed, closes it. The stream is also closed
+   * when it is complete or the consumer throws.
+   */
+  <T> CompletableFuture<Void> consumeStreamAsync(
+      CompletableFuture<Stream<T>> streamFuture, Consumer<? super T> consumer) {
+    CompletableFuture<Void> result = new CompletableFuture<>();
+    streamFuture.whenCompleteAsync(
+        (stream, ex) -> {
+          if (ex != null) {
+            result.completeExceptionally(ex);
+            return;
+          }
+          try (stream) {
+            result.whenComplete(
+                (ignored, resultEx) -> {
+                  if (result.isCancelled()) {
+                    // wakes up the consuming thread, which may be waiting for the next event
+                    stream.close();
+                  }
+                });
+            stream.forEach(consumer);
+            result.complete(null);
+          } catch (RuntimeException consumerEx) {
+            result.completeExceptionally(consumerEx);
+          }
+        });
+    result.whenComplete(
+        (ignored, ex) -> {
+          if (result.isCancelled()) {
+            streamFuture.cancel(true);
+          }
+        });
+    return result;
+  }
+
   void validateStreamRequest(Supplier<Optional<Boolean>> streamField) {
     if (!streamField.get().orElse(false)) {
       throw new IllegalArgumentException("stream must be set to true when requesting a stream");
@@ -136,7 +500,7 @@ abstract class OpenAIClient {
 
   <T> T deserializeResponse(byte[] response, Class<T> responseClass) {
     try {
-      return objectMapper.readValue(response, responseClass);
+      return ObjectMapperSingleton.readerFor(responseClass).readValue(response);
     } catch (IOException ex) {
       throw new UncheckedIOException(ex);
     }
@@ -144,7 +508,7 @@ abstract class OpenAIClient {
 
   <T> T deserializeData(String data, Class<T> responseClass) {
     try {
-      return objectMapper.readValue(data, responseClass);
+      return ObjectMapperSingleton.readerFor(responseClass).readValue(data);
     } catch (IOException ex) {
       throw new UncheckedIOException(ex);
     }
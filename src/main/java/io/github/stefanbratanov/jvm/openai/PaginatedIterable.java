@@ -0,0 +1,177 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A lazy view over all objects of a paginated list endpoint. Pages are fetched only when the
+ * previous page has been consumed, using the ID of its last object as the <b>after</b> cursor.
+ * Each call to {@link #iterator()} or {@link #stream()} walks the list from the start again.
+ *
+ * <p>With prefetching, at most one page is fetched ahead of the consumer. Closing the {@link
+ * Stream} returned by {@link #stream()} cancels that fetch, while an {@link Iterator} which is
+ * abandoned before it is exhausted leaves it to complete in the background.
+ *
+ * @param <T> the type of the listed objects
+ */
+public final class PaginatedIterable<T> implements Iterable<T> {
+
+  private final Function<Optional<String>, Page<T>> pageFetcher;
+  private final Optional<String> initialAfter;
+  private final Optional<Executor> prefetchExecutor;
+
+  <P> PaginatedIterable(
+      Optional<String> initialAfter,
+      Function<Optional<String>, P> pageFetcher,
+      Function<P, List<T>> data,
+      Function<P, String> lastId,
+      Predicate<P> hasMore) {
+    this(
+        after -> {
+          P page = pageFetcher.apply(after);
+          List<T> pageData = data.apply(page);
+          boolean pageHasMore = hasMore.test(page) && !pageData.isEmpty();
+          return new Page<>(pageData, pageHasMore ? lastId.apply(page) : null, pageHasMore);
+        },
+        initialAfter,
+        Optional.empty());
+  }
+
+  private PaginatedIterable(
+      Function<Optional<String>, Page<T>> pageFetcher,
+      Optional<String> initialAfter,
+      Optional<Executor> prefetchExecutor) {
+    this.pageFetcher = pageFetcher;
+    this.initialAfter = initialAfter;
+    this.prefetchExecutor = prefetchExecutor;
+  }
+
+  /**
+   * @return a view which fetches the next page in the background while the current page is being
+   *     consumed. The fetches run on daemon threads which are shared by all views.
+   */
+  public PaginatedIterable<T> withPrefetch() {
+    return withPrefetch(PrefetchExecutor.INSTANCE);
+  }
+
+  /**
+   * @param executor the {@link Executor} used to fetch the next page in the background while the
+   *     current page is being consumed
+   */
+  public PaginatedIterable<T> withPrefetch(Executor executor) {
+    return new PaginatedIterable<>(pageFetcher, initialAfter, Optional.of(executor));
+  }
+
+  /**
+   * @throws OpenAIException in case of API errors while fetching a page
+   */
+  @Override
+  public Iterator<T> iterator() {
+    return new PaginatingIterator();
+  }
+
+  /**
+   * @throws OpenAIException in case of API errors while fetching a page
+   */
+  public Stream<T> stream() {
+    PaginatingIterator iterator = new PaginatingIterator();
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+        .onClose(iterator::cancelPrefetch);
+  }
+
+  private record Page<T>(List<T> data, String lastId, boolean hasMore) {}
+
+  private static class PrefetchExecutor {
+
+    // the fetches block on HTTP requests, so they don't run on the common pool
+    private static final ExecutorService INSTANCE =
+        Executors.newCachedThreadPool(
+            runnable -> {
+              java.lang.Thread thread =
+                  new java.lang.Thread(runnable, "jvm-openai-page-prefetcher");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  private class PaginatingIterator implements Iterator<T> {
+
+    private Iterator<T> currentPageIterator;
+    private Page<T> currentPage;
+    private volatile FutureTask<Page<T>> nextPage;
+
+    @Override
+    public boolean hasNext() {
+      if (currentPage == null) {
+        setCurrentPage(pageFetcher.apply(initialAfter));
+      }
+      while (!currentPageIterator.hasNext() && currentPage.hasMore()) {
+        setCurrentPage(fetchNextPage());
+      }
+      return currentPageIterator.hasNext();
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return currentPageIterator.next();
+    }
+
+    private void setCurrentPage(Page<T> page) {
+      currentPage = page;
+      currentPageIterator = page.data().iterator();
+      if (page.hasMore()) {
+        prefetchExecutor.ifPresent(
+            executor -> {
+              // cancelling a task interrupts its thread, which aborts the HTTP request
+              nextPage = new FutureTask<>(() -> pageFetcher.apply(Optional.of(page.lastId())));
+              executor.execute(nextPage);
+            });
+      }
+    }
+
+    private Page<T> fetchNextPage() {
+      if (nextPage == null) {
+        return pageFetcher.apply(Optional.of(currentPage.lastId()));
+      }
+      try {
+        return nextPage.get();
+      } catch (ExecutionException ex) {
+        if (ex.getCause() instanceof RuntimeException cause) {
+          throw cause;
+        }
+        throw new CompletionException(ex.getCause());
+      } catch (InterruptedException ex) {
+        nextPage.cancel(true);
+        java.lang.Thread.currentThread().interrupt();
+        throw new RuntimeException("Operation was interrupted", ex);
+      } finally {
+        nextPage = null;
+      }
+    }
+
+    private void cancelPrefetch() {
+      FutureTask<Page<T>> page = nextPage;
+      if (page != null) {
+        page.cancel(true);
+      }
+    }
+  }
+}
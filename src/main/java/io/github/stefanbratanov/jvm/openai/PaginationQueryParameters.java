@@ -16,6 +16,10 @@ public record PaginationQueryParameters(
     return new Builder();
   }
 
+  PaginationQueryParameters withAfter(Optional<String> after) {
+    return new PaginationQueryParameters(limit, order, before, after);
+  }
+
   public static class Builder {
 
     private Optional<Integer> limit = Optional.empty();
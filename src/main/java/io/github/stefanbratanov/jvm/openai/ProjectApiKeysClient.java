@@ -1,10 +1,8 @@
 package io.github.stefanbratanov.jvm.openai;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -22,12 +20,8 @@ public final class ProjectApiKeysClient extends OpenAIClient {
 
   private final URI baseUrl;
 
-  ProjectApiKeysClient(
-      URI baseUrl,
-      String[] authenticationHeaders,
-      HttpClient httpClient,
-      Optional<Duration> requestTimeout) {
-    super(authenticationHeaders, httpClient, requestTimeout);
+  ProjectApiKeysClient(URI baseUrl, String[] authenticationHeaders, ClientOptions clientOptions) {
+    super(authenticationHeaders, clientOptions);
     this.baseUrl = baseUrl;
   }
 
@@ -63,6 +57,20 @@ public final class ProjectApiKeysClient extends OpenAIClient {
   public record PaginatedProjectApiKeys(
       List<ProjectApiKey> data, String firstId, String lastId, boolean hasMore) {}
 
+  /**
+   * Same as {@link #listProjectApiKeys(String, Optional, Optional)} but returns a {@link
+   * PaginatedIterable} which lazily fetches all API keys page by page.
+   */
+  public PaginatedIterable<ProjectApiKey> listAllProjectApiKeys(
+      String projectId, Optional<String> after, Optional<Integer> limit) {
+    return new PaginatedIterable<>(
+        after,
+        pageAfter -> listProjectApiKeys(projectId, pageAfter, limit),
+        PaginatedProjectApiKeys::data,
+        PaginatedProjectApiKeys::lastId,
+        PaginatedProjectApiKeys::hasMore);
+  }
+
   /**
    * Retrieves an API key in the project.
    *
@@ -1,10 +1,8 @@
 package io.github.stefanbratanov.jvm.openai;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -26,11 +24,8 @@ public final class ProjectServiceAccountsClient extends OpenAIClient {
   private final URI baseUrl;
 
   ProjectServiceAccountsClient(
-      URI baseUrl,
-      String[] authenticationHeaders,
-      HttpClient httpClient,
-      Optional<Duration> requestTimeout) {
-    super(authenticationHeaders, httpClient, requestTimeout);
+      URI baseUrl, String[] authenticationHeaders, ClientOptions clientOptions) {
+    super(authenticationHeaders, clientOptions);
     this.baseUrl = baseUrl;
   }
 
@@ -66,6 +61,20 @@ public final class ProjectServiceAccountsClient extends OpenAIClient {
   public record PaginatedProjectServiceAccounts(
       List<ProjectServiceAccount> data, String firstId, String lastId, boolean hasMore) {}
 
+  /**
+   * Same as {@link #listProjectServiceAccounts(String, Optional, Optional)} but returns a {@link
+   * PaginatedIterable} which lazily fetches all service accounts page by page.
+   */
+  public PaginatedIterable<ProjectServiceAccount> listAllProjectServiceAccounts(
+      String projectId, Optional<String> after, Optional<Integer> limit) {
+    return new PaginatedIterable<>(
+        after,
+        pageAfter -> listProjectServiceAccounts(projectId, pageAfter, limit),
+        PaginatedProjectServiceAccounts::data,
+        PaginatedProjectServiceAccounts::lastId,
+        PaginatedProjectServiceAccounts::hasMore);
+  }
+
   /**
    * Creates a new service account in the project. This also returns an unredacted API key for the
    * service account.
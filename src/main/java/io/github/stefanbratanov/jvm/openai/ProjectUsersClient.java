@@ -1,10 +1,8 @@
 package io.github.stefanbratanov.jvm.openai;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -22,12 +20,8 @@ public final class ProjectUsersClient extends OpenAIClient {
 
   private final URI baseUrl;
 
-  ProjectUsersClient(
-      URI baseUrl,
-      String[] authenticationHeaders,
-      HttpClient httpClient,
-      Optional<Duration> requestTimeout) {
-    super(authenticationHeaders, httpClient, requestTimeout);
+  ProjectUsersClient(URI baseUrl, String[] authenticationHeaders, ClientOptions clientOptions) {
+    super(authenticationHeaders, clientOptions);
     this.baseUrl = baseUrl;
   }
 
@@ -62,6 +56,20 @@ public final class ProjectUsersClient extends OpenAIClient {
   public record PaginatedProjectUsers(
       List<ProjectUser> data, String firstId, String lastId, boolean hasMore) {}
 
+  /**
+   * Same as {@link #listProjectUsers(String, Optional, Optional)} but returns a {@link
+   * PaginatedIterable} which lazily fetches all project users page by page.
+   */
+  public PaginatedIterable<ProjectUser> listAllProjectUsers(
+      String projectId, Optional<String> after, Optional<Integer> limit) {
+    return new PaginatedIterable<>(
+        after,
+        pageAfter -> listProjectUsers(projectId, pageAfter, limit),
+        PaginatedProjectUsers::data,
+        PaginatedProjectUsers::lastId,
+        PaginatedProjectUsers::hasMore);
+  }
+
   /**
    * Adds a user to the project. Users must already be members of the organization to be added to a
    * project.
@@ -1,11 +1,9 @@
 package io.github.stefanbratanov.jvm.openai;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpRequest.BodyPublishers;
 import java.net.http.HttpResponse;
-import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -20,12 +18,8 @@ public final class ProjectsClient extends OpenAIClient {
 
   private final URI baseUrl;
 
-  ProjectsClient(
-      URI baseUrl,
-      String[] authenticationHeaders,
-      HttpClient httpClient,
-      Optional<Duration> requestTimeout) {
-    super(authenticationHeaders, httpClient, requestTimeout);
+  ProjectsClient(URI baseUrl, String[] authenticationHeaders, ClientOptions clientOptions) {
+    super(authenticationHeaders, clientOptions);
     this.baseUrl = baseUrl;
   }
 
@@ -62,6 +56,20 @@ public final class ProjectsClient extends OpenAIClient {
   public record PaginatedProjects(
       List<Project> data, String firstId, String lastId, boolean hasMore) {}
 
+  /**
+   * Same as {@link #listProjects(Optional, Optional, Optional)} but returns a {@link
+   * PaginatedIterable} which lazily fetches all projects page by page.
+   */
+  public PaginatedIterable<Project> listAllProjects(
+      Optional<String> after, Optional<Integer> limit, Optional<Boolean> includeArchived) {
+    return new PaginatedIterable<>(
+        after,
+        pageAfter -> listProjects(pageAfter, limit, includeArchived),
+        PaginatedProjects::data,
+        PaginatedProjects::lastId,
+        PaginatedProjects::hasMore);
+  }
+
   /**
    * Create a new project in the organization. Projects can be created and archived, but cannot be
    * deleted.
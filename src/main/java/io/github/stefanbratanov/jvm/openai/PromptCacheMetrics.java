@@ -0,0 +1,22 @@
+package io.github.stefanbratanov.jvm.openai;
+
+/**
+ * A hook which is called with the token usage of every chat completion, grouped by the prefix of
+ * the prompt. The prefix consists of the model, the system messages at the start of the
+ * conversation, the tools and the response format, which are the parts of a request that can be
+ * served from the prompt cache. A drop in the cached tokens of a prefix usually means that a change
+ * made the prefix unstable.
+ *
+ * @see PromptCacheStatistics
+ * @see CreateChatCompletionRequest.Builder#stablePrefix(boolean)
+ */
+@FunctionalInterface
+public interface PromptCacheMetrics {
+
+  /**
+   * @param prefixHash a hash of the serialized prefix of the prompt
+   * @param promptTokens the number of tokens in the prompt
+   * @param cachedTokens the number of prompt tokens which were served from the prompt cache
+   */
+  void record(String prefixHash, int promptTokens, int cachedTokens);
+}
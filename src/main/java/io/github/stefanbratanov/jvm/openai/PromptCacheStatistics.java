@@ -0,0 +1,61 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/** A {@link PromptCacheMetrics} which keeps the totals of every prompt prefix in memory. */
+public final class PromptCacheStatistics implements PromptCacheMetrics {
+
+  private final Map<String, Totals> totalsByPrefix = new ConcurrentHashMap<>();
+
+  @Override
+  public void record(String prefixHash, int promptTokens, int cachedTokens) {
+    Totals totals = totalsByPrefix.computeIfAbsent(prefixHash, hash -> new Totals());
+    totals.requests.increment();
+    totals.promptTokens.add(promptTokens);
+    totals.cachedTokens.add(cachedTokens);
+  }
+
+  /**
+   * @return a snapshot of the statistics of every prompt prefix, keyed by the prefix hash
+   */
+  public Map<String, PrefixStatistics> getStatistics() {
+    return totalsByPrefix.entrySet().stream()
+        .collect(
+            Collectors.toUnmodifiableMap(
+                Map.Entry::getKey,
+                entry ->
+                    new PrefixStatistics(
+                        entry.getValue().requests.sum(),
+                        entry.getValue().promptTokens.sum(),
+                        entry.getValue().cachedTokens.sum())));
+  }
+
+  /** Removes all recorded statistics */
+  public void reset() {
+    totalsByPrefix.clear();
+  }
+
+  /**
+   * @param requests the number of requests with the prefix
+   * @param promptTokens the total number of prompt tokens of the requests
+   * @param cachedTokens the total number of prompt tokens which were served from the prompt cache
+   */
+  public record PrefixStatistics(long requests, long promptTokens, long cachedTokens) {
+
+    /**
+     * @return the ratio of prompt tokens which were served from the prompt cache
+     */
+    public double cacheHitRatio() {
+      return promptTokens == 0 ? 0 : (double) cachedTokens / promptTokens;
+    }
+  }
+
+  private static class Totals {
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder promptTokens = new LongAdder();
+    private final LongAdder cachedTokens = new LongAdder();
+  }
+}
@@ -0,0 +1,94 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/** Utilities for the part of a chat completion prompt which can be served from the prompt cache */
+class PromptPrefix {
+
+  private static final int HASH_LENGTH = 16;
+
+  private static final Comparator<Tool> TOOL_ORDER =
+      Comparator.comparing(Tool::type)
+          .thenComparing(
+              tool ->
+                  tool instanceof Tool.FunctionTool functionTool
+                      ? functionTool.function().name()
+                      : "");
+
+  private PromptPrefix() {}
+
+  /** Sorts the tools by type and function name and the keys of the function parameters */
+  static List<Tool> canonicalTools(List<Tool> tools) {
+    return tools.stream().map(PromptPrefix::canonicalTool).sorted(TOOL_ORDER).toList();
+  }
+
+  /** Sorts the keys of the JSON schema, if there is one */
+  static ResponseFormat canonicalResponseFormat(ResponseFormat responseFormat) {
+    return responseFormat
+        .jsonSchema()
+        .map(
+            jsonSchema ->
+                new ResponseFormat(
+                    responseFormat.type(),
+                    Optional.of(
+                        new JsonSchema(
+                            jsonSchema.name(),
+                            jsonSchema.description(),
+                            jsonSchema.schema().map(PromptPrefix::canonicalMap),
+                            jsonSchema.strict()))))
+        .orElse(responseFormat);
+  }
+
+  /**
+   * @return a hash of the model, the system messages at the start of the conversation, the tools
+   *     and the response format of the request
+   */
+  static String hash(CreateChatCompletionRequest request) {
+    List<ChatMessage> systemMessages = new ArrayList<>();
+    for (ChatMessage message : request.messages()) {
+      if (!(message instanceof ChatMessage.SystemMessage)) {
+        break;
+      }
+      systemMessages.add(message);
+    }
+    Prefix prefix =
+        new Prefix(request.model(), systemMessages, request.tools(), request.responseFormat());
+    try {
+      byte[] serializedPrefix = ObjectMapperSingleton.getInstance().writeValueAsBytes(prefix);
+      return Utils.sha256(serializedPrefix).substring(0, HASH_LENGTH);
+    } catch (JsonProcessingException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private static Tool canonicalTool(Tool tool) {
+    if (tool instanceof Tool.FunctionTool functionTool) {
+      Function function = functionTool.function();
+      return Tool.functionTool(
+          new Function(
+              function.name(),
+              function.description(),
+              function.parameters().map(PromptPrefix::canonicalMap),
+              function.strict()));
+    }
+    return tool;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> canonicalMap(Map<String, Object> map) {
+    JsonNode node = ObjectMapperSingleton.getInstance().valueToTree(map);
+    return (Map<String, Object>) Utils.canonicalize(node);
+  }
+
+  private record Prefix(
+      String model,
+      List<ChatMessage> systemMessages,
+      Optional<List<Tool>> tools,
+      Optional<ResponseFormat> responseFormat) {}
+}
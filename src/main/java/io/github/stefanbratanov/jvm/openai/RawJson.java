@@ -0,0 +1,58 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * JSON which is validated once when it is created and then embedded as it is whenever it is
+ * serialized. It can be used as a value of a JSON schema {@link java.util.Map}, for example in
+ * {@link Function.Builder#parameters(java.util.Map)}, to avoid parsing the same JSON every time a
+ * request is built.
+ */
+public final class RawJson {
+
+  private final String json;
+  private final JsonNode node;
+
+  private RawJson(String json, JsonNode node) {
+    this.json = json;
+    this.node = node;
+  }
+
+  /**
+   * @param json a JSON object or array
+   * @throws IllegalArgumentException if the JSON is not a valid object or array
+   */
+  public static RawJson of(String json) {
+    JsonNode node;
+    try {
+      node = Utils.readTree(json);
+    } catch (JsonProcessingException ex) {
+      throw new IllegalArgumentException("Invalid JSON: " + ex.getOriginalMessage(), ex);
+    }
+    if (node == null || !node.isContainerNode()) {
+      throw new IllegalArgumentException("JSON must be an object or an array");
+    }
+    return new RawJson(json, node);
+  }
+
+  /** The parsed JSON, which must not be modified */
+  JsonNode node() {
+    return node;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof RawJson rawJson && node.equals(rawJson.node);
+  }
+
+  @Override
+  public int hashCode() {
+    return node.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return json;
+  }
+}
@@ -0,0 +1,25 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import java.io.IOException;
+
+public class RawJsonSerializer extends StdSerializer<RawJson> {
+
+  public RawJsonSerializer() {
+    super(RawJson.class);
+  }
+
+  @Override
+  public void serialize(RawJson value, JsonGenerator gen, SerializerProvider provider)
+      throws IOException {
+    if (gen instanceof TokenBuffer) {
+      // converting to a tree, so the JSON has to be written as tokens
+      gen.writeTree(value.node());
+    } else {
+      gen.writeRawValue(value.toString());
+    }
+  }
+}
@@ -0,0 +1,149 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * A cache of API objects by credential and ID. The objects are kept per credential, because an
+ * object loaded with one API key must not be returned to a caller with another API key, which may
+ * not have access to it. Missing objects are loaded on the calling thread, while objects older
+ * than the refresh interval are returned as they are and reloaded in the background. Writes made
+ * through the owning client replace or remove cached objects and win over loads which are still in
+ * flight, so a stale load never overwrites them.
+ *
+ * <p>An object which no longer exists in the API is removed when it is refreshed. If a refresh
+ * fails for another reason, it is not retried and the object expires once it is older than twice
+ * the refresh interval, after which it is loaded on the calling thread again.
+ */
+final class ReadThroughCache<T> {
+
+  private final long refreshIntervalNanos;
+  private final long expiryNanos;
+
+  private final Map<Key, Entry<T>> entries = new ConcurrentHashMap<>();
+  private final Map<Key, CompletableFuture<T>> loads = new ConcurrentHashMap<>();
+
+  ReadThroughCache(Duration refreshInterval) {
+    this.refreshIntervalNanos = refreshInterval.toNanos();
+    this.expiryNanos = refreshInterval.multipliedBy(2).toNanos();
+  }
+
+  /**
+   * @param credential the {@link Utils#credentialFingerprint(java.net.http.HttpRequest)} of the
+   *     request which loads the object
+   * @param loader loads the object with that credential
+   */
+  T get(String credential, String id, Supplier<CompletableFuture<T>> loader) {
+    Key key = new Key(credential, id);
+    Entry<T> entry = entries.get(key);
+    long now = System.nanoTime();
+    if (entry == null || now - entry.loadedAtNanos() >= expiryNanos) {
+      try {
+        return load(key, loader).join();
+      } catch (CompletionException ex) {
+        if (ex.getCause() instanceof RuntimeException cause) {
+          throw cause;
+        }
+        throw ex;
+      }
+    }
+    if (!entry.refreshFailed() && now - entry.loadedAtNanos() >= refreshIntervalNanos) {
+      // the cached object is served while it is refreshed
+      load(key, loader);
+    }
+    return entry.value();
+  }
+
+  void put(String credential, String id, T value) {
+    Key key = new Key(credential, id);
+    entries.compute(
+        key,
+        (k, current) -> {
+          loads.remove(key);
+          return new Entry<>(value, System.nanoTime(), false);
+        });
+    removeExpiredEntries();
+  }
+
+  /** Removes the object for every credential, because it no longer exists for any of them */
+  void invalidate(String id) {
+    entries.keySet().stream()
+        .filter(key -> key.id().equals(id))
+        .forEach(
+            key ->
+                entries.compute(
+                    key,
+                    (k, current) -> {
+                      loads.remove(key);
+                      return null;
+                    }));
+    // loads of objects which are not cached yet
+    loads.keySet().removeIf(key -> key.id().equals(id));
+  }
+
+  private CompletableFuture<T> load(Key key, Supplier<CompletableFuture<T>> loader) {
+    CompletableFuture<T> load = new CompletableFuture<>();
+    CompletableFuture<T> existingLoad = loads.putIfAbsent(key, load);
+    if (existingLoad != null) {
+      return existingLoad;
+    }
+    CompletableFuture<T> loaded;
+    try {
+      loaded = loader.get();
+    } catch (RuntimeException ex) {
+      loaded = CompletableFuture.failedFuture(ex);
+    }
+    loaded.whenComplete(
+        (value, ex) -> {
+          // only stored or removed if no write has happened since the load started
+          if (ex == null) {
+            entries.compute(
+                key,
+                (k, current) ->
+                    loads.remove(key, load)
+                        ? new Entry<>(value, System.nanoTime(), false)
+                        : current);
+            removeExpiredEntries();
+            load.complete(value);
+          } else {
+            entries.computeIfPresent(
+                key,
+                (k, current) -> {
+                  if (!loads.remove(key, load)) {
+                    return current;
+                  }
+                  return isNotFound(ex) ? null : current.withRefreshFailed();
+                });
+            loads.remove(key, load);
+            load.completeExceptionally(ex);
+          }
+        });
+    return load;
+  }
+
+  private boolean isNotFound(Throwable ex) {
+    Throwable cause =
+        ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+    return cause instanceof OpenAIException openAIException && openAIException.statusCode() == 404;
+  }
+
+  private void removeExpiredEntries() {
+    long now = System.nanoTime();
+    // expired objects are only replaced when they are requested again, so purge them here
+    entries.values().removeIf(entry -> now - entry.loadedAtNanos() >= expiryNanos);
+  }
+
+  // the credential is a fingerprint, so the cache doesn't keep the API keys in memory
+  private record Key(String credential, String id) {}
+
+  private record Entry<T>(T value, long loadedAtNanos, boolean refreshFailed) {
+
+    Entry<T> withRefreshFailed() {
+      return new Entry<>(value, loadedAtNanos, true);
+    }
+  }
+}
@@ -0,0 +1,167 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Sends a duplicate of a request if no response has arrived after a percentile of the recent
+ * response latencies. The first successful response is used and the other request is cancelled.
+ * Every request adds {@link HedgingPolicy#maxHedgeRatio()} to a budget and every duplicate request
+ * uses one from it, so the duplicate requests stay under that share of all requests.
+ *
+ * <p>The latency of every successful attempt is recorded. An original request which is cancelled
+ * because its duplicate won is recorded with the time it was in flight, which is a lower bound of
+ * its latency, so slow responses are not left out of the recent latencies.
+ */
+class RequestHedger {
+
+  // no requests are duplicated until enough latencies are known
+  private static final int MIN_SAMPLES = 20;
+  private static final int MAX_SAMPLES = 1000;
+  private static final int SAMPLES_BETWEEN_DELAY_UPDATES = 20;
+  private static final double MAX_BUDGET = 10;
+
+  private final HedgingPolicy hedgingPolicy;
+  private final long[] latencies = new long[MAX_SAMPLES];
+
+  private int samples;
+  private int nextSample;
+  private int samplesSinceDelayUpdate;
+  private long delayNanos = -1;
+  private double budget;
+
+  RequestHedger(HedgingPolicy hedgingPolicy) {
+    this.hedgingPolicy = hedgingPolicy;
+  }
+
+  <T> CompletableFuture<HttpResponse<T>> send(
+      HttpRequest httpRequest, Function<HttpRequest, CompletableFuture<HttpResponse<T>>> sender) {
+    long delay = onRequest();
+    Attempts<T> attempts = new Attempts<>();
+    attempts.send(httpRequest, sender, true);
+    if (delay >= 0) {
+      CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS)
+          .execute(
+              () -> {
+                if (!attempts.result.isDone() && tryAcquireHedge()) {
+                  attempts.send(httpRequest, sender, false);
+                }
+              });
+    }
+    return attempts.result;
+  }
+
+  /**
+   * @return the delay before a duplicate request is sent or -1 if not enough latencies are known
+   */
+  private synchronized long onRequest() {
+    budget = Math.min(MAX_BUDGET, budget + hedgingPolicy.maxHedgeRatio());
+    if (delayNanos < 0) {
+      return -1;
+    }
+    return Math.max(delayNanos, hedgingPolicy.minDelay().toNanos());
+  }
+
+  /**
+   * @return the percentile of the recent latencies or -1 if not enough latencies are known
+   */
+  synchronized long delayNanos() {
+    return delayNanos;
+  }
+
+  private synchronized boolean tryAcquireHedge() {
+    if (budget < 1) {
+      return false;
+    }
+    budget--;
+    return true;
+  }
+
+  private synchronized void recordLatency(long latency) {
+    latencies[nextSample] = latency;
+    nextSample = (nextSample + 1) % MAX_SAMPLES;
+    samples = Math.min(samples + 1, MAX_SAMPLES);
+    samplesSinceDelayUpdate++;
+    if (samples >= MIN_SAMPLES
+        && (delayNanos < 0 || samplesSinceDelayUpdate >= SAMPLES_BETWEEN_DELAY_UPDATES)) {
+      long[] sorted = Arrays.copyOf(latencies, samples);
+      Arrays.sort(sorted);
+      int index = (int) Math.ceil(hedgingPolicy.percentile() / 100 * samples) - 1;
+      delayNanos = sorted[Math.max(0, index)];
+      samplesSinceDelayUpdate = 0;
+    }
+  }
+
+  /** The original request and its duplicate, of which the first successful response wins */
+  private class Attempts<T> {
+
+    private final CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+    private final List<CompletableFuture<HttpResponse<T>>> inFlight = new ArrayList<>();
+    // the futures of the HTTP client may complete with a wrapped CancellationException when they
+    // are cancelled, so whether they were cancelled by the hedger is tracked here
+    private volatile boolean inFlightCancelled;
+
+    private Attempts() {
+      // cancelling the result, or completing it, cancels the requests which are still in flight
+      result.whenComplete((httpResponse, ex) -> cancelInFlight());
+    }
+
+    private void send(
+        HttpRequest httpRequest,
+        Function<HttpRequest, CompletableFuture<HttpResponse<T>>> sender,
+        boolean original) {
+      long start = System.nanoTime();
+      CompletableFuture<HttpResponse<T>> attempt = sender.apply(httpRequest);
+      synchronized (this) {
+        inFlight.add(attempt);
+      }
+      if (result.isDone()) {
+        attempt.cancel(true);
+        return;
+      }
+      attempt.whenComplete(
+          (httpResponse, ex) -> {
+            // server errors do not win, unless there is no other request in flight
+            boolean failed = ex != null || httpResponse.statusCode() >= 500;
+            boolean last;
+            synchronized (this) {
+              inFlight.remove(attempt);
+              last = inFlight.isEmpty();
+            }
+            long latency = System.nanoTime() - start;
+            if (!failed) {
+              recordLatency(latency);
+              result.complete(httpResponse);
+            } else if (original && inFlightCancelled && isSuccessful(result)) {
+              // the duplicate won, so the latency of the original is at least as long
+              recordLatency(latency);
+            } else if (last) {
+              if (ex != null) {
+                result.completeExceptionally(ex);
+              } else {
+                result.complete(httpResponse);
+              }
+            }
+          });
+    }
+
+    private boolean isSuccessful(CompletableFuture<HttpResponse<T>> future) {
+      return future.isDone() && !future.isCompletedExceptionally();
+    }
+
+    private void cancelInFlight() {
+      List<CompletableFuture<HttpResponse<T>>> attempts;
+      synchronized (this) {
+        attempts = new ArrayList<>(inFlight);
+      }
+      inFlightCancelled = true;
+      attempts.forEach(attempt -> attempt.cancel(true));
+    }
+  }
+}
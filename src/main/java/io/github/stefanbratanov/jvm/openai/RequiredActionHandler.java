@@ -0,0 +1,19 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An interface which is used to handle runs with the status <b>requires_action</b> when awaiting
+ * them via {@link RunsClient#awaitRun(String, String, RunPollingPolicy)}
+ */
+@FunctionalInterface
+public interface RequiredActionHandler {
+
+  /**
+   * Will be called when the run requires action. The returned tool outputs will be submitted via
+   * {@link RunsClient#submitToolOutputs(String, String, SubmitToolOutputsRequest)}.
+   *
+   * @param run the run with the status <b>requires_action</b>
+   */
+  CompletableFuture<SubmitToolOutputsRequest> handle(ThreadRun run);
+}
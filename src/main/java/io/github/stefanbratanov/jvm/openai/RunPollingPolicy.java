@@ -0,0 +1,95 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Configures how {@link RunsClient#awaitRun(String, String, RunPollingPolicy)} polls a run until
+ * it reaches a terminal status.
+ *
+ * @param initialDelay the delay before the first poll and after every status change
+ * @param maxDelay the upper bound for the delay between polls
+ * @param multiplier the factor by which the delay grows while the status of the run is unchanged
+ * @param timeout the maximum time to wait for the run. If none is set, there will be no timeout.
+ * @param requiredActionHandler handles runs with the status <b>requires_action</b>. If none is set,
+ *     the wait completes with the run which requires action.
+ */
+public record RunPollingPolicy(
+    Duration initialDelay,
+    Duration maxDelay,
+    double multiplier,
+    Optional<Duration> timeout,
+    Optional<RequiredActionHandler> requiredActionHandler) {
+
+  public static RunPollingPolicy defaults() {
+    return new Builder().build();
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+
+    private static final Duration DEFAULT_INITIAL_DELAY = Duration.ofMillis(500);
+    private static final Duration DEFAULT_MAX_DELAY = Duration.ofSeconds(10);
+    private static final double DEFAULT_MULTIPLIER = 1.5;
+
+    private Duration initialDelay = DEFAULT_INITIAL_DELAY;
+    private Duration maxDelay = DEFAULT_MAX_DELAY;
+    private double multiplier = DEFAULT_MULTIPLIER;
+    private Optional<Duration> timeout = Optional.empty();
+    private Optional<RequiredActionHandler> requiredActionHandler = Optional.empty();
+
+    /**
+     * @param initialDelay the delay before the first poll and after every status change. Defaults
+     *     to 500 milliseconds.
+     */
+    public Builder initialDelay(Duration initialDelay) {
+      this.initialDelay = initialDelay;
+      return this;
+    }
+
+    /**
+     * @param maxDelay the upper bound for the delay between polls. Defaults to 10 seconds.
+     */
+    public Builder maxDelay(Duration maxDelay) {
+      this.maxDelay = maxDelay;
+      return this;
+    }
+
+    /**
+     * @param multiplier the factor by which the delay grows while the status of the run is
+     *     unchanged. Must be at least 1. Defaults to 1.5.
+     */
+    public Builder multiplier(double multiplier) {
+      if (multiplier < 1) {
+        throw new IllegalArgumentException("multiplier must be at least 1");
+      }
+      this.multiplier = multiplier;
+      return this;
+    }
+
+    /**
+     * @param timeout the maximum time to wait for the run to reach a terminal status
+     */
+    public Builder timeout(Duration timeout) {
+      this.timeout = Optional.of(timeout);
+      return this;
+    }
+
+    /**
+     * @param requiredActionHandler handles runs with the status <b>requires_action</b>. The tool
+     *     outputs it produces are submitted and polling continues.
+     */
+    public Builder requiredActionHandler(RequiredActionHandler requiredActionHandler) {
+      this.requiredActionHandler = Optional.of(requiredActionHandler);
+      return this;
+    }
+
+    public RunPollingPolicy build() {
+      return new RunPollingPolicy(
+          initialDelay, maxDelay, multiplier, timeout, requiredActionHandler);
+    }
+  }
+}
@@ -1,10 +1,8 @@
 package io.github.stefanbratanov.jvm.openai;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -21,12 +19,8 @@ public final class RunStepsClient extends OpenAIAssistantsClient {
 
   private final URI baseUrl;
 
-  RunStepsClient(
-      URI baseUrl,
-      String[] authenticationHeaders,
-      HttpClient httpClient,
-      Optional<Duration> requestTimeout) {
-    super(authenticationHeaders, httpClient, requestTimeout);
+  RunStepsClient(URI baseUrl, String[] authenticationHeaders, ClientOptions clientOptions) {
+    super(authenticationHeaders, clientOptions);
     this.baseUrl = baseUrl;
   }
 
@@ -64,6 +58,24 @@ public final class RunStepsClient extends OpenAIAssistantsClient {
   public record PaginatedThreadRunSteps(
       List<ThreadRunStep> data, String firstId, String lastId, boolean hasMore) {}
 
+  /**
+   * Same as {@link #listRunSteps(String, String, PaginationQueryParameters, Optional)} but returns
+   * a {@link PaginatedIterable} which lazily fetches all run steps page by page.
+   */
+  public PaginatedIterable<ThreadRunStep> listAllRunSteps(
+      String threadId,
+      String runId,
+      PaginationQueryParameters paginationQueryParameters,
+      Optional<List<String>> include) {
+    return new PaginatedIterable<>(
+        paginationQueryParameters.after(),
+        after ->
+            listRunSteps(threadId, runId, paginationQueryParameters.withAfter(after), include),
+        PaginatedThreadRunSteps::data,
+        PaginatedThreadRunSteps::lastId,
+        PaginatedThreadRunSteps::hasMore);
+  }
+
   /**
    * Retrieves a run step.
    *
@@ -1,7 +1,6 @@
 package io.github.stefanbratanov.jvm.openai;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
@@ -9,8 +8,14 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.Spliterator;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -24,14 +29,18 @@ public final class RunsClient extends OpenAIAssistantsClient {
 
   private static final String RUNS_SEGMENT = "/runs";
 
+  private static final Set<String> TERMINAL_RUN_STATUSES =
+      Set.of(
+          Constants.COMPLETED_RUN_STATUS,
+          Constants.FAILED_RUN_STATUS,
+          Constants.CANCELLED_RUN_STATUS,
+          Constants.EXPIRED_RUN_STATUS,
+          Constants.INCOMPLETE_RUN_STATUS);
+
   private final URI baseUrl;
 
-  RunsClient(
-      URI baseUrl,
-      String[] authenticationHeaders,
-      HttpClient httpClient,
-      Optional<Duration> requestTimeout) {
-    super(authenticationHeaders, httpClient, requestTimeout);
+  RunsClient(URI baseUrl, String[] authenticationHeaders, ClientOptions clientOptions) {
+    super(authenticationHeaders, clientOptions);
     this.baseUrl = baseUrl;
   }
 
@@ -73,9 +82,25 @@ public final class RunsClient extends OpenAIAssistantsClient {
       Optional<List<String>> include,
       CreateRunRequest request,
       AssistantStreamEventSubscriber subscriber) {
+    createRunAndStreamAsync(threadId, include, request, subscriber);
+  }
+
+  /**
+   * Same as {@link #createRunAndStream(String, Optional, CreateRunRequest,
+   * AssistantStreamEventSubscriber)} but returns a future, which can be used to abort the request
+   *
+   * @return a future which completes when the stream is complete. Cancelling it, or throwing from
+   *     one of the methods of the subscriber, aborts the request.
+   * @throws OpenAIException in case of API errors
+   */
+  public CompletableFuture<Void> createRunAndStreamAsync(
+      String threadId,
+      Optional<List<String>> include,
+      CreateRunRequest request,
+      AssistantStreamEventSubscriber subscriber) {
     validateStreamRequest(request::stream);
     HttpRequest httpRequest = createRunPostRequest(threadId, include, request);
-    streamAndHandleAssistantEvents(httpRequest, subscriber);
+    return streamAndHandleAssistantEvents(httpRequest, subscriber);
   }
 
   /**
@@ -110,9 +135,22 @@ public final class RunsClient extends OpenAIAssistantsClient {
    */
   public void createThreadAndRunAndStream(
       CreateThreadAndRunRequest request, AssistantStreamEventSubscriber subscriber) {
+    createThreadAndRunAndStreamAsync(request, subscriber);
+  }
+
+  /**
+   * Same as {@link #createThreadAndRunAndStream(CreateThreadAndRunRequest,
+   * AssistantStreamEventSubscriber)} but returns a future, which can be used to abort the request
+   *
+   * @return a future which completes when the stream is complete. Cancelling it, or throwing from
+   *     one of the methods of the subscriber, aborts the request.
+   * @throws OpenAIException in case of API errors
+   */
+  public CompletableFuture<Void> createThreadAndRunAndStreamAsync(
+      CreateThreadAndRunRequest request, AssistantStreamEventSubscriber subscriber) {
     validateStreamRequest(request::stream);
     HttpRequest httpRequest = createThreadAndRunPostRequest(request);
-    streamAndHandleAssistantEvents(httpRequest, subscriber);
+    return streamAndHandleAssistantEvents(httpRequest, subscriber);
   }
 
   /**
@@ -140,23 +178,53 @@ public final class RunsClient extends OpenAIAssistantsClient {
   public record PaginatedThreadRuns(
       List<ThreadRun> data, String firstId, String lastId, boolean hasMore) {}
 
+  /**
+   * Same as {@link #listRuns(String, PaginationQueryParameters)} but returns a {@link
+   * PaginatedIterable} which lazily fetches all runs page by page.
+   */
+  public PaginatedIterable<ThreadRun> listAllRuns(
+      String threadId, PaginationQueryParameters paginationQueryParameters) {
+    return new PaginatedIterable<>(
+        paginationQueryParameters.after(),
+        after -> listRuns(threadId, paginationQueryParameters.withAfter(after)),
+        PaginatedThreadRuns::data,
+        PaginatedThreadRuns::lastId,
+        PaginatedThreadRuns::hasMore);
+  }
+
   /**
    * Retrieves a run.
    *
    * @throws OpenAIException in case of API errors
    */
   public ThreadRun retrieveRun(String threadId, String runId) {
-    HttpRequest httpRequest =
-        newHttpRequestBuilder()
-            .uri(
-                baseUrl.resolve(
-                    Endpoint.THREADS.getPath() + "/" + threadId + RUNS_SEGMENT + "/" + runId))
-            .GET()
-            .build();
+    HttpRequest httpRequest = createRetrieveRunGetRequest(threadId, runId);
     HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), ThreadRun.class);
   }
 
+  /**
+   * Waits for a run to reach a terminal status (completed, failed, cancelled, expired or
+   * incomplete). The run is polled on a scheduler which is shared by all pending runs, so no thread
+   * is blocked while waiting. The delay between polls grows while the status of the run is
+   * unchanged and is reset when it changes.
+   *
+   * <p>When the run requires action, the {@link RunPollingPolicy#requiredActionHandler()} is
+   * called and polling continues after its tool outputs are submitted. If there is no handler, the
+   * returned future completes with the run which requires action.
+   *
+   * @return a {@link CompletableFuture} which completes with the run or exceptionally with a {@link
+   *     TimeoutException} if {@link RunPollingPolicy#timeout()} elapses, including the time spent
+   *     in the handler and submitting its tool outputs. Cancelling it, or the timeout elapsing,
+   *     stops the polling and cancels the pending request or handler future.
+   */
+  public CompletableFuture<ThreadRun> awaitRun(
+      String threadId, String runId, RunPollingPolicy policy) {
+    RunAwaiter runAwaiter = new RunAwaiter(threadId, runId, policy);
+    runAwaiter.start();
+    return runAwaiter.result;
+  }
+
   /**
    * Modifies a run.
    *
@@ -213,9 +281,25 @@ public final class RunsClient extends OpenAIAssistantsClient {
       String runId,
       SubmitToolOutputsRequest request,
       AssistantStreamEventSubscriber subscriber) {
+    submitToolOutputsAndStreamAsync(threadId, runId, request, subscriber);
+  }
+
+  /**
+   * Same as {@link #submitToolOutputsAndStream(String, String, SubmitToolOutputsRequest,
+   * AssistantStreamEventSubscriber)} but returns a future, which can be used to abort the request
+   *
+   * @return a future which completes when the stream is complete. Cancelling it, or throwing from
+   *     one of the methods of the subscriber, aborts the request.
+   * @throws OpenAIException in case of API errors
+   */
+  public CompletableFuture<Void> submitToolOutputsAndStreamAsync(
+      String threadId,
+      String runId,
+      SubmitToolOutputsRequest request,
+      AssistantStreamEventSubscriber subscriber) {
     validateStreamRequest(request::stream);
     HttpRequest httpRequest = createSubmitToolOutputsPostRequest(threadId, runId, request);
-    streamAndHandleAssistantEvents(httpRequest, subscriber);
+    return streamAndHandleAssistantEvents(httpRequest, subscriber);
   }
 
   /**
@@ -241,6 +325,15 @@ public final class RunsClient extends OpenAIAssistantsClient {
     return deserializeResponse(httpResponse.body(), ThreadRun.class);
   }
 
+  private HttpRequest createRetrieveRunGetRequest(String threadId, String runId) {
+    return newHttpRequestBuilder()
+        .uri(
+            baseUrl.resolve(
+                Endpoint.THREADS.getPath() + "/" + threadId + RUNS_SEGMENT + "/" + runId))
+        .GET()
+        .build();
+  }
+
   private HttpRequest createRunPostRequest(
       String threadId, Optional<List<String>> include, CreateRunRequest request) {
     return newHttpRequestBuilder()
@@ -282,6 +375,144 @@ public final class RunsClient extends OpenAIAssistantsClient {
         .build();
   }
 
+  private static class RunPollingScheduler {
+
+    private static final ScheduledExecutorService INSTANCE =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              java.lang.Thread thread = new java.lang.Thread(runnable, "jvm-openai-run-poller");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  private class RunAwaiter {
+
+    private final String threadId;
+    private final String runId;
+    private final RunPollingPolicy policy;
+    private final CompletableFuture<ThreadRun> result = new CompletableFuture<>();
+
+    private Duration delay;
+    private String lastStatus;
+    // the poll, required action handler or tool outputs submission which is in progress
+    private volatile CompletableFuture<?> pending;
+
+    RunAwaiter(String threadId, String runId, RunPollingPolicy policy) {
+      this.threadId = threadId;
+      this.runId = runId;
+      this.policy = policy;
+      this.delay = policy.initialDelay();
+    }
+
+    void start() {
+      // the timeout bounds the whole wait, including slow handlers and submissions
+      policy
+          .timeout()
+          .ifPresent(
+              timeout -> {
+                ScheduledFuture<?> timeoutTask =
+                    RunPollingScheduler.INSTANCE.schedule(
+                        () ->
+                            result.completeExceptionally(
+                                new TimeoutException(
+                                    String.format(
+                                        "Run %s did not reach a terminal status within %s",
+                                        runId, timeout))),
+                        timeout.toNanos(),
+                        TimeUnit.NANOSECONDS);
+                result.whenComplete((run, ex) -> timeoutTask.cancel(false));
+              });
+      result.whenComplete(
+          (run, ex) -> {
+            CompletableFuture<?> pendingFuture = pending;
+            if (ex != null && pendingFuture != null) {
+              pendingFuture.cancel(true);
+            }
+          });
+      schedulePoll();
+    }
+
+    private void schedulePoll() {
+      if (result.isDone()) {
+        return;
+      }
+      RunPollingScheduler.INSTANCE.schedule(this::poll, delay.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private void poll() {
+      if (result.isDone()) {
+        return;
+      }
+      track(sendUncachedHttpRequestAsync(createRetrieveRunGetRequest(threadId, runId)))
+          .thenApply(httpResponse -> deserializeResponse(httpResponse.body(), ThreadRun.class))
+          .whenComplete(
+              (run, ex) -> {
+                if (ex != null) {
+                  result.completeExceptionally(ex);
+                  return;
+                }
+                try {
+                  handleRun(run);
+                } catch (RuntimeException handlingEx) {
+                  // such as a handler which throws instead of returning a failed future
+                  result.completeExceptionally(handlingEx);
+                }
+              });
+    }
+
+    private void handleRun(ThreadRun run) {
+      String status = run.status();
+      if (TERMINAL_RUN_STATUSES.contains(status)) {
+        result.complete(run);
+        return;
+      }
+      if (Constants.REQUIRES_ACTION_RUN_STATUS.equals(status)) {
+        policy
+            .requiredActionHandler()
+            .ifPresentOrElse(
+                handler -> handleRequiredAction(run, handler), () -> result.complete(run));
+        return;
+      }
+      if (status.equals(lastStatus)) {
+        long nextDelayNanos = (long) (delay.toNanos() * policy.multiplier());
+        delay = Duration.ofNanos(Math.min(nextDelayNanos, policy.maxDelay().toNanos()));
+      } else {
+        delay = policy.initialDelay();
+      }
+      lastStatus = status;
+      schedulePoll();
+    }
+
+    private void handleRequiredAction(ThreadRun run, RequiredActionHandler requiredActionHandler) {
+      track(requiredActionHandler.handle(run))
+          .thenCompose(
+              request ->
+                  track(
+                      sendHttpRequestAsync(
+                          createSubmitToolOutputsPostRequest(threadId, runId, request))))
+          .whenComplete(
+              (httpResponse, ex) -> {
+                if (ex != null) {
+                  result.completeExceptionally(ex);
+                } else {
+                  delay = policy.initialDelay();
+                  lastStatus = Constants.REQUIRES_ACTION_RUN_STATUS;
+                  schedulePoll();
+                }
+              });
+    }
+
+    /** Makes the future the pending one, cancelling it if the wait has already ended */
+    private <T> CompletableFuture<T> track(CompletableFuture<T> future) {
+      pending = future;
+      if (result.isCompletedExceptionally()) {
+        future.cancel(true);
+      }
+      return future;
+    }
+  }
+
   private record RawAssistantStreamEvent(String event, String data) {}
 
   private Stream<AssistantStreamEvent> getAssistantStreamEvents(HttpRequest httpRequest) {
@@ -308,26 +539,33 @@ public final class RunsClient extends OpenAIAssistantsClient {
             });
   }
 
-  private void streamAndHandleAssistantEvents(
+  private CompletableFuture<Void> streamAndHandleAssistantEvents(
       HttpRequest httpRequest, AssistantStreamEventSubscriber subscriber) {
-    CompletableFuture.supplyAsync(() -> streamRawAssistantEvents(httpRequest))
-        .thenAccept(
-            rawAssistantStreamEvents ->
-                rawAssistantStreamEvents.forEach(
-                    rawAssistantStreamEvent ->
-                        handleRawAssistantStreamEvent(rawAssistantStreamEvent, subscriber)))
-        .whenComplete(
-            (result, ex) -> {
-              if (ex != null) {
-                subscriber.onException(ex);
-              }
-              subscriber.onComplete();
-            });
+    CompletableFuture<Void> result =
+        consumeStreamAsync(
+            thenApplyCancellable(
+                streamServerSentEventsAsync(httpRequest), this::toRawAssistantEvents),
+            rawAssistantStreamEvent ->
+                handleRawAssistantStreamEvent(rawAssistantStreamEvent, subscriber));
+    // returned after the subscriber is notified, so joining it also waits for the notification
+    return whenCompleteCancellable(
+        result,
+        (ignored, ex) -> {
+          if (ex != null) {
+            subscriber.onException(ex);
+          }
+          subscriber.onComplete();
+        });
   }
 
   private Stream<RawAssistantStreamEvent> streamRawAssistantEvents(HttpRequest httpRequest) {
-    Stream<String> sseEvents = streamServerSentEvents(httpRequest);
-    return StreamSupport.stream(new RawAssistantStreamEventSpliterator(sseEvents), false);
+    return toRawAssistantEvents(streamServerSentEvents(httpRequest));
+  }
+
+  private Stream<RawAssistantStreamEvent> toRawAssistantEvents(Stream<String> sseEvents) {
+    // closing the events closes the response body, which aborts the request
+    return StreamSupport.stream(new RawAssistantStreamEventSpliterator(sseEvents), false)
+        .onClose(sseEvents::close);
   }
 
   private void handleRawAssistantStreamEvent(
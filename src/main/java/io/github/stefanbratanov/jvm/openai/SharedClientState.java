@@ -0,0 +1,27 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * The state which the clients keep between requests. It is created once in {@link OpenAI.Builder}
+ * and shared with the instances created with {@link OpenAI#withApiKey(String)}, so an instance
+ * per API key or per request still hedges with the recent latencies and finds the cached objects.
+ * The caches keep the objects per credential, so sharing them doesn't share objects between API
+ * keys.
+ */
+record SharedClientState(
+    Optional<RequestHedger> chatRequestHedger,
+    Optional<RequestHedger> embeddingsRequestHedger,
+    ReadThroughCache<Assistant> assistantsCache,
+    ReadThroughCache<VectorStore> vectorStoresCache) {
+
+  static SharedClientState create(
+      Optional<HedgingPolicy> hedgingPolicy, Duration cacheRefreshInterval) {
+    return new SharedClientState(
+        hedgingPolicy.map(RequestHedger::new),
+        hedgingPolicy.map(RequestHedger::new),
+        new ReadThroughCache<>(cacheRefreshInterval),
+        new ReadThroughCache<>(cacheRefreshInterval));
+  }
+}
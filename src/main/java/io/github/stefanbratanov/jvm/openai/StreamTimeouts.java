@@ -0,0 +1,64 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Timeouts for streamed responses, such as {@link
+ * ChatClient#streamChatCompletion(CreateChatCompletionRequest)}, which are measured while the
+ * response is streamed and not only until the response headers arrive. When one of them expires,
+ * the request is cancelled and the stream fails with an {@link java.io.UncheckedIOException}
+ * caused by a {@link java.net.http.HttpTimeoutException}.
+ *
+ * @param firstByteTimeout the maximum time from sending the request until the first bytes of the
+ *     streamed body arrive
+ * @param idleTimeout the maximum time between two chunks of the streamed body
+ * @param totalTimeout the maximum time from sending the request until the stream is complete
+ */
+public record StreamTimeouts(
+    Optional<Duration> firstByteTimeout,
+    Optional<Duration> idleTimeout,
+    Optional<Duration> totalTimeout) {
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+
+    private Optional<Duration> firstByteTimeout = Optional.empty();
+    private Optional<Duration> idleTimeout = Optional.empty();
+    private Optional<Duration> totalTimeout = Optional.empty();
+
+    /**
+     * @param firstByteTimeout the maximum time from sending the request until the first bytes of
+     *     the streamed body arrive. If none is set, there will be no timeout.
+     */
+    public Builder firstByteTimeout(Duration firstByteTimeout) {
+      this.firstByteTimeout = Optional.of(firstByteTimeout);
+      return this;
+    }
+
+    /**
+     * @param idleTimeout the maximum time between two chunks of the streamed body. If none is set,
+     *     there will be no timeout.
+     */
+    public Builder idleTimeout(Duration idleTimeout) {
+      this.idleTimeout = Optional.of(idleTimeout);
+      return this;
+    }
+
+    /**
+     * @param totalTimeout the maximum time from sending the request until the stream is complete.
+     *     If none is set, there will be no timeout.
+     */
+    public Builder totalTimeout(Duration totalTimeout) {
+      this.totalTimeout = Optional.of(totalTimeout);
+      return this;
+    }
+
+    public StreamTimeouts build() {
+      return new StreamTimeouts(firstByteTimeout, idleTimeout, totalTimeout);
+    }
+  }
+}
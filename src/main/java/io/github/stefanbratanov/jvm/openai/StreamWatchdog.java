@@ -0,0 +1,321 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.io.UncheckedIOException;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Enforces the {@link StreamTimeouts} of a single streamed request. The arrival of the body is
+ * observed by wrapping the {@link HttpResponse.BodyHandler} and the idle time only counts while the
+ * consumer of the stream has requested more of the body, so a slow consumer does not count as an
+ * idle stream. When a timeout expires before the response headers arrive, the response future is
+ * cancelled. When it expires afterwards, the body subscription is cancelled and the body fails with
+ * a {@link HttpTimeoutException}.
+ *
+ * <p>The checks are scheduled on a daemon scheduler shared by all watchdogs and the scheduled check
+ * is cancelled when the stream finishes, so a finished stream is not kept reachable until the
+ * deadline of its check.
+ */
+class StreamWatchdog {
+
+  private final StreamTimeouts streamTimeouts;
+  private final long start = System.nanoTime();
+
+  private static final long NO_CHUNK = Long.MIN_VALUE;
+
+  private volatile long lastChunkAt = NO_CHUNK;
+  private final AtomicLong demand = new AtomicLong();
+  // checks which were scheduled before the checks were restarted stop rescheduling themselves
+  private final AtomicLong checkGeneration = new AtomicLong();
+  private ScheduledFuture<?> scheduledCheck;
+  private volatile boolean finished;
+  private volatile HttpTimeoutException timeoutException;
+  private volatile CompletableFuture<?> responseFuture;
+  private volatile WatchedBodySubscriber<?> bodySubscriber;
+
+  StreamWatchdog(StreamTimeouts streamTimeouts) {
+    this.streamTimeouts = streamTimeouts;
+  }
+
+  <T> HttpResponse.BodyHandler<T> watch(HttpResponse.BodyHandler<T> bodyHandler) {
+    return responseInfo -> new WatchedBodySubscriber<>(bodyHandler.apply(responseInfo));
+  }
+
+  /** Starts checking the timeouts, cancelling the future if they expire before the headers */
+  void start(CompletableFuture<?> responseFuture) {
+    this.responseFuture = responseFuture;
+    responseFuture.whenComplete(
+        (response, ex) -> {
+          if (ex != null) {
+            // such as a failed connection, so there is no body which could finish the stream
+            finish();
+          }
+        });
+    check();
+  }
+
+  /**
+   * @return the exception of the expired timeout, if one expired
+   */
+  Optional<HttpTimeoutException> timeoutException() {
+    return Optional.ofNullable(timeoutException);
+  }
+
+  /**
+   * @return whether a check is scheduled, which is only the case until the stream finishes
+   */
+  synchronized boolean hasScheduledCheck() {
+    return scheduledCheck != null && !scheduledCheck.isDone();
+  }
+
+  private void check() {
+    check(checkGeneration.get());
+  }
+
+  /** Checks again straight away, for when the deadline of the scheduled check is too late */
+  private void restartChecks() {
+    synchronized (this) {
+      checkGeneration.incrementAndGet();
+      cancelScheduledCheck();
+    }
+    check();
+  }
+
+  private void finish() {
+    finished = true;
+    cancelScheduledCheck();
+  }
+
+  private synchronized void cancelScheduledCheck() {
+    if (scheduledCheck != null) {
+      scheduledCheck.cancel(false);
+    }
+  }
+
+  private void check(long generation) {
+    if (finished || generation != checkGeneration.get()) {
+      return;
+    }
+    long now = System.nanoTime();
+    long nextCheck = Long.MAX_VALUE;
+    if (streamTimeouts.totalTimeout().isPresent()) {
+      long remaining = remaining(start, streamTimeouts.totalTimeout().get(), now);
+      if (remaining <= 0) {
+        expire("Stream did not complete within " + streamTimeouts.totalTimeout().get());
+        return;
+      }
+      nextCheck = remaining;
+    }
+    long lastChunk = lastChunkAt;
+    if (lastChunk == NO_CHUNK && streamTimeouts.firstByteTimeout().isPresent()) {
+      long remaining = remaining(start, streamTimeouts.firstByteTimeout().get(), now);
+      if (remaining <= 0) {
+        expire("No response was received within " + streamTimeouts.firstByteTimeout().get());
+        return;
+      }
+      nextCheck = Math.min(nextCheck, remaining);
+    } else if (lastChunk != NO_CHUNK && streamTimeouts.idleTimeout().isPresent()) {
+      long remaining = remaining(lastChunk, streamTimeouts.idleTimeout().get(), now);
+      if (demand.get() == 0) {
+        // the consumer has not requested more yet, so the stream is not idle
+        remaining = streamTimeouts.idleTimeout().get().toNanos();
+      } else if (remaining <= 0) {
+        expire("No chunk was received within " + streamTimeouts.idleTimeout().get());
+        return;
+      }
+      nextCheck = Math.min(nextCheck, remaining);
+    }
+    if (nextCheck == Long.MAX_VALUE) {
+      // no timeout which can expire yet, but the first chunk restarts the checks
+      return;
+    }
+    // chunks after the first one only move the deadline, so they don't need to restart the checks.
+    // An expiry completes futures of the caller, so it doesn't run on the shared scheduler thread.
+    synchronized (this) {
+      // the stream may have finished, or the checks restarted, while this check was running
+      if (finished || generation != checkGeneration.get()) {
+        return;
+      }
+      scheduledCheck =
+          CheckScheduler.INSTANCE.schedule(
+              () -> ForkJoinPool.commonPool().execute(() -> check(generation)),
+              nextCheck,
+              TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * @return the stream, which fails with an exception caused by the {@link HttpTimeoutException}
+   *     when a timeout expired
+   */
+  <T> Stream<T> rethrowTimeouts(Stream<T> stream) {
+    Spliterator<T> spliterator = stream.spliterator();
+    return StreamSupport.stream(
+            new Spliterators.AbstractSpliterator<T>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+              @Override
+              public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                  return spliterator.tryAdvance(action);
+                } catch (UncheckedIOException ex) {
+                  throw timeoutException().map(UncheckedIOException::new).orElseThrow(() -> ex);
+                }
+              }
+            },
+            false)
+        .onClose(stream::close);
+  }
+
+  private static long saturatedAdd(long current, long added) {
+    long sum = current + added;
+    return sum < 0 ? Long.MAX_VALUE : sum;
+  }
+
+  private static long remaining(long from, Duration timeout, long now) {
+    return from + timeout.toNanos() - now;
+  }
+
+  private void expire(String message) {
+    timeoutException = new HttpTimeoutException(message);
+    finish();
+    if (bodySubscriber == null) {
+      responseFuture.cancel(true);
+    }
+    // the headers may have arrived in the meantime, in which case the body is expired instead
+    WatchedBodySubscriber<?> subscriber = bodySubscriber;
+    if (subscriber != null) {
+      subscriber.expire(timeoutException);
+    }
+  }
+
+  private static class CheckScheduler {
+
+    private static final ScheduledThreadPoolExecutor INSTANCE = createScheduler();
+
+    private static ScheduledThreadPoolExecutor createScheduler() {
+      ScheduledThreadPoolExecutor scheduler =
+          new ScheduledThreadPoolExecutor(
+              1,
+              runnable -> {
+                java.lang.Thread thread =
+                    new java.lang.Thread(runnable, "jvm-openai-stream-watchdog");
+                thread.setDaemon(true);
+                return thread;
+              });
+      // cancelled checks would otherwise stay in the queue until their deadline
+      scheduler.setRemoveOnCancelPolicy(true);
+      return scheduler;
+    }
+  }
+
+  private class WatchedBodySubscriber<T> implements HttpResponse.BodySubscriber<T> {
+
+    private final HttpResponse.BodySubscriber<T> downstream;
+
+    private Flow.Subscription subscription;
+    // the signals to the downstream subscriber must not overlap with an expiry
+    private boolean done;
+
+    private WatchedBodySubscriber(HttpResponse.BodySubscriber<T> downstream) {
+      this.downstream = downstream;
+    }
+
+    @Override
+    public CompletionStage<T> getBody() {
+      return downstream.getBody();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      synchronized (this) {
+        this.subscription = subscription;
+      }
+      bodySubscriber = this;
+      downstream.onSubscribe(
+          new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+              long previousDemand =
+                  demand.getAndAccumulate(n, (current, added) -> saturatedAdd(current, added));
+              if (previousDemand == 0 && lastChunkAt != NO_CHUNK) {
+                // the idle time starts again when the consumer requests more
+                lastChunkAt = System.nanoTime();
+              }
+              subscription.request(n);
+            }
+
+            @Override
+            public void cancel() {
+              // the consumer closed the stream
+              finish();
+              subscription.cancel();
+            }
+          });
+      if (timeoutException != null) {
+        // expired while the headers were arriving
+        expire(timeoutException);
+      }
+    }
+
+    @Override
+    public synchronized void onNext(List<ByteBuffer> item) {
+      if (done) {
+        return;
+      }
+      boolean first = lastChunkAt == NO_CHUNK;
+      lastChunkAt = System.nanoTime();
+      demand.getAndUpdate(current -> current == Long.MAX_VALUE ? current : current - 1);
+      downstream.onNext(item);
+      if (first && streamTimeouts.idleTimeout().isPresent()) {
+        // the idle time starts with the first chunk, which the scheduled check is not waiting for
+        restartChecks();
+      }
+    }
+
+    @Override
+    public synchronized void onError(Throwable throwable) {
+      if (done) {
+        return;
+      }
+      done = true;
+      finish();
+      downstream.onError(throwable);
+    }
+
+    @Override
+    public synchronized void onComplete() {
+      if (done) {
+        return;
+      }
+      done = true;
+      finish();
+      downstream.onComplete();
+    }
+
+    private synchronized void expire(HttpTimeoutException timeoutException) {
+      if (done) {
+        return;
+      }
+      done = true;
+      subscription.cancel();
+      downstream.onError(timeoutException);
+    }
+  }
+}
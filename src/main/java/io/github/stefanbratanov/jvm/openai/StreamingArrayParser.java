@@ -0,0 +1,132 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Parses JSON which arrives in fragments, such as streamed structured outputs, and emits every
+ * element of an array property of the root object as soon as the element is complete, instead of
+ * waiting for the whole JSON.
+ *
+ * <p>Instances keep the parsing state of one JSON document and are not thread-safe.
+ *
+ * @see StructuredOutputs#streamingArrayParser(String, Class)
+ */
+public final class StreamingArrayParser<T> {
+
+  private final String property;
+  private final ObjectReader elementReader;
+  private final JsonParser parser;
+  private final ByteArrayFeeder feeder;
+
+  private int depth;
+  private boolean inArray;
+  private TokenBuffer element;
+  private int elementDepth;
+
+  StreamingArrayParser(String property, ObjectReader elementReader) {
+    this.property = property;
+    this.elementReader = elementReader;
+    try {
+      parser = ObjectMapperSingleton.getInstance().createNonBlockingByteArrayParser();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+  }
+
+  /**
+   * @param fragment the next fragment of the JSON
+   * @return the elements of the array which were completed by the fragment
+   */
+  public List<T> feed(String fragment) {
+    byte[] bytes = fragment.getBytes(StandardCharsets.UTF_8);
+    try {
+      feeder.feedInput(bytes, 0, bytes.length);
+      return parseAvailableTokens();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  /**
+   * Signals that the JSON is complete
+   *
+   * @return the elements of the array which were completed by the end of the JSON
+   */
+  public List<T> endOfInput() {
+    feeder.endOfInput();
+    try {
+      return parseAvailableTokens();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  /**
+   * Feeds the content of the streamed chunks and emits the elements of the array as they are
+   * completed
+   *
+   * @param chunks the chunks of a streamed chat completion with a single choice
+   */
+  public Stream<T> parse(Stream<ChatCompletionChunk> chunks) {
+    return chunks
+        .filter(chunk -> !chunk.choices().isEmpty())
+        .map(chunk -> chunk.choices().get(0).delta().content())
+        .filter(content -> content != null && !content.isEmpty())
+        .flatMap(content -> feed(content).stream());
+  }
+
+  private List<T> parseAvailableTokens() throws IOException {
+    List<T> elements = new ArrayList<>();
+    JsonToken token;
+    while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+      if (element != null) {
+        // inside an element which is an object or an array
+        element.copyCurrentEvent(parser);
+        if (token.isStructStart()) {
+          elementDepth++;
+        } else if (token.isStructEnd() && --elementDepth == 0) {
+          elements.add(readElement());
+        }
+      } else if (inArray) {
+        if (token == JsonToken.END_ARRAY) {
+          inArray = false;
+          depth--;
+        } else {
+          element = new TokenBuffer(parser);
+          element.copyCurrentEvent(parser);
+          if (token.isStructStart()) {
+            elementDepth = 1;
+          } else {
+            elements.add(readElement());
+          }
+        }
+      } else if (token.isStructStart()) {
+        inArray =
+            token == JsonToken.START_ARRAY && depth == 1 && property.equals(parser.currentName());
+        depth++;
+      } else if (token.isStructEnd()) {
+        depth--;
+      }
+    }
+    return elements;
+  }
+
+  private T readElement() throws IOException {
+    try (JsonParser elementParser = element.asParser()) {
+      return elementReader.readValue(elementParser);
+    } finally {
+      element = null;
+    }
+  }
+}
@@ -0,0 +1,285 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import com.fasterxml.jackson.annotation.JsonClassDescription;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyDescription;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Derives strict JSON schemas from records and sealed interfaces for <a
+ * href="https://platform.openai.com/docs/guides/structured-outputs">Structured Outputs</a> and
+ * parses the output of the model back into them.
+ *
+ * <p>Every record component is required. {@link Optional} components are nullable, sealed
+ * interfaces become an {@code anyOf} of the records which implement them and descriptions are taken
+ * from {@link JsonClassDescription} and {@link JsonPropertyDescription}. The schema and the reader
+ * of every class are created once and cached.
+ */
+public final class StructuredOutputs {
+
+  private static final PropertyNamingStrategies.NamingBase NAMING_STRATEGY =
+      (PropertyNamingStrategies.NamingBase) PropertyNamingStrategies.SNAKE_CASE;
+
+  private static final ClassValue<StructuredOutput> STRUCTURED_OUTPUTS =
+      new ClassValue<>() {
+        @Override
+        protected StructuredOutput computeValue(Class<?> type) {
+          return createStructuredOutput(type);
+        }
+      };
+
+  private StructuredOutputs() {}
+
+  /**
+   * @param type a record
+   * @return the strict JSON schema of the record
+   * @throws IllegalArgumentException if the record uses types which are not supported in a strict
+   *     schema, such as maps, or is recursive
+   */
+  public static Map<String, Object> schema(Class<? extends Record> type) {
+    return STRUCTURED_OUTPUTS.get(type).schema();
+  }
+
+  /**
+   * @param type a record
+   * @return a strict {@link JsonSchema} named after the record
+   */
+  public static JsonSchema jsonSchema(Class<? extends Record> type) {
+    JsonSchema.Builder jsonSchema =
+        JsonSchema.newBuilder().name(type.getSimpleName()).schema(schema(type)).strict(true);
+    Optional.ofNullable(type.getAnnotation(JsonClassDescription.class))
+        .map(JsonClassDescription::value)
+        .ifPresent(jsonSchema::description);
+    return jsonSchema.build();
+  }
+
+  /**
+   * @param type a record
+   * @return a {@link ResponseFormat} which makes the model output an instance of the record
+   */
+  public static ResponseFormat responseFormat(Class<? extends Record> type) {
+    return ResponseFormat.jsonSchema(jsonSchema(type));
+  }
+
+  /**
+   * @param json the output of the model, for example the content of a message or the arguments of
+   *     a function call
+   * @param type the record whose schema the output follows
+   */
+  public static <T extends Record> T parse(String json, Class<T> type) {
+    try {
+      return STRUCTURED_OUTPUTS.get(type).reader().readValue(json);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  /**
+   * Same as {@link #parse(String, Class)} but parses the content of the message of the first choice
+   *
+   * @throws IllegalStateException if the model refused to respond
+   */
+  public static <T extends Record> T parse(ChatCompletion chatCompletion, Class<T> type) {
+    ChatCompletion.Choice.Message message = chatCompletion.choices().get(0).message();
+    if (message.refusal() != null) {
+      throw new IllegalStateException("The model refused to respond: " + message.refusal());
+    }
+    return parse(message.content(), type);
+  }
+
+  /**
+   * Creates a parser which emits every element of an array property of a streamed structured
+   * output as soon as the element is complete
+   *
+   * @param property the name of the array property of the root object
+   * @param elementType the type of the elements, which may be a record or a sealed interface
+   */
+  public static <T> StreamingArrayParser<T> streamingArrayParser(
+      String property, Class<T> elementType) {
+    // read like the elements of a structured output, so the subtypes of sealed interfaces are
+    // deduced as well
+    ObjectReader elementReader =
+        elementType.isRecord() || elementType.isSealed()
+            ? STRUCTURED_OUTPUTS.get(elementType).reader()
+            : ObjectMapperSingleton.getInstance().readerFor(elementType);
+    return new StreamingArrayParser<>(property, elementReader);
+  }
+
+  /**
+   * Only records are exposed as structured outputs. Sealed interfaces are also accepted, so that
+   * they can be read as the elements of a {@link StreamingArrayParser}.
+   */
+  private static StructuredOutput createStructuredOutput(Class<?> type) {
+    if (!type.isRecord() && !type.isSealed()) {
+      throw new IllegalArgumentException(type.getName() + " is not a record");
+    }
+    SchemaGenerator generator = new SchemaGenerator();
+    Map<String, Object> schema =
+        type.isRecord() ? generator.objectSchema(type) : generator.schema(type);
+    ObjectMapper objectMapper = ObjectMapperSingleton.getInstance();
+    if (!generator.sealedTypes.isEmpty()) {
+      // the subtypes of sealed interfaces are deduced from their properties
+      objectMapper = objectMapper.copy();
+      for (Class<?> sealedType : generator.sealedTypes) {
+        objectMapper.addMixIn(sealedType, DeducedSubtypes.class);
+      }
+      objectMapper.registerSubtypes(generator.subtypes.toArray(Class<?>[]::new));
+    }
+    return new StructuredOutput(schema, objectMapper.readerFor(type));
+  }
+
+  private static class SchemaGenerator {
+
+    private final Set<Class<?>> visiting = new HashSet<>();
+    private final Set<Class<?>> sealedTypes = new LinkedHashSet<>();
+    private final Set<Class<?>> subtypes = new LinkedHashSet<>();
+
+    private Map<String, Object> schema(Type type) {
+      if (type instanceof ParameterizedType parameterizedType) {
+        Class<?> rawType = (Class<?>) parameterizedType.getRawType();
+        Type argument = parameterizedType.getActualTypeArguments()[0];
+        if (rawType == Optional.class) {
+          return immutableMap("anyOf", List.of(schema(argument), Map.of("type", "null")));
+        }
+        if (Collection.class.isAssignableFrom(rawType)) {
+          return immutableMap("type", "array", "items", schema(argument));
+        }
+        throw unsupported(type);
+      }
+      if (type instanceof GenericArrayType arrayType) {
+        return immutableMap("type", "array", "items", schema(arrayType.getGenericComponentType()));
+      }
+      if (!(type instanceof Class<?> cls)) {
+        throw unsupported(type);
+      }
+      if (cls == String.class || cls == char.class || cls == Character.class) {
+        return Map.of("type", "string");
+      }
+      if (cls == boolean.class || cls == Boolean.class) {
+        return Map.of("type", "boolean");
+      }
+      if (cls == int.class
+          || cls == Integer.class
+          || cls == long.class
+          || cls == Long.class
+          || cls == short.class
+          || cls == Short.class
+          || cls == byte.class
+          || cls == Byte.class
+          || cls == BigInteger.class) {
+        return Map.of("type", "integer");
+      }
+      if (cls == double.class
+          || cls == Double.class
+          || cls == float.class
+          || cls == Float.class
+          || cls == BigDecimal.class) {
+        return Map.of("type", "number");
+      }
+      if (cls.isEnum()) {
+        List<String> values =
+            Arrays.stream(cls.getEnumConstants()).map(value -> ((Enum<?>) value).name()).toList();
+        return immutableMap("type", "string", "enum", values);
+      }
+      if (cls.isArray()) {
+        return immutableMap("type", "array", "items", schema(cls.getComponentType()));
+      }
+      if (cls.isRecord()) {
+        JsonClassDescription description = cls.getAnnotation(JsonClassDescription.class);
+        return description == null
+            ? objectSchema(cls)
+            : withDescription(objectSchema(cls), description.value());
+      }
+      if (cls.isSealed()) {
+        sealedTypes.add(cls);
+        List<Map<String, Object>> alternatives = new ArrayList<>();
+        for (Class<?> subtype : cls.getPermittedSubclasses()) {
+          if (subtype.isRecord()) {
+            subtypes.add(subtype);
+          }
+          alternatives.add(schema(subtype));
+        }
+        return immutableMap("anyOf", alternatives);
+      }
+      throw unsupported(type);
+    }
+
+    private Map<String, Object> objectSchema(Class<?> type) {
+      if (!visiting.add(type)) {
+        throw new IllegalArgumentException(
+            "Recursive type " + type.getName() + " is not supported");
+      }
+      Map<String, Object> properties = new LinkedHashMap<>();
+      for (RecordComponent component : type.getRecordComponents()) {
+        Map<String, Object> property = schema(component.getGenericType());
+        JsonPropertyDescription description =
+            component.getAccessor().getAnnotation(JsonPropertyDescription.class);
+        properties.put(
+            propertyName(component),
+            description == null ? property : withDescription(property, description.value()));
+      }
+      visiting.remove(type);
+      Map<String, Object> schema = new LinkedHashMap<>();
+      schema.put("type", "object");
+      schema.put("properties", Collections.unmodifiableMap(properties));
+      schema.put("required", List.copyOf(properties.keySet()));
+      schema.put("additionalProperties", false);
+      return Collections.unmodifiableMap(schema);
+    }
+
+    private static Map<String, Object> withDescription(
+        Map<String, Object> schema, String description) {
+      Map<String, Object> schemaWithDescription = new LinkedHashMap<>(schema);
+      schemaWithDescription.put("description", description);
+      return Collections.unmodifiableMap(schemaWithDescription);
+    }
+
+    private static String propertyName(RecordComponent component) {
+      JsonProperty jsonProperty = component.getAccessor().getAnnotation(JsonProperty.class);
+      if (jsonProperty != null && !jsonProperty.value().isEmpty()) {
+        return jsonProperty.value();
+      }
+      return NAMING_STRATEGY.translate(component.getName());
+    }
+
+    private static IllegalArgumentException unsupported(Type type) {
+      return new IllegalArgumentException(
+          type.getTypeName() + " is not supported in a strict JSON schema");
+    }
+
+    private static Map<String, Object> immutableMap(Object... keysAndValues) {
+      Map<String, Object> map = new LinkedHashMap<>();
+      for (int i = 0; i < keysAndValues.length; i += 2) {
+        map.put((String) keysAndValues[i], keysAndValues[i + 1]);
+      }
+      return Collections.unmodifiableMap(map);
+    }
+  }
+
+  @JsonTypeInfo(use = JsonTypeInfo.Id.DEDUCTION)
+  private interface DeducedSubtypes {}
+
+  private record StructuredOutput(Map<String, Object> schema, ObjectReader reader) {}
+}
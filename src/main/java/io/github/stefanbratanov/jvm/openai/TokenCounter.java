@@ -0,0 +1,199 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.github.stefanbratanov.jvm.openai.ChatMessage.AssistantMessage;
+import io.github.stefanbratanov.jvm.openai.ChatMessage.SystemMessage;
+import io.github.stefanbratanov.jvm.openai.ChatMessage.ToolMessage;
+import io.github.stefanbratanov.jvm.openai.ChatMessage.UserMessage.UserMessageWithContentParts;
+import io.github.stefanbratanov.jvm.openai.ChatMessage.UserMessage.UserMessageWithTextContent;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Estimates the number of prompt tokens of chat completion requests. It follows the rules from the
+ * <a href="https://cookbook.openai.com/examples/how_to_count_tokens_with_tiktoken">OpenAI
+ * Cookbook</a>: every message has an overhead of 3 tokens, a name adds 1 token and every reply is
+ * primed with 3 tokens. The count may differ slightly from the actual usage, because the exact
+ * format is model-specific and may change over time.
+ *
+ * <p>Images are counted as 85 tokens, which is the cost of a low detail image, because their
+ * dimensions are not known.
+ */
+public final class TokenCounter {
+
+  private static final int TOKENS_PER_MESSAGE = 3;
+  private static final int TOKENS_PER_NAME = 1;
+  private static final int TOKENS_PER_TOOL_CALL = 3;
+  private static final int TOKENS_FOR_REPLY_PRIMING = 3;
+  private static final int TOKENS_PER_IMAGE = 85;
+
+  private static final int TOKENS_PER_FUNCTION = 7;
+  private static final int TOKENS_FOR_FUNCTION_PROPERTIES = 3;
+  private static final int TOKENS_PER_FUNCTION_PROPERTY = 3;
+  private static final int TOKENS_FOR_PROPERTY_ENUM = -3;
+  private static final int TOKENS_PER_PROPERTY_ENUM_ITEM = 3;
+  private static final int TOKENS_FOR_FUNCTIONS_END = 12;
+
+  private final Tokenizer tokenizer;
+
+  public TokenCounter(Tokenizer tokenizer) {
+    this.tokenizer = tokenizer;
+  }
+
+  /**
+   * @param model ID of the model
+   * @throws IllegalStateException if the ranks of the model encoding are not on the classpath
+   */
+  public static TokenCounter forModel(String model) {
+    return new TokenCounter(Tokenizer.forModel(model));
+  }
+
+  /** Same as {@link #forModel(String)} but uses an {@link OpenAIModel} */
+  public static TokenCounter forModel(OpenAIModel model) {
+    return forModel(model.getId());
+  }
+
+  public Tokenizer getTokenizer() {
+    return tokenizer;
+  }
+
+  /**
+   * @return the number of tokens in the text
+   */
+  public int countTokens(String text) {
+    return text == null ? 0 : tokenizer.countTokens(text);
+  }
+
+  /**
+   * @return the number of tokens of the message including its overhead
+   */
+  public int countMessage(ChatMessage message) {
+    int count = TOKENS_PER_MESSAGE + countTokens(message.role());
+    if (message instanceof SystemMessage systemMessage) {
+      count += countTokens(systemMessage.content()) + countName(systemMessage.name());
+    } else if (message instanceof UserMessageWithTextContent userMessage) {
+      count += countTokens(userMessage.content()) + countName(userMessage.name());
+    } else if (message instanceof UserMessageWithContentParts userMessage) {
+      count += countContentParts(userMessage.content()) + countName(userMessage.name());
+    } else if (message instanceof AssistantMessage assistantMessage) {
+      count +=
+          countTokens(assistantMessage.content())
+              + countName(assistantMessage.name())
+              + assistantMessage.toolCalls().map(this::countToolCalls).orElse(0);
+    } else if (message instanceof ToolMessage toolMessage) {
+      count += countTokens(toolMessage.content());
+    }
+    return count;
+  }
+
+  /**
+   * @return the number of tokens of the messages including the tokens which prime the reply
+   */
+  public int countMessages(List<ChatMessage> messages) {
+    int count = TOKENS_FOR_REPLY_PRIMING;
+    for (ChatMessage message : messages) {
+      count += countMessage(message);
+    }
+    return count;
+  }
+
+  /**
+   * Counts the tokens which the function definitions add to the prompt. Tools other than {@link
+   * Tool.FunctionTool} are not supported by chat completions and are not counted.
+   *
+   * @return the number of tokens of the tools or 0 if there are no function tools
+   */
+  public int countTools(List<Tool> tools) {
+    int count = 0;
+    for (Tool tool : tools) {
+      if (tool instanceof Tool.FunctionTool functionTool) {
+        count += countFunction(functionTool.function());
+      }
+    }
+    return count > 0 ? count + TOKENS_FOR_FUNCTIONS_END : 0;
+  }
+
+  /**
+   * @return the number of prompt tokens of the request
+   */
+  public int countRequest(CreateChatCompletionRequest request) {
+    return countMessages(request.messages()) + request.tools().map(this::countTools).orElse(0);
+  }
+
+  private int countName(Optional<String> name) {
+    return name.map(n -> countTokens(n) + TOKENS_PER_NAME).orElse(0);
+  }
+
+  private int countContentParts(List<ContentPart> contentParts) {
+    int count = 0;
+    for (ContentPart contentPart : contentParts) {
+      if (contentPart instanceof ContentPart.TextContentPart textContentPart) {
+        count += countTokens(textContentPart.text());
+      } else {
+        count += TOKENS_PER_IMAGE;
+      }
+    }
+    return count;
+  }
+
+  private int countToolCalls(List<ToolCall> toolCalls) {
+    int count = 0;
+    for (ToolCall toolCall : toolCalls) {
+      count += TOKENS_PER_TOOL_CALL;
+      if (toolCall instanceof ToolCall.FunctionToolCall functionToolCall) {
+        count +=
+            countTokens(functionToolCall.function().name())
+                + countTokens(functionToolCall.function().arguments());
+      }
+    }
+    return count;
+  }
+
+  private int countFunction(Function function) {
+    int count =
+        TOKENS_PER_FUNCTION
+            + countTokens(
+                function.name() + ":" + withoutTrailingPeriod(function.description().orElse("")));
+    Optional<JsonNode> properties =
+        function
+            .parameters()
+            .map(this::toJsonNode)
+            .map(parameters -> parameters.path("properties"))
+            .filter(node -> node.isObject() && !node.isEmpty());
+    if (properties.isEmpty()) {
+      return count;
+    }
+    count += TOKENS_FOR_FUNCTION_PROPERTIES;
+    Iterator<Map.Entry<String, JsonNode>> fields = properties.get().fields();
+    while (fields.hasNext()) {
+      Map.Entry<String, JsonNode> field = fields.next();
+      JsonNode property = field.getValue();
+      count += TOKENS_PER_FUNCTION_PROPERTY;
+      JsonNode enumItems = property.path("enum");
+      if (enumItems.isArray()) {
+        count += TOKENS_FOR_PROPERTY_ENUM;
+        for (JsonNode enumItem : enumItems) {
+          count += TOKENS_PER_PROPERTY_ENUM_ITEM + countTokens(enumItem.asText());
+        }
+      }
+      count +=
+          countTokens(
+              field.getKey()
+                  + ":"
+                  + property.path("type").asText()
+                  + ":"
+                  + withoutTrailingPeriod(property.path("description").asText()));
+    }
+    return count;
+  }
+
+  private JsonNode toJsonNode(Map<String, Object> parameters) {
+    return ObjectMapperSingleton.getInstance().valueToTree(parameters);
+  }
+
+  private static String withoutTrailingPeriod(String text) {
+    return text.endsWith(".") ? text.substring(0, text.length() - 1) : text;
+  }
+}
@@ -0,0 +1,58 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The byte pair encodings used by the OpenAI models.
+ *
+ * @see <a href="https://github.com/openai/tiktoken">tiktoken</a>
+ */
+public enum TokenEncoding {
+  CL100K_BASE(
+      "cl100k_base",
+      "(?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\\r\\n\\p{L}\\p{N}]?\\p{L}+|\\p{N}{1,3}|"
+          + " ?[^\\s\\p{L}\\p{N}]+[\\r\\n]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+"),
+  O200K_BASE(
+      "o200k_base",
+      "[^\\r\\n\\p{L}\\p{N}]?[\\p{Lu}\\p{Lt}\\p{Lm}\\p{Lo}\\p{M}]*[\\p{Ll}\\p{Lm}\\p{Lo}\\p{M}]+"
+          + "(?i:'s|'t|'re|'ve|'m|'ll|'d)?|"
+          + "[^\\r\\n\\p{L}\\p{N}]?[\\p{Lu}\\p{Lt}\\p{Lm}\\p{Lo}\\p{M}]+"
+          + "[\\p{Ll}\\p{Lm}\\p{Lo}\\p{M}]*"
+          + "(?i:'s|'t|'re|'ve|'m|'ll|'d)?|"
+          + "\\p{N}{1,3}| ?[^\\s\\p{L}\\p{N}]+[\\r\\n/]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+");
+
+  private static final List<String> O200K_BASE_MODEL_PREFIXES =
+      List.of("gpt-4o", "gpt-4.1", "gpt-4.5", "chatgpt-4o", "o1", "o3", "o4");
+
+  private final String name;
+  private final Pattern pattern;
+
+  TokenEncoding(String name, String pattern) {
+    this.name = name;
+    this.pattern = Pattern.compile(pattern, Pattern.UNICODE_CHARACTER_CLASS);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /** The pattern which splits text into pieces before the byte pair encoding is applied */
+  Pattern getPattern() {
+    return pattern;
+  }
+
+  /**
+   * @param model ID of the model
+   * @return the encoding used by the model. Models which are not known to use {@link #O200K_BASE}
+   *     are assumed to use {@link #CL100K_BASE}.
+   */
+  public static TokenEncoding forModel(String model) {
+    for (String prefix : O200K_BASE_MODEL_PREFIXES) {
+      if (model.startsWith(prefix)) {
+        return O200K_BASE;
+      }
+    }
+    return CL100K_BASE;
+  }
+}
@@ -0,0 +1,116 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * The merge ranks of a byte pair encoding. Lookups are done directly on byte slices using an
+ * open-addressing hash table of ranks, so no keys have to be allocated while encoding.
+ */
+final class TokenRanks {
+
+  private static final int EMPTY = -1;
+
+  // indexed by rank
+  private final byte[][] tokens;
+  // slots hold a rank or EMPTY
+  private final int[] table;
+  private final int mask;
+
+  private TokenRanks(byte[][] tokens, int[] table) {
+    this.tokens = tokens;
+    this.table = table;
+    this.mask = table.length - 1;
+  }
+
+  /**
+   * Loads ranks in the tiktoken format, which is one base64 encoded token and its rank separated
+   * by a space per line.
+   */
+  static TokenRanks load(InputStream input) throws IOException {
+    List<byte[]> tokenList = new ArrayList<>();
+    List<Integer> rankList = new ArrayList<>();
+    int maxRank = -1;
+    BufferedReader reader =
+        new BufferedReader(new InputStreamReader(input, StandardCharsets.US_ASCII));
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.isBlank()) {
+        continue;
+      }
+      int separator = line.indexOf(' ');
+      if (separator < 0) {
+        throw new IOException("Invalid token rank line: " + line);
+      }
+      int rank = Integer.parseInt(line, separator + 1, line.length(), 10);
+      tokenList.add(Base64.getDecoder().decode(line.substring(0, separator)));
+      rankList.add(rank);
+      maxRank = Math.max(maxRank, rank);
+    }
+    byte[][] tokens = new byte[maxRank + 1][];
+    int[] table = new int[tableSize(tokenList.size())];
+    Arrays.fill(table, EMPTY);
+    TokenRanks ranks = new TokenRanks(tokens, table);
+    for (int i = 0; i < tokenList.size(); i++) {
+      ranks.put(tokenList.get(i), rankList.get(i));
+    }
+    return ranks;
+  }
+
+  /**
+   * @return the rank of the bytes between {@code from} (inclusive) and {@code to} (exclusive) or
+   *     -1 if they are not a token
+   */
+  int rank(byte[] bytes, int from, int to) {
+    int slot = hash(bytes, from, to) & mask;
+    int rank;
+    while ((rank = table[slot]) != EMPTY) {
+      byte[] token = tokens[rank];
+      if (Arrays.equals(token, 0, token.length, bytes, from, to)) {
+        return rank;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  /**
+   * @return the bytes of the token with the rank or null if there is no such token
+   */
+  byte[] tokenBytes(int rank) {
+    return rank >= 0 && rank < tokens.length ? tokens[rank] : null;
+  }
+
+  private void put(byte[] token, int rank) {
+    tokens[rank] = token;
+    int slot = hash(token, 0, token.length) & mask;
+    while (table[slot] != EMPTY) {
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = rank;
+  }
+
+  // keeps the load factor below 0.5
+  private static int tableSize(int size) {
+    return Integer.highestOneBit(Math.max(size, 1) * 2 + 1) << 1;
+  }
+
+  // FNV-1a followed by a murmur3 finalizer to spread the bits used by the mask
+  private static int hash(byte[] bytes, int from, int to) {
+    int hash = 0x811c9dc5;
+    for (int i = from; i < to; i++) {
+      hash = (hash ^ (bytes[i] & 0xff)) * 0x01000193;
+    }
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+    return hash;
+  }
+}
@@ -0,0 +1,215 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+
+/**
+ * A byte pair encoding tokenizer which is compatible with <a
+ * href="https://github.com/openai/tiktoken">tiktoken</a>. It can be used to estimate the size of
+ * prompts before sending them.
+ *
+ * <p>Special tokens such as {@code <|endoftext|>} are encoded as ordinary text.
+ *
+ * <p>Instances are thread-safe. Each thread keeps a small cache of recently encoded pieces of text.
+ */
+public final class Tokenizer {
+
+  private static final String RANKS_RESOURCE_FORMAT = "/tiktoken/%s.tiktoken";
+  private static final int PIECE_CACHE_SIZE = 4096;
+
+  private static final Map<TokenEncoding, Tokenizer> TOKENIZERS = new ConcurrentHashMap<>();
+
+  private final TokenEncoding encoding;
+  private final TokenRanks ranks;
+  private final ThreadLocal<Map<String, int[]>> pieceCache =
+      ThreadLocal.withInitial(
+          () ->
+              new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+                  return size() > PIECE_CACHE_SIZE;
+                }
+              });
+
+  private Tokenizer(TokenEncoding encoding, TokenRanks ranks) {
+    this.encoding = encoding;
+    this.ranks = ranks;
+  }
+
+  /**
+   * Returns the tokenizer for the encoding. The ranks are loaded once from the classpath resource
+   * {@code /tiktoken/<encoding name>.tiktoken}, for example {@code /tiktoken/cl100k_base.tiktoken}.
+   * The rank files can be downloaded from {@code
+   * https://openaipublic.blob.core.windows.net/encodings/<encoding name>.tiktoken}.
+   *
+   * @throws IllegalStateException if the ranks resource is not on the classpath
+   */
+  public static Tokenizer forEncoding(TokenEncoding encoding) {
+    return TOKENIZERS.computeIfAbsent(encoding, Tokenizer::loadFromClasspath);
+  }
+
+  /**
+   * Same as {@link #forEncoding(TokenEncoding)} but uses the encoding of the model
+   *
+   * @param model ID of the model
+   */
+  public static Tokenizer forModel(String model) {
+    return forEncoding(TokenEncoding.forModel(model));
+  }
+
+  /**
+   * Creates a tokenizer with ranks which are not on the classpath
+   *
+   * @param encoding the encoding which defines how text is split before it is encoded
+   * @param ranks the merge ranks in the tiktoken format. The stream is not closed.
+   */
+  public static Tokenizer load(TokenEncoding encoding, InputStream ranks) {
+    try {
+      return new Tokenizer(encoding, TokenRanks.load(ranks));
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  public TokenEncoding getEncoding() {
+    return encoding;
+  }
+
+  /**
+   * @return the number of tokens in the text
+   */
+  public int countTokens(String text) {
+    int count = 0;
+    Matcher matcher = encoding.getPattern().matcher(text);
+    while (matcher.find()) {
+      count += encodePiece(matcher.group()).length;
+    }
+    return count;
+  }
+
+  /**
+   * @return the tokens of the text
+   */
+  public int[] encode(String text) {
+    int[] tokens = new int[Math.max(16, text.length() / 3)];
+    int size = 0;
+    Matcher matcher = encoding.getPattern().matcher(text);
+    while (matcher.find()) {
+      int[] pieceTokens = encodePiece(matcher.group());
+      if (size + pieceTokens.length > tokens.length) {
+        tokens = Arrays.copyOf(tokens, Math.max(tokens.length * 2, size + pieceTokens.length));
+      }
+      System.arraycopy(pieceTokens, 0, tokens, size, pieceTokens.length);
+      size += pieceTokens.length;
+    }
+    return Arrays.copyOf(tokens, size);
+  }
+
+  /**
+   * @return the text of the tokens
+   * @throws IllegalArgumentException if any of the tokens is unknown
+   */
+  public String decode(int[] tokens) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(tokens.length * 4);
+    for (int token : tokens) {
+      byte[] tokenBytes = ranks.tokenBytes(token);
+      if (tokenBytes == null) {
+        throw new IllegalArgumentException("Unknown token: " + token);
+      }
+      bytes.writeBytes(tokenBytes);
+    }
+    return bytes.toString(StandardCharsets.UTF_8);
+  }
+
+  private int[] encodePiece(String piece) {
+    Map<String, int[]> cache = pieceCache.get();
+    int[] tokens = cache.get(piece);
+    if (tokens == null) {
+      tokens = bytePairEncode(piece.getBytes(StandardCharsets.UTF_8));
+      cache.put(piece, tokens);
+    }
+    return tokens;
+  }
+
+  private int[] bytePairEncode(byte[] piece) {
+    int rank = ranks.rank(piece, 0, piece.length);
+    if (rank >= 0) {
+      return new int[] {rank};
+    }
+    // boundaries[i] is the start of the i-th part, pairRanks[i] is the rank of the i-th part
+    // merged with the next one
+    int[] boundaries = new int[piece.length + 1];
+    int[] pairRanks = new int[piece.length + 1];
+    int parts = piece.length;
+    for (int i = 0; i <= piece.length; i++) {
+      boundaries[i] = i;
+    }
+    for (int i = 0; i < parts - 1; i++) {
+      pairRanks[i] = pairRank(piece, boundaries, parts, i);
+    }
+    while (parts > 1) {
+      int minRank = Integer.MAX_VALUE;
+      int minIndex = -1;
+      for (int i = 0; i < parts - 1; i++) {
+        if (pairRanks[i] < minRank) {
+          minRank = pairRanks[i];
+          minIndex = i;
+        }
+      }
+      if (minIndex < 0) {
+        break;
+      }
+      // merge the part at minIndex with the next one
+      System.arraycopy(boundaries, minIndex + 2, boundaries, minIndex + 1, parts - minIndex - 1);
+      System.arraycopy(pairRanks, minIndex + 2, pairRanks, minIndex + 1, parts - minIndex - 2);
+      parts--;
+      if (minIndex < parts - 1) {
+        pairRanks[minIndex] = pairRank(piece, boundaries, parts, minIndex);
+      }
+      if (minIndex > 0) {
+        pairRanks[minIndex - 1] = pairRank(piece, boundaries, parts, minIndex - 1);
+      }
+    }
+    int[] tokens = new int[parts];
+    for (int i = 0; i < parts; i++) {
+      tokens[i] = ranks.rank(piece, boundaries[i], boundaries[i + 1]);
+      if (tokens[i] < 0) {
+        throw new IllegalStateException(
+            "The " + encoding.getName() + " ranks do not contain all single bytes");
+      }
+    }
+    return tokens;
+  }
+
+  private int pairRank(byte[] piece, int[] boundaries, int parts, int index) {
+    if (index + 2 > parts) {
+      return Integer.MAX_VALUE;
+    }
+    int rank = ranks.rank(piece, boundaries[index], boundaries[index + 2]);
+    return rank >= 0 ? rank : Integer.MAX_VALUE;
+  }
+
+  private static Tokenizer loadFromClasspath(TokenEncoding encoding) {
+    String resource = String.format(RANKS_RESOURCE_FORMAT, encoding.getName());
+    try (InputStream ranks = Tokenizer.class.getResourceAsStream(resource)) {
+      if (ranks == null) {
+        throw new IllegalStateException(
+            "The "
+                + encoding.getName()
+                + " ranks were not found on the classpath. Add them as the resource "
+                + resource);
+      }
+      return new Tokenizer(encoding, TokenRanks.load(ranks));
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+}
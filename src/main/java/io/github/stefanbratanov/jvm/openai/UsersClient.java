@@ -1,10 +1,8 @@
 package io.github.stefanbratanov.jvm.openai;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -19,12 +17,8 @@ public final class UsersClient extends OpenAIClient {
 
   private final URI baseUrl;
 
-  UsersClient(
-      URI baseUrl,
-      String[] authenticationHeaders,
-      HttpClient httpClient,
-      Optional<Duration> requestTimeout) {
-    super(authenticationHeaders, httpClient, requestTimeout);
+  UsersClient(URI baseUrl, String[] authenticationHeaders, ClientOptions clientOptions) {
+    super(authenticationHeaders, clientOptions);
     this.baseUrl = baseUrl;
   }
 
@@ -51,6 +45,19 @@ public final class UsersClient extends OpenAIClient {
 
   public record PaginatedUsers(List<User> data, String firstId, String lastId, boolean hasMore) {}
 
+  /**
+   * Same as {@link #listUsers(Optional, Optional)} but returns a {@link PaginatedIterable} which
+   * lazily fetches all users page by page.
+   */
+  public PaginatedIterable<User> listAllUsers(Optional<String> after, Optional<Integer> limit) {
+    return new PaginatedIterable<>(
+        after,
+        pageAfter -> listUsers(pageAfter, limit),
+        PaginatedUsers::data,
+        PaginatedUsers::lastId,
+        PaginatedUsers::hasMore);
+  }
+
   /**
    * Modifies a user's role in the organization.
    *
@@ -1,31 +1,172 @@
 package io.github.stefanbratanov.jvm.openai;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
-import java.io.IOException;
-import java.util.AbstractMap;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.TreeMap;
 
 class Utils {
 
   private Utils() {}
 
+  /**
+   * @return an unmodifiable copy of the map, in the same order, in which the {@link String} values
+   *     which are JSON are replaced with their parsed JSON, so they are serialized without escaping
+   */
   static Map<String, Object> mapWithoutJsonEscaping(Map<String, Object> map) {
-    return map.entrySet().stream()
-        .map(
-            entry -> {
-              if (entry.getValue() instanceof String value) {
-                try {
-                  JsonNode node = ObjectMapperSingleton.getInstance().readTree(value);
-                  if (node != null && !node.isNull()) {
-                    return new AbstractMap.SimpleEntry<>(entry.getKey(), node);
-                  }
-                } catch (IOException ex) {
-                  return entry;
-                }
-              }
-              return entry;
-            })
-        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    Map<String, Object> result = new LinkedHashMap<>(map.size() * 4 / 3 + 1);
+    map.forEach(
+        (key, value) -> result.put(key, value instanceof String text ? parseIfJson(text) : value));
+    return Collections.unmodifiableMap(result);
+  }
+
+  private static Object parseIfJson(String text) {
+    if (!mayBeJson(text)) {
+      return text;
+    }
+    try {
+      JsonNode node = readTree(text);
+      if (node != null && !node.isNull() && !node.isMissingNode()) {
+        return node;
+      }
+    } catch (JsonProcessingException ex) {
+      // not JSON
+    }
+    return text;
+  }
+
+  /**
+   * Rejects plain text without parsing it, which avoids throwing an exception for it. Only objects,
+   * arrays and strings with matching delimiters are left to the parser, while the other scalars
+   * are checked completely.
+   */
+  private static boolean mayBeJson(String text) {
+    int start = 0;
+    int end = text.length();
+    while (start < end && Character.isWhitespace(text.charAt(start))) {
+      start++;
+    }
+    while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+      end--;
+    }
+    if (end - start < 2) {
+      return end > start && isJsonNumber(text, start, end);
+    }
+    char first = text.charAt(start);
+    char last = text.charAt(end - 1);
+    return (first == '{' && last == '}')
+        || (first == '[' && last == ']')
+        || (first == '"' && last == '"')
+        || (end - start == 4 && text.startsWith("true", start))
+        || (end - start == 5 && text.startsWith("false", start))
+        || isJsonNumber(text, start, end);
+  }
+
+  /**
+   * @return whether the text between start and end is a number in the JSON grammar
+   */
+  private static boolean isJsonNumber(String text, int start, int end) {
+    int i = start;
+    if (i < end && text.charAt(i) == '-') {
+      i++;
+    }
+    int integerStart = i;
+    i = skipDigits(text, i, end);
+    if (i == integerStart || (text.charAt(integerStart) == '0' && i - integerStart > 1)) {
+      return false;
+    }
+    if (i < end && text.charAt(i) == '.') {
+      int fractionStart = ++i;
+      i = skipDigits(text, i, end);
+      if (i == fractionStart) {
+        return false;
+      }
+    }
+    if (i < end && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+      i++;
+      if (i < end && (text.charAt(i) == '+' || text.charAt(i) == '-')) {
+        i++;
+      }
+      int exponentStart = i;
+      i = skipDigits(text, i, end);
+      if (i == exponentStart) {
+        return false;
+      }
+    }
+    return i == end;
+  }
+
+  private static int skipDigits(String text, int index, int end) {
+    while (index < end && text.charAt(index) >= '0' && text.charAt(index) <= '9') {
+      index++;
+    }
+    return index;
+  }
+
+  /**
+   * Same as {@link com.fasterxml.jackson.databind.ObjectMapper#readTree(String)} but fails if the
+   * JSON is followed by anything else, so "1 apple" is not read as 1
+   */
+  static JsonNode readTree(String json) throws JsonProcessingException {
+    return ObjectMapperSingleton.readerFor(JsonNode.class)
+        .with(DeserializationFeature.FAIL_ON_TRAILING_TOKENS)
+        .readTree(json);
+  }
+
+  /**
+   * Converts the JSON to a structure which always serializes the same way. Objects become sorted
+   * maps and scalars are kept as nodes, so they are serialized as they are.
+   */
+  static Object canonicalize(JsonNode node) {
+    if (node.isObject()) {
+      Map<String, Object> sorted = new TreeMap<>();
+      Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+      while (fields.hasNext()) {
+        Map.Entry<String, JsonNode> field = fields.next();
+        sorted.put(field.getKey(), canonicalize(field.getValue()));
+      }
+      return sorted;
+    }
+    if (node.isArray()) {
+      List<Object> elements = new ArrayList<>(node.size());
+      node.forEach(element -> elements.add(canonicalize(element)));
+      return elements;
+    }
+    return node;
+  }
+
+  /**
+   * @return the hex encoded SHA-256 digest of the bytes
+   */
+  static String sha256(byte[] bytes) {
+    try {
+      return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  /**
+   * @return a fingerprint of the Authorization header of the request, so state can be kept per
+   *     credential without keeping the credential itself in memory, or an empty string if the
+   *     request has no credential
+   */
+  static String credentialFingerprint(HttpRequest httpRequest) {
+    return httpRequest
+        .headers()
+        .firstValue(Constants.AUTHORIZATION_HEADER)
+        .map(authorization -> sha256(authorization.getBytes(StandardCharsets.UTF_8)))
+        .orElse("");
   }
 }
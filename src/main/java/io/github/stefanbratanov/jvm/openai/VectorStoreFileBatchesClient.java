@@ -1,10 +1,8 @@
 package io.github.stefanbratanov.jvm.openai;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -23,11 +21,8 @@ public final class VectorStoreFileBatchesClient extends OpenAIAssistantsClient {
   private final URI baseUrl;
 
   VectorStoreFileBatchesClient(
-      URI baseUrl,
-      String[] authenticationHeaders,
-      HttpClient httpClient,
-      Optional<Duration> requestTimeout) {
-    super(authenticationHeaders, httpClient, requestTimeout);
+      URI baseUrl, String[] authenticationHeaders, ClientOptions clientOptions) {
+    super(authenticationHeaders, clientOptions);
     this.baseUrl = baseUrl;
   }
 
@@ -127,4 +122,24 @@ public final class VectorStoreFileBatchesClient extends OpenAIAssistantsClient {
 
   public record PaginatedVectorStoreFiles(
       List<VectorStoreFile> data, String firstId, String lastId, boolean hasMore) {}
+
+  /**
+   * Same as {@link #listVectorStoreFilesInBatch(String, String, PaginationQueryParameters,
+   * Optional)} but returns a {@link PaginatedIterable} which lazily fetches all vector store files
+   * in the batch page by page.
+   */
+  public PaginatedIterable<VectorStoreFile> listAllVectorStoreFilesInBatch(
+      String vectorStoreId,
+      String batchId,
+      PaginationQueryParameters paginationQueryParameters,
+      Optional<String> filter) {
+    return new PaginatedIterable<>(
+        paginationQueryParameters.after(),
+        after ->
+            listVectorStoreFilesInBatch(
+                vectorStoreId, batchId, paginationQueryParameters.withAfter(after), filter),
+        PaginatedVectorStoreFiles::data,
+        PaginatedVectorStoreFiles::lastId,
+        PaginatedVectorStoreFiles::hasMore);
+  }
 }
@@ -1,12 +1,9 @@
 package io.github.stefanbratanov.jvm.openai;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.time.Duration;
 import java.util.List;
-import java.util.Optional;
 
 /**
  * Vector store files represent files inside a vector store.
@@ -20,12 +17,8 @@ public final class VectorStoreFilesClient extends OpenAIAssistantsClient {
 
   private final URI baseUrl;
 
-  VectorStoreFilesClient(
-      URI baseUrl,
-      String[] authenticationHeaders,
-      HttpClient httpClient,
-      Optional<Duration> requestTimeout) {
-    super(authenticationHeaders, httpClient, requestTimeout);
+  VectorStoreFilesClient(URI baseUrl, String[] authenticationHeaders, ClientOptions clientOptions) {
+    super(authenticationHeaders, clientOptions);
     this.baseUrl = baseUrl;
   }
 
@@ -72,6 +65,20 @@ public final class VectorStoreFilesClient extends OpenAIAssistantsClient {
   public record PaginatedVectorStoreFiles(
       List<VectorStoreFile> data, String firstId, String lastId, boolean hasMore) {}
 
+  /**
+   * Same as {@link #listVectorStoreFiles(String, PaginationQueryParameters)} but returns a {@link
+   * PaginatedIterable} which lazily fetches all vector store files page by page.
+   */
+  public PaginatedIterable<VectorStoreFile> listAllVectorStoreFiles(
+      String vectorStoreId, PaginationQueryParameters paginationQueryParameters) {
+    return new PaginatedIterable<>(
+        paginationQueryParameters.after(),
+        after -> listVectorStoreFiles(vectorStoreId, paginationQueryParameters.withAfter(after)),
+        PaginatedVectorStoreFiles::data,
+        PaginatedVectorStoreFiles::lastId,
+        PaginatedVectorStoreFiles::hasMore);
+  }
+
   /**
    * Retrieves a vector store file.
    *
@@ -1,12 +1,11 @@
 package io.github.stefanbratanov.jvm.openai;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.util.List;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Vector stores are used to store files for use by the file_search tool.
@@ -17,14 +16,12 @@ import java.util.Optional;
 public final class VectorStoresClient extends OpenAIAssistantsClient {
 
   private final URI baseUrl;
+  private final ReadThroughCache<VectorStore> vectorStoresCache;
 
-  VectorStoresClient(
-      URI baseUrl,
-      String[] authenticationHeaders,
-      HttpClient httpClient,
-      Optional<Duration> requestTimeout) {
-    super(authenticationHeaders, httpClient, requestTimeout);
+  VectorStoresClient(URI baseUrl, String[] authenticationHeaders, ClientOptions clientOptions) {
+    super(authenticationHeaders, clientOptions);
     this.baseUrl = baseUrl;
+    vectorStoresCache = clientOptions.sharedState().vectorStoresCache();
   }
 
   /**
@@ -39,7 +36,9 @@ public final class VectorStoresClient extends OpenAIAssistantsClient {
             .POST(createBodyPublisher(request))
             .build();
     HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
-    return deserializeResponse(httpResponse.body(), VectorStore.class);
+    VectorStore vectorStore = deserializeResponse(httpResponse.body(), VectorStore.class);
+    vectorStoresCache.put(Utils.credentialFingerprint(httpRequest), vectorStore.id(), vectorStore);
+    return vectorStore;
   }
 
   /**
@@ -64,21 +63,61 @@ public final class VectorStoresClient extends OpenAIAssistantsClient {
   public record PaginatedVectorStores(
       List<VectorStore> data, String firstId, String lastId, boolean hasMore) {}
 
+  /**
+   * Same as {@link #listVectorStores(PaginationQueryParameters)} but returns a {@link
+   * PaginatedIterable} which lazily fetches all vector stores page by page.
+   */
+  public PaginatedIterable<VectorStore> listAllVectorStores(
+      PaginationQueryParameters paginationQueryParameters) {
+    return new PaginatedIterable<>(
+        paginationQueryParameters.after(),
+        after -> listVectorStores(paginationQueryParameters.withAfter(after)),
+        PaginatedVectorStores::data,
+        PaginatedVectorStores::lastId,
+        PaginatedVectorStores::hasMore);
+  }
+
   /**
    * Retrieves a vector store.
    *
    * @throws OpenAIException in case of API errors
    */
   public VectorStore retrieveVectorStore(String vectorStoreId) {
-    HttpRequest httpRequest =
-        newHttpRequestBuilder()
-            .uri(baseUrl.resolve(Endpoint.VECTOR_STORES.getPath() + "/" + vectorStoreId))
-            .GET()
-            .build();
+    HttpRequest httpRequest = createRetrieveVectorStoreRequest(vectorStoreId);
     HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
     return deserializeResponse(httpResponse.body(), VectorStore.class);
   }
 
+  /**
+   * Same as {@link #retrieveVectorStore(String)} but returns the vector store from a cache if it
+   * has been retrieved, created or modified through this client with the same API key before.
+   * Cached vector stores are refreshed in the background once they are older than {@link
+   * OpenAI.Builder#cacheRefreshInterval(Duration)} and removed when deleted through this client
+   * or when they are no longer found. If a refresh fails, they expire after twice the interval.
+   *
+   * @throws OpenAIException in case of API errors
+   */
+  public VectorStore retrieveVectorStoreCached(String vectorStoreId) {
+    HttpRequest httpRequest = createRetrieveVectorStoreRequest(vectorStoreId);
+    return vectorStoresCache.get(
+        Utils.credentialFingerprint(httpRequest),
+        vectorStoreId,
+        () -> retrieveVectorStoreAsync(httpRequest));
+  }
+
+  private CompletableFuture<VectorStore> retrieveVectorStoreAsync(HttpRequest httpRequest) {
+    // the cache has its own refresh interval, so responses cached by the HTTP layer are skipped
+    return sendUncachedHttpRequestAsync(httpRequest)
+        .thenApply(httpResponse -> deserializeResponse(httpResponse.body(), VectorStore.class));
+  }
+
+  private HttpRequest createRetrieveVectorStoreRequest(String vectorStoreId) {
+    return newHttpRequestBuilder()
+        .uri(baseUrl.resolve(Endpoint.VECTOR_STORES.getPath() + "/" + vectorStoreId))
+        .GET()
+        .build();
+  }
+
   /**
    * Create a vector store.
    *
@@ -91,7 +130,9 @@ public final class VectorStoresClient extends OpenAIAssistantsClient {
             .POST(createBodyPublisher(request))
             .build();
     HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
-    return deserializeResponse(httpResponse.body(), VectorStore.class);
+    VectorStore vectorStore = deserializeResponse(httpResponse.body(), VectorStore.class);
+    vectorStoresCache.put(Utils.credentialFingerprint(httpRequest), vectorStoreId, vectorStore);
+    return vectorStore;
   }
 
   /**
@@ -106,6 +147,7 @@ public final class VectorStoresClient extends OpenAIAssistantsClient {
             .DELETE()
             .build();
     HttpResponse<byte[]> httpResponse = sendHttpRequest(httpRequest);
+    vectorStoresCache.invalidate(vectorStoreId);
     return deserializeResponse(httpResponse.body(), DeletionStatus.class);
   }
 }
@@ -0,0 +1,201 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.stefanbratanov.jvm.openai.AuditLogsExporter.Partition;
+import io.github.stefanbratanov.jvm.openai.ListAuditLogsQueryParameters.EffectiveAt;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.Delay;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.verify.VerificationTimes;
+
+class AuditLogsExporterTest {
+
+  private static final ListAuditLogsQueryParameters RANGE =
+      ListAuditLogsQueryParameters.newBuilder()
+          .effectiveAt(EffectiveAt.newBuilder().gte(0).lt(100).build())
+          .build();
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private ClientAndServer mockServer;
+  private AuditLogsClient auditLogsClient;
+
+  @BeforeEach
+  void setUp() {
+    mockServer = ClientAndServer.startClientAndServer();
+    auditLogsClient =
+        OpenAI.newBuilder()
+            .adminKey("admin-key")
+            .baseUrl("http://localhost:" + mockServer.getPort())
+            .build()
+            .auditLogsClient();
+  }
+
+  @AfterEach
+  void tearDown() {
+    mockServer.stop();
+  }
+
+  @Test
+  void exportsEveryPartitionWithItsOwnCursor() {
+    mockPage(partitionRequest(0, 50).withQueryStringParameter("after", "a2"), false, "a3");
+    mockPage(partitionRequest(0, 50), true, "a1", "a2");
+    mockPage(partitionRequest(50, 100), false, "b1");
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    Map<Partition, String> checkpoints =
+        AuditLogsExporter.newBuilder(auditLogsClient).partitions(2).build().export(RANGE, output);
+
+    assertThat(exportedIds(output)).containsExactlyInAnyOrder("a1", "a2", "a3", "b1");
+    assertThat(checkpoints)
+        .containsEntry(new Partition(0, 50), "a3")
+        .containsEntry(new Partition(50, 100), "b1")
+        .hasSize(2);
+    mockServer.verify(partitionRequest(0, 50), VerificationTimes.exactly(2));
+    mockServer.verify(partitionRequest(50, 100), VerificationTimes.once());
+  }
+
+  @Test
+  void resumesPartitionsFromCheckpoints() {
+    mockPage(partitionRequest(0, 50).withQueryStringParameter("after", "a2"), false, "a3");
+    mockPage(partitionRequest(0, 50), true, "a1", "a2");
+    mockPage(partitionRequest(50, 100), false, "b1");
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    Map<Partition, String> checkpoints =
+        AuditLogsExporter.newBuilder(auditLogsClient)
+            .partitions(2)
+            .checkpoints(Map.of(new Partition(0, 50), "a2"))
+            .build()
+            .export(RANGE, output);
+
+    assertThat(exportedIds(output)).containsExactlyInAnyOrder("a3", "b1");
+    assertThat(checkpoints)
+        .containsEntry(new Partition(0, 50), "a3")
+        .containsEntry(new Partition(50, 100), "b1");
+    mockServer.verify(partitionRequest(0, 50), VerificationTimes.once());
+  }
+
+  @Test
+  void stopsOtherPartitionsWhenOnePartitionFails() {
+    mockServer
+        .when(partitionRequest(0, 50))
+        .respond(
+            HttpResponse.response()
+                .withStatusCode(500)
+                .withBody("{\"error\":{\"message\":\"The server had an error\"}}"));
+    mockPage(partitionRequest(50, 100).withQueryStringParameter("after", "b1"), false, "b2");
+    mockPage(partitionRequest(50, 100), true, Delay.milliseconds(300), "b1");
+    Map<Partition, String> listenedCheckpoints = new ConcurrentHashMap<>();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    AuditLogsExporter exporter =
+        AuditLogsExporter.newBuilder(auditLogsClient)
+            .partitions(2)
+            .checkpointListener(listenedCheckpoints::put)
+            .build();
+
+    assertThatThrownBy(() -> exporter.export(RANGE, output))
+        .isInstanceOf(OpenAIException.class);
+    // the page fetched while the other partition failed is not exported
+    assertThat(exportedIds(output)).isEmpty();
+    assertThat(listenedCheckpoints).isEmpty();
+    mockServer.verify(
+        partitionRequest(50, 100).withQueryStringParameter("after", "b1"),
+        VerificationTimes.never());
+  }
+
+  @Test
+  void requiresUpperBoundToResumeFromCheckpoints() {
+    AuditLogsExporter exporter =
+        AuditLogsExporter.newBuilder(auditLogsClient)
+            .checkpoints(Map.of(new Partition(0, 50), "a2"))
+            .build();
+    ListAuditLogsQueryParameters withoutUpperBound =
+        ListAuditLogsQueryParameters.newBuilder()
+            .effectiveAt(EffectiveAt.newBuilder().gte(0).build())
+            .build();
+
+    assertThatThrownBy(() -> exporter.export(withoutUpperBound, new ByteArrayOutputStream()))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("effective_at must have an upper bound to resume an export from checkpoints");
+  }
+
+  @Test
+  void rejectsCheckpointsOfOtherPartitions() {
+    AuditLogsExporter exporter =
+        AuditLogsExporter.newBuilder(auditLogsClient)
+            .partitions(4)
+            .checkpoints(Map.of(new Partition(0, 50), "a2"))
+            .build();
+
+    assertThatThrownBy(() -> exporter.export(RANGE, new ByteArrayOutputStream()))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageStartingWith("The checkpoint for Partition[gte=0, lt=50] is not for one of");
+  }
+
+  private HttpRequest partitionRequest(int gte, int lt) {
+    return HttpRequest.request()
+        .withMethod("GET")
+        .withPath("/organization/audit_logs")
+        .withQueryStringParameter("effective_at[gte]", String.valueOf(gte))
+        .withQueryStringParameter("effective_at[lt]", String.valueOf(lt));
+  }
+
+  private void mockPage(HttpRequest request, boolean hasMore, String... ids) {
+    mockPage(request, hasMore, Delay.milliseconds(0), ids);
+  }
+
+  private void mockPage(HttpRequest request, boolean hasMore, Delay delay, String... ids) {
+    StringBuilder data = new StringBuilder();
+    for (String id : ids) {
+      if (!data.isEmpty()) {
+        data.append(',');
+      }
+      data.append(
+          String.format(
+              "{\"id\":\"%s\",\"type\":\"project.created\",\"effective_at\":1,"
+                  + "\"project.created\":{\"id\":\"proj_1\",\"data\":{\"name\":\"p\"}}}",
+              id));
+    }
+    mockServer
+        .when(request)
+        .respond(
+            HttpResponse.response()
+                .withBody(
+                    String.format(
+                        "{\"object\":\"list\",\"data\":[%s],\"first_id\":\"%s\","
+                            + "\"last_id\":\"%s\",\"has_more\":%s}",
+                        data, ids[0], ids[ids.length - 1], hasMore))
+                .withDelay(delay));
+  }
+
+  private List<String> exportedIds(ByteArrayOutputStream output) {
+    return output
+        .toString(StandardCharsets.UTF_8)
+        .lines()
+        .map(
+            line -> {
+              try {
+                return objectMapper.readTree(line).get("id").asText();
+              } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+              }
+            })
+        .toList();
+  }
+}
@@ -0,0 +1,189 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.ConnectionOptions;
+import org.mockserver.model.Delay;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+
+class ChatClientTest {
+
+  private static final String CHUNK =
+      "data: {\"id\":\"chatcmpl-1\",\"object\":\"chat.completion.chunk\",\"created\":1,"
+          + "\"model\":\"gpt-4o\",\"choices\":[]}\n\n";
+
+  private ClientAndServer mockServer;
+  private ChatClient chatClient;
+
+  @BeforeEach
+  void setUp() {
+    mockServer = ClientAndServer.startClientAndServer();
+    chatClient =
+        OpenAI.newBuilder("api-key")
+            .baseUrl("http://localhost:" + mockServer.getPort())
+            .build()
+            .chatClient();
+  }
+
+  @AfterEach
+  void tearDown() {
+    mockServer.stop();
+  }
+
+  @Test
+  void streamsChatCompletionToSubscriber() throws InterruptedException {
+    mockServer
+        .when(chatCompletionsRequest())
+        .respond(HttpResponse.response(CHUNK + CHUNK + "data: [DONE]\n\n"));
+    RecordingSubscriber subscriber = new RecordingSubscriber();
+
+    chatClient.streamChatCompletion(chatCompletionRequest(), subscriber);
+
+    assertThat(subscriber.completed.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(subscriber.chunks).hasSize(2);
+    assertThat(subscriber.exception.get()).isNull();
+  }
+
+  @Test
+  void streamingFutureCompletesAfterSubscriberIsNotified() throws Exception {
+    mockServer
+        .when(chatCompletionsRequest())
+        .respond(HttpResponse.response(CHUNK + "data: [DONE]\n\n"));
+    RecordingSubscriber subscriber =
+        new RecordingSubscriber() {
+          @Override
+          public void onComplete() {
+            try {
+              java.lang.Thread.sleep(200);
+            } catch (InterruptedException ex) {
+              java.lang.Thread.currentThread().interrupt();
+            }
+            super.onComplete();
+          }
+        };
+
+    chatClient
+        .streamChatCompletionAsync(chatCompletionRequest(), subscriber)
+        .get(5, TimeUnit.SECONDS);
+
+    assertThat(subscriber.completed.getCount()).isZero();
+    assertThat(subscriber.chunks).hasSize(1);
+  }
+
+  @Test
+  void cancellingStreamBeforeResponseAbortsRequest() throws InterruptedException {
+    mockServer
+        .when(chatCompletionsRequest())
+        .respond(
+            HttpResponse.response(CHUNK + "data: [DONE]\n\n").withDelay(Delay.seconds(10)));
+    RecordingSubscriber subscriber = new RecordingSubscriber();
+
+    CompletableFuture<Void> streaming =
+        chatClient.streamChatCompletionAsync(chatCompletionRequest(), subscriber);
+    streaming.cancel(true);
+
+    assertThat(subscriber.completed.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(subscriber.chunks).isEmpty();
+    assertThat(streaming).isCancelled();
+  }
+
+  @Test
+  void cancellingStreamWhileConsumingAbortsRequest() throws InterruptedException {
+    // the first chunk is sent and the rest of the body never arrives
+    mockServer
+        .when(chatCompletionsRequest())
+        .respond(
+            HttpResponse.response(CHUNK)
+                .withConnectionOptions(
+                    ConnectionOptions.connectionOptions()
+                        .withContentLengthHeaderOverride(CHUNK.length() + 1000)));
+    RecordingSubscriber subscriber = new RecordingSubscriber();
+
+    CompletableFuture<Void> streaming =
+        chatClient.streamChatCompletionAsync(chatCompletionRequest(), subscriber);
+    assertThat(subscriber.firstChunk.await(5, TimeUnit.SECONDS)).isTrue();
+    streaming.cancel(true);
+
+    // the consuming thread, which waits for the next chunk, is woken up by closing the stream
+    assertThat(subscriber.completed.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(subscriber.chunks).hasSize(1);
+  }
+
+  @Test
+  void throwingSubscriberAbortsRequest() throws InterruptedException {
+    mockServer
+        .when(chatCompletionsRequest())
+        .respond(
+            HttpResponse.response(CHUNK)
+                .withConnectionOptions(
+                    ConnectionOptions.connectionOptions()
+                        .withContentLengthHeaderOverride(CHUNK.length() + 1000)));
+    IllegalStateException failure = new IllegalStateException("The chunk could not be handled");
+    RecordingSubscriber subscriber =
+        new RecordingSubscriber() {
+          @Override
+          public void onChunk(ChatCompletionChunk chunk) {
+            throw failure;
+          }
+        };
+
+    CompletableFuture<Void> streaming =
+        chatClient.streamChatCompletionAsync(chatCompletionRequest(), subscriber);
+
+    ExecutionException exception =
+        assertThrows(ExecutionException.class, () -> streaming.get(5, TimeUnit.SECONDS));
+    assertThat(exception.getCause()).isSameAs(failure);
+    // the subscriber is notified before the future completes
+    assertThat(subscriber.completed.getCount()).isZero();
+    assertThat(subscriber.exception.get()).isSameAs(failure);
+  }
+
+  private HttpRequest chatCompletionsRequest() {
+    return HttpRequest.request().withMethod("POST").withPath("/chat/completions");
+  }
+
+  private CreateChatCompletionRequest chatCompletionRequest() {
+    return CreateChatCompletionRequest.newBuilder()
+        .model(OpenAIModel.GPT_4o)
+        .message(ChatMessage.userMessage("Hello"))
+        .stream(true)
+        .build();
+  }
+
+  private static class RecordingSubscriber implements ChatCompletionStreamSubscriber {
+
+    private final List<ChatCompletionChunk> chunks = new CopyOnWriteArrayList<>();
+    private final AtomicReference<Throwable> exception = new AtomicReference<>();
+    private final CountDownLatch firstChunk = new CountDownLatch(1);
+    private final CountDownLatch completed = new CountDownLatch(1);
+
+    @Override
+    public void onChunk(ChatCompletionChunk chunk) {
+      chunks.add(chunk);
+      firstChunk.countDown();
+    }
+
+    @Override
+    public void onException(Throwable ex) {
+      exception.set(ex);
+    }
+
+    @Override
+    public void onComplete() {
+      completed.countDown();
+    }
+  }
+}
@@ -0,0 +1,220 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ChatCompletionCacheTest {
+
+  @TempDir private Path directory;
+
+  @Test
+  void evictsLeastRecentlyUsedEntries() {
+    ChatCompletionCache cache = ChatCompletionCache.newBuilder().maxEntries(2).build();
+
+    load(cache, request("a"), completion("a"));
+    load(cache, request("b"), completion("b"));
+    // "a" is now more recently used than "b"
+    assertThat(cache.get(request("a"))).hasValue(completion("a"));
+    load(cache, request("c"), completion("c"));
+
+    assertThat(cache.get(request("a"))).hasValue(completion("a"));
+    assertThat(cache.get(request("b"))).isEmpty();
+    assertThat(cache.get(request("c"))).hasValue(completion("c"));
+  }
+
+  @Test
+  void expiresEntries() throws InterruptedException {
+    ChatCompletionCache cache =
+        ChatCompletionCache.newBuilder().timeToLive(Duration.ofMillis(100)).build();
+
+    load(cache, request("a"), completion("a"));
+    assertThat(cache.get(request("a"))).hasValue(completion("a"));
+
+    java.lang.Thread.sleep(200);
+
+    assertThat(cache.get(request("a"))).isEmpty();
+  }
+
+  @Test
+  void persistsEntriesOnDisk() throws IOException {
+    ChatCompletionCache cache = ChatCompletionCache.newBuilder().directory(directory).build();
+
+    load(cache, request("a"), completion("a"));
+
+    ChatCompletionCache otherCache = ChatCompletionCache.newBuilder().directory(directory).build();
+    assertThat(otherCache.get(request("a"))).hasValue(completion("a"));
+    // only the completion file is left, without temporary files
+    assertThat(cacheFiles()).singleElement().matches(file -> file.toString().endsWith(".json"));
+
+    otherCache.invalidate(request("a"));
+
+    assertThat(cacheFiles()).isEmpty();
+  }
+
+  @Test
+  void treatsCorruptFileAsMiss() throws IOException {
+    load(
+        ChatCompletionCache.newBuilder().directory(directory).build(),
+        request("a"),
+        completion("a"));
+    Path file = cacheFiles().get(0);
+    // truncated, as after a crash in the middle of a write
+    Files.writeString(file, "{\"id\":\"a\",\"crea", StandardCharsets.UTF_8);
+
+    ChatCompletionCache cache = ChatCompletionCache.newBuilder().directory(directory).build();
+
+    assertThat(cache.get(request("a"))).isEmpty();
+    assertThat(file).doesNotExist();
+
+    load(cache, request("a"), completion("a"));
+
+    assertThat(ChatCompletionCache.newBuilder().directory(directory).build().get(request("a")))
+        .hasValue(completion("a"));
+  }
+
+  @Test
+  void deletesExpiredFilesWhenStoring() throws Exception {
+    ChatCompletionCache cache =
+        ChatCompletionCache.newBuilder()
+            .directory(directory)
+            .timeToLive(Duration.ofMillis(100))
+            .maxFiles(5)
+            .build();
+
+    load(cache, request("a"), completion("a"));
+    java.lang.Thread.sleep(200);
+    load(cache, request("b"), completion("b"));
+
+    assertThat(cacheFiles()).hasSize(1);
+    assertThat(ChatCompletionCache.newBuilder().directory(directory).build().get(request("b")))
+        .hasValue(completion("b"));
+  }
+
+  @Test
+  void deletesOldestFilesOverMaximum() throws Exception {
+    ChatCompletionCache cache =
+        ChatCompletionCache.newBuilder().directory(directory).maxFiles(2).build();
+
+    for (String content : List.of("a", "b", "c")) {
+      load(cache, request(content), completion(content));
+      // the files are ordered by their modification time
+      java.lang.Thread.sleep(50);
+    }
+
+    assertThat(cacheFiles()).hasSize(2);
+    ChatCompletionCache otherCache = ChatCompletionCache.newBuilder().directory(directory).build();
+    assertThat(otherCache.get(request("a"))).isEmpty();
+    assertThat(otherCache.get(request("b"))).hasValue(completion("b"));
+    assertThat(otherCache.get(request("c"))).hasValue(completion("c"));
+  }
+
+  @Test
+  void loadsConcurrentRequestsOnce() throws Exception {
+    ChatCompletionCache cache = ChatCompletionCache.newBuilder().build();
+    AtomicInteger loads = new AtomicInteger();
+    CompletableFuture<ChatCompletion> loaded = new CompletableFuture<>();
+
+    CompletableFuture<ChatCompletion> first =
+        cache.getOrLoad(request("a"), countingLoader(loads, loaded));
+    CompletableFuture<ChatCompletion> second =
+        cache.getOrLoad(request("a"), countingLoader(loads, loaded));
+    loaded.complete(completion("a"));
+
+    assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(completion("a"));
+    assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo(completion("a"));
+    assertThat(loads.get()).isEqualTo(1);
+    assertThat(cache.get(request("a"))).hasValue(completion("a"));
+  }
+
+  @Test
+  void doesNotCacheFailedLoads() throws Exception {
+    ChatCompletionCache cache = ChatCompletionCache.newBuilder().build();
+
+    CompletableFuture<ChatCompletion> failed =
+        cache.getOrLoad(
+            request("a"),
+            () -> CompletableFuture.failedFuture(new IllegalStateException("failed")));
+
+    assertThat(failed).isCompletedExceptionally();
+    assertThat(cache.get(request("a"))).isEmpty();
+    assertThat(load(cache, request("a"), completion("a"))).isEqualTo(completion("a"));
+  }
+
+  @Test
+  void cancelsLoadWhenAllCallersCancel() throws Exception {
+    ChatCompletionCache cache = ChatCompletionCache.newBuilder().build();
+    AtomicInteger loads = new AtomicInteger();
+    CompletableFuture<ChatCompletion> loaded = new CompletableFuture<>();
+
+    CompletableFuture<ChatCompletion> first =
+        cache.getOrLoad(request("a"), countingLoader(loads, loaded));
+    CompletableFuture<ChatCompletion> second =
+        cache.getOrLoad(request("a"), countingLoader(loads, loaded));
+
+    first.cancel(true);
+    assertThat(loaded).isNotCancelled();
+
+    second.cancel(true);
+    assertThat(loaded).isCancelled();
+
+    // the abandoned load is not shared with later callers
+    CompletableFuture<ChatCompletion> third =
+        cache.getOrLoad(request("a"), () -> CompletableFuture.completedFuture(completion("a")));
+    assertThat(third.get(5, TimeUnit.SECONDS)).isEqualTo(completion("a"));
+  }
+
+  private ChatCompletion load(
+      ChatCompletionCache cache, CreateChatCompletionRequest request, ChatCompletion completion) {
+    return cache.getOrLoad(request, () -> CompletableFuture.completedFuture(completion)).join();
+  }
+
+  private Supplier<CompletableFuture<ChatCompletion>> countingLoader(
+      AtomicInteger loads, CompletableFuture<ChatCompletion> loaded) {
+    return () -> {
+      loads.incrementAndGet();
+      return loaded;
+    };
+  }
+
+  private List<Path> cacheFiles() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.toList();
+    }
+  }
+
+  private CreateChatCompletionRequest request(String content) {
+    return CreateChatCompletionRequest.newBuilder()
+        .model(OpenAIModel.GPT_4o_MINI)
+        .message(ChatMessage.userMessage(content))
+        .build();
+  }
+
+  private ChatCompletion completion(String content) {
+    return new ChatCompletion(
+        "chatcmpl-" + content,
+        1,
+        "gpt-4o-mini",
+        null,
+        null,
+        List.of(
+            new ChatCompletion.Choice(
+                0,
+                new ChatCompletion.Choice.Message(content, null, null, "assistant"),
+                null,
+                "stop")),
+        null);
+  }
+}
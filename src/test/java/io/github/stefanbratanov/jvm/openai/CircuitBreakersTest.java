@@ -0,0 +1,411 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.matchers.Times;
+import org.mockserver.model.Delay;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.verify.VerificationTimes;
+
+class CircuitBreakersTest {
+
+  private static final String CHAT_COMPLETION =
+      "{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion\",\"created\":1,\"model\":\"gpt-4o\","
+          + "\"choices\":[]}";
+
+  private static final String SERVER_ERROR =
+      "{\"error\":{\"message\":\"The server had an error\",\"type\":\"server_error\"}}";
+
+  private static final String RATE_LIMIT_ERROR =
+      "{\"error\":{\"message\":\"Rate limit reached\",\"type\":\"requests\"}}";
+
+  private static final CircuitBreakerPolicy CIRCUIT_BREAKER_POLICY =
+      CircuitBreakerPolicy.newBuilder()
+          .failureRateThreshold(0.5)
+          .minimumRequests(4)
+          .window(Duration.ofSeconds(10))
+          .openDuration(Duration.ofSeconds(15))
+          .probeRequests(2)
+          .build();
+
+  private final AtomicLong clock = new AtomicLong();
+  private final HttpClient httpClient = HttpClient.newHttpClient();
+
+  private ClientAndServer mockServer;
+
+  @BeforeEach
+  void setUp() {
+    mockServer = ClientAndServer.startClientAndServer();
+  }
+
+  @AfterEach
+  void tearDown() {
+    mockServer.stop();
+  }
+
+  @Test
+  void opensHalfOpensAndClosesAgain() {
+    ChatClient chatClient = chatClient(new CircuitBreakers(CIRCUIT_BREAKER_POLICY, clock::get));
+    respond(Times.exactly(2), success());
+    respond(Times.exactly(2), serverError());
+    respond(Times.unlimited(), success());
+
+    chatClient.createChatCompletion(chatCompletionRequest());
+    chatClient.createChatCompletion(chatCompletionRequest());
+    assertFailsWithStatusCode(chatClient, 500);
+    // half of the minimum requests failed
+    assertFailsWithStatusCode(chatClient, 500);
+
+    assertThatThrownBy(() -> chatClient.createChatCompletion(chatCompletionRequest()))
+        .isInstanceOf(OpenAIException.class)
+        .hasMessageContaining("Circuit breaker for chat/completions (gpt-4o) is open")
+        .hasMessageContaining("type: circuit_breaker_open");
+    mockServer.verify(chatCompletionsRequest(), VerificationTimes.exactly(4));
+
+    clock.addAndGet(Duration.ofSeconds(14).toNanos());
+    assertOpen(chatClient);
+
+    clock.addAndGet(Duration.ofSeconds(1).toNanos());
+    // the probe requests
+    chatClient.createChatCompletion(chatCompletionRequest());
+    chatClient.createChatCompletion(chatCompletionRequest());
+
+    for (int i = 0; i < 10; i++) {
+      chatClient.createChatCompletion(chatCompletionRequest());
+    }
+    mockServer.verify(chatCompletionsRequest(), VerificationTimes.exactly(16));
+  }
+
+  @Test
+  void opensAgainWhenProbeRequestFails() {
+    ChatClient chatClient = chatClient(new CircuitBreakers(CIRCUIT_BREAKER_POLICY, clock::get));
+    respond(Times.exactly(5), serverError());
+    respond(Times.unlimited(), success());
+
+    for (int i = 0; i < 4; i++) {
+      assertFailsWithStatusCode(chatClient, 500);
+    }
+    assertOpen(chatClient);
+
+    clock.addAndGet(Duration.ofSeconds(15).toNanos());
+    // the failed probe request opens the circuit breaker for another open duration
+    assertFailsWithStatusCode(chatClient, 500);
+    assertOpen(chatClient);
+    clock.addAndGet(Duration.ofSeconds(14).toNanos());
+    assertOpen(chatClient);
+
+    clock.addAndGet(Duration.ofSeconds(1).toNanos());
+    chatClient.createChatCompletion(chatCompletionRequest());
+    mockServer.verify(chatCompletionsRequest(), VerificationTimes.exactly(6));
+  }
+
+  @Test
+  void doesNotOpenOnRateLimitErrors() {
+    ChatClient chatClient = chatClient(new CircuitBreakers(CIRCUIT_BREAKER_POLICY, clock::get));
+    respond(Times.exactly(10), rateLimitError());
+    respond(Times.unlimited(), success());
+
+    // the rate limits belong to the API key, so the endpoint is not considered unhealthy
+    for (int i = 0; i < 10; i++) {
+      assertFailsWithStatusCode(chatClient, 429);
+    }
+
+    chatClient.createChatCompletion(chatCompletionRequest());
+    mockServer.verify(chatCompletionsRequest(), VerificationTimes.exactly(11));
+  }
+
+  @Test
+  void onlyCountsFailuresWithinWindow() {
+    CircuitBreakers circuitBreakers = new CircuitBreakers(CIRCUIT_BREAKER_POLICY, clock::get);
+    CircuitBreakers.CircuitBreaker circuitBreaker =
+        circuitBreakers.get(apiRequest("chat/completions"), Optional.of("gpt-4o"));
+
+    for (int i = 0; i < 3; i++) {
+      onResult(circuitBreaker, 500);
+    }
+    // the failures slide out of the window
+    clock.addAndGet(Duration.ofSeconds(11).toNanos());
+    onResult(circuitBreaker, 200);
+    onResult(circuitBreaker, 200);
+    onResult(circuitBreaker, 500);
+
+    assertThat(circuitBreaker.tryAcquirePermit()).isEqualTo(CircuitBreakers.Permit.REQUEST);
+
+    onResult(circuitBreaker, 500);
+
+    assertThat(circuitBreaker.tryAcquirePermit()).isEqualTo(CircuitBreakers.Permit.REJECTED);
+  }
+
+  @Test
+  void letsThroughOnlyProbeRequestsWhileHalfOpen() {
+    CircuitBreakers circuitBreakers = new CircuitBreakers(CIRCUIT_BREAKER_POLICY, clock::get);
+    CircuitBreakers.CircuitBreaker circuitBreaker =
+        circuitBreakers.get(apiRequest("chat/completions"), Optional.of("gpt-4o"));
+    for (int i = 0; i < 4; i++) {
+      onResult(circuitBreaker, -1);
+    }
+    clock.addAndGet(Duration.ofSeconds(15).toNanos());
+
+    CircuitBreakers.Permit first = circuitBreaker.tryAcquirePermit();
+    CircuitBreakers.Permit second = circuitBreaker.tryAcquirePermit();
+
+    assertThat(first).isEqualTo(CircuitBreakers.Permit.PROBE);
+    assertThat(second).isEqualTo(CircuitBreakers.Permit.PROBE);
+    assertThat(circuitBreaker.tryAcquirePermit()).isEqualTo(CircuitBreakers.Permit.REJECTED);
+
+    // a cancelled probe request makes room for another one
+    circuitBreaker.release(first);
+    CircuitBreakers.Permit third = circuitBreaker.tryAcquirePermit();
+    assertThat(third).isEqualTo(CircuitBreakers.Permit.PROBE);
+    circuitBreaker.onResult(second, 200, clock.get());
+    circuitBreaker.onResult(third, 200, clock.get());
+
+    assertThat(circuitBreaker.tryAcquirePermit()).isEqualTo(CircuitBreakers.Permit.REQUEST);
+  }
+
+  @Test
+  void countsSlowRequestsAsFailures() {
+    CircuitBreakers circuitBreakers =
+        new CircuitBreakers(
+            CircuitBreakerPolicy.newBuilder()
+                .minimumRequests(2)
+                .slowRequestDuration(Duration.ofSeconds(30))
+                .build(),
+            clock::get);
+    CircuitBreakers.CircuitBreaker circuitBreaker =
+        circuitBreakers.get(apiRequest("chat/completions"), Optional.of("gpt-4o"));
+
+    long start = clock.get();
+    clock.addAndGet(Duration.ofSeconds(29).toNanos());
+    circuitBreaker.onResult(circuitBreaker.tryAcquirePermit(), 200, start);
+    circuitBreaker.onResult(circuitBreaker.tryAcquirePermit(), 200, start);
+    clock.addAndGet(Duration.ofSeconds(1).toNanos());
+    circuitBreaker.onResult(circuitBreaker.tryAcquirePermit(), 200, start);
+    assertThat(circuitBreaker.tryAcquirePermit()).isEqualTo(CircuitBreakers.Permit.REQUEST);
+
+    // half of the requests took as long as the slow request duration
+    circuitBreaker.onResult(circuitBreaker.tryAcquirePermit(), 200, start);
+
+    assertThat(circuitBreaker.tryAcquirePermit()).isEqualTo(CircuitBreakers.Permit.REJECTED);
+  }
+
+  @Test
+  void opensOnSlowResponses() {
+    ChatClient chatClient =
+        chatClient(
+            new CircuitBreakers(
+                CircuitBreakerPolicy.newBuilder()
+                    .minimumRequests(2)
+                    .slowRequestDuration(Duration.ofMillis(100))
+                    .build()));
+    mockServer
+        .when(chatCompletionsRequest())
+        .respond(success().withDelay(Delay.milliseconds(200)));
+
+    // the responses are successful, but slow
+    chatClient.createChatCompletion(chatCompletionRequest());
+    chatClient.createChatCompletion(chatCompletionRequest());
+
+    assertOpen(chatClient);
+  }
+
+  @Test
+  void matchesLongestEndpointPath() {
+    CircuitBreakers circuitBreakers = new CircuitBreakers(CIRCUIT_BREAKER_POLICY, clock::get);
+
+    assertThat(endpointCircuitBreaker(circuitBreakers, "vector_stores/vs_1/files"))
+        .isSameAs(endpointCircuitBreaker(circuitBreakers, "vector_stores"))
+        .isNotSameAs(endpointCircuitBreaker(circuitBreakers, "files"));
+    assertThat(endpointCircuitBreaker(circuitBreakers, "organization/projects/proj_1/users"))
+        .isSameAs(endpointCircuitBreaker(circuitBreakers, "organization/projects"))
+        .isNotSameAs(endpointCircuitBreaker(circuitBreakers, "organization/users"));
+    assertThat(
+            endpointCircuitBreaker(circuitBreakers, "vector_stores/vs_1/files")
+                .createOpenException())
+        .hasMessageContaining("Circuit breaker for vector_stores is open");
+    assertThat(endpointCircuitBreaker(circuitBreakers, "unknown/path").createOpenException())
+        .hasMessageContaining("Circuit breaker for unknown endpoint is open");
+  }
+
+  @Test
+  void usesCircuitBreakerPerModel() {
+    CircuitBreakers circuitBreakers = new CircuitBreakers(CIRCUIT_BREAKER_POLICY, clock::get);
+    CircuitBreakers.CircuitBreaker gpt4o =
+        circuitBreakers.get(apiRequest("chat/completions"), Optional.of("gpt-4o"));
+    CircuitBreakers.CircuitBreaker gpt4oMini =
+        circuitBreakers.get(apiRequest("chat/completions"), Optional.of("gpt-4o-mini"));
+
+    for (int i = 0; i < 4; i++) {
+      onResult(gpt4o, 503);
+    }
+
+    assertThat(gpt4o.tryAcquirePermit()).isEqualTo(CircuitBreakers.Permit.REJECTED);
+    assertThat(gpt4oMini.tryAcquirePermit()).isEqualTo(CircuitBreakers.Permit.REQUEST);
+  }
+
+  @Test
+  void usesCircuitBreakerPerApiKey() {
+    CircuitBreakers circuitBreakers = new CircuitBreakers(CIRCUIT_BREAKER_POLICY, clock::get);
+    CircuitBreakers.CircuitBreaker tenantA =
+        circuitBreakers.get(apiRequest("chat/completions", "tenant-a"), Optional.of("gpt-4o"));
+    CircuitBreakers.CircuitBreaker tenantB =
+        circuitBreakers.get(apiRequest("chat/completions", "tenant-b"), Optional.of("gpt-4o"));
+
+    for (int i = 0; i < 4; i++) {
+      onResult(tenantA, 500);
+    }
+
+    assertThat(tenantA.tryAcquirePermit()).isEqualTo(CircuitBreakers.Permit.REJECTED);
+    assertThat(tenantB.tryAcquirePermit()).isEqualTo(CircuitBreakers.Permit.REQUEST);
+    assertThat(
+            circuitBreakers.get(apiRequest("chat/completions", "tenant-a"), Optional.of("gpt-4o")))
+        .isSameAs(tenantA);
+    // the API key is not part of the message
+    assertThat(tenantA.createOpenException().getMessage()).doesNotContain("tenant-a");
+  }
+
+  @Test
+  void removesIdleCircuitBreakers() {
+    CircuitBreakers circuitBreakers = new CircuitBreakers(CIRCUIT_BREAKER_POLICY, clock::get);
+    CircuitBreakers.CircuitBreaker tenantA =
+        circuitBreakers.get(apiRequest("chat/completions", "tenant-a"), Optional.of("gpt-4o"));
+    onResult(tenantA, 200);
+    circuitBreakers.get(apiRequest("chat/completions", "tenant-b"), Optional.of("gpt-4o"));
+
+    // longer than the window
+    clock.addAndGet(Duration.ofSeconds(11).toNanos());
+    CircuitBreakers.CircuitBreaker tenantC =
+        circuitBreakers.get(apiRequest("chat/completions", "tenant-c"), Optional.of("gpt-4o"));
+
+    assertThat(circuitBreakers.size()).isEqualTo(1);
+    assertThat(
+            circuitBreakers.get(apiRequest("chat/completions", "tenant-c"), Optional.of("gpt-4o")))
+        .isSameAs(tenantC);
+    assertThat(
+            circuitBreakers.get(apiRequest("chat/completions", "tenant-a"), Optional.of("gpt-4o")))
+        .isNotSameAs(tenantA);
+  }
+
+  @Test
+  void removesOpenCircuitBreakersOnlyAfterAnotherOpenDuration() {
+    CircuitBreakers circuitBreakers = new CircuitBreakers(CIRCUIT_BREAKER_POLICY, clock::get);
+    CircuitBreakers.CircuitBreaker circuitBreaker =
+        endpointCircuitBreaker(circuitBreakers, "chat/completions");
+    for (int i = 0; i < 4; i++) {
+      onResult(circuitBreaker, 500);
+    }
+
+    clock.addAndGet(Duration.ofSeconds(24).toNanos());
+    assertThat(endpointCircuitBreaker(circuitBreakers, "models")).isNotNull();
+    assertThat(circuitBreakers.size()).isEqualTo(2);
+
+    clock.addAndGet(Duration.ofSeconds(11).toNanos());
+    assertThat(endpointCircuitBreaker(circuitBreakers, "models")).isNotNull();
+    assertThat(circuitBreakers.size()).isEqualTo(1);
+  }
+
+  @Test
+  void keepsCircuitBreakersWhichAreStillUsed() {
+    CircuitBreakers circuitBreakers = new CircuitBreakers(CIRCUIT_BREAKER_POLICY, clock::get);
+    CircuitBreakers.CircuitBreaker circuitBreaker =
+        endpointCircuitBreaker(circuitBreakers, "chat/completions");
+    for (int i = 0; i < 4; i++) {
+      onResult(circuitBreaker, 500);
+    }
+
+    for (int i = 0; i < 3; i++) {
+      clock.addAndGet(Duration.ofSeconds(10).toNanos());
+      // rejected requests also use the circuit breaker
+      assertThat(endpointCircuitBreaker(circuitBreakers, "chat/completions"))
+          .isSameAs(circuitBreaker);
+      assertThat(circuitBreaker.tryAcquirePermit()).isNotEqualTo(CircuitBreakers.Permit.REQUEST);
+    }
+  }
+
+  private CircuitBreakers.CircuitBreaker endpointCircuitBreaker(
+      CircuitBreakers circuitBreakers, String path) {
+    return circuitBreakers.get(apiRequest(path), Optional.empty());
+  }
+
+  private void onResult(CircuitBreakers.CircuitBreaker circuitBreaker, int statusCode) {
+    circuitBreaker.onResult(circuitBreaker.tryAcquirePermit(), statusCode, clock.get());
+  }
+
+  private void assertFailsWithStatusCode(ChatClient chatClient, int statusCode) {
+    assertThatThrownBy(() -> chatClient.createChatCompletion(chatCompletionRequest()))
+        .isInstanceOf(OpenAIException.class)
+        .satisfies(ex -> assertThat(((OpenAIException) ex).statusCode()).isEqualTo(statusCode));
+  }
+
+  private void assertOpen(ChatClient chatClient) {
+    int requests = mockServer.retrieveRecordedRequests(chatCompletionsRequest()).length;
+    assertFailsWithStatusCode(chatClient, 503);
+    // the request was not sent
+    mockServer.verify(chatCompletionsRequest(), VerificationTimes.exactly(requests));
+  }
+
+  private void respond(Times times, HttpResponse httpResponse) {
+    mockServer.when(chatCompletionsRequest(), times).respond(httpResponse);
+  }
+
+  private HttpResponse success() {
+    return HttpResponse.response(CHAT_COMPLETION);
+  }
+
+  private HttpResponse serverError() {
+    return HttpResponse.response().withStatusCode(500).withBody(SERVER_ERROR);
+  }
+
+  private HttpResponse rateLimitError() {
+    return HttpResponse.response().withStatusCode(429).withBody(RATE_LIMIT_ERROR);
+  }
+
+  private HttpRequest chatCompletionsRequest() {
+    return HttpRequest.request().withMethod("POST").withPath("/chat/completions");
+  }
+
+  private CreateChatCompletionRequest chatCompletionRequest() {
+    return CreateChatCompletionRequest.newBuilder()
+        .model(OpenAIModel.GPT_4o)
+        .message(ChatMessage.userMessage("Hello"))
+        .build();
+  }
+
+  private java.net.http.HttpRequest apiRequest(String path) {
+    return apiRequest(path, "api-key");
+  }
+
+  private java.net.http.HttpRequest apiRequest(String path, String apiKey) {
+    return java.net.http.HttpRequest.newBuilder(URI.create("https://api.openai.com/v1/" + path))
+        .header(Constants.AUTHORIZATION_HEADER, "Bearer " + apiKey)
+        .build();
+  }
+
+  private ChatClient chatClient(CircuitBreakers circuitBreakers) {
+    return new ChatClient(
+        URI.create("http://localhost:" + mockServer.getPort() + "/"),
+        new String[] {Constants.AUTHORIZATION_HEADER, "Bearer api-key"},
+        new ClientOptions(
+            () -> httpClient,
+            Optional.empty(),
+            Optional.empty(),
+            Optional.empty(),
+            false,
+            Optional.empty(),
+            Optional.of(circuitBreakers),
+            Optional.empty(),
+            Optional.empty(),
+            SharedClientState.create(Optional.empty(), Duration.ofMinutes(1))));
+  }
+}
@@ -0,0 +1,82 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+
+class ConversationMemoryTest {
+
+  // every character is a single token
+  private final TokenCounter tokenCounter = new TokenCounter(TestUtil.createTokenizer(List.of()));
+
+  @Test
+  void keepsSystemMessageAndSlidesWindow() {
+    // 3 priming + system message (12) + one turn (9 + 14) fits, but two turns don't
+    ConversationMemory memory = ConversationMemory.newBuilder(tokenCounter, 50).build();
+
+    memory.add(ChatMessage.systemMessage("sys"));
+    for (int i = 0; i < 5; i++) {
+      memory.add(ChatMessage.userMessage("q" + i));
+      memory.add(ChatMessage.assistantMessage("a" + i));
+    }
+
+    assertThat(memory.messages())
+        .containsExactly(
+            ChatMessage.systemMessage("sys"),
+            ChatMessage.userMessage("q4"),
+            ChatMessage.assistantMessage("a4"));
+    assertThat(memory.tokenCount())
+        .isEqualTo(tokenCounter.countMessages(memory.messages()))
+        .isLessThanOrEqualTo(50);
+  }
+
+  @Test
+  void doesNotKeepToolMessagesWithoutToolCall() {
+    ConversationMemory memory = ConversationMemory.newBuilder(tokenCounter, 40).build();
+
+    memory.add(
+        ChatMessage.assistantMessage(
+            null,
+            List.of(
+                ToolCall.functionToolCall(
+                    "call_1", new ToolCall.FunctionToolCall.Function("f", "{}", null)))));
+    memory.add(ChatMessage.toolMessage("result", "call_1"));
+    memory.add(ChatMessage.userMessage("q"));
+
+    assertThat(memory.messages()).containsExactly(ChatMessage.userMessage("q"));
+  }
+
+  @Test
+  void addsSummaryOfEvictedMessages() {
+    CompactionStrategy summarizing =
+        new CompactionStrategy() {
+          @Override
+          public int evictionCount(
+              List<ChatMessage> messages, List<Integer> tokenCounts, int excessTokens) {
+            return CompactionStrategy.slidingWindow()
+                .evictionCount(messages, tokenCounts, excessTokens);
+          }
+
+          @Override
+          public CompletableFuture<Optional<ChatMessage>> summarize(
+              Optional<ChatMessage> previousSummary, List<ChatMessage> evictedMessages) {
+            return CompletableFuture.completedFuture(
+                Optional.of(ChatMessage.systemMessage("summary")));
+          }
+        };
+    ConversationMemory memory =
+        ConversationMemory.newBuilder(tokenCounter, 50).compactionStrategy(summarizing).build();
+
+    for (int i = 0; i < 5; i++) {
+      memory.add(ChatMessage.userMessage("q" + i));
+      memory.add(ChatMessage.assistantMessage("a" + i));
+    }
+    memory.pendingCompaction().join();
+
+    assertThat(memory.messages()).first().isEqualTo(ChatMessage.systemMessage("summary"));
+    assertThat(memory.tokenCount()).isLessThanOrEqualTo(50);
+  }
+}
@@ -0,0 +1,320 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+import org.junit.jupiter.api.Test;
+
+class DecompressingBodyHandlerTest {
+
+  private static final int FHCRC = 2;
+  private static final int FEXTRA = 4;
+  private static final int FNAME = 8;
+  private static final int FCOMMENT = 16;
+
+  private final Random random = new Random(42);
+
+  @Test
+  void decompressesGzipSplitAtAnyByteBoundary() throws Exception {
+    byte[] body = createBody(300);
+    byte[] compressed = gzipMember(body, 0);
+
+    for (int split = 0; split <= compressed.length; split++) {
+      assertThat(decompress("gzip", splitAt(compressed, split))).isEqualTo(body);
+    }
+  }
+
+  @Test
+  void decompressesGzipInChunksOfAnySize() throws Exception {
+    // larger than the output buffer, so a single input produces several outputs
+    byte[] body = createBody(50_000);
+    byte[] compressed = gzipMember(body, 0);
+
+    for (int chunkSize : new int[] {1, 2, 3, 7, 10, 64, 1000, compressed.length}) {
+      assertThat(decompress("gzip", chunks(compressed, chunkSize))).isEqualTo(body);
+    }
+    for (int i = 0; i < 20; i++) {
+      assertThat(decompress("gzip", randomChunks(compressed))).isEqualTo(body);
+    }
+  }
+
+  @Test
+  void skipsOptionalGzipHeaderFields() throws Exception {
+    byte[] body = createBody(200);
+
+    int[] flagCombinations = {FEXTRA, FNAME, FCOMMENT, FHCRC, FEXTRA | FNAME | FCOMMENT | FHCRC};
+    for (int flags : flagCombinations) {
+      byte[] compressed = gzipMember(body, flags);
+      for (int split = 0; split <= compressed.length; split++) {
+        assertThat(decompress("gzip", splitAt(compressed, split))).isEqualTo(body);
+      }
+      assertThat(decompress("gzip", chunks(compressed, 1))).isEqualTo(body);
+    }
+  }
+
+  @Test
+  void decompressesMultipleGzipMembers() throws Exception {
+    byte[] first = createBody(150);
+    byte[] second = createBody(150);
+    byte[] compressed =
+        concat(gzipMember(first, FNAME), gzipMember(new byte[0], 0), gzipMember(second, FEXTRA));
+
+    for (int split = 0; split <= compressed.length; split++) {
+      assertThat(decompress("gzip", splitAt(compressed, split))).isEqualTo(concat(first, second));
+    }
+  }
+
+  @Test
+  void decompressesDeflateSplitAtAnyByteBoundary() throws Exception {
+    byte[] body = createBody(300);
+    byte[] compressed = deflate(body, false);
+
+    for (int split = 0; split <= compressed.length; split++) {
+      assertThat(decompress("deflate", splitAt(compressed, split))).isEqualTo(body);
+    }
+    assertThat(decompress("deflate", chunks(compressed, 1))).isEqualTo(body);
+  }
+
+  @Test
+  void passesOtherEncodingsAsTheyAre() throws Exception {
+    byte[] body = createBody(100);
+
+    assertThat(decompress(null, chunks(body, 7))).isEqualTo(body);
+    assertThat(decompress("identity", chunks(body, 7))).isEqualTo(body);
+    assertThat(decompress("br", chunks(body, 7))).isEqualTo(body);
+  }
+
+  @Test
+  void completesEmptyCompressedBody() throws Exception {
+    assertThat(decompress("gzip", List.of())).isEmpty();
+    assertThat(decompress("deflate", List.of())).isEmpty();
+  }
+
+  @Test
+  void failsOnTruncatedGzip() {
+    byte[] compressed = gzipMember(createBody(200), FEXTRA | FNAME | FHCRC);
+
+    // truncated in the header, the compressed data and the trailer
+    for (int length = 1; length < compressed.length; length++) {
+      List<List<ByteBuffer>> truncated = splitAt(Arrays.copyOf(compressed, length), length / 2);
+      ExecutionException exception =
+          assertThrows(ExecutionException.class, () -> decompress("gzip", truncated));
+      assertThat(exception).hasCauseInstanceOf(EOFException.class);
+    }
+  }
+
+  @Test
+  void failsOnTruncatedDeflate() {
+    byte[] compressed = deflate(createBody(200), false);
+
+    for (int length = 1; length < compressed.length; length++) {
+      byte[] truncated = Arrays.copyOf(compressed, length);
+      ExecutionException exception =
+          assertThrows(ExecutionException.class, () -> decompress("deflate", chunks(truncated, 3)));
+      assertThat(exception).hasCauseInstanceOf(EOFException.class);
+    }
+  }
+
+  @Test
+  void failsOnCorruptGzip() {
+    byte[] compressed = gzipMember(createBody(200), 0);
+
+    byte[] wrongMagic = compressed.clone();
+    wrongMagic[0] = 0;
+    assertFailsWith(wrongMagic, "Not in gzip format");
+
+    byte[] wrongCrc = compressed.clone();
+    wrongCrc[compressed.length - 8] ^= 1;
+    assertFailsWith(wrongCrc, "Corrupt gzip trailer: CRC mismatch");
+
+    byte[] wrongSize = compressed.clone();
+    wrongSize[compressed.length - 1] ^= 1;
+    assertFailsWith(wrongSize, "Corrupt gzip trailer: size mismatch");
+
+    byte[] corruptData = compressed.clone();
+    // an invalid block type
+    corruptData[10] = (byte) 0xff;
+    assertFailsWith(corruptData, null);
+  }
+
+  @Test
+  void failsOnCorruptGzipAfterFirstMember() {
+    byte[] garbage = "not a gzip member".getBytes(StandardCharsets.US_ASCII);
+    byte[] compressed = concat(gzipMember(createBody(100), 0), garbage);
+
+    assertFailsWith(compressed, "Not in gzip format");
+  }
+
+  private void assertFailsWith(byte[] compressed, String message) {
+    ExecutionException exception =
+        assertThrows(ExecutionException.class, () -> decompress("gzip", chunks(compressed, 5)));
+    assertThat(exception).hasCauseInstanceOf(ZipException.class);
+    if (message != null) {
+      assertThat(exception.getCause()).hasMessage(message);
+    }
+  }
+
+  /**
+   * Publishes each inner list as one {@link java.util.concurrent.Flow.Subscriber#onNext(Object)}
+   * call to the subscriber of the handler and returns the body
+   */
+  private byte[] decompress(String contentEncoding, List<List<ByteBuffer>> items)
+      throws Exception {
+    HttpResponse.BodySubscriber<byte[]> subscriber =
+        new DecompressingBodyHandler<>(HttpResponse.BodyHandlers.ofByteArray())
+            .apply(responseInfo(contentEncoding));
+    subscriber.onSubscribe(
+        new Flow.Subscription() {
+          @Override
+          public void request(long n) {}
+
+          @Override
+          public void cancel() {}
+        });
+    for (List<ByteBuffer> item : items) {
+      subscriber.onNext(item);
+    }
+    subscriber.onComplete();
+    return subscriber.getBody().toCompletableFuture().get(5, TimeUnit.SECONDS);
+  }
+
+  private HttpResponse.ResponseInfo responseInfo(String contentEncoding) {
+    Map<String, List<String>> headers =
+        contentEncoding == null
+            ? Map.of()
+            : Map.of(Constants.CONTENT_ENCODING_HEADER, List.of(contentEncoding));
+    return new HttpResponse.ResponseInfo() {
+      @Override
+      public int statusCode() {
+        return 200;
+      }
+
+      @Override
+      public HttpHeaders headers() {
+        return HttpHeaders.of(headers, (name, value) -> true);
+      }
+
+      @Override
+      public HttpClient.Version version() {
+        return HttpClient.Version.HTTP_1_1;
+      }
+    };
+  }
+
+  /** Two items, where the first one has the bytes before the split and the second the rest */
+  private List<List<ByteBuffer>> splitAt(byte[] bytes, int split) {
+    return List.of(
+        List.of(ByteBuffer.wrap(Arrays.copyOfRange(bytes, 0, split))),
+        List.of(ByteBuffer.wrap(Arrays.copyOfRange(bytes, split, bytes.length))));
+  }
+
+  private List<List<ByteBuffer>> chunks(byte[] bytes, int chunkSize) {
+    List<List<ByteBuffer>> items = new ArrayList<>();
+    for (int start = 0; start < bytes.length; start += chunkSize) {
+      int end = Math.min(start + chunkSize, bytes.length);
+      items.add(List.of(ByteBuffer.wrap(Arrays.copyOfRange(bytes, start, end))));
+    }
+    return items;
+  }
+
+  /** Chunks of random sizes, grouped into items with a random number of buffers */
+  private List<List<ByteBuffer>> randomChunks(byte[] bytes) {
+    List<List<ByteBuffer>> items = new ArrayList<>();
+    List<ByteBuffer> item = new ArrayList<>();
+    int start = 0;
+    while (start < bytes.length) {
+      int end = Math.min(start + random.nextInt(2000), bytes.length);
+      item.add(ByteBuffer.wrap(Arrays.copyOfRange(bytes, start, end)));
+      if (random.nextBoolean()) {
+        items.add(item);
+        item = new ArrayList<>();
+      }
+      start = end;
+    }
+    items.add(item);
+    return items;
+  }
+
+  /** Text which compresses, but not to almost nothing */
+  private byte[] createBody(int length) {
+    StringBuilder body = new StringBuilder();
+    String[] words = {"hello", "world", "chat", "completion", "token", "stream", "\n"};
+    while (body.length() < length) {
+      body.append(words[random.nextInt(words.length)]).append(random.nextInt(100)).append(' ');
+    }
+    return body.substring(0, length).getBytes(StandardCharsets.UTF_8);
+  }
+
+  private byte[] gzipMember(byte[] body, int flags) {
+    ByteArrayOutputStream member = new ByteArrayOutputStream();
+    member.writeBytes(new byte[] {0x1f, (byte) 0x8b, 8, (byte) flags, 0, 0, 0, 0, 0, (byte) 255});
+    if ((flags & FEXTRA) != 0) {
+      byte[] extra = "AB\u0002\u0000xy".getBytes(StandardCharsets.ISO_8859_1);
+      writeShort(member, extra.length);
+      member.writeBytes(extra);
+    }
+    if ((flags & FNAME) != 0) {
+      member.writeBytes("response.json\u0000".getBytes(StandardCharsets.ISO_8859_1));
+    }
+    if ((flags & FCOMMENT) != 0) {
+      member.writeBytes("a comment\u0000".getBytes(StandardCharsets.ISO_8859_1));
+    }
+    if ((flags & FHCRC) != 0) {
+      CRC32 headerCrc = new CRC32();
+      headerCrc.update(member.toByteArray());
+      writeShort(member, (int) headerCrc.getValue());
+    }
+    member.writeBytes(deflate(body, true));
+    CRC32 crc = new CRC32();
+    crc.update(body);
+    writeShort(member, (int) crc.getValue());
+    writeShort(member, (int) (crc.getValue() >>> 16));
+    writeShort(member, body.length);
+    writeShort(member, body.length >>> 16);
+    return member.toByteArray();
+  }
+
+  private byte[] deflate(byte[] body, boolean nowrap) {
+    Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap);
+    deflater.setInput(body);
+    deflater.finish();
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1024];
+    while (!deflater.finished()) {
+      compressed.write(buffer, 0, deflater.deflate(buffer));
+    }
+    deflater.end();
+    return compressed.toByteArray();
+  }
+
+  private void writeShort(ByteArrayOutputStream output, int value) {
+    output.write(value & 0xff);
+    output.write((value >>> 8) & 0xff);
+  }
+
+  private byte[] concat(byte[]... arrays) {
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    for (byte[] array : arrays) {
+      result.writeBytes(array);
+    }
+    return result.toByteArray();
+  }
+}
@@ -0,0 +1,184 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.matchers.Times;
+import org.mockserver.model.Delay;
+import org.mockserver.verify.VerificationTimes;
+
+class GetRequestDeduplicatorTest {
+
+  private static final String MODEL = "{\"id\":\"gpt-4o\",\"created\":1,\"owned_by\":\"openai\"}";
+
+  private final HttpClient httpClient = HttpClient.newHttpClient();
+
+  private ClientAndServer mockServer;
+
+  @BeforeEach
+  void setUp() {
+    mockServer = ClientAndServer.startClientAndServer();
+  }
+
+  @AfterEach
+  void tearDown() {
+    mockServer.stop();
+  }
+
+  @Test
+  void sharesOneExchangeBetweenConcurrentIdenticalRequests() throws Exception {
+    mockServer.when(modelRequest()).respond(response(MODEL).withDelay(Delay.milliseconds(300)));
+    GetRequestDeduplicator deduplicator = new GetRequestDeduplicator(Optional.empty());
+
+    CompletableFuture<HttpResponse<byte[]>> first =
+        deduplicator.send(httpRequest("Bearer key"), this::sendAsync);
+    CompletableFuture<HttpResponse<byte[]>> second =
+        deduplicator.send(httpRequest("Bearer key"), this::sendAsync);
+
+    assertThat(body(first)).isEqualTo(MODEL);
+    assertThat(body(second)).isEqualTo(MODEL);
+    mockServer.verify(modelRequest(), VerificationTimes.once());
+  }
+
+  @Test
+  void doesNotShareExchangeBetweenRequestsWithDifferentHeaders() throws Exception {
+    mockServer.when(modelRequest()).respond(response(MODEL).withDelay(Delay.milliseconds(300)));
+    GetRequestDeduplicator deduplicator = new GetRequestDeduplicator(Optional.empty());
+
+    CompletableFuture<HttpResponse<byte[]>> first =
+        deduplicator.send(httpRequest("Bearer key"), this::sendAsync);
+    CompletableFuture<HttpResponse<byte[]>> second =
+        deduplicator.send(httpRequest("Bearer other-key"), this::sendAsync);
+
+    assertThat(body(first)).isEqualTo(MODEL);
+    assertThat(body(second)).isEqualTo(MODEL);
+    mockServer.verify(modelRequest(), VerificationTimes.exactly(2));
+  }
+
+  @Test
+  void cancellingOneCallerDoesNotCancelTheOthers() throws Exception {
+    mockServer.when(modelRequest()).respond(response(MODEL).withDelay(Delay.milliseconds(300)));
+    GetRequestDeduplicator deduplicator = new GetRequestDeduplicator(Optional.empty());
+
+    CompletableFuture<HttpResponse<byte[]>> first =
+        deduplicator.send(httpRequest("Bearer key"), this::sendAsync);
+    CompletableFuture<HttpResponse<byte[]>> second =
+        deduplicator.send(httpRequest("Bearer key"), this::sendAsync);
+    first.cancel(true);
+
+    assertThat(body(second)).isEqualTo(MODEL);
+    mockServer.verify(modelRequest(), VerificationTimes.once());
+  }
+
+  @Test
+  void reusesSuccessfulResponsesForTimeToLive() throws Exception {
+    mockServer.when(modelRequest()).respond(response(MODEL));
+    ModelsClient modelsClient = modelsClient(Duration.ofMinutes(1));
+
+    assertThat(modelsClient.retrieveModel("gpt-4o").id()).isEqualTo("gpt-4o");
+    assertThat(modelsClient.retrieveModel("gpt-4o").id()).isEqualTo("gpt-4o");
+
+    mockServer.verify(modelRequest(), VerificationTimes.once());
+  }
+
+  @Test
+  void doesNotCacheFailures() {
+    mockServer
+        .when(modelRequest(), Times.once())
+        .respond(
+            response()
+                .withStatusCode(500)
+                .withBody("{\"error\":{\"message\":\"The server had an error\"}}"));
+    mockServer.when(modelRequest()).respond(response(MODEL));
+    ModelsClient modelsClient = modelsClient(Duration.ofMinutes(1));
+
+    assertThatThrownBy(() -> modelsClient.retrieveModel("gpt-4o"))
+        .isInstanceOf(OpenAIException.class);
+    assertThat(modelsClient.retrieveModel("gpt-4o").id()).isEqualTo("gpt-4o");
+    assertThat(modelsClient.retrieveModel("gpt-4o").id()).isEqualTo("gpt-4o");
+
+    mockServer.verify(modelRequest(), VerificationTimes.exactly(2));
+  }
+
+  @Test
+  void skipsCachedResponsesWhenAskedTo() throws Exception {
+    mockServer.when(modelRequest()).respond(response(MODEL));
+    GetRequestDeduplicator deduplicator =
+        new GetRequestDeduplicator(Optional.of(Duration.ofMinutes(1)));
+
+    assertThat(body(deduplicator.send(httpRequest("Bearer key"), this::sendAsync)))
+        .isEqualTo(MODEL);
+    assertThat(body(deduplicator.send(httpRequest("Bearer key"), this::sendAsync, false)))
+        .isEqualTo(MODEL);
+    assertThat(body(deduplicator.send(httpRequest("Bearer key"), this::sendAsync)))
+        .isEqualTo(MODEL);
+
+    mockServer.verify(modelRequest(), VerificationTimes.exactly(2));
+  }
+
+  @Test
+  void modelCatalogDoesNotUseCachedResponses() {
+    org.mockserver.model.HttpRequest listModelsRequest =
+        request().withMethod("GET").withPath("/models");
+    mockServer
+        .when(listModelsRequest, Times.once())
+        .respond(response("{\"object\":\"list\",\"data\":[" + MODEL + "]}"));
+    mockServer
+        .when(listModelsRequest)
+        .respond(
+            response(
+                "{\"object\":\"list\",\"data\":[{\"id\":\"gpt-4o-mini\",\"created\":1,"
+                    + "\"owned_by\":\"openai\"}]}"));
+    ModelsClient modelsClient = modelsClient(Duration.ofMinutes(1));
+
+    assertThat(modelsClient.listModels()).extracting(Model::id).containsExactly("gpt-4o");
+
+    try (ModelCatalog modelCatalog = modelsClient.modelCatalog(Duration.ofMinutes(1))) {
+      assertThat(modelCatalog.contains("gpt-4o-mini")).isTrue();
+      assertThat(modelCatalog.contains("gpt-4o")).isFalse();
+    }
+  }
+
+  private ModelsClient modelsClient(Duration getResponseTimeToLive) {
+    return OpenAI.newBuilder("api-key")
+        .baseUrl("http://localhost:" + mockServer.getPort())
+        .getResponseTimeToLive(getResponseTimeToLive)
+        .build()
+        .modelsClient();
+  }
+
+  private org.mockserver.model.HttpRequest modelRequest() {
+    return request().withMethod("GET").withPath("/models/gpt-4o");
+  }
+
+  private HttpRequest httpRequest(String authorization) {
+    return HttpRequest.newBuilder()
+        .uri(URI.create("http://localhost:" + mockServer.getPort() + "/models/gpt-4o"))
+        .header(Constants.AUTHORIZATION_HEADER, authorization)
+        .GET()
+        .build();
+  }
+
+  private CompletableFuture<HttpResponse<byte[]>> sendAsync(HttpRequest httpRequest) {
+    return httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofByteArray());
+  }
+
+  private String body(CompletableFuture<HttpResponse<byte[]>> response) throws Exception {
+    return new String(response.get(5, TimeUnit.SECONDS).body(), StandardCharsets.UTF_8);
+  }
+}
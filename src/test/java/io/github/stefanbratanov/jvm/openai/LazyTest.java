@@ -0,0 +1,172 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.reflect.Field;
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class LazyTest {
+
+  @Test
+  void createsValueOnceOnFirstAccess() {
+    AtomicInteger creations = new AtomicInteger();
+    Lazy<Object> lazy =
+        new Lazy<>(
+            () -> {
+              creations.incrementAndGet();
+              return new Object();
+            });
+
+    assertThat(creations.get()).isZero();
+    assertThat(lazy.isCreated()).isFalse();
+
+    Object value = lazy.get();
+
+    assertThat(lazy.get()).isSameAs(value);
+    assertThat(lazy.isCreated()).isTrue();
+    assertThat(creations.get()).isEqualTo(1);
+  }
+
+  @Test
+  void createsValueOnceWhenAccessedConcurrently() throws Exception {
+    AtomicInteger creations = new AtomicInteger();
+    Lazy<Object> lazy =
+        new Lazy<>(
+            () -> {
+              creations.incrementAndGet();
+              try {
+                // keeps the other threads waiting on the lock
+                java.lang.Thread.sleep(50);
+              } catch (InterruptedException ex) {
+                java.lang.Thread.currentThread().interrupt();
+              }
+              return new Object();
+            });
+    ExecutorService executor = Executors.newFixedThreadPool(16);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<Object>> values = new ArrayList<>();
+    try {
+      for (int i = 0; i < 16; i++) {
+        values.add(
+            executor.submit(
+                () -> {
+                  start.await();
+                  return lazy.get();
+                }));
+      }
+      start.countDown();
+
+      for (Future<Object> value : values) {
+        assertThat(value.get(5, TimeUnit.SECONDS)).isSameAs(lazy.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertThat(creations.get()).isEqualTo(1);
+  }
+
+  @Test
+  void createsValueAgainIfCreationFailed() {
+    AtomicInteger creations = new AtomicInteger();
+    Lazy<Object> lazy =
+        new Lazy<>(
+            () -> {
+              if (creations.incrementAndGet() == 1) {
+                throw new IllegalStateException("The value could not be created");
+              }
+              return new Object();
+            });
+
+    assertThatThrownBy(lazy::get).isInstanceOf(IllegalStateException.class);
+    assertThat(lazy.isCreated()).isFalse();
+
+    assertThat(lazy.get()).isNotNull();
+    assertThat(creations.get()).isEqualTo(2);
+  }
+
+  @Test
+  void createsClientsOnFirstUse() throws Exception {
+    OpenAI openAI = OpenAI.newBuilder("api-key").build();
+
+    assertThat(createdClients(openAI)).isEmpty();
+
+    ChatClient chatClient = openAI.chatClient();
+
+    assertThat(openAI.chatClient()).isSameAs(chatClient);
+    assertThat(createdClients(openAI)).containsExactly("chatClient");
+  }
+
+  @Test
+  void derivedInstancesOnlyCreateClientsWhichAreUsed() throws Exception {
+    OpenAI openAI = OpenAI.newBuilder("api-key").build();
+    ChatClient chatClient = openAI.chatClient();
+
+    OpenAI tenant = openAI.withApiKey("tenant-key");
+
+    assertThat(createdClients(tenant)).isEmpty();
+
+    ModelsClient modelsClient = tenant.modelsClient();
+
+    assertThat(createdClients(tenant)).containsExactly("modelsClient");
+    assertThat(tenant.modelsClient()).isSameAs(modelsClient);
+    assertThat(tenant.chatClient()).isNotSameAs(chatClient);
+  }
+
+  @Test
+  void createsDefaultHttpClientOnFirstRequest() throws Exception {
+    OpenAI openAI = OpenAI.newBuilder("api-key").baseUrl("http://localhost:1").build();
+    // creating clients does not need the HTTP client
+    openAI.chatClient();
+    OpenAI tenant = openAI.withApiKey("tenant-key");
+    tenant.modelsClient();
+
+    Lazy<HttpClient> httpClient = httpClient(openAI);
+    assertThat(httpClient.isCreated()).isFalse();
+    assertThat(httpClient(tenant)).isSameAs(httpClient);
+
+    assertThatThrownBy(() -> tenant.modelsClient().retrieveModel("gpt-4o"));
+
+    assertThat(httpClient.isCreated()).isTrue();
+  }
+
+  @Test
+  void doesNotCreateDefaultHttpClientWhenOneIsProvided() throws Exception {
+    HttpClient providedHttpClient = HttpClient.newHttpClient();
+    OpenAI openAI = OpenAI.newBuilder("api-key").httpClient(providedHttpClient).build();
+
+    assertThat(httpClient(openAI).get()).isSameAs(providedHttpClient);
+  }
+
+  /**
+   * @return the names of the client fields whose clients have been created
+   */
+  private List<String> createdClients(OpenAI openAI) throws IllegalAccessException {
+    List<String> createdClients = new ArrayList<>();
+    for (Field field : OpenAI.class.getDeclaredFields()) {
+      if (field.getType() == Lazy.class) {
+        field.setAccessible(true);
+        if (((Lazy<?>) field.get(openAI)).isCreated()) {
+          createdClients.add(field.getName());
+        }
+      }
+    }
+    return createdClients;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Lazy<HttpClient> httpClient(OpenAI openAI) throws ReflectiveOperationException {
+    Field field = OpenAI.class.getDeclaredField("clientOptions");
+    field.setAccessible(true);
+    return (Lazy<HttpClient>) ((ClientOptions) field.get(openAI)).httpClient();
+  }
+}
@@ -0,0 +1,289 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.verify.VerificationTimes;
+
+class LoadBalancerTest {
+
+  private static final String MODEL = "{\"id\":\"gpt-4o\",\"created\":1,\"owned_by\":\"openai\"}";
+
+  private static final String CHAT_COMPLETION =
+      "{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion\",\"created\":1,\"model\":\"gpt-4o\","
+          + "\"choices\":[]}";
+
+  private static final String SERVER_ERROR =
+      "{\"error\":{\"message\":\"The server had an error\",\"type\":\"server_error\"}}";
+
+  private ClientAndServer first;
+  private ClientAndServer second;
+
+  @BeforeEach
+  void setUp() {
+    first = ClientAndServer.startClientAndServer();
+    second = ClientAndServer.startClientAndServer();
+  }
+
+  @AfterEach
+  void tearDown() {
+    first.stop();
+    second.stop();
+  }
+
+  @Test
+  void spreadsRequestsInProportionToWeights() {
+    respondWithModel(first);
+    respondWithModel(second);
+    ModelsClient modelsClient =
+        modelsClient(
+            LoadBalancer.newBuilder().baseUrl(url(first), 3).baseUrl(url(second), 1).build());
+
+    for (int i = 0; i < 200; i++) {
+      modelsClient.retrieveModel("gpt-4o");
+    }
+
+    // 150 requests are expected, with a standard deviation of about 6
+    assertThat(first.retrieveRecordedRequests(modelRequest()).length).isBetween(110, 190);
+    assertThat(
+            first.retrieveRecordedRequests(modelRequest()).length
+                + second.retrieveRecordedRequests(modelRequest()).length)
+        .isEqualTo(200);
+  }
+
+  @Test
+  void ejectsFailingBaseUrlAndFailsOverIdempotentRequests() {
+    respondWithModel(first);
+    second.when(modelRequest()).respond(serverError());
+    LoadBalancer loadBalancer =
+        LoadBalancer.newBuilder()
+            .baseUrl(url(first), 1)
+            .baseUrl(url(second), 1)
+            .ejectionThreshold(2)
+            .ejectionDuration(Duration.ofMinutes(1))
+            .build();
+    ModelsClient modelsClient = modelsClient(loadBalancer);
+
+    for (int i = 0; i < 50; i++) {
+      // the GET requests which fail are sent again to the other base URL
+      assertThat(modelsClient.retrieveModel("gpt-4o").id()).isEqualTo("gpt-4o");
+    }
+
+    second.verify(modelRequest(), VerificationTimes.exactly(2));
+    first.verify(modelRequest(), VerificationTimes.exactly(50));
+    assertThat(loadBalancer.healthyBaseUrls()).containsExactly(URI.create(url(first)));
+  }
+
+  @Test
+  void returnsEjectedBaseUrlAfterEjectionDuration() throws InterruptedException {
+    respondWithModel(first);
+    second.when(modelRequest()).respond(serverError());
+    LoadBalancer loadBalancer =
+        LoadBalancer.newBuilder()
+            .baseUrl(url(first), 1)
+            .baseUrl(url(second), 1)
+            .ejectionThreshold(1)
+            .ejectionDuration(Duration.ofMillis(200))
+            .build();
+    ModelsClient modelsClient = modelsClient(loadBalancer);
+
+    while (second.retrieveRecordedRequests(modelRequest()).length == 0) {
+      modelsClient.retrieveModel("gpt-4o");
+    }
+    assertThat(loadBalancer.healthyBaseUrls()).containsExactly(URI.create(url(first)));
+
+    java.lang.Thread.sleep(300);
+
+    assertThat(loadBalancer.healthyBaseUrls())
+        .containsExactly(URI.create(url(first)), URI.create(url(second)));
+  }
+
+  @Test
+  void doesNotFailOverNonIdempotentRequestsAfterServerError() {
+    first.when(chatCompletionsRequest()).respond(HttpResponse.response(CHAT_COMPLETION));
+    second.when(chatCompletionsRequest()).respond(serverError());
+    ChatClient chatClient = chatClient(balancer().build());
+
+    int failures = 0;
+    for (int i = 0; i < 40; i++) {
+      try {
+        chatClient.createChatCompletion(chatCompletionRequest());
+      } catch (OpenAIException ex) {
+        assertThat(ex.statusCode()).isEqualTo(500);
+        failures++;
+      }
+    }
+
+    // every request was sent exactly once
+    int sentToSecond = second.retrieveRecordedRequests(chatCompletionsRequest()).length;
+    assertThat(failures).isEqualTo(sentToSecond).isGreaterThan(0);
+    first.verify(chatCompletionsRequest(), VerificationTimes.exactly(40 - sentToSecond));
+  }
+
+  @Test
+  void doesNotFailOverNonIdempotentAsyncRequestsAfterServerError() {
+    first.when(chatCompletionsRequest()).respond(HttpResponse.response(CHAT_COMPLETION));
+    second.when(chatCompletionsRequest()).respond(serverError());
+    ChatClient chatClient = chatClient(balancer().build());
+
+    int failures = 0;
+    for (int i = 0; i < 40; i++) {
+      try {
+        chatClient.createChatCompletionAsync(chatCompletionRequest()).join();
+      } catch (CompletionException ex) {
+        assertThat(ex.getCause()).isInstanceOf(OpenAIException.class);
+        failures++;
+      }
+    }
+
+    int sentToSecond = second.retrieveRecordedRequests(chatCompletionsRequest()).length;
+    assertThat(failures).isEqualTo(sentToSecond).isGreaterThan(0);
+    first.verify(chatCompletionsRequest(), VerificationTimes.exactly(40 - sentToSecond));
+  }
+
+  @Test
+  void failsOverNonIdempotentRequestsWhenOptedIn() throws Exception {
+    first.when(chatCompletionsRequest()).respond(HttpResponse.response(CHAT_COMPLETION));
+    second.when(chatCompletionsRequest()).respond(serverError());
+    ChatClient chatClient = chatClient(balancer().failoverNonIdempotentRequests(true).build());
+
+    for (int i = 0; i < 20; i++) {
+      assertThat(chatClient.createChatCompletion(chatCompletionRequest()).id())
+          .isEqualTo("chatcmpl-1");
+      assertThat(
+              chatClient
+                  .createChatCompletionAsync(chatCompletionRequest())
+                  .get(5, TimeUnit.SECONDS)
+                  .id())
+          .isEqualTo("chatcmpl-1");
+    }
+    first.verify(chatCompletionsRequest(), VerificationTimes.exactly(40));
+  }
+
+  @Test
+  void failsOverNonIdempotentRequestsWhichCouldNotConnect() throws Exception {
+    first.when(chatCompletionsRequest()).respond(HttpResponse.response(CHAT_COMPLETION));
+    ChatClient chatClient =
+        chatClient(
+            LoadBalancer.newBuilder()
+                .baseUrl(url(first), 1)
+                .baseUrl("http://localhost:" + unusedPort(), 1)
+                .ejectionThreshold(100)
+                .build());
+
+    for (int i = 0; i < 20; i++) {
+      assertThat(chatClient.createChatCompletion(chatCompletionRequest()).id())
+          .isEqualTo("chatcmpl-1");
+      assertThat(
+              chatClient
+                  .createChatCompletionAsync(chatCompletionRequest())
+                  .get(5, TimeUnit.SECONDS)
+                  .id())
+          .isEqualTo("chatcmpl-1");
+    }
+  }
+
+  @Test
+  void authenticatesWithApiKeyOfBaseUrl() {
+    respondWithModel(first);
+    respondWithModel(second);
+    ModelsClient modelsClient =
+        modelsClient(
+            LoadBalancer.newBuilder()
+                .baseUrl(LoadBalancer.BaseUrl.newBuilder(url(first)).apiKey("first-key").build())
+                .baseUrl(url(second), 1)
+                .build());
+
+    for (int i = 0; i < 20; i++) {
+      modelsClient.retrieveModel("gpt-4o");
+    }
+
+    int sentToFirst = first.retrieveRecordedRequests(modelRequest()).length;
+    first.verify(
+        modelRequest().withHeader("Authorization", "Bearer first-key"),
+        VerificationTimes.exactly(sentToFirst));
+    second.verify(
+        modelRequest().withHeader("Authorization", "Bearer api-key"),
+        VerificationTimes.exactly(20 - sentToFirst));
+  }
+
+  @Test
+  void rejectsPerRequestApiKeysWithApiKeysOfBaseUrls() {
+    LoadBalancer loadBalancer =
+        LoadBalancer.newBuilder()
+            .baseUrl(LoadBalancer.BaseUrl.newBuilder(url(first)).apiKey("first-key").build())
+            .build();
+
+    assertThatThrownBy(
+            () ->
+                OpenAI.newBuilder()
+                    .apiKeyProvider(() -> "tenant-key")
+                    .loadBalancer(loadBalancer)
+                    .build())
+        .isInstanceOf(IllegalStateException.class);
+    OpenAI openAI = OpenAI.newBuilder("api-key").loadBalancer(loadBalancer).build();
+    assertThatThrownBy(() -> openAI.withApiKey("tenant-key"))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  private LoadBalancer.Builder balancer() {
+    // failures should not eject the base URL, so both keep receiving requests
+    return LoadBalancer.newBuilder()
+        .baseUrl(url(first), 1)
+        .baseUrl(url(second), 1)
+        .ejectionThreshold(100);
+  }
+
+  private ModelsClient modelsClient(LoadBalancer loadBalancer) {
+    return OpenAI.newBuilder("api-key").loadBalancer(loadBalancer).build().modelsClient();
+  }
+
+  private ChatClient chatClient(LoadBalancer loadBalancer) {
+    return OpenAI.newBuilder("api-key").loadBalancer(loadBalancer).build().chatClient();
+  }
+
+  private void respondWithModel(ClientAndServer server) {
+    server.when(modelRequest()).respond(HttpResponse.response(MODEL));
+  }
+
+  private HttpResponse serverError() {
+    return HttpResponse.response().withStatusCode(500).withBody(SERVER_ERROR);
+  }
+
+  private HttpRequest modelRequest() {
+    return HttpRequest.request().withMethod("GET").withPath("/models/gpt-4o");
+  }
+
+  private HttpRequest chatCompletionsRequest() {
+    return HttpRequest.request().withMethod("POST").withPath("/chat/completions");
+  }
+
+  private CreateChatCompletionRequest chatCompletionRequest() {
+    return CreateChatCompletionRequest.newBuilder()
+        .model(OpenAIModel.GPT_4o)
+        .message(ChatMessage.userMessage("Hello"))
+        .build();
+  }
+
+  private String url(ClientAndServer server) {
+    return "http://localhost:" + server.getPort() + "/";
+  }
+
+  private int unusedPort() throws IOException {
+    try (ServerSocket serverSocket = new ServerSocket(0)) {
+      return serverSocket.getLocalPort();
+    }
+  }
+}
@@ -0,0 +1,215 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.matchers.Times;
+import org.mockserver.model.Delay;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.verify.VerificationTimes;
+
+class ModelCatalogTest {
+
+  private ClientAndServer mockServer;
+  private ModelsClient modelsClient;
+
+  @BeforeEach
+  void setUp() {
+    mockServer = ClientAndServer.startClientAndServer();
+    modelsClient =
+        OpenAI.newBuilder("api-key")
+            .baseUrl("http://localhost:" + mockServer.getPort())
+            .build()
+            .modelsClient();
+  }
+
+  @AfterEach
+  void tearDown() {
+    mockServer.stop();
+  }
+
+  @Test
+  void loadsModelsWhenCreated() {
+    mockModels(Times.unlimited(), "gpt-4o", "gpt-4o-mini", "ft:gpt-4o-mini:org::abc");
+
+    try (ModelCatalog modelCatalog = modelsClient.modelCatalog(Duration.ofHours(1))) {
+      assertThat(modelCatalog.contains("ft:gpt-4o-mini:org::abc")).isTrue();
+      assertThat(modelCatalog.contains(OpenAIModel.GPT_4o)).isTrue();
+      assertThat(modelCatalog.contains(OpenAIModel.GPT_4_TURBO)).isFalse();
+      assertThat(modelCatalog.get("gpt-4o").map(Model::ownedBy)).hasValue("openai");
+      assertThat(modelCatalog.models()).hasSize(3);
+      assertThat(modelCatalog.lastRefreshed()).isBeforeOrEqualTo(Instant.now());
+    }
+    mockServer.verify(modelsRequest(), VerificationTimes.once());
+  }
+
+  @Test
+  void mapsModelsToOpenAIModels() {
+    mockModels(Times.unlimited(), "gpt-4o", "gpt-4o-mini", "ft:gpt-4o-mini:org::abc");
+
+    try (ModelCatalog modelCatalog = modelsClient.modelCatalog(Duration.ofHours(1))) {
+      // fine-tuned models have no OpenAIModel entry
+      assertThat(modelCatalog.openAIModels())
+          .containsExactlyInAnyOrder(OpenAIModel.GPT_4o, OpenAIModel.GPT_4o_MINI);
+    }
+  }
+
+  @Test
+  void failsWhenInitialLoadFails() {
+    mockServer
+        .when(modelsRequest())
+        .respond(
+            HttpResponse.response()
+                .withStatusCode(500)
+                .withBody("{\"error\":{\"message\":\"The server had an error\"}}"));
+
+    assertThatThrownBy(() -> modelsClient.modelCatalog(Duration.ofHours(1)))
+        .isInstanceOf(OpenAIException.class);
+  }
+
+  @Test
+  void refreshesModelsInTheBackground() throws InterruptedException {
+    mockModels(Times.once(), "gpt-4o");
+    mockModels(Times.unlimited(), "gpt-4o", "gpt-4o-mini");
+
+    try (ModelCatalog modelCatalog = modelsClient.modelCatalog(Duration.ofMillis(50))) {
+      assertThat(modelCatalog.contains(OpenAIModel.GPT_4o_MINI)).isFalse();
+
+      awaitModel(modelCatalog, OpenAIModel.GPT_4o_MINI);
+
+      assertThat(modelCatalog.openAIModels())
+          .containsExactlyInAnyOrder(OpenAIModel.GPT_4o, OpenAIModel.GPT_4o_MINI);
+    }
+  }
+
+  @Test
+  void keepsModelsWhenRefreshFails() {
+    mockModels(Times.once(), "gpt-4o");
+    mockServer
+        .when(modelsRequest())
+        .respond(
+            HttpResponse.response()
+                .withStatusCode(500)
+                .withBody("{\"error\":{\"message\":\"The server had an error\"}}"));
+
+    try (ModelCatalog modelCatalog = modelsClient.modelCatalog(Duration.ofHours(1))) {
+      Instant lastRefreshed = modelCatalog.lastRefreshed();
+
+      assertThatThrownBy(modelCatalog::refresh).isInstanceOf(OpenAIException.class);
+
+      assertThat(modelCatalog.contains(OpenAIModel.GPT_4o)).isTrue();
+      assertThat(modelCatalog.lastRefreshed()).isEqualTo(lastRefreshed);
+    }
+  }
+
+  @Test
+  void closingStopsTheBackgroundRefresh() throws InterruptedException {
+    mockModels(Times.unlimited(), "gpt-4o");
+
+    ModelCatalog modelCatalog = modelsClient.modelCatalog(Duration.ofMillis(50));
+    modelCatalog.close();
+    java.lang.Thread.sleep(300);
+
+    mockServer.verify(modelsRequest(), VerificationTimes.once());
+  }
+
+  @Test
+  void catalogsShareOneRefreshThread() throws InterruptedException {
+    mockModels(Times.unlimited(), "gpt-4o");
+
+    List<ModelCatalog> modelCatalogs = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      modelCatalogs.add(modelsClient.modelCatalog(Duration.ofMillis(20)));
+    }
+    java.lang.Thread.sleep(200);
+    modelCatalogs.forEach(ModelCatalog::close);
+
+    assertThat(
+            java.lang.Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("jvm-openai-model-catalog")))
+        .hasSize(1);
+  }
+
+  @Test
+  void rejectsRefreshIntervalWhichIsNotPositive() {
+    mockModels(Times.unlimited(), "gpt-4o");
+
+    assertThatThrownBy(() -> modelsClient.modelCatalog(Duration.ZERO))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("refreshInterval must be positive");
+    assertThatThrownBy(() -> modelsClient.modelCatalog(Duration.ofMillis(-1)))
+        .isInstanceOf(IllegalArgumentException.class);
+
+    mockServer.verify(modelsRequest(), VerificationTimes.never());
+  }
+
+  @Test
+  void slowRefreshDoesNotDelayRefreshesOfOtherCatalogs() throws InterruptedException {
+    mockModels(Times.once(), "gpt-4o");
+    mockServer
+        .when(modelsRequest())
+        .respond(HttpResponse.response().withDelay(Delay.seconds(30)));
+    ClientAndServer otherMockServer = ClientAndServer.startClientAndServer();
+    try {
+      otherMockServer
+          .when(modelsRequest(), Times.once())
+          .respond(HttpResponse.response().withBody(models("gpt-4o")));
+      otherMockServer
+          .when(modelsRequest())
+          .respond(HttpResponse.response().withBody(models("gpt-4o", "gpt-4o-mini")));
+      ModelsClient otherModelsClient =
+          OpenAI.newBuilder("api-key")
+              .baseUrl("http://localhost:" + otherMockServer.getPort())
+              .build()
+              .modelsClient();
+
+      try (ModelCatalog slowModelCatalog = modelsClient.modelCatalog(Duration.ofMillis(50));
+          ModelCatalog modelCatalog = otherModelsClient.modelCatalog(Duration.ofMillis(50))) {
+        awaitModel(modelCatalog, OpenAIModel.GPT_4o_MINI);
+
+        assertThat(modelCatalog.contains(OpenAIModel.GPT_4o_MINI)).isTrue();
+        assertThat(slowModelCatalog.contains(OpenAIModel.GPT_4o)).isTrue();
+      }
+    } finally {
+      otherMockServer.stop();
+    }
+  }
+
+  private void awaitModel(ModelCatalog modelCatalog, OpenAIModel model)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+    while (!modelCatalog.contains(model) && System.nanoTime() < deadline) {
+      java.lang.Thread.sleep(20);
+    }
+  }
+
+  private HttpRequest modelsRequest() {
+    return HttpRequest.request().withMethod("GET").withPath("/models");
+  }
+
+  private void mockModels(Times times, String... ids) {
+    mockServer.when(modelsRequest(), times).respond(HttpResponse.response().withBody(models(ids)));
+  }
+
+  private String models(String... ids) {
+    StringBuilder data = new StringBuilder();
+    for (String id : ids) {
+      if (!data.isEmpty()) {
+        data.append(',');
+      }
+      data.append(
+          String.format(
+              "{\"id\":\"%s\",\"object\":\"model\",\"created\":1,\"owned_by\":\"openai\"}", id));
+    }
+    return String.format("{\"object\":\"list\",\"data\":[%s]}", data);
+  }
+}
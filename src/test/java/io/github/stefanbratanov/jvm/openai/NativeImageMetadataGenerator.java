@@ -0,0 +1,139 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Modifier;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Generates the GraalVM native-image metadata which is bundled in {@code
+ * META-INF/native-image/io.github.stefanbratanov/jvm-openai}. Jackson uses reflection on the
+ * records and enums of the API and on the types with Jackson annotations, such as the sealed
+ * hierarchies of {@link ChatMessage} and {@link ContentPart}, so they are registered for
+ * reflection. The types are found by scanning the compiled classes of the library. No resources
+ * are registered, because the jar has none. The tiktoken ranks used by {@link Tokenizer} are
+ * provided by the application, which registers them itself.
+ *
+ * <p>Run with {@code ./gradlew generateNativeImageMetadata}
+ */
+class NativeImageMetadataGenerator {
+
+  static final String METADATA_DIRECTORY =
+      "META-INF/native-image/io.github.stefanbratanov/jvm-openai";
+  static final String REFLECT_CONFIG = "reflect-config.json";
+
+  private static final String JACKSON_ANNOTATIONS_PACKAGE = "com.fasterxml.jackson.annotation";
+
+  private static final ObjectMapper OBJECT_MAPPER =
+      new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+  public static void main(String[] args) throws IOException {
+    Path metadataDirectory = Path.of(args[0]).resolve(METADATA_DIRECTORY);
+    Files.createDirectories(metadataDirectory);
+    Files.writeString(
+        metadataDirectory.resolve(REFLECT_CONFIG), toJson(generateReflectConfig()) + "\n");
+  }
+
+  static List<Map<String, Object>> generateReflectConfig() {
+    return findLibraryClasses().stream()
+        .filter(NativeImageMetadataGenerator::isUsedByJackson)
+        .sorted(Comparator.comparing(Class::getName))
+        .map(
+            cls -> {
+              Map<String, Object> entry = new LinkedHashMap<>();
+              entry.put("name", cls.getName());
+              entry.put("allDeclaredConstructors", true);
+              entry.put("allDeclaredMethods", true);
+              entry.put("allDeclaredFields", true);
+              return entry;
+            })
+        .toList();
+  }
+
+  static String toJson(Object metadata) {
+    try {
+      return OBJECT_MAPPER.writeValueAsString(metadata);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  private static boolean isUsedByJackson(Class<?> cls) {
+    if (cls.isSynthetic() || cls.isAnonymousClass() || cls.isLocalClass()) {
+      return false;
+    }
+    if (hasJacksonAnnotation(cls)) {
+      return true;
+    }
+    // the internal records and enums, such as the client options, are never serialized
+    return (cls.isRecord() || cls.isEnum()) && isPublic(cls);
+  }
+
+  private static boolean isPublic(Class<?> cls) {
+    for (Class<?> c = cls; c != null; c = c.getEnclosingClass()) {
+      if (!Modifier.isPublic(c.getModifiers())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean hasJacksonAnnotation(Class<?> cls) {
+    List<AnnotatedElement> elements = new ArrayList<>();
+    elements.add(cls);
+    elements.addAll(List.of(cls.getDeclaredFields()));
+    elements.addAll(List.of(cls.getDeclaredMethods()));
+    if (cls.isRecord()) {
+      elements.addAll(List.of(cls.getRecordComponents()));
+    }
+    return elements.stream()
+        .flatMap(element -> Stream.of(element.getDeclaredAnnotations()))
+        .map(Annotation::annotationType)
+        .anyMatch(type -> type.getPackageName().equals(JACKSON_ANNOTATIONS_PACKAGE));
+  }
+
+  private static List<Class<?>> findLibraryClasses() {
+    Path classesDirectory;
+    try {
+      classesDirectory =
+          Path.of(OpenAI.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    } catch (URISyntaxException ex) {
+      throw new IllegalStateException(ex);
+    }
+    Path packageDirectory =
+        classesDirectory.resolve(OpenAI.class.getPackageName().replace('.', '/'));
+    try (Stream<Path> classFiles = Files.list(packageDirectory)) {
+      return classFiles
+          .map(classFile -> classFile.getFileName().toString())
+          .filter(fileName -> fileName.endsWith(".class"))
+          .map(fileName -> fileName.substring(0, fileName.length() - ".class".length()))
+          .map(NativeImageMetadataGenerator::loadClass)
+          .toList();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  private static Class<?> loadClass(String simpleBinaryName) {
+    try {
+      return Class.forName(
+          OpenAI.class.getPackageName() + "." + simpleBinaryName,
+          false,
+          NativeImageMetadataGenerator.class.getClassLoader());
+    } catch (ClassNotFoundException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class NativeImageMetadataTest {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Test
+  void bundledMetadataIsUpToDate() throws IOException {
+    assertThat(readBundledMetadata(NativeImageMetadataGenerator.REFLECT_CONFIG))
+        .as("reflect-config.json is outdated, run ./gradlew generateNativeImageMetadata")
+        .isEqualTo(objectMapper.valueToTree(NativeImageMetadataGenerator.generateReflectConfig()));
+  }
+
+  @Test
+  void doesNotRegisterResourcesWhichAreNotBundled() {
+    assertThat(
+            NativeImageMetadataTest.class.getResource(
+                "/" + NativeImageMetadataGenerator.METADATA_DIRECTORY + "/resource-config.json"))
+        .as("the jar has no resources to register")
+        .isNull();
+  }
+
+  @Test
+  void registersSealedHierarchiesButNotInternalTypes() {
+    List<String> registeredTypes =
+        NativeImageMetadataGenerator.generateReflectConfig().stream()
+            .map(entry -> (String) entry.get("name"))
+            .toList();
+
+    assertThat(registeredTypes)
+        .contains(
+            ChatMessage.class.getName(),
+            ChatMessage.UserMessage.UserMessageWithContentParts.class.getName(),
+            ContentPart.ImageUrlContentPart.class.getName(),
+            DeltaToolCall.FunctionToolCall.class.getName(),
+            AuditLogEvent.ProjectCreatedEvent.class.getName(),
+            OpenAIException.Error.class.getName(),
+            Role.class.getName(),
+            StructuredOutputs.class.getName() + "$DeducedSubtypes")
+        .doesNotContain(
+            ClientOptions.class.getName(), CircuitBreakers.class.getName() + "$Key");
+  }
+
+  private JsonNode readBundledMetadata(String fileName) throws IOException {
+    try (InputStream metadata =
+        NativeImageMetadataTest.class.getResourceAsStream(
+            "/" + NativeImageMetadataGenerator.METADATA_DIRECTORY + "/" + fileName)) {
+      assertThat(metadata).as(fileName + " is not bundled").isNotNull();
+      return objectMapper.readTree(metadata);
+    }
+  }
+}
@@ -0,0 +1,148 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Exercises the serialization of the sealed hierarchies against a local server, which needs no API
+ * key. It also runs as a native image with {@code ./gradlew nativeTest -PnativeSmokeTest}, which
+ * verifies the bundled native-image metadata.
+ */
+class NativeImageSmokeTest {
+
+  private static final String CHAT_COMPLETION =
+      """
+      {"id":"chatcmpl-1","object":"chat.completion","created":1,"model":"gpt-4o","choices":[{
+      "index":0,"message":{"role":"assistant","content":null,"tool_calls":[{"id":"call_1",
+      "type":"function","function":{"name":"getWeather","arguments":"{}"}}]},
+      "finish_reason":"tool_calls"}],"usage":{"prompt_tokens":1,"completion_tokens":1,
+      "total_tokens":2}}
+      """;
+
+  private static final String CHAT_COMPLETION_CHUNKS =
+      """
+      data: {"id":"chatcmpl-1","object":"chat.completion.chunk","created":1,"model":"gpt-4o",\
+      "choices":[{"index":0,"delta":{"tool_calls":[{"index":0,"id":"call_1","type":"function",\
+      "function":{"name":"getWeather","arguments":""}}]}}]}
+
+      data: [DONE]
+
+      """;
+
+  private static final String AUDIT_LOGS =
+      """
+      {"object":"list","data":[{"id":"audit_1","type":"project.created","effective_at":1,
+      "actor":{"type":"session","session":{"user":{"id":"user-1","email":"user@example.com"},
+      "ip_address":"127.0.0.1"}},"project.created":{"id":"proj_1","data":{"name":"p",
+      "title":"Project"}}}],"first_id":"audit_1","last_id":"audit_1","has_more":false}
+      """;
+
+  private final Map<String, String> requestBodies = new ConcurrentHashMap<>();
+
+  private HttpServer server;
+  private OpenAI openAI;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext(
+        "/",
+        exchange -> {
+          String path = exchange.getRequestURI().getPath();
+          String requestBody =
+              new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+          requestBodies.put(path, requestBody);
+          String responseBody;
+          if (path.endsWith("/audit_logs")) {
+            responseBody = AUDIT_LOGS;
+          } else if (requestBody.contains("\"stream\":true")) {
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            responseBody = CHAT_COMPLETION_CHUNKS;
+          } else {
+            responseBody = CHAT_COMPLETION;
+          }
+          byte[] response = responseBody.getBytes(StandardCharsets.UTF_8);
+          exchange.sendResponseHeaders(200, response.length);
+          try (OutputStream responseStream = exchange.getResponseBody()) {
+            responseStream.write(response);
+          }
+        });
+    server.start();
+    openAI =
+        OpenAI.newBuilder("api-key")
+            .adminKey("admin-key")
+            .baseUrl("http://localhost:" + server.getAddress().getPort())
+            .build();
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  void createsChatCompletion() {
+    CreateChatCompletionRequest request =
+        CreateChatCompletionRequest.newBuilder()
+            .model(OpenAIModel.GPT_4o)
+            .message(ChatMessage.systemMessage("You are a weather bot"))
+            .message(
+                ChatMessage.userMessage(
+                    ContentPart.textContentPart("What is the weather here?"),
+                    ContentPart.imageUrlContentPart("https://example.com/here.png")))
+            .build();
+
+    ChatCompletion chatCompletion = openAI.chatClient().createChatCompletion(request);
+
+    assertThat(requestBodies.get("/chat/completions"))
+        .contains("\"type\":\"text\"", "\"image_url\":{\"url\":\"https://example.com/here.png\"");
+    assertThat(chatCompletion.choices().get(0).message().toolCalls())
+        .singleElement()
+        .isInstanceOf(ToolCall.FunctionToolCall.class);
+  }
+
+  @Test
+  void streamsChatCompletion() {
+    CreateChatCompletionRequest request =
+        CreateChatCompletionRequest.newBuilder()
+            .model(OpenAIModel.GPT_4o)
+            .message(ChatMessage.userMessage("What is the weather here?"))
+            .stream(true)
+            .build();
+
+    List<ChatCompletionChunk> chunks = openAI.chatClient().streamChatCompletion(request).toList();
+
+    assertThat(chunks)
+        .singleElement()
+        .satisfies(
+            chunk ->
+                assertThat(chunk.choices().get(0).delta().toolCalls())
+                    .singleElement()
+                    .isInstanceOf(ToolCall.FunctionToolCall.class));
+  }
+
+  @Test
+  void listsAuditLogs() {
+    AuditLogsClient.PaginatedAuditLogs auditLogs =
+        openAI
+            .auditLogsClient()
+            .listAuditLogs(ListAuditLogsQueryParameters.newBuilder().build());
+
+    assertThat(auditLogs.data())
+        .singleElement()
+        .satisfies(
+            auditLog ->
+                assertThat(auditLog.event()).isInstanceOf(AuditLogEvent.ProjectCreatedEvent.class));
+  }
+}
@@ -0,0 +1,116 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+class ObjectMapperSingletonTest {
+
+  private final ObjectMapper objectMapper =
+      ObjectMapperSingleton.createObjectMapper(Optional.empty());
+  private final ObjectMapper blackbirdObjectMapper =
+      ObjectMapperSingleton.createObjectMapper(Optional.of(new BlackbirdModule()));
+
+  private final TestDataUtil testDataUtil = new TestDataUtil();
+
+  @Test
+  void usesBlackbirdOnlyWhenItIsEnabled() {
+    String blackbirdModuleId = new BlackbirdModule().getTypeId().toString();
+
+    assertThat(ObjectMapperSingleton.createBlackbirdModule(true))
+        .hasValueSatisfying(module -> assertThat(module).isInstanceOf(BlackbirdModule.class));
+    assertThat(ObjectMapperSingleton.createBlackbirdModule(false)).isEmpty();
+    // the system property is not set in the tests
+    assertThat(ObjectMapperSingleton.createBlackbirdModule()).isEmpty();
+    assertThat(ObjectMapperSingleton.getInstance().getRegisteredModuleIds())
+        .doesNotContain(blackbirdModuleId);
+    assertThat(blackbirdObjectMapper.getRegisteredModuleIds()).contains(blackbirdModuleId);
+  }
+
+  @Test
+  void enablesBlackbirdWithSystemProperty() {
+    System.setProperty(ObjectMapperSingleton.BLACKBIRD_PROPERTY, "true");
+    try {
+      assertThat(ObjectMapperSingleton.createBlackbirdModule()).isPresent();
+    } finally {
+      System.clearProperty(ObjectMapperSingleton.BLACKBIRD_PROPERTY);
+    }
+  }
+
+  @RepeatedTest(25)
+  void serializesTheSameWithAndWithoutBlackbird() throws JsonProcessingException {
+    List<Object> requests =
+        List.of(
+            testDataUtil.randomCreateChatCompletionRequest(),
+            testDataUtil.randomCreateAssistantRequest(),
+            testDataUtil.randomCreateRunRequest());
+    List<Object> responses =
+        List.of(
+            testDataUtil.randomChatCompletion(),
+            testDataUtil.randomFineTuningJob(),
+            testDataUtil.randomBatch(),
+            testDataUtil.randomAssistant(),
+            testDataUtil.randomThreadMessage(),
+            testDataUtil.randomThreadMessageDelta(),
+            testDataUtil.randomThreadRun(),
+            testDataUtil.randomThreadRunStep(),
+            testDataUtil.randomVectorStore(),
+            testDataUtil.randomAuditLog());
+
+    for (Object request : requests) {
+      assertThat(blackbirdObjectMapper.writeValueAsString(request))
+          .isEqualTo(objectMapper.writeValueAsString(request));
+    }
+    for (Object response : responses) {
+      String json = objectMapper.writeValueAsString(response);
+
+      assertThat(blackbirdObjectMapper.writeValueAsString(response)).isEqualTo(json);
+      // what is read back also serializes the same
+      assertThat(reserialize(blackbirdObjectMapper, json, response.getClass()))
+          .isEqualTo(reserialize(objectMapper, json, response.getClass()));
+    }
+  }
+
+  @Test
+  void cachesReaderAndWriterPerType() {
+    ObjectReader reader = ObjectMapperSingleton.readerFor(ChatCompletion.class);
+    ObjectWriter writer = ObjectMapperSingleton.writerFor(ChatCompletion.class);
+
+    assertThat(ObjectMapperSingleton.readerFor(ChatCompletion.class)).isSameAs(reader);
+    assertThat(ObjectMapperSingleton.writerFor(ChatCompletion.class)).isSameAs(writer);
+    assertThat(ObjectMapperSingleton.readerFor(ChatCompletionChunk.class)).isNotSameAs(reader);
+    assertThat(ObjectMapperSingleton.writerFor(ChatCompletionChunk.class)).isNotSameAs(writer);
+  }
+
+  @Test
+  void cachedReaderAndWriterUseConfigurationOfSingleton() throws JsonProcessingException {
+    ChatCompletion chatCompletion = testDataUtil.randomChatCompletion();
+    ObjectMapper singleton = ObjectMapperSingleton.getInstance();
+
+    String json =
+        ObjectMapperSingleton.writerFor(ChatCompletion.class).writeValueAsString(chatCompletion);
+
+    assertThat(json).isEqualTo(singleton.writeValueAsString(chatCompletion));
+    ChatCompletion read = ObjectMapperSingleton.readerFor(ChatCompletion.class).readValue(json);
+    assertThat(singleton.writeValueAsString(read)).isEqualTo(json);
+    // unknown properties are ignored like by the singleton
+    assertThat(
+            ObjectMapperSingleton.readerFor(Model.class)
+                .<Model>readValue("{\"id\":\"gpt-4o\",\"unknown\":true}")
+                .id())
+        .isEqualTo("gpt-4o");
+  }
+
+  private String reserialize(ObjectMapper objectMapper, String json, Class<?> type)
+      throws JsonProcessingException {
+    return objectMapper.writeValueAsString(objectMapper.readValue(json, type));
+  }
+}
@@ -4,10 +4,15 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import io.github.stefanbratanov.jvm.openai.AuditLogEvent.InviteDeletedEvent;
 import io.github.stefanbratanov.jvm.openai.AuditLogEvent.InviteSentEvent;
+import io.github.stefanbratanov.jvm.openai.AuditLogsExporter.Partition;
+import io.github.stefanbratanov.jvm.openai.ListAuditLogsQueryParameters.EffectiveAt;
 import io.github.stefanbratanov.jvm.openai.ProjectServiceAccountsClient.ProjectServiceAccountCreateResponse;
 import io.github.stefanbratanov.jvm.openai.UsersClient.PaginatedUsers;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import org.junit.jupiter.api.Assertions;
@@ -187,6 +192,26 @@ class OpenAIAdminIntegrationTest {
             default -> Assertions.fail("Unexpected event type: " + auditLog.type());
           }
         });
+
+    // export a week of audit logs
+    int now = (int) Instant.now().getEpochSecond();
+    ListAuditLogsQueryParameters exportQueryParameters =
+        ListAuditLogsQueryParameters.newBuilder()
+            .effectiveAt(EffectiveAt.newBuilder().gte(now - 7 * 24 * 60 * 60).lt(now).build())
+            .eventTypes(List.of("invite.sent", "invite.deleted"))
+            .build();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    Map<Partition, String> checkpoints =
+        AuditLogsExporter.newBuilder(auditLogsClient)
+            .partitions(7)
+            .build()
+            .export(exportQueryParameters, output);
+
+    List<String> exportedLines = output.toString(StandardCharsets.UTF_8).lines().toList();
+
+    assertThat(exportedLines).hasSizeGreaterThanOrEqualTo(checkpoints.size());
+    assertThat(exportedLines).allSatisfy(line -> assertThat(line).startsWith("{\"id\":"));
   }
 
   private Project retrieveProject() {
@@ -139,6 +139,12 @@ class OpenAIAssistantsApiIntegrationTest extends OpenAIIntegrationTestBase {
 
     assertThat(assistants.data()).contains(retrievedAssistant);
 
+    // walk all assistants page by page
+    PaginatedIterable<Assistant> allAssistants =
+        assistantsClient.listAllAssistants(PaginationQueryParameters.newBuilder().limit(1).build());
+
+    assertThat(allAssistants.withPrefetch().stream()).contains(retrievedAssistant);
+
     Assistant modifiedAssistant =
         assistantsClient.modifyAssistant(
             createdAssistant.id(), ModifyAssistantRequest.newBuilder().metadata(METADATA).build());
@@ -217,6 +223,19 @@ class OpenAIAssistantsApiIntegrationTest extends OpenAIIntegrationTestBase {
         Duration.ofSeconds(5),
         Duration.ofMinutes(1));
 
+    // awaiting the run which has reached a terminal status returns it
+    ThreadRun awaitedRun =
+        runsClient
+            .awaitRun(
+                threadId,
+                runId,
+                RunPollingPolicy.newBuilder().timeout(Duration.ofMinutes(1)).build())
+            .join();
+
+    assertThat(awaitedRun.status())
+        .isEqualTo(runsClient.retrieveRun(threadId, runId).status())
+        .isIn("completed", "failed", "expired");
+
     // create run with streaming enabled
     CreateRunRequest createRunStreamRequest =
         CreateRunRequest.newBuilder().assistantId(assistant.id()).stream(true).build();
@@ -0,0 +1,225 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.reflect.Field;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.Delay;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.verify.VerificationTimes;
+
+class OpenAITest {
+
+  private static final String MODEL = "{\"id\":\"gpt-4o\",\"created\":1,\"owned_by\":\"openai\"}";
+
+  private static final String SERVER_ERROR =
+      "{\"error\":{\"message\":\"The server had an error\",\"type\":\"server_error\"}}";
+
+  private static final String EMBEDDINGS =
+      "{\"object\":\"list\",\"data\":[],\"model\":\"text-embedding-3-small\"}";
+
+  private ClientAndServer mockServer;
+
+  @BeforeEach
+  void setUp() {
+    mockServer = ClientAndServer.startClientAndServer();
+  }
+
+  @AfterEach
+  void tearDown() {
+    mockServer.stop();
+  }
+
+  @Test
+  void callsApiKeyProviderForEveryRequest() {
+    mockServer.when(modelRequest()).respond(HttpResponse.response(MODEL));
+    AtomicInteger keys = new AtomicInteger();
+    ModelsClient modelsClient =
+        newBuilder()
+            .apiKey("api-key")
+            .apiKeyProvider(() -> "key-" + keys.incrementAndGet())
+            .build()
+            .modelsClient();
+
+    modelsClient.retrieveModel("gpt-4o");
+    modelsClient.retrieveModel("gpt-4o");
+
+    mockServer.verify(
+        modelRequest().withHeader("Authorization", "Bearer key-1"), VerificationTimes.once());
+    mockServer.verify(
+        modelRequest().withHeader("Authorization", "Bearer key-2"), VerificationTimes.once());
+    mockServer.verify(
+        modelRequest().withHeader("Authorization", "Bearer api-key"), VerificationTimes.never());
+  }
+
+  @Test
+  void authenticatesWithApiKeyOfDerivedInstance() {
+    mockServer.when(modelRequest()).respond(HttpResponse.response(MODEL));
+    OpenAI openAI = newBuilder().apiKey("api-key").organization("org-1").build();
+
+    openAI.withApiKey("tenant-key").modelsClient().retrieveModel("gpt-4o");
+    openAI.modelsClient().retrieveModel("gpt-4o");
+
+    mockServer.verify(
+        modelRequest()
+            .withHeader("Authorization", "Bearer tenant-key")
+            .withHeader("OpenAI-Organization", "org-1"),
+        VerificationTimes.once());
+    mockServer.verify(
+        modelRequest().withHeader("Authorization", "Bearer api-key"), VerificationTimes.once());
+  }
+
+  @Test
+  void derivedInstanceDoesNotUseApiKeyProvider() {
+    mockServer.when(modelRequest()).respond(HttpResponse.response(MODEL));
+    AtomicInteger providerCalls = new AtomicInteger();
+    OpenAI openAI =
+        newBuilder()
+            .apiKeyProvider(
+                () -> {
+                  providerCalls.incrementAndGet();
+                  return "provided-key";
+                })
+            .build();
+
+    openAI.withApiKey("tenant-key").modelsClient().retrieveModel("gpt-4o");
+
+    assertThat(providerCalls.get()).isZero();
+    mockServer.verify(
+        modelRequest().withHeader("Authorization", "Bearer tenant-key"), VerificationTimes.once());
+  }
+
+  @Test
+  void doesNotShareDeduplicatedRequestsBetweenApiKeys() throws Exception {
+    mockServer
+        .when(modelRequest())
+        .respond(HttpResponse.response(MODEL).withDelay(Delay.milliseconds(300)));
+    OpenAI openAI = newBuilder().apiKey("api-key").deduplicateGetRequests(true).build();
+    ModelsClient modelsClient = openAI.modelsClient();
+    ModelsClient tenantModelsClient = openAI.withApiKey("tenant-key").modelsClient();
+
+    CompletableFuture<Model> first =
+        CompletableFuture.supplyAsync(() -> modelsClient.retrieveModel("gpt-4o"));
+    CompletableFuture<Model> second =
+        CompletableFuture.supplyAsync(() -> tenantModelsClient.retrieveModel("gpt-4o"));
+    CompletableFuture<Model> third =
+        CompletableFuture.supplyAsync(() -> tenantModelsClient.retrieveModel("gpt-4o"));
+
+    assertThat(first.get(5, TimeUnit.SECONDS).id()).isEqualTo("gpt-4o");
+    assertThat(second.get(5, TimeUnit.SECONDS).id()).isEqualTo("gpt-4o");
+    assertThat(third.get(5, TimeUnit.SECONDS).id()).isEqualTo("gpt-4o");
+    // the requests with the same API key may share an exchange, but never with another API key
+    mockServer.verify(
+        modelRequest().withHeader("Authorization", "Bearer api-key"), VerificationTimes.once());
+    mockServer.verify(
+        modelRequest().withHeader("Authorization", "Bearer tenant-key"),
+        VerificationTimes.between(1, 2));
+  }
+
+  @Test
+  void doesNotShareOpenCircuitBreakersBetweenApiKeys() {
+    mockServer
+        .when(modelRequest().withHeader("Authorization", "Bearer tenant-key"))
+        .respond(HttpResponse.response().withStatusCode(500).withBody(SERVER_ERROR));
+    mockServer.when(modelRequest()).respond(HttpResponse.response(MODEL));
+    OpenAI openAI =
+        newBuilder()
+            .apiKey("api-key")
+            .circuitBreakerPolicy(
+                CircuitBreakerPolicy.newBuilder()
+                    .minimumRequests(4)
+                    .openDuration(Duration.ofMinutes(1))
+                    .build())
+            .build();
+    ModelsClient tenantModelsClient = openAI.withApiKey("tenant-key").modelsClient();
+
+    for (int i = 0; i < 4; i++) {
+      assertThatThrownBy(() -> tenantModelsClient.retrieveModel("gpt-4o"))
+          .isInstanceOf(OpenAIException.class)
+          .hasMessageStartingWith("500");
+    }
+
+    assertThatThrownBy(() -> tenantModelsClient.retrieveModel("gpt-4o"))
+        .isInstanceOf(OpenAIException.class)
+        .hasMessageContaining("circuit_breaker_open");
+    assertThat(openAI.modelsClient().retrieveModel("gpt-4o").id()).isEqualTo("gpt-4o");
+    assertThat(openAI.withApiKey("other-key").modelsClient().retrieveModel("gpt-4o").id())
+        .isEqualTo("gpt-4o");
+  }
+
+  @Test
+  void sharesCachedObjectsBetweenInstancesWithSameApiKey() {
+    mockServer
+        .when(assistantRequest())
+        .respond(
+            HttpResponse.response(
+                "{\"id\":\"asst_1\",\"object\":\"assistant\",\"model\":\"gpt-4o\"}"));
+    OpenAI openAI = newBuilder().apiKey("api-key").build();
+
+    openAI.withApiKey("tenant-key").assistantsClient().retrieveAssistantCached("asst_1");
+    openAI.withApiKey("tenant-key").assistantsClient().retrieveAssistantCached("asst_1");
+    openAI.withApiKey("other-key").assistantsClient().retrieveAssistantCached("asst_1");
+
+    mockServer.verify(
+        assistantRequest().withHeader("Authorization", "Bearer tenant-key"),
+        VerificationTimes.once());
+    mockServer.verify(
+        assistantRequest().withHeader("Authorization", "Bearer other-key"),
+        VerificationTimes.once());
+  }
+
+  @Test
+  void hedgesRequestsWithLatenciesOfAllInstances() throws ReflectiveOperationException {
+    mockServer.when(embeddingsRequest()).respond(HttpResponse.response(EMBEDDINGS));
+    OpenAI openAI =
+        newBuilder().apiKey("api-key").hedgingPolicy(HedgingPolicy.defaults()).build();
+    RequestHedger requestHedger = sharedState(openAI).embeddingsRequestHedger().orElseThrow();
+
+    // an instance per request, none of which has enough latencies on its own
+    for (int i = 0; i < 20; i++) {
+      openAI
+          .withApiKey("tenant-key-" + i)
+          .embeddingsClient()
+          .createEmbeddings(
+              EmbeddingsRequest.newBuilder()
+                  .model(OpenAIModel.TEXT_EMBEDDING_3_SMALL)
+                  .input("Hello")
+                  .build());
+    }
+
+    assertThat(sharedState(openAI.withApiKey("tenant-key")).embeddingsRequestHedger().orElseThrow())
+        .isSameAs(requestHedger);
+    assertThat(requestHedger.delayNanos()).isGreaterThanOrEqualTo(0);
+  }
+
+  private SharedClientState sharedState(OpenAI openAI) throws ReflectiveOperationException {
+    Field field = OpenAI.class.getDeclaredField("clientOptions");
+    field.setAccessible(true);
+    return ((ClientOptions) field.get(openAI)).sharedState();
+  }
+
+  private OpenAI.Builder newBuilder() {
+    return OpenAI.newBuilder().baseUrl("http://localhost:" + mockServer.getPort());
+  }
+
+  private HttpRequest assistantRequest() {
+    return HttpRequest.request().withMethod("GET").withPath("/assistants/asst_1");
+  }
+
+  private HttpRequest embeddingsRequest() {
+    return HttpRequest.request().withMethod("POST").withPath("/embeddings");
+  }
+
+  private HttpRequest modelRequest() {
+    return HttpRequest.request().withMethod("GET").withPath("/models/gpt-4o");
+  }
+}
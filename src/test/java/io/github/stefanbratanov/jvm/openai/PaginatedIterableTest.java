@@ -0,0 +1,139 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.Delay;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.verify.VerificationTimes;
+
+class PaginatedIterableTest {
+
+  private ClientAndServer mockServer;
+  private AssistantsClient assistantsClient;
+
+  @BeforeEach
+  void setUp() {
+    mockServer = ClientAndServer.startClientAndServer();
+    assistantsClient =
+        OpenAI.newBuilder("api-key")
+            .baseUrl("http://localhost:" + mockServer.getPort())
+            .build()
+            .assistantsClient();
+  }
+
+  @AfterEach
+  void tearDown() {
+    mockServer.stop();
+  }
+
+  @Test
+  void iteratesAllPages() {
+    mockPage("asst_2", HttpResponse.response().withBody(page(true, "asst_3", "asst_4")));
+    mockPage("asst_4", HttpResponse.response().withBody(page(false, "asst_5")));
+    mockPage(null, HttpResponse.response().withBody(page(true, "asst_1", "asst_2")));
+
+    List<String> ids =
+        assistantsClient.listAllAssistants(PaginationQueryParameters.none()).stream()
+            .map(Assistant::id)
+            .toList();
+
+    assertThat(ids).containsExactly("asst_1", "asst_2", "asst_3", "asst_4", "asst_5");
+    mockServer.verify(assistantsRequest(), VerificationTimes.exactly(3));
+  }
+
+  @Test
+  void fetchesPagesOnlyWhenThePreviousPageIsConsumed() {
+    mockPage("asst_2", HttpResponse.response().withBody(page(false, "asst_3")));
+    mockPage(null, HttpResponse.response().withBody(page(true, "asst_1", "asst_2")));
+
+    Iterator<Assistant> iterator =
+        assistantsClient.listAllAssistants(PaginationQueryParameters.none()).iterator();
+
+    assertThat(iterator.next().id()).isEqualTo("asst_1");
+    assertThat(iterator.next().id()).isEqualTo("asst_2");
+    mockServer.verify(assistantsRequest(), VerificationTimes.once());
+    assertThat(iterator.next().id()).isEqualTo("asst_3");
+    assertThat(iterator.hasNext()).isFalse();
+    mockServer.verify(assistantsRequest(), VerificationTimes.exactly(2));
+  }
+
+  @Test
+  void prefetchesNextPage() throws InterruptedException {
+    mockPage("asst_2", HttpResponse.response().withBody(page(false, "asst_3")));
+    mockPage(null, HttpResponse.response().withBody(page(true, "asst_1", "asst_2")));
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    Iterator<Assistant> iterator =
+        assistantsClient
+            .listAllAssistants(PaginationQueryParameters.none())
+            .withPrefetch(executor)
+            .iterator();
+
+    assertThat(iterator.next().id()).isEqualTo("asst_1");
+    executor.shutdown();
+    // the second page is fetched while the first one is being consumed
+    assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+    mockServer.verify(assistantsRequest(), VerificationTimes.exactly(2));
+    assertThat(iterator.next().id()).isEqualTo("asst_2");
+    assertThat(iterator.next().id()).isEqualTo("asst_3");
+    assertThat(iterator.hasNext()).isFalse();
+  }
+
+  @Test
+  void closingStreamCancelsPrefetch() throws InterruptedException {
+    mockPage(
+        "asst_2",
+        HttpResponse.response().withBody(page(false, "asst_3")).withDelay(Delay.seconds(10)));
+    mockPage(null, HttpResponse.response().withBody(page(true, "asst_1", "asst_2")));
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    try (Stream<Assistant> assistants =
+        assistantsClient
+            .listAllAssistants(PaginationQueryParameters.none())
+            .withPrefetch(executor)
+            .stream()) {
+      assertThat(assistants.findFirst().map(Assistant::id)).hasValue("asst_1");
+    }
+
+    executor.shutdown();
+    // the delayed fetch of the second page was aborted
+    assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+  }
+
+  private HttpRequest assistantsRequest() {
+    return HttpRequest.request().withMethod("GET").withPath("/assistants");
+  }
+
+  private void mockPage(String after, HttpResponse response) {
+    HttpRequest request = assistantsRequest();
+    if (after != null) {
+      request.withQueryStringParameter("after", after);
+    }
+    mockServer.when(request).respond(response);
+  }
+
+  private String page(boolean hasMore, String... ids) {
+    StringBuilder data = new StringBuilder();
+    for (String id : ids) {
+      if (!data.isEmpty()) {
+        data.append(',');
+      }
+      data.append(String.format("{\"id\":\"%s\",\"object\":\"assistant\"}", id));
+    }
+    return String.format(
+        "{\"object\":\"list\",\"data\":[%s],\"first_id\":\"%s\",\"last_id\":\"%s\","
+            + "\"has_more\":%s}",
+        data, ids[0], ids[ids.length - 1], hasMore);
+  }
+}
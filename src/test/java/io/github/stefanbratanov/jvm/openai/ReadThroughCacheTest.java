@@ -0,0 +1,277 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.verify.VerificationTimes;
+
+class ReadThroughCacheTest {
+
+  private static final String CREDENTIAL = "credential";
+
+  private static final String NOT_FOUND =
+      "{\"error\":{\"message\":\"No assistant found with id 'asst_1'.\","
+          + "\"type\":\"invalid_request_error\"}}";
+
+  private final ConcurrentLinkedQueue<CompletableFuture<String>> loadResults =
+      new ConcurrentLinkedQueue<>();
+  private final AtomicInteger loads = new AtomicInteger();
+
+  private ClientAndServer mockServer;
+
+  @BeforeEach
+  void setUp() {
+    mockServer = ClientAndServer.startClientAndServer();
+  }
+
+  @AfterEach
+  void tearDown() {
+    mockServer.stop();
+  }
+
+  @Test
+  void loadsMissingObjectsOnce() {
+    ReadThroughCache<String> cache = createCache(Duration.ofMinutes(1));
+    loadResults.add(CompletableFuture.completedFuture("v1"));
+
+    assertThat(get(cache, "id")).isEqualTo("v1");
+    assertThat(get(cache, "id")).isEqualTo("v1");
+
+    assertThat(loads.get()).isEqualTo(1);
+  }
+
+  @Test
+  void refreshesStaleObjectsInTheBackground() throws InterruptedException {
+    ReadThroughCache<String> cache = createCache(Duration.ofMillis(200));
+    loadResults.add(CompletableFuture.completedFuture("v1"));
+    CompletableFuture<String> refresh = new CompletableFuture<>();
+    loadResults.add(refresh);
+
+    assertThat(get(cache, "id")).isEqualTo("v1");
+    java.lang.Thread.sleep(250);
+
+    // the stale object is served while it is refreshed
+    assertThat(get(cache, "id")).isEqualTo("v1");
+    assertThat(get(cache, "id")).isEqualTo("v1");
+    assertThat(loads.get()).isEqualTo(2);
+
+    refresh.complete("v2");
+
+    assertThat(get(cache, "id")).isEqualTo("v2");
+  }
+
+  @Test
+  void removesObjectsWhichAreNotFoundWhenRefreshed() throws InterruptedException {
+    ReadThroughCache<String> cache = createCache(Duration.ofMillis(200));
+    loadResults.add(CompletableFuture.completedFuture("v1"));
+    loadResults.add(CompletableFuture.failedFuture(error(404)));
+    loadResults.add(CompletableFuture.failedFuture(error(404)));
+
+    assertThat(get(cache, "id")).isEqualTo("v1");
+    java.lang.Thread.sleep(250);
+    assertThat(get(cache, "id")).isEqualTo("v1");
+
+    assertThatThrownBy(() -> get(cache, "id"))
+        .isInstanceOf(OpenAIException.class)
+        .hasMessageStartingWith("404");
+    assertThat(loads.get()).isEqualTo(3);
+  }
+
+  @Test
+  void doesNotRetryFailedRefreshUntilObjectExpires() throws InterruptedException {
+    ReadThroughCache<String> cache = createCache(Duration.ofMillis(200));
+    loadResults.add(CompletableFuture.completedFuture("v1"));
+    loadResults.add(CompletableFuture.failedFuture(error(500)));
+    loadResults.add(CompletableFuture.completedFuture("v2"));
+
+    assertThat(get(cache, "id")).isEqualTo("v1");
+    java.lang.Thread.sleep(250);
+    assertThat(get(cache, "id")).isEqualTo("v1");
+    assertThat(get(cache, "id")).isEqualTo("v1");
+    assertThat(loads.get()).isEqualTo(2);
+
+    // older than twice the refresh interval
+    java.lang.Thread.sleep(200);
+
+    assertThat(get(cache, "id")).isEqualTo("v2");
+    assertThat(loads.get()).isEqualTo(3);
+  }
+
+  @Test
+  void writeWinsOverLoadInFlight() throws InterruptedException {
+    ReadThroughCache<String> cache = createCache(Duration.ofMillis(200));
+    cache.put(CREDENTIAL, "id", "v1");
+    CompletableFuture<String> refresh = new CompletableFuture<>();
+    loadResults.add(refresh);
+    java.lang.Thread.sleep(250);
+
+    assertThat(get(cache, "id")).isEqualTo("v1");
+    cache.put(CREDENTIAL, "id", "written");
+    refresh.complete("loaded before the write");
+
+    assertThat(get(cache, "id")).isEqualTo("written");
+    assertThat(loads.get()).isEqualTo(1);
+  }
+
+  @Test
+  void invalidationWinsOverLoadInFlight() throws InterruptedException {
+    ReadThroughCache<String> cache = createCache(Duration.ofMillis(200));
+    cache.put(CREDENTIAL, "id", "v1");
+    CompletableFuture<String> refresh = new CompletableFuture<>();
+    loadResults.add(refresh);
+    loadResults.add(CompletableFuture.completedFuture("v2"));
+    java.lang.Thread.sleep(250);
+
+    assertThat(get(cache, "id")).isEqualTo("v1");
+    cache.invalidate("id");
+    refresh.complete("loaded before the invalidation");
+
+    assertThat(get(cache, "id")).isEqualTo("v2");
+    assertThat(loads.get()).isEqualTo(2);
+  }
+
+  @Test
+  void keepsObjectsPerCredential() {
+    ReadThroughCache<String> cache = createCache(Duration.ofMinutes(1));
+    cache.put("other-credential", "id", "v1");
+    loadResults.add(CompletableFuture.completedFuture("v2"));
+
+    assertThat(get(cache, "id")).isEqualTo("v2");
+    assertThat(cache.get("other-credential", "id", this::load)).isEqualTo("v1");
+    assertThat(loads.get()).isEqualTo(1);
+  }
+
+  @Test
+  void invalidationRemovesObjectForEveryCredential() {
+    ReadThroughCache<String> cache = createCache(Duration.ofMinutes(1));
+    cache.put(CREDENTIAL, "id", "v1");
+    cache.put("other-credential", "id", "v1");
+    loadResults.add(CompletableFuture.completedFuture("v2"));
+    loadResults.add(CompletableFuture.completedFuture("v2"));
+
+    cache.invalidate("id");
+
+    assertThat(get(cache, "id")).isEqualTo("v2");
+    assertThat(cache.get("other-credential", "id", this::load)).isEqualTo("v2");
+    assertThat(loads.get()).isEqualTo(2);
+  }
+
+  @Test
+  void doesNotReturnAssistantCachedForAnotherApiKey() {
+    AtomicReference<String> apiKey = new AtomicReference<>("tenant-a");
+    AssistantsClient assistantsClient =
+        OpenAI.newBuilder()
+            .baseUrl("http://localhost:" + mockServer.getPort())
+            .apiKeyProvider(apiKey::get)
+            .build()
+            .assistantsClient();
+    mockServer
+        .when(assistantRequest().withHeader("Authorization", "Bearer tenant-a"))
+        .respond(HttpResponse.response().withBody(assistant("tenant a")));
+    mockServer
+        .when(assistantRequest().withHeader("Authorization", "Bearer tenant-b"))
+        .respond(HttpResponse.response().withStatusCode(404).withBody(NOT_FOUND));
+
+    assertThat(assistantsClient.retrieveAssistantCached("asst_1").name()).isEqualTo("tenant a");
+    apiKey.set("tenant-b");
+
+    assertThatThrownBy(() -> assistantsClient.retrieveAssistantCached("asst_1"))
+        .isInstanceOf(OpenAIException.class)
+        .hasMessageStartingWith("404");
+    apiKey.set("tenant-a");
+    assertThat(assistantsClient.retrieveAssistantCached("asst_1").name()).isEqualTo("tenant a");
+    mockServer.verify(
+        assistantRequest().withHeader("Authorization", "Bearer tenant-a"),
+        VerificationTimes.once());
+    mockServer.verify(
+        assistantRequest().withHeader("Authorization", "Bearer tenant-b"),
+        VerificationTimes.once());
+  }
+
+  @Test
+  void modifyingAssistantReplacesCachedAssistant() {
+    AssistantsClient assistantsClient = assistantsClient();
+    mockServer
+        .when(HttpRequest.request().withMethod("GET").withPath("/assistants/asst_1"))
+        .respond(HttpResponse.response().withBody(assistant("before")));
+    mockServer
+        .when(HttpRequest.request().withMethod("POST").withPath("/assistants/asst_1"))
+        .respond(HttpResponse.response().withBody(assistant("after")));
+
+    assertThat(assistantsClient.retrieveAssistantCached("asst_1").name()).isEqualTo("before");
+    assistantsClient.modifyAssistant(
+        "asst_1", ModifyAssistantRequest.newBuilder().name("after").build());
+
+    assertThat(assistantsClient.retrieveAssistantCached("asst_1").name()).isEqualTo("after");
+    mockServer.verify(
+        HttpRequest.request().withMethod("GET").withPath("/assistants/asst_1"),
+        VerificationTimes.once());
+  }
+
+  @Test
+  void deletingAssistantRemovesCachedAssistant() {
+    AssistantsClient assistantsClient = assistantsClient();
+    mockServer
+        .when(HttpRequest.request().withMethod("GET").withPath("/assistants/asst_1"))
+        .respond(HttpResponse.response().withBody(assistant("before")));
+    mockServer
+        .when(HttpRequest.request().withMethod("DELETE").withPath("/assistants/asst_1"))
+        .respond(
+            HttpResponse.response()
+                .withBody("{\"id\":\"asst_1\",\"object\":\"assistant.deleted\",\"deleted\":true}"));
+
+    assistantsClient.retrieveAssistantCached("asst_1");
+    assistantsClient.deleteAssistant("asst_1");
+    assistantsClient.retrieveAssistantCached("asst_1");
+
+    mockServer.verify(
+        HttpRequest.request().withMethod("GET").withPath("/assistants/asst_1"),
+        VerificationTimes.exactly(2));
+  }
+
+  private ReadThroughCache<String> createCache(Duration refreshInterval) {
+    return new ReadThroughCache<>(refreshInterval);
+  }
+
+  private String get(ReadThroughCache<String> cache, String id) {
+    return cache.get(CREDENTIAL, id, this::load);
+  }
+
+  private CompletableFuture<String> load() {
+    loads.incrementAndGet();
+    return loadResults.remove();
+  }
+
+  private HttpRequest assistantRequest() {
+    return HttpRequest.request().withMethod("GET").withPath("/assistants/asst_1");
+  }
+
+  private OpenAIException error(int statusCode) {
+    return new OpenAIException(
+        statusCode, new OpenAIException.Error("No assistant found", null, null, null));
+  }
+
+  private AssistantsClient assistantsClient() {
+    return OpenAI.newBuilder("api-key")
+        .baseUrl("http://localhost:" + mockServer.getPort())
+        .build()
+        .assistantsClient();
+  }
+
+  private String assistant(String name) {
+    return String.format(
+        "{\"id\":\"asst_1\",\"object\":\"assistant\",\"name\":\"%s\",\"model\":\"gpt-4o\"}",
+        name);
+  }
+}
@@ -0,0 +1,193 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.matchers.Times;
+import org.mockserver.model.Delay;
+import org.mockserver.verify.VerificationTimes;
+
+class RequestHedgerTest {
+
+  private static final String CHAT_COMPLETION =
+      "{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion\",\"created\":1,\"model\":\"gpt-4o\","
+          + "\"choices\":[]}";
+
+  private static final HedgingPolicy HEDGING_POLICY =
+      HedgingPolicy.newBuilder()
+          .percentile(90)
+          .minDelay(Duration.ofMillis(100))
+          .maxHedgeRatio(1)
+          .build();
+
+  private final HttpClient httpClient = HttpClient.newHttpClient();
+
+  private ClientAndServer mockServer;
+
+  @BeforeEach
+  void setUp() {
+    mockServer = ClientAndServer.startClientAndServer();
+  }
+
+  @AfterEach
+  void tearDown() {
+    mockServer.stop();
+  }
+
+  @Test
+  void sendsDuplicateOfSlowChatCompletionRequest() throws Exception {
+    ChatClient chatClient =
+        OpenAI.newBuilder("api-key")
+            .baseUrl("http://localhost:" + mockServer.getPort())
+            .hedgingPolicy(HEDGING_POLICY)
+            .build()
+            .chatClient();
+    mockServer
+        .when(chatCompletionsRequest(), Times.exactly(20))
+        .respond(org.mockserver.model.HttpResponse.response(CHAT_COMPLETION));
+    mockServer
+        .when(chatCompletionsRequest(), Times.once())
+        .respond(
+            org.mockserver.model.HttpResponse.response(CHAT_COMPLETION)
+                .withDelay(Delay.seconds(10)));
+    mockServer
+        .when(chatCompletionsRequest())
+        .respond(org.mockserver.model.HttpResponse.response(CHAT_COMPLETION));
+    CreateChatCompletionRequest request =
+        CreateChatCompletionRequest.newBuilder()
+            .model(OpenAIModel.GPT_4o)
+            .message(ChatMessage.userMessage("Hello"))
+            .build();
+    // the latencies which are needed before requests are duplicated
+    for (int i = 0; i < 20; i++) {
+      chatClient.createChatCompletion(request);
+    }
+
+    // the first response is delayed by 10 seconds, so the duplicate request has to win
+    ChatCompletion chatCompletion =
+        chatClient.createChatCompletionAsync(request).get(5, TimeUnit.SECONDS);
+
+    assertThat(chatCompletion.id()).isEqualTo("chatcmpl-1");
+    mockServer.verify(chatCompletionsRequest(), VerificationTimes.exactly(22));
+  }
+
+  @Test
+  void cancelsOriginalRequestWhenDuplicateWins() throws Exception {
+    RequestHedger requestHedger = new RequestHedger(HEDGING_POLICY);
+    RecordingSender sender = new RecordingSender();
+    mockSlowOriginals();
+    warmUp(requestHedger, sender);
+
+    HttpResponse<String> httpResponse = send(requestHedger, sender);
+
+    assertThat(httpResponse.headers().firstValue("X-Attempt")).hasValue("duplicate");
+    assertThat(sender.attempts).hasSize(22);
+    // the original request is the first one after the warm up requests, which is cancelled once
+    // the result is complete
+    Throwable failure =
+        sender.attempts.get(20).handle((response, ex) -> ex).get(5, TimeUnit.SECONDS);
+    assertThat(failure instanceof CompletionException ? failure.getCause() : failure)
+        .isInstanceOf(CancellationException.class);
+  }
+
+  @Test
+  void recordsLatencyOfOriginalRequestsWhichLostToDuplicates() throws Exception {
+    RequestHedger requestHedger = new RequestHedger(HEDGING_POLICY);
+    RecordingSender sender = new RecordingSender();
+    mockSlowOriginals();
+    warmUp(requestHedger, sender);
+    assertThat(requestHedger.delayNanos()).isLessThan(HEDGING_POLICY.minDelay().toNanos());
+
+    // the duplicates are fast, but the originals were in flight for at least the minimum delay
+    for (int i = 0; i < 20; i++) {
+      send(requestHedger, sender);
+    }
+
+    assertThat(requestHedger.delayNanos())
+        .isGreaterThanOrEqualTo(HEDGING_POLICY.minDelay().toNanos());
+  }
+
+  private void warmUp(RequestHedger requestHedger, RecordingSender sender) throws Exception {
+    for (int i = 0; i < 20; i++) {
+      requestHedger.send(httpRequest(), sender).get(5, TimeUnit.SECONDS);
+    }
+    sender.slowOriginals = true;
+  }
+
+  private HttpResponse<String> send(RequestHedger requestHedger, RecordingSender sender)
+      throws Exception {
+    // the original request is sent by the calling thread, before the duplicate
+    sender.nextIsOriginal.set(true);
+    return requestHedger.send(httpRequest(), sender).get(5, TimeUnit.SECONDS);
+  }
+
+  private void mockSlowOriginals() {
+    mockServer
+        .when(chatCompletionsRequest().withHeader("X-Attempt", "original"))
+        .respond(
+            org.mockserver.model.HttpResponse.response(CHAT_COMPLETION)
+                .withHeader("X-Attempt", "original")
+                .withDelay(Delay.seconds(10)));
+    mockServer
+        .when(chatCompletionsRequest())
+        .respond(
+            org.mockserver.model.HttpResponse.response(CHAT_COMPLETION)
+                .withHeader("X-Attempt", "duplicate"));
+  }
+
+  private org.mockserver.model.HttpRequest chatCompletionsRequest() {
+    return org.mockserver.model.HttpRequest.request()
+        .withMethod("POST")
+        .withPath("/chat/completions");
+  }
+
+  private HttpRequest httpRequest() {
+    return HttpRequest.newBuilder()
+        .uri(URI.create("http://localhost:" + mockServer.getPort() + "/chat/completions"))
+        .POST(HttpRequest.BodyPublishers.ofString("{}"))
+        .build();
+  }
+
+  /**
+   * Marks original requests with an "X-Attempt: original" header once slow originals are enabled
+   * and keeps the futures of all requests
+   */
+  private class RecordingSender
+      implements Function<HttpRequest, CompletableFuture<HttpResponse<String>>> {
+
+    private final List<CompletableFuture<HttpResponse<String>>> attempts =
+        new CopyOnWriteArrayList<>();
+    private final AtomicBoolean nextIsOriginal = new AtomicBoolean();
+
+    private volatile boolean slowOriginals;
+
+    @Override
+    public CompletableFuture<HttpResponse<String>> apply(HttpRequest httpRequest) {
+      boolean original = nextIsOriginal.getAndSet(false) && slowOriginals;
+      CompletableFuture<HttpResponse<String>> attempt =
+          httpClient.sendAsync(
+              HttpRequest.newBuilder(httpRequest, (name, value) -> true)
+                  .header("X-Attempt", original ? "original" : "duplicate")
+                  .build(),
+              HttpResponse.BodyHandlers.ofString());
+      attempts.add(attempt);
+      return attempt;
+    }
+  }
+}
@@ -0,0 +1,319 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.matchers.Times;
+import org.mockserver.model.ConnectionOptions;
+import org.mockserver.model.Delay;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.verify.VerificationTimes;
+
+class RunsClientTest {
+
+  private static final String RUN_PATH = "/threads/thread_1/runs/run_1";
+
+  private static final String REQUIRES_ACTION_RUN =
+      """
+      {"id":"run_1","object":"thread.run","thread_id":"thread_1","status":"requires_action",
+      "required_action":{"type":"submit_tool_outputs","submit_tool_outputs":{"tool_calls":[
+      {"id":"call_1","type":"function","function":{"name":"getWeather","arguments":"{}"}}]}}}
+      """;
+
+  private ClientAndServer mockServer;
+  private RunsClient runsClient;
+
+  @BeforeEach
+  void setUp() {
+    mockServer = ClientAndServer.startClientAndServer();
+    runsClient =
+        OpenAI.newBuilder("api-key")
+            .baseUrl("http://localhost:" + mockServer.getPort())
+            .build()
+            .runsClient();
+  }
+
+  @AfterEach
+  void tearDown() {
+    mockServer.stop();
+  }
+
+  @Test
+  void pollsRunUntilTerminalStatus() throws Exception {
+    mockServer
+        .when(HttpRequest.request().withMethod("GET").withPath(RUN_PATH), Times.exactly(2))
+        .respond(HttpResponse.response().withBody(run("in_progress")));
+    mockServer
+        .when(HttpRequest.request().withMethod("GET").withPath(RUN_PATH))
+        .respond(HttpResponse.response().withBody(run("completed")));
+
+    ThreadRun run =
+        runsClient
+            .awaitRun("thread_1", "run_1", fastPolling().build())
+            .get(5, TimeUnit.SECONDS);
+
+    assertThat(run.status()).isEqualTo("completed");
+    mockServer.verify(
+        HttpRequest.request().withMethod("GET").withPath(RUN_PATH), VerificationTimes.exactly(3));
+  }
+
+  @Test
+  void pollingDoesNotUseCachedResponses() throws Exception {
+    mockServer
+        .when(HttpRequest.request().withMethod("GET").withPath(RUN_PATH), Times.once())
+        .respond(HttpResponse.response().withBody(run("in_progress")));
+    mockServer
+        .when(HttpRequest.request().withMethod("GET").withPath(RUN_PATH))
+        .respond(HttpResponse.response().withBody(run("completed")));
+    RunsClient cachingRunsClient =
+        OpenAI.newBuilder("api-key")
+            .baseUrl("http://localhost:" + mockServer.getPort())
+            .getResponseTimeToLive(Duration.ofMinutes(1))
+            .build()
+            .runsClient();
+
+    assertThat(cachingRunsClient.retrieveRun("thread_1", "run_1").status())
+        .isEqualTo("in_progress");
+
+    ThreadRun run =
+        cachingRunsClient
+            .awaitRun("thread_1", "run_1", fastPolling().build())
+            .get(5, TimeUnit.SECONDS);
+
+    assertThat(run.status()).isEqualTo("completed");
+  }
+
+  @Test
+  void submitsToolOutputsOfRequiredActionAndContinuesPolling() throws Exception {
+    mockServer
+        .when(HttpRequest.request().withMethod("GET").withPath(RUN_PATH), Times.once())
+        .respond(HttpResponse.response().withBody(REQUIRES_ACTION_RUN));
+    mockServer
+        .when(HttpRequest.request().withMethod("POST").withPath(RUN_PATH + "/submit_tool_outputs"))
+        .respond(HttpResponse.response().withBody(run("queued")));
+    mockServer
+        .when(HttpRequest.request().withMethod("GET").withPath(RUN_PATH))
+        .respond(HttpResponse.response().withBody(run("completed")));
+
+    RequiredActionHandler handler =
+        run ->
+            CompletableFuture.completedFuture(
+                SubmitToolOutputsRequest.newBuilder()
+                    .toolOutput(
+                        SubmitToolOutputsRequest.ToolOutput.newBuilder()
+                            .toolCallId(
+                                run.requiredAction().submitToolOutputs().toolCalls().get(0).id())
+                            .output("sunny")
+                            .build())
+                    .build());
+
+    ThreadRun run =
+        runsClient
+            .awaitRun("thread_1", "run_1", fastPolling().requiredActionHandler(handler).build())
+            .get(5, TimeUnit.SECONDS);
+
+    assertThat(run.status()).isEqualTo("completed");
+    mockServer.verify(
+        HttpRequest.request()
+            .withMethod("POST")
+            .withPath(RUN_PATH + "/submit_tool_outputs")
+            .withBody("{\"tool_outputs\":[{\"tool_call_id\":\"call_1\",\"output\":\"sunny\"}]}"),
+        VerificationTimes.once());
+  }
+
+  @Test
+  void completesWithRunWhichRequiresActionWhenThereIsNoHandler() throws Exception {
+    mockServer
+        .when(HttpRequest.request().withMethod("GET").withPath(RUN_PATH))
+        .respond(HttpResponse.response().withBody(REQUIRES_ACTION_RUN));
+
+    ThreadRun run =
+        runsClient
+            .awaitRun("thread_1", "run_1", fastPolling().build())
+            .get(5, TimeUnit.SECONDS);
+
+    assertThat(run.status()).isEqualTo("requires_action");
+  }
+
+  @Test
+  void timeoutBoundsSlowRequiredActionHandler() {
+    mockServer
+        .when(HttpRequest.request().withMethod("GET").withPath(RUN_PATH))
+        .respond(HttpResponse.response().withBody(REQUIRES_ACTION_RUN));
+    CompletableFuture<SubmitToolOutputsRequest> handlerResult = new CompletableFuture<>();
+
+    CompletableFuture<ThreadRun> awaitedRun =
+        runsClient.awaitRun(
+            "thread_1",
+            "run_1",
+            fastPolling()
+                .timeout(Duration.ofMillis(300))
+                .requiredActionHandler(run -> handlerResult)
+                .build());
+
+    ExecutionException exception =
+        assertThrows(ExecutionException.class, () -> awaitedRun.get(5, TimeUnit.SECONDS));
+    assertThat(exception).hasCauseInstanceOf(TimeoutException.class);
+    assertThat(handlerResult).isCancelled();
+  }
+
+  @Test
+  void timeoutBoundsSlowPoll() {
+    mockServer
+        .when(HttpRequest.request().withMethod("GET").withPath(RUN_PATH))
+        .respond(
+            HttpResponse.response().withBody(run("in_progress")).withDelay(Delay.seconds(10)));
+
+    CompletableFuture<ThreadRun> awaitedRun =
+        runsClient.awaitRun(
+            "thread_1", "run_1", fastPolling().timeout(Duration.ofMillis(300)).build());
+
+    ExecutionException exception =
+        assertThrows(ExecutionException.class, () -> awaitedRun.get(5, TimeUnit.SECONDS));
+    assertThat(exception).hasCauseInstanceOf(TimeoutException.class);
+  }
+
+  @Test
+  void runStreamFutureCompletesAfterSubscriberIsNotified() throws Exception {
+    mockServer
+        .when(HttpRequest.request().withMethod("POST").withPath("/threads/thread_1/runs"))
+        .respond(
+            HttpResponse.response(
+                "event: thread.run.created\ndata: "
+                    + run("queued")
+                    + "\n\nevent: done\ndata: [DONE]\n\n"));
+    AtomicBoolean completed = new AtomicBoolean();
+    AssistantStreamEventSubscriber subscriber =
+        new AssistantStreamEventSubscriber() {
+          @Override
+          public void onThread(String event, Thread thread) {}
+
+          @Override
+          public void onThreadRun(String event, ThreadRun threadRun) {}
+
+          @Override
+          public void onThreadRunStep(String event, ThreadRunStep threadRunStep) {}
+
+          @Override
+          public void onThreadRunStepDelta(String event, ThreadRunStepDelta threadRunStepDelta) {}
+
+          @Override
+          public void onThreadMessage(String event, ThreadMessage threadMessage) {}
+
+          @Override
+          public void onThreadMessageDelta(String event, ThreadMessageDelta threadMessageDelta) {}
+
+          @Override
+          public void onUnknownEvent(String event, String data) {}
+
+          @Override
+          public void onException(Throwable ex) {}
+
+          @Override
+          public void onComplete() {
+            try {
+              java.lang.Thread.sleep(200);
+            } catch (InterruptedException ex) {
+              java.lang.Thread.currentThread().interrupt();
+            }
+            completed.set(true);
+          }
+        };
+
+    runsClient
+        .createRunAndStreamAsync(
+            "thread_1",
+            Optional.empty(),
+            CreateRunRequest.newBuilder().assistantId("asst_1").stream(true).build(),
+            subscriber)
+        .get(5, TimeUnit.SECONDS);
+
+    assertThat(completed.get()).isTrue();
+  }
+
+  @Test
+  void cancellingRunStreamAbortsRequest() throws InterruptedException {
+    String event = "event: thread.run.created\ndata: " + run("queued") + "\n\n";
+    // the first event is sent and the rest of the body never arrives
+    mockServer
+        .when(HttpRequest.request().withMethod("POST").withPath("/threads/thread_1/runs"))
+        .respond(
+            HttpResponse.response(event)
+                .withConnectionOptions(
+                    ConnectionOptions.connectionOptions()
+                        .withContentLengthHeaderOverride(event.length() + 1000)));
+    CountDownLatch firstEvent = new CountDownLatch(1);
+    CountDownLatch completed = new CountDownLatch(1);
+    AssistantStreamEventSubscriber subscriber =
+        new AssistantStreamEventSubscriber() {
+          @Override
+          public void onThread(String event, Thread thread) {}
+
+          @Override
+          public void onThreadRun(String event, ThreadRun threadRun) {
+            firstEvent.countDown();
+          }
+
+          @Override
+          public void onThreadRunStep(String event, ThreadRunStep threadRunStep) {}
+
+          @Override
+          public void onThreadRunStepDelta(String event, ThreadRunStepDelta threadRunStepDelta) {}
+
+          @Override
+          public void onThreadMessage(String event, ThreadMessage threadMessage) {}
+
+          @Override
+          public void onThreadMessageDelta(String event, ThreadMessageDelta threadMessageDelta) {}
+
+          @Override
+          public void onUnknownEvent(String event, String data) {}
+
+          @Override
+          public void onException(Throwable ex) {}
+
+          @Override
+          public void onComplete() {
+            completed.countDown();
+          }
+        };
+
+    CompletableFuture<Void> streaming =
+        runsClient.createRunAndStreamAsync(
+            "thread_1",
+            Optional.empty(),
+            CreateRunRequest.newBuilder().assistantId("asst_1").stream(true).build(),
+            subscriber);
+    assertThat(firstEvent.await(5, TimeUnit.SECONDS)).isTrue();
+    streaming.cancel(true);
+
+    // the consuming thread, which waits for the next event, is woken up by closing the stream
+    assertThat(completed.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(streaming).isCancelled();
+  }
+
+  private RunPollingPolicy.Builder fastPolling() {
+    return RunPollingPolicy.newBuilder()
+        .initialDelay(Duration.ofMillis(10))
+        .maxDelay(Duration.ofMillis(50));
+  }
+
+  private String run(String status) {
+    return String.format(
+        "{\"id\":\"run_1\",\"object\":\"thread.run\",\"thread_id\":\"thread_1\",\"status\":\"%s\"}",
+        status);
+  }
+}
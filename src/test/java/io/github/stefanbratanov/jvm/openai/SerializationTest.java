@@ -2,10 +2,14 @@ package io.github.stefanbratanov.jvm.openai;
 
 import static io.github.stefanbratanov.jvm.openai.TestUtil.getStringResource;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.github.stefanbratanov.jvm.openai.DeltaToolCall.CodeInterpreterToolCall.CodeInterpreter;
 import io.github.stefanbratanov.jvm.openai.ThreadMessage.Content.TextContent;
 import io.github.stefanbratanov.jvm.openai.ThreadMessage.Content.TextContent.Text.Annotation;
@@ -198,6 +202,37 @@ class SerializationTest {
         JSONCompareMode.STRICT);
   }
 
+  @Test
+  void serializesFunctionWithRawJson() throws JsonProcessingException, JSONException {
+    Function function =
+        Function.newBuilder()
+            .name("getFriends")
+            .description("Returns the friends of the person")
+            .parameters(
+                Map.of(
+                    "type",
+                    "object",
+                    "properties",
+                    RawJson.of(
+                        "{\"person_name\":{\"type\":\"string\", \"description\":\"the persons name, in lower case\"}}"),
+                    "required",
+                    RawJson.of("[\"person_name\"]")))
+            .build();
+
+    JSONAssert.assertEquals(
+        getStringResource("/function.json"),
+        objectMapper.writeValueAsString(function),
+        JSONCompareMode.STRICT);
+    // converting to a tree parses the raw JSON
+    assertThat(objectMapper.valueToTree(function).at("/parameters/required/0").asText())
+        .isEqualTo("person_name");
+    assertThatThrownBy(() -> RawJson.of("{\"person_name\":"))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> RawJson.of("\"person_name\""))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("JSON must be an object or an array");
+  }
+
   @Test
   void doesNotSerializeTypeTwiceForJsonSubTypesAnnotatedClasses() throws JsonProcessingException {
     Tool.FileSearchTool fileSearchTool = Tool.fileSearchTool();
@@ -281,4 +316,100 @@ class SerializationTest {
     JSONAssert.assertEquals(
         auditLogJson, objectMapper.writeValueAsString(auditLog), JSONCompareMode.STRICT);
   }
+
+  @Test
+  void deserializesAuditLogWithEventBeforeType() throws JsonProcessingException {
+    String auditLogJson =
+        """
+        {
+          "id": "audit_log-xxx",
+          "user.deleted": {"id": "user-xxx"},
+          "unknown": {"nested": [1, 2, 3]},
+          "project": null,
+          "type": "user.deleted",
+          "effective_at": 1720804090,
+          "actor": {"type": "session"}
+        }
+        """;
+
+    AuditLog auditLog = objectMapper.readValue(auditLogJson, AuditLog.class);
+
+    assertThat(auditLog.type()).isEqualTo("user.deleted");
+    assertThat(auditLog.effectiveAt()).isEqualTo(1720804090);
+    assertThat(auditLog.project()).isNull();
+    assertThat(auditLog.actor().type()).isEqualTo("session");
+    assertThat(auditLog.event()).isEqualTo(new AuditLogEvent.UserDeletedEvent("user-xxx"));
+  }
+
+  @Test
+  void stablePrefixSerializesToolsCanonically() throws JsonProcessingException {
+    Function first =
+        Function.newBuilder()
+            .name("get_weather")
+            .parameters(
+                Map.of(
+                    "type",
+                    "object",
+                    "properties",
+                    Map.of("location", Map.of("type", "string"), "unit", Map.of("type", "string"))))
+            .build();
+    Function second =
+        Function.newBuilder()
+            .name("get_time")
+            .parameters(Map.of("type", "object", "properties", "{\"zone\":{\"type\":\"string\"}}"))
+            .build();
+
+    CreateChatCompletionRequest request =
+        CreateChatCompletionRequest.newBuilder()
+            .stablePrefix(true)
+            .tool(Tool.functionTool(first))
+            .tool(Tool.functionTool(second))
+            .build();
+    CreateChatCompletionRequest reorderedRequest =
+        CreateChatCompletionRequest.newBuilder()
+            .stablePrefix(true)
+            .tool(Tool.functionTool(second))
+            .tool(Tool.functionTool(first))
+            .build();
+
+    String serializedTools = objectMapper.writeValueAsString(request.tools());
+
+    assertThat(serializedTools)
+        .isEqualTo(objectMapper.writeValueAsString(reorderedRequest.tools()))
+        .isEqualTo(
+            "[{\"function\":{\"name\":\"get_time\",\"parameters\":{\"properties\":{\"zone\":{\"type\":\"string\"}},\"type\":\"object\"}},\"type\":\"function\"},{\"function\":{\"name\":\"get_weather\",\"parameters\":{\"properties\":{\"location\":{\"type\":\"string\"},\"unit\":{\"type\":\"string\"}},\"type\":\"object\"}},\"type\":\"function\"}]");
+  }
+
+  @RepeatedTest(20)
+  void requestTemplateSerializesLikeTheFullRequest() throws JSONException {
+    CreateChatCompletionRequest request = testDataUtil.randomCreateChatCompletionRequest();
+    List<ChatMessage> messages =
+        List.of(testDataUtil.randomChatMessage(), testDataUtil.randomChatMessage());
+
+    ChatCompletionRequestTemplate template = ChatCompletionRequestTemplate.of(request);
+    String body = TestUtil.readBody(template.createBodyPublisher(messages));
+
+    ObjectNode expected = objectMapper.valueToTree(request);
+    ArrayNode expectedMessages = (ArrayNode) expected.get("messages");
+    messages.forEach(message -> expectedMessages.add(objectMapper.<JsonNode>valueToTree(message)));
+
+    JSONAssert.assertEquals(expected.toString(), body, JSONCompareMode.STRICT);
+  }
+
+  @Test
+  void requestTemplateWithoutMessagesSerializesMessages() throws JSONException {
+    ChatCompletionRequestTemplate template =
+        ChatCompletionRequestTemplate.of(
+            CreateChatCompletionRequest.newBuilder().model(OpenAIModel.GPT_4o).build());
+
+    String body =
+        TestUtil.readBody(
+            template.createBodyPublisher(
+                List.of(ChatMessage.userMessage("Hi"), ChatMessage.userMessage("Bye"))));
+
+    JSONAssert.assertEquals(
+        "{\"model\":\"gpt-4o\",\"messages\":[{\"role\":\"user\",\"content\":\"Hi\"},{\"role\":\"user\",\"content\":\"Bye\"}]}",
+        body,
+        JSONCompareMode.STRICT);
+  }
 }
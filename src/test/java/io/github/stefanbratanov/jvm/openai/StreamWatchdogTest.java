@@ -0,0 +1,290 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.UncheckedIOException;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.ConnectionOptions;
+import org.mockserver.model.Delay;
+import org.mockserver.model.HttpRequest;
+
+class StreamWatchdogTest {
+
+  private static final String CHUNK =
+      "data: {\"id\":\"chatcmpl-1\",\"object\":\"chat.completion.chunk\",\"created\":1,"
+          + "\"model\":\"gpt-4o\",\"choices\":[]}\n\n";
+
+  private ClientAndServer mockServer;
+
+  @BeforeEach
+  void setUp() {
+    mockServer = ClientAndServer.startClientAndServer();
+  }
+
+  @AfterEach
+  void tearDown() {
+    mockServer.stop();
+  }
+
+  @Test
+  void failsWhenFirstByteTimeoutExpires() {
+    ChatClient chatClient =
+        chatClient(StreamTimeouts.newBuilder().firstByteTimeout(Duration.ofMillis(200)).build());
+    mockServer
+        .when(chatCompletionsRequest())
+        .respond(
+            org.mockserver.model.HttpResponse.response(CHUNK + "data: [DONE]\n\n")
+                .withDelay(Delay.seconds(5)));
+
+    long start = System.nanoTime();
+    assertThatThrownBy(() -> chatClient.streamChatCompletion(chatCompletionRequest()))
+        .isInstanceOf(UncheckedIOException.class)
+        .hasCauseInstanceOf(HttpTimeoutException.class)
+        .hasMessageContaining("No response was received within PT0.2S");
+    assertThat(System.nanoTime() - start).isLessThan(Duration.ofSeconds(5).toNanos());
+  }
+
+  @Test
+  void failsWhenIdleTimeoutExpires() {
+    ChatClient chatClient =
+        chatClient(StreamTimeouts.newBuilder().idleTimeout(Duration.ofMillis(300)).build());
+    respondWithStalledStream();
+
+    Iterator<ChatCompletionChunk> chunks =
+        chatClient.streamChatCompletion(chatCompletionRequest()).iterator();
+
+    assertThat(chunks.next().id()).isEqualTo("chatcmpl-1");
+    assertThatThrownBy(chunks::next)
+        .isInstanceOf(UncheckedIOException.class)
+        .hasCauseInstanceOf(HttpTimeoutException.class)
+        .hasMessageContaining("No chunk was received within PT0.3S");
+  }
+
+  @Test
+  void failsWhenTotalTimeoutExpires() {
+    ChatClient chatClient =
+        chatClient(StreamTimeouts.newBuilder().totalTimeout(Duration.ofMillis(500)).build());
+    respondWithStalledStream();
+
+    Iterator<ChatCompletionChunk> chunks =
+        chatClient.streamChatCompletion(chatCompletionRequest()).iterator();
+
+    assertThat(chunks.next().id()).isEqualTo("chatcmpl-1");
+    assertThatThrownBy(chunks::next)
+        .isInstanceOf(UncheckedIOException.class)
+        .hasCauseInstanceOf(HttpTimeoutException.class)
+        .hasMessageContaining("Stream did not complete within PT0.5S");
+  }
+
+  @Test
+  void completesStreamWithinTimeouts() {
+    ChatClient chatClient =
+        chatClient(
+            StreamTimeouts.newBuilder()
+                .firstByteTimeout(Duration.ofSeconds(5))
+                .idleTimeout(Duration.ofMillis(200))
+                .totalTimeout(Duration.ofSeconds(10))
+                .build());
+    mockServer
+        .when(chatCompletionsRequest())
+        .respond(
+            org.mockserver.model.HttpResponse.response(CHUNK + CHUNK + "data: [DONE]\n\n")
+                .withDelay(Delay.milliseconds(300)));
+
+    try (Stream<ChatCompletionChunk> chunks =
+        chatClient.streamChatCompletion(chatCompletionRequest())) {
+      assertThat(chunks).hasSize(2);
+    }
+  }
+
+  @Test
+  void idleTimeOnlyCountsWhileMoreIsRequested() throws Exception {
+    StreamWatchdog streamWatchdog =
+        new StreamWatchdog(StreamTimeouts.newBuilder().idleTimeout(Duration.ofMillis(200)).build());
+    RecordingSubscription upstream = new RecordingSubscription();
+    RecordingSubscriber downstream = new RecordingSubscriber();
+    HttpResponse.BodySubscriber<Void> subscriber =
+        streamWatchdog.watch(responseInfo -> downstream).apply(null);
+    streamWatchdog.start(new CompletableFuture<>());
+    subscriber.onSubscribe(upstream);
+
+    downstream.subscription.request(1);
+    subscriber.onNext(List.of(ByteBuffer.wrap(CHUNK.getBytes(StandardCharsets.UTF_8))));
+    // the consumer is busy, so nothing is requested for longer than the idle timeout
+    java.lang.Thread.sleep(500);
+
+    assertThat(downstream.body).isNotDone();
+    assertThat(upstream.cancelled).isFalse();
+
+    downstream.subscription.request(1);
+    java.lang.Thread.sleep(500);
+
+    assertThat(upstream.cancelled).isTrue();
+    assertThatThrownBy(() -> downstream.body.get(5, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .hasCauseInstanceOf(HttpTimeoutException.class)
+        .hasMessageContaining("No chunk was received within PT0.2S");
+  }
+
+  @Test
+  void chunksMoveIdleDeadline() throws Exception {
+    StreamWatchdog streamWatchdog =
+        new StreamWatchdog(StreamTimeouts.newBuilder().idleTimeout(Duration.ofMillis(300)).build());
+    RecordingSubscription upstream = new RecordingSubscription();
+    RecordingSubscriber downstream = new RecordingSubscriber();
+    HttpResponse.BodySubscriber<Void> subscriber =
+        streamWatchdog.watch(responseInfo -> downstream).apply(null);
+    streamWatchdog.start(new CompletableFuture<>());
+    subscriber.onSubscribe(upstream);
+    downstream.subscription.request(Long.MAX_VALUE);
+
+    for (int i = 0; i < 10; i++) {
+      subscriber.onNext(List.of(ByteBuffer.wrap(CHUNK.getBytes(StandardCharsets.UTF_8))));
+      java.lang.Thread.sleep(100);
+    }
+    subscriber.onComplete();
+
+    assertThat(downstream.body.get(5, TimeUnit.SECONDS)).isNull();
+    assertThat(upstream.cancelled).isFalse();
+    assertThat(streamWatchdog.timeoutException()).isEmpty();
+  }
+
+  @Test
+  void cancelsScheduledCheckWhenStreamFinishes() {
+    StreamTimeouts streamTimeouts =
+        StreamTimeouts.newBuilder().totalTimeout(Duration.ofMinutes(1)).build();
+
+    // completed body
+    StreamWatchdog completedWatchdog = new StreamWatchdog(streamTimeouts);
+    HttpResponse.BodySubscriber<Void> completedSubscriber =
+        completedWatchdog.watch(responseInfo -> new RecordingSubscriber()).apply(null);
+    completedWatchdog.start(new CompletableFuture<>());
+    completedSubscriber.onSubscribe(new RecordingSubscription());
+
+    assertThat(completedWatchdog.hasScheduledCheck()).isTrue();
+    completedSubscriber.onComplete();
+    assertThat(completedWatchdog.hasScheduledCheck()).isFalse();
+
+    // failed body
+    StreamWatchdog failedWatchdog = new StreamWatchdog(streamTimeouts);
+    HttpResponse.BodySubscriber<Void> failedSubscriber =
+        failedWatchdog.watch(responseInfo -> new RecordingSubscriber()).apply(null);
+    failedWatchdog.start(new CompletableFuture<>());
+    failedSubscriber.onSubscribe(new RecordingSubscription());
+
+    failedSubscriber.onError(new IllegalStateException("The connection was reset"));
+    assertThat(failedWatchdog.hasScheduledCheck()).isFalse();
+
+    // body cancelled by the consumer
+    StreamWatchdog cancelledWatchdog = new StreamWatchdog(streamTimeouts);
+    RecordingSubscriber downstream = new RecordingSubscriber();
+    HttpResponse.BodySubscriber<Void> cancelledSubscriber =
+        cancelledWatchdog.watch(responseInfo -> downstream).apply(null);
+    cancelledWatchdog.start(new CompletableFuture<>());
+    cancelledSubscriber.onSubscribe(new RecordingSubscription());
+
+    downstream.subscription.cancel();
+    assertThat(cancelledWatchdog.hasScheduledCheck()).isFalse();
+
+    // failed response, so there is no body
+    StreamWatchdog failedResponseWatchdog = new StreamWatchdog(streamTimeouts);
+    CompletableFuture<Void> responseFuture = new CompletableFuture<>();
+    failedResponseWatchdog.start(responseFuture);
+
+    assertThat(failedResponseWatchdog.hasScheduledCheck()).isTrue();
+    responseFuture.completeExceptionally(new IllegalStateException("The connection was refused"));
+    assertThat(failedResponseWatchdog.hasScheduledCheck()).isFalse();
+  }
+
+  /** Sends the first chunk and then neither the rest of the body nor closes the connection */
+  private void respondWithStalledStream() {
+    mockServer
+        .when(chatCompletionsRequest())
+        .respond(
+            org.mockserver.model.HttpResponse.response(CHUNK)
+                .withConnectionOptions(
+                    ConnectionOptions.connectionOptions()
+                        .withContentLengthHeaderOverride(CHUNK.length() + 1000)));
+  }
+
+  private HttpRequest chatCompletionsRequest() {
+    return HttpRequest.request().withMethod("POST").withPath("/chat/completions");
+  }
+
+  private CreateChatCompletionRequest chatCompletionRequest() {
+    return CreateChatCompletionRequest.newBuilder()
+        .model(OpenAIModel.GPT_4o)
+        .message(ChatMessage.userMessage("Hello"))
+        .stream(true)
+        .build();
+  }
+
+  private ChatClient chatClient(StreamTimeouts streamTimeouts) {
+    return OpenAI.newBuilder("api-key")
+        .baseUrl("http://localhost:" + mockServer.getPort())
+        .streamTimeouts(streamTimeouts)
+        .build()
+        .chatClient();
+  }
+
+  private static class RecordingSubscription implements Flow.Subscription {
+
+    private volatile boolean cancelled;
+
+    @Override
+    public void request(long n) {}
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+    }
+  }
+
+  /** Only requests more of the body when the test does */
+  private static class RecordingSubscriber implements HttpResponse.BodySubscriber<Void> {
+
+    private final CompletableFuture<Void> body = new CompletableFuture<>();
+
+    private volatile Flow.Subscription subscription;
+
+    @Override
+    public CompletionStage<Void> getBody() {
+      return body;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> item) {}
+
+    @Override
+    public void onError(Throwable throwable) {
+      body.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+      body.complete(null);
+    }
+  }
+}
@@ -0,0 +1,138 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fasterxml.jackson.annotation.JsonClassDescription;
+import com.fasterxml.jackson.annotation.JsonPropertyDescription;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.json.JSONException;
+import org.junit.jupiter.api.Test;
+import org.skyscreamer.jsonassert.JSONAssert;
+import org.skyscreamer.jsonassert.JSONCompareMode;
+
+class StructuredOutputsTest {
+
+  enum Unit {
+    CELSIUS,
+    FAHRENHEIT
+  }
+
+  sealed interface Shape permits Circle, Square {}
+
+  record Circle(double radius) implements Shape {}
+
+  record Square(double sideLength) implements Shape {}
+
+  @JsonClassDescription("A weather report")
+  record Weather(
+      @JsonPropertyDescription("The name of the city") String cityName,
+      int temperature,
+      Unit unit,
+      Optional<String> note,
+      List<Shape> shapes) {}
+
+  record Tree(String value, List<Tree> children) {}
+
+  record Dictionary(Map<String, String> entries) {}
+
+  @Test
+  void derivesStrictSchema() throws JsonProcessingException, JSONException {
+    Map<String, Object> schema = StructuredOutputs.schema(Weather.class);
+
+    JSONAssert.assertEquals(
+        """
+        {
+          "type": "object",
+          "properties": {
+            "city_name": {"type": "string", "description": "The name of the city"},
+            "temperature": {"type": "integer"},
+            "unit": {"type": "string", "enum": ["CELSIUS", "FAHRENHEIT"]},
+            "note": {"anyOf": [{"type": "string"}, {"type": "null"}]},
+            "shapes": {
+              "type": "array",
+              "items": {
+                "anyOf": [
+                  {
+                    "type": "object",
+                    "properties": {"radius": {"type": "number"}},
+                    "required": ["radius"],
+                    "additionalProperties": false
+                  },
+                  {
+                    "type": "object",
+                    "properties": {"side_length": {"type": "number"}},
+                    "required": ["side_length"],
+                    "additionalProperties": false
+                  }
+                ]
+              }
+            }
+          },
+          "required": ["city_name", "temperature", "unit", "note", "shapes"],
+          "additionalProperties": false
+        }
+        """,
+        ObjectMapperSingleton.getInstance().writeValueAsString(schema),
+        JSONCompareMode.STRICT);
+    assertThat(StructuredOutputs.schema(Weather.class)).isSameAs(schema);
+
+    JsonSchema jsonSchema = StructuredOutputs.jsonSchema(Weather.class);
+
+    assertThat(jsonSchema.name()).isEqualTo("Weather");
+    assertThat(jsonSchema.description()).hasValue("A weather report");
+    assertThat(jsonSchema.strict()).hasValue(true);
+  }
+
+  @Test
+  void parsesOutputIntoRecord() {
+    Weather weather =
+        StructuredOutputs.parse(
+            "{\"city_name\":\"Paris\",\"temperature\":21,\"unit\":\"CELSIUS\",\"note\":null,"
+                + "\"shapes\":[{\"radius\":1.5},{\"side_length\":2}]}",
+            Weather.class);
+
+    assertThat(weather)
+        .isEqualTo(
+            new Weather(
+                "Paris",
+                21,
+                Unit.CELSIUS,
+                Optional.empty(),
+                List.of(new Circle(1.5), new Square(2))));
+  }
+
+  @Test
+  void emitsArrayElementsAsSoonAsTheyAreComplete() {
+    StreamingArrayParser<Circle> parser =
+        StructuredOutputs.streamingArrayParser("circles", Circle.class);
+
+    assertThat(parser.feed("{\"name\":\"x\",\"nested\":{\"circles\":[{\"radius\":9}]},")).isEmpty();
+    assertThat(parser.feed("\"circles\":[{\"radius\":1")).isEmpty();
+    assertThat(parser.feed("},{\"radius\":2},{\"rad"))
+        .containsExactly(new Circle(1), new Circle(2));
+    assertThat(parser.feed("ius\":3}]}")).containsExactly(new Circle(3));
+    assertThat(parser.endOfInput()).isEmpty();
+
+    StreamingArrayParser<Shape> shapesParser =
+        StructuredOutputs.streamingArrayParser("shapes", Shape.class);
+
+    assertThat(shapesParser.feed("{\"shapes\":[{\"radius\":1.5},{\"side_len"))
+        .containsExactly(new Circle(1.5));
+    assertThat(shapesParser.feed("gth\":2}]}")).containsExactly(new Square(2));
+    assertThat(shapesParser.endOfInput()).isEmpty();
+  }
+
+  @Test
+  void rejectsTypesWhichAreNotSupported() {
+    assertThatThrownBy(() -> StructuredOutputs.schema(Tree.class))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("Recursive type");
+    assertThatThrownBy(() -> StructuredOutputs.schema(Dictionary.class))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("is not supported in a strict JSON schema");
+  }
+}
@@ -1164,7 +1164,7 @@ public class TestDataUtil {
         ToolResources.codeInterpreterAndFileSearchToolResources(fileIds, vectorStoreIds));
   }
 
-  private ChatMessage randomChatMessage() {
+  public ChatMessage randomChatMessage() {
     return oneOf(
         ChatMessage.systemMessage(randomString(10)),
         ChatMessage.userMessage(randomString(10)),
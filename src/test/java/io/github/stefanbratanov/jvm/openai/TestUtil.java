@@ -1,12 +1,21 @@
 package io.github.stefanbratanov.jvm.openai;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Base64;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
 
 public class TestUtil {
 
@@ -25,4 +34,57 @@ public class TestUtil {
       throw new UncheckedIOException(ex);
     }
   }
+
+  /**
+   * Creates a tokenizer in which all single bytes have the ranks 0-255, followed by the merges in
+   * the given order
+   */
+  public static Tokenizer createTokenizer(List<String> merges) {
+    StringBuilder ranks = new StringBuilder();
+    int rank = 0;
+    for (; rank < 256; rank++) {
+      appendRank(ranks, new byte[] {(byte) rank}, rank);
+    }
+    for (String merge : merges) {
+      appendRank(ranks, merge.getBytes(StandardCharsets.UTF_8), rank++);
+    }
+    return Tokenizer.load(
+        TokenEncoding.CL100K_BASE,
+        new ByteArrayInputStream(ranks.toString().getBytes(StandardCharsets.US_ASCII)));
+  }
+
+  /** Reads the body of a request, so it can be asserted without sending the request */
+  public static String readBody(HttpRequest.BodyPublisher bodyPublisher) {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    CompletableFuture<String> result = new CompletableFuture<>();
+    bodyPublisher.subscribe(
+        new Flow.Subscriber<>() {
+          @Override
+          public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+          }
+
+          @Override
+          public void onNext(ByteBuffer item) {
+            byte[] bytes = new byte[item.remaining()];
+            item.get(bytes);
+            body.writeBytes(bytes);
+          }
+
+          @Override
+          public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+          }
+
+          @Override
+          public void onComplete() {
+            result.complete(body.toString(StandardCharsets.UTF_8));
+          }
+        });
+    return result.join();
+  }
+
+  private static void appendRank(StringBuilder ranks, byte[] token, int rank) {
+    ranks.append(Base64.getEncoder().encodeToString(token)).append(' ').append(rank).append('\n');
+  }
 }
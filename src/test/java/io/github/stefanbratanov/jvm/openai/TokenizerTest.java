@@ -0,0 +1,117 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class TokenizerTest {
+
+  // all single bytes have the ranks 0-255, followed by the merges
+  private static final List<String> MERGES = List.of("ab", "cd", "abcd", " ab");
+
+  private final Tokenizer tokenizer = TestUtil.createTokenizer(MERGES);
+
+  @Test
+  void encodesUsingLowestRankMergesFirst() {
+    assertThat(tokenizer.encode("abcd abx")).containsExactly(258, 259, 'x');
+    assertThat(tokenizer.encode("cdab")).containsExactly(257, 256);
+    assertThat(tokenizer.encode("")).isEmpty();
+  }
+
+  @Test
+  void decodesEncodedText() {
+    String text = "Hello, wörld! I'm 12345 abcd\n\n  ok";
+
+    int[] tokens = tokenizer.encode(text);
+
+    assertThat(tokenizer.countTokens(text)).isEqualTo(tokens.length);
+    assertThat(tokenizer.decode(tokens)).isEqualTo(text);
+  }
+
+  @Test
+  void failsToDecodeUnknownToken() {
+    assertThatThrownBy(() -> tokenizer.decode(new int[] {1000}))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Unknown token: 1000");
+  }
+
+  /**
+   * Compares with the tokens produced by tiktoken. Skipped unless the ranks are on the classpath,
+   * which they are after running {@code ./gradlew downloadTiktokenRanks}.
+   */
+  @Test
+  void encodesLikeTiktoken() {
+    assumeRanksArePresent(TokenEncoding.CL100K_BASE);
+    Tokenizer cl100kBase = Tokenizer.forEncoding(TokenEncoding.CL100K_BASE);
+
+    assertThat(cl100kBase.encode("hello world")).containsExactly(15339, 1917);
+    assertThat(cl100kBase.encode("tiktoken is great!"))
+        .containsExactly(83, 1609, 5963, 374, 2294, 0);
+    assertThat(cl100kBase.encode("2 + 2 = 4")).containsExactly(17, 489, 220, 17, 284, 220, 19);
+    assertThat(cl100kBase.encode("antidisestablishmentarianism"))
+        .containsExactly(519, 85342, 34500, 479, 8997, 2191);
+    assertThat(cl100kBase.countTokens("お誕生日おめでとう")).isEqualTo(9);
+
+    assumeRanksArePresent(TokenEncoding.O200K_BASE);
+    Tokenizer o200kBase = Tokenizer.forEncoding(TokenEncoding.O200K_BASE);
+
+    assertThat(o200kBase.encode("hello world")).containsExactly(24912, 2375);
+    assertThat(o200kBase.encode("tiktoken is great!"))
+        .containsExactly(83, 8251, 2488, 382, 2212, 0);
+    String japanese = "お誕生日おめでとう";
+    assertThat(o200kBase.decode(o200kBase.encode(japanese))).isEqualTo(japanese);
+  }
+
+  @Test
+  void resolvesEncodingOfModel() {
+    assertThat(TokenEncoding.forModel(OpenAIModel.GPT_4o.getId()))
+        .isEqualTo(TokenEncoding.O200K_BASE);
+    assertThat(TokenEncoding.forModel(OpenAIModel.o1_MINI.getId()))
+        .isEqualTo(TokenEncoding.O200K_BASE);
+    assertThat(TokenEncoding.forModel(OpenAIModel.GPT_4_TURBO.getId()))
+        .isEqualTo(TokenEncoding.CL100K_BASE);
+  }
+
+  @Test
+  void countsMessageTokensWithOverhead() {
+    TokenCounter tokenCounter = new TokenCounter(tokenizer);
+
+    // 3 per message + "system" (6) + "ab" (1), 3 per message + "user" (4) + "cd" (1), 3 priming
+    assertThat(
+            tokenCounter.countMessages(
+                List.of(ChatMessage.systemMessage("ab"), ChatMessage.userMessage("cd"))))
+        .isEqualTo(21);
+  }
+
+  @Test
+  void countsFunctionToolTokens() {
+    TokenCounter tokenCounter = new TokenCounter(tokenizer);
+
+    Function function =
+        Function.newBuilder()
+            .name("f")
+            .description("Do.")
+            .parameters(
+                Map.of(
+                    "type",
+                    "object",
+                    "properties",
+                    Map.of("x", Map.of("type", "string", "enum", List.of("ab", "cd")))))
+            .build();
+
+    // 7 + "f:Do" (4), 3 properties, 3 per property, -3 enum + 2 * (3 + 1), "x:string:" (9), 12 end
+    assertThat(tokenCounter.countTools(List.of(Tool.functionTool(function)))).isEqualTo(43);
+    assertThat(tokenCounter.countTools(List.of(Tool.codeInterpreterTool()))).isZero();
+  }
+
+  private void assumeRanksArePresent(TokenEncoding encoding) {
+    String resource = "/tiktoken/" + encoding.getName() + ".tiktoken";
+    assumeTrue(
+        TokenizerTest.class.getResource(resource) != null,
+        "The " + encoding.getName() + " ranks are not on the classpath");
+  }
+}
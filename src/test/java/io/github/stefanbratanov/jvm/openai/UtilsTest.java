@@ -0,0 +1,69 @@
+package io.github.stefanbratanov.jvm.openai;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class UtilsTest {
+
+  @Test
+  void replacesJsonValuesWithParsedJson() {
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("object", "{\"type\":\"string\"}");
+    map.put("array", " [\"a\", \"b\"] ");
+    map.put("string", "\"quoted\"");
+    map.put("integer", "42");
+    map.put("decimal", "-1.5e3");
+    map.put("boolean", "true");
+    map.put("number", 7);
+
+    Map<String, Object> result = Utils.mapWithoutJsonEscaping(map);
+
+    assertThat(result.keySet())
+        .containsExactly("object", "array", "string", "integer", "decimal", "boolean", "number");
+    assertThat(((JsonNode) result.get("object")).get("type").asText()).isEqualTo("string");
+    assertThat(((JsonNode) result.get("array")).size()).isEqualTo(2);
+    assertThat(result.get("string")).isEqualTo(TextNode.valueOf("quoted"));
+    assertThat(result.get("integer")).isEqualTo(IntNode.valueOf(42));
+    assertThat(((JsonNode) result.get("decimal")).asDouble()).isEqualTo(-1500.0);
+    assertThat(result.get("boolean")).isEqualTo(BooleanNode.TRUE);
+    assertThat(result.get("number")).isEqualTo(7);
+  }
+
+  @Test
+  void keepsTextWhichIsNotEntirelyJson() {
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("a", "1 apple");
+    map.put("b", "2024-01-01");
+    map.put("c", "true story");
+    map.put("d", "tr");
+    map.put("e", "{\"type\":\"string\"} and more");
+    map.put("f", "[1, 2] [3]");
+    map.put("g", "\"quoted\" text \"quoted\"");
+    map.put("h", "007");
+    map.put("i", "1.");
+    map.put("j", "the person's name");
+    map.put("k", "  ");
+    map.put("l", "null");
+
+    Map<String, Object> result = Utils.mapWithoutJsonEscaping(map);
+
+    assertThat(result).isEqualTo(map);
+  }
+
+  @Test
+  void readsTreeOnlyIfThereIsNothingAfterTheJson() throws Exception {
+    assertThat(Utils.readTree(" {\"a\":1} ").get("a").asInt()).isEqualTo(1);
+    assertThatThrownBy(() -> Utils.readTree("1 apple")).isInstanceOf(JsonProcessingException.class);
+    assertThatThrownBy(() -> RawJson.of("{\"a\":1} {\"b\":2}"))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}